@@ -0,0 +1,147 @@
+package analytics;
+
+import model.MovimentoEstoque;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * Operadores de agregação sobre movimentos de estoque, usados por
+ * {@link Analise#agregar(Collector)} e {@link Analise#agrupar(Function, Collector)}.
+ * <p>
+ * Cada operador é um {@link Collector}: na execução paralela, cada thread
+ * acumula um resultado parcial sobre a sua parte dos movimentos, sem
+ * sincronização, e os parciais são combinados ao final. As somas são
+ * feitas em {@code long}, sem conversão para objetos por movimento.
+ * </p>
+ *
+ * @author ViniMonster
+ */
+public final class Agregacoes {
+
+    private Agregacoes() {
+    }
+
+    /**
+     * Soma uma medida dos movimentos.
+     *
+     * @param medida medida somada, como {@link Campos#valorCentavos()}
+     * @return soma da medida
+     */
+    public static Collector<MovimentoEstoque, ?, Long> soma(ToLongFunction<? super MovimentoEstoque> medida) {
+        return Collectors.summingLong(medida);
+    }
+
+    /**
+     * Conta os movimentos.
+     *
+     * @return quantidade de movimentos
+     */
+    public static Collector<MovimentoEstoque, ?, Long> contagem() {
+        return Collectors.counting();
+    }
+
+    /**
+     * Obtém o menor valor de uma medida.
+     *
+     * @param medida medida comparada
+     * @return menor valor; vazio se não houver movimentos
+     */
+    public static Collector<MovimentoEstoque, ?, OptionalLong> minimo(ToLongFunction<? super MovimentoEstoque> medida) {
+        return Collectors.collectingAndThen(Collectors.summarizingLong(medida),
+                e -> e.getCount() == 0 ? OptionalLong.empty() : OptionalLong.of(e.getMin()));
+    }
+
+    /**
+     * Obtém o maior valor de uma medida.
+     *
+     * @param medida medida comparada
+     * @return maior valor; vazio se não houver movimentos
+     */
+    public static Collector<MovimentoEstoque, ?, OptionalLong> maximo(ToLongFunction<? super MovimentoEstoque> medida) {
+        return Collectors.collectingAndThen(Collectors.summarizingLong(medida),
+                e -> e.getCount() == 0 ? OptionalLong.empty() : OptionalLong.of(e.getMax()));
+    }
+
+    /**
+     * Obtém contagem, soma, mínimo, máximo e média de uma medida em uma
+     * única passagem.
+     *
+     * @param medida medida resumida
+     * @return estatísticas da medida
+     */
+    public static Collector<MovimentoEstoque, ?, LongSummaryStatistics> estatisticas(
+            ToLongFunction<? super MovimentoEstoque> medida) {
+        return Collectors.summarizingLong(medida);
+    }
+
+    /**
+     * Obtém os valores distintos de um campo. Valores {@code null} são ignorados.
+     *
+     * @param campo campo dos movimentos, como {@link Campos#cliente()}
+     * @param <T>   tipo do campo
+     * @return conjunto dos valores distintos
+     */
+    public static <T> Collector<MovimentoEstoque, ?, Set<T>> distintos(Function<? super MovimentoEstoque, ? extends T> campo) {
+        return Collector.of(HashSet::new,
+                (Set<T> s, MovimentoEstoque m) -> {
+                    T v = campo.apply(m);
+                    if (v != null) s.add(v);
+                },
+                (a, b) -> {
+                    a.addAll(b);
+                    return a;
+                });
+    }
+
+    /**
+     * Conta os valores distintos de um campo. Valores {@code null} são ignorados.
+     *
+     * @param campo campo dos movimentos
+     * @return quantidade de valores distintos
+     */
+    public static Collector<MovimentoEstoque, ?, Long> contarDistintos(Function<? super MovimentoEstoque, ?> campo) {
+        return Collectors.collectingAndThen(distintos(campo), s -> (long) s.size());
+    }
+
+    /**
+     * Agrupa os movimentos por uma chave e agrega cada grupo. Pode ser usado
+     * como agregação de outro agrupamento, para chaves compostas (por
+     * exemplo, produto e semana). Movimentos com chave {@code null} são ignorados.
+     *
+     * @param chave     chave de agrupamento, como {@link Campos#produto()}
+     * @param agregacao agregação aplicada a cada grupo
+     * @param <K>       tipo da chave
+     * @param <A>       tipo do resultado parcial da agregação
+     * @param <R>       tipo do resultado da agregação
+     * @return resultado de cada chave
+     */
+    public static <K, A, R> Collector<MovimentoEstoque, ?, Map<K, R>> porChave(
+            Function<? super MovimentoEstoque, ? extends K> chave,
+            Collector<? super MovimentoEstoque, A, R> agregacao) {
+
+        Supplier<A> criar = agregacao.supplier();
+        BiConsumer<A, ? super MovimentoEstoque> acumular = agregacao.accumulator();
+        BinaryOperator<A> combinar = agregacao.combiner();
+        Function<A, R> finalizar = agregacao.finisher();
+
+        return Collector.of(
+                () -> new HashMap<K, A>(),
+                (parciais, m) -> {
+                    K k = chave.apply(m);
+                    if (k != null) acumular.accept(parciais.computeIfAbsent(k, x -> criar.get()), m);
+                },
+                (a, b) -> {
+                    for (Map.Entry<K, A> e : b.entrySet()) a.merge(e.getKey(), e.getValue(), combinar);
+                    return a;
+                },
+                parciais -> {
+                    Map<K, R> resultado = new HashMap<>(parciais.size() * 4 / 3 + 1);
+                    for (Map.Entry<K, A> e : parciais.entrySet())
+                        resultado.put(e.getKey(), finalizar.apply(e.getValue()));
+                    return resultado;
+                });
+    }
+}
@@ -0,0 +1,163 @@
+package analytics;
+
+import model.ControleEstoque;
+import model.MovimentoEstoque;
+import model.TipoMovimento;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ * Consulta analítica sobre o histórico de movimentos de estoque.
+ * <p>
+ * A análise trabalha sobre uma cópia dos movimentos, feita uma única vez
+ * na criação; as consultas não travam o {@link ControleEstoque} e não
+ * veem movimentos registrados depois. Os filtros criam novas análises
+ * sobre a mesma cópia, e as agregações são feitas com os operadores de
+ * {@link Agregacoes}:
+ * </p>
+ * <pre>
+ * Map&lt;String, Long&gt; receitaPorCliente = Analise.de(controle)
+ *         .tipos(TipoMovimento.VENDA)
+ *         .agrupar(Campos.cliente(), Agregacoes.soma(Campos.valorCentavos()));
+ * </pre>
+ *
+ * <p>Com {@value #MINIMO_PARALELO} movimentos ou mais, a agregação é
+ * dividida entre as threads do {@link ForkJoinPool} comum, cada uma com
+ * resultados parciais próprios, combinados ao final.</p>
+ *
+ * @author ViniMonster
+ */
+public final class Analise {
+
+    /** Quantidade mínima de movimentos para agregar em paralelo. */
+    static final int MINIMO_PARALELO = 20_000;
+
+    /** Cópia dos movimentos analisados. */
+    private final List<MovimentoEstoque> movimentos;
+
+    /** Filtro aplicado aos movimentos, ou {@code null} para todos. */
+    private final Predicate<MovimentoEstoque> filtro;
+
+    private Analise(List<MovimentoEstoque> movimentos, Predicate<MovimentoEstoque> filtro) {
+        this.movimentos = movimentos;
+        this.filtro = filtro;
+    }
+
+    /**
+     * Cria uma análise sobre os movimentos registrados no controle.
+     *
+     * @param controle controle de estoque
+     * @return análise de todos os movimentos registrados até a chamada
+     */
+    public static Analise de(ControleEstoque controle) {
+        return de(controle.getMovimentos());
+    }
+
+    /**
+     * Cria uma análise sobre os movimentos informados.
+     *
+     * @param movimentos movimentos analisados; a coleção é copiada
+     * @return análise dos movimentos
+     */
+    public static Analise de(Collection<? extends MovimentoEstoque> movimentos) {
+        return new Analise(List.copyOf(movimentos), null);
+    }
+
+    /**
+     * Restringe a análise aos movimentos que atendem ao critério.
+     *
+     * @param criterio critério dos movimentos mantidos
+     * @return nova análise com o filtro acrescentado aos atuais
+     */
+    public Analise filtrar(Predicate<? super MovimentoEstoque> criterio) {
+        Predicate<MovimentoEstoque> novo = criterio::test;
+        return new Analise(movimentos, filtro == null ? novo : filtro.and(novo));
+    }
+
+    /**
+     * Restringe a análise aos movimentos ocorridos no período.
+     *
+     * @param inicio data inicial (inclusiva)
+     * @param fim    data final (inclusiva)
+     * @return nova análise restrita ao período
+     */
+    public Analise periodo(LocalDateTime inicio, LocalDateTime fim) {
+        return filtrar(m -> !m.getData().isBefore(inicio) && !m.getData().isAfter(fim));
+    }
+
+    /**
+     * Restringe a análise aos movimentos dos tipos informados.
+     *
+     * @param tipos tipos de movimento mantidos
+     * @return nova análise restrita aos tipos
+     */
+    public Analise tipos(TipoMovimento... tipos) {
+        EnumSet<TipoMovimento> conjunto = EnumSet.noneOf(TipoMovimento.class);
+        conjunto.addAll(Arrays.asList(tipos));
+        return filtrar(m -> conjunto.contains(m.getTipo()));
+    }
+
+    /**
+     * Agrega todos os movimentos da análise.
+     *
+     * @param agregacao operador de agregação, como {@link Agregacoes#contagem()}
+     * @param <R>       tipo do resultado
+     * @return resultado da agregação
+     */
+    public <R> R agregar(Collector<? super MovimentoEstoque, ?, R> agregacao) {
+        return fluxo().collect(agregacao);
+    }
+
+    /**
+     * Agrupa os movimentos por uma chave e agrega cada grupo. Movimentos
+     * com chave {@code null} são ignorados.
+     *
+     * @param chave     chave de agrupamento, como {@link Campos#produto()}
+     * @param agregacao operador aplicado a cada grupo
+     * @param <K>       tipo da chave
+     * @param <R>       tipo do resultado de cada grupo
+     * @return resultado de cada chave
+     */
+    public <K, R> Map<K, R> agrupar(Function<? super MovimentoEstoque, ? extends K> chave,
+                                    Collector<? super MovimentoEstoque, ?, R> agregacao) {
+        return fluxo().collect(Agregacoes.porChave(chave, agregacao));
+    }
+
+    /**
+     * Obtém as chaves com os maiores resultados de um agrupamento, em
+     * ordem decrescente.
+     *
+     * @param chave      chave de agrupamento
+     * @param agregacao  operador aplicado a cada grupo
+     * @param quantidade quantidade máxima de chaves devolvidas
+     * @param <K>        tipo da chave
+     * @param <R>        tipo do resultado de cada grupo
+     * @return as maiores chaves e seus resultados, em ordem decrescente
+     */
+    public <K, R extends Comparable<? super R>> List<Map.Entry<K, R>> maiores(
+            Function<? super MovimentoEstoque, ? extends K> chave,
+            Collector<? super MovimentoEstoque, ?, R> agregacao, int quantidade) {
+        Map<K, R> resultado = this.<K, R>agrupar(chave, agregacao);
+        List<Map.Entry<K, R>> grupos = new ArrayList<>(resultado.entrySet());
+        grupos.sort(Map.Entry.<K, R>comparingByValue().reversed());
+        return grupos.subList(0, Math.min(quantidade, grupos.size()));
+    }
+
+    /** @return quantidade de movimentos copiados, antes dos filtros */
+    public int tamanho() {
+        return movimentos.size();
+    }
+
+    private Stream<MovimentoEstoque> fluxo() {
+        Stream<MovimentoEstoque> s = movimentos.size() >= MINIMO_PARALELO
+                ? movimentos.parallelStream()
+                : movimentos.stream();
+        return filtro == null ? s : s.filter(filtro);
+    }
+}
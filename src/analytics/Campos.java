@@ -0,0 +1,106 @@
+package analytics;
+
+import model.*;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Campos dos movimentos de estoque usados como chaves de agrupamento e
+ * como medidas das agregações de uma {@link Analise}.
+ * <p>
+ * As chaves devolvem {@code null} para movimentos em que o campo não se
+ * aplica, como o cliente de uma entrada; esses movimentos são ignorados
+ * pelo agrupamento.
+ * </p>
+ *
+ * @author ViniMonster
+ */
+public final class Campos {
+
+    private Campos() {
+    }
+
+    /** @return código do produto do movimento */
+    public static Function<MovimentoEstoque, String> produto() {
+        return m -> m.getProduto().getCodigo();
+    }
+
+    /** @return categoria do produto do movimento */
+    public static Function<MovimentoEstoque, Categoria> categoria() {
+        return m -> m.getProduto().getCategoria();
+    }
+
+    /** @return tipo do movimento */
+    public static Function<MovimentoEstoque, TipoMovimento> tipo() {
+        return MovimentoEstoque::getTipo;
+    }
+
+    /** @return nome do cliente das vendas; {@code null} nos demais movimentos */
+    public static Function<MovimentoEstoque, String> cliente() {
+        return m -> {
+            if (!(m instanceof VendasClientes)) return null;
+            Cliente c = ((VendasClientes) m).getCliente();
+            return c == null ? null : c.getNome();
+        };
+    }
+
+    /**
+     * @return nome do fornecedor das entradas e devoluções a fornecedores;
+     *         {@code null} nos demais movimentos
+     */
+    public static Function<MovimentoEstoque, String> fornecedor() {
+        return m -> {
+            Fornecedor f = null;
+            if (m instanceof EntradaProduto) f = ((EntradaProduto) m).getFornecedor();
+            else if (m instanceof DevolucaoFornecedores) f = ((DevolucaoFornecedores) m).getFornecedor();
+            return f == null ? null : f.getNome();
+        };
+    }
+
+    /** @return dia do movimento */
+    public static Function<MovimentoEstoque, LocalDate> dia() {
+        return m -> m.getData().toLocalDate();
+    }
+
+    /** @return segunda-feira da semana do movimento */
+    public static Function<MovimentoEstoque, LocalDate> semana() {
+        return m -> {
+            LocalDate d = m.getData().toLocalDate();
+            return d.minusDays(d.getDayOfWeek().getValue() - DayOfWeek.MONDAY.getValue());
+        };
+    }
+
+    /** @return mês do movimento */
+    public static Function<MovimentoEstoque, YearMonth> mes() {
+        return m -> YearMonth.from(m.getData());
+    }
+
+    /** @return quantidade movimentada, sem sinal */
+    public static ToLongFunction<MovimentoEstoque> quantidade() {
+        return MovimentoEstoque::getQtd;
+    }
+
+    /** @return valor total do movimento, em centavos, sem sinal */
+    public static ToLongFunction<MovimentoEstoque> valorCentavos() {
+        return MovimentoEstoque::getValorTotalCentavos;
+    }
+
+    /** @return valor unitário do movimento, em centavos */
+    public static ToLongFunction<MovimentoEstoque> valorUnitarioCentavos() {
+        return MovimentoEstoque::getValorUnitarioCentavos;
+    }
+
+    /** @return variação de unidades em estoque: positiva nas entradas e negativa nas saídas */
+    public static ToLongFunction<MovimentoEstoque> quantidadeAssinada() {
+        return m -> (long) m.getTipo().getSinal() * m.getQtd();
+    }
+
+    /** @return impacto financeiro, em centavos: positivo nas entradas e negativo nas saídas */
+    public static ToLongFunction<MovimentoEstoque> valorAssinadoCentavos() {
+        return m -> m.getTipo().getSinal() * m.getValorTotalCentavos();
+    }
+}
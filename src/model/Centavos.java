@@ -0,0 +1,176 @@
+package model;
+
+/**
+ * Valor monetário em ponto fixo, representado como uma quantidade inteira
+ * de centavos.
+ * <p>
+ * Os valores são guardados nas classes do modelo como {@code long} primitivo;
+ * instâncias desta classe servem apenas para informar um valor já em
+ * centavos aos construtores de {@link Produto} e dos movimentos, sem
+ * ambiguidade com os construtores que recebem {@code float}. Somas e
+ * produtos de valores em centavos são exatos, ao contrário das somas em
+ * {@code float} ou {@code double}.
+ * </p>
+ *
+ * <p>Os métodos estáticos convertem valores em reais, interpretam e formatam
+ * o texto gravado nos arquivos (com duas casas decimais, como
+ * <code>1234.50</code>) sem passar por ponto flutuante.</p>
+ *
+ * @author ViniMonster
+ */
+public final class Centavos implements Comparable<Centavos> {
+
+    /** Maior quantidade de dígitos inteiros interpretada sem risco de estouro. */
+    private static final int MAX_DIGITOS = 16;
+
+    /** Quantidade de centavos. */
+    private final long valor;
+
+    private Centavos(long valor) {
+        this.valor = valor;
+    }
+
+    /**
+     * Obtém o valor correspondente à quantidade de centavos.
+     *
+     * @param centavos quantidade de centavos
+     * @return valor monetário
+     */
+    public static Centavos de(long centavos) {
+        return new Centavos(centavos);
+    }
+
+    /** @return quantidade de centavos */
+    public long getValor() {
+        return valor;
+    }
+
+    /**
+     * Converte um valor em reais para centavos, arredondando para o
+     * centavo mais próximo.
+     *
+     * @param reais valor em reais
+     * @return quantidade de centavos
+     */
+    public static long arredondar(double reais) {
+        return Math.round(reais * 100);
+    }
+
+    /**
+     * Converte uma quantidade de centavos em reais, para exibição.
+     *
+     * @param centavos quantidade de centavos
+     * @return valor em reais
+     */
+    public static double emReais(long centavos) {
+        return centavos / 100.0;
+    }
+
+    /**
+     * Formata o valor com duas casas decimais e ponto como separador,
+     * como <code>-12.05</code>.
+     *
+     * @param centavos quantidade de centavos
+     * @return texto do valor
+     */
+    public static String formatar(long centavos) {
+        return formatar(centavos, new StringBuilder(24)).toString();
+    }
+
+    /**
+     * Acrescenta o valor formatado ao final do texto informado.
+     *
+     * @param centavos quantidade de centavos
+     * @param sb       texto que recebe o valor
+     * @return o próprio {@code sb}
+     * @see #formatar(long)
+     */
+    public static StringBuilder formatar(long centavos, StringBuilder sb) {
+        long inteiro = centavos / 100;
+        int fracao = (int) (centavos % 100);
+        if (centavos < 0) {
+            sb.append('-');
+            inteiro = -inteiro;
+            fracao = -fracao;
+        }
+        return sb.append(inteiro).append('.').append((char) ('0' + fracao / 10)).append((char) ('0' + fracao % 10));
+    }
+
+    /**
+     * Interpreta um valor em reais escrito em texto.
+     * <p>
+     * Valores com até duas casas decimais, como os gravados por
+     * {@link #formatar(long)}, são interpretados diretamente sobre os dígitos.
+     * Outras formas, como as geradas por {@link String#valueOf(float)} em
+     * arquivos antigos (<code>1.0E7</code>, <code>0.333</code>), são
+     * convertidas por ponto flutuante e arredondadas para o centavo mais próximo.
+     * </p>
+     *
+     * @param texto valor em reais
+     * @return quantidade de centavos
+     * @throws NumberFormatException se o texto não for um número finito
+     *                               representável em centavos
+     */
+    public static long ler(CharSequence texto) {
+        int fim = texto.length();
+        if (fim == 0) throw new NumberFormatException("Campo numérico vazio.");
+
+        int i = 0;
+        boolean negativo = texto.charAt(0) == '-';
+        if (negativo || texto.charAt(0) == '+') i++;
+
+        long inteiro = 0;
+        int digitos = 0;
+        for (; i < fim; i++) {
+            int d = texto.charAt(i) - '0';
+            if (d < 0 || d > 9) break;
+            inteiro = inteiro * 10 + d;
+            digitos++;
+        }
+
+        int casas = 0;
+        long fracao = 0;
+        if (i < fim && texto.charAt(i) == '.') {
+            for (i++; i < fim && casas < 3; i++, casas++) {
+                int d = texto.charAt(i) - '0';
+                if (d < 0 || d > 9) break;
+                fracao = fracao * 10 + d;
+            }
+        }
+
+        if (i < fim || casas > 2 || digitos + casas == 0 || digitos > MAX_DIGITOS) {
+            double reais = Double.parseDouble(texto.toString());
+            // NaN, infinitos e valores além de um long em centavos não têm arredondamento válido
+            if (!(Math.abs(reais) * 100 < 0x1p63))
+                throw new NumberFormatException("Valor fora do intervalo: " + texto);
+            return arredondar(reais);
+        }
+
+        long centavos = inteiro * 100 + (casas == 1 ? fracao * 10 : fracao);
+        return negativo ? -centavos : centavos;
+    }
+
+    @Override
+    public int compareTo(Centavos outro) {
+        return Long.compare(valor, outro.valor);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Centavos && ((Centavos) o).valor == valor;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(valor);
+    }
+
+    /**
+     * @return valor formatado com duas casas decimais
+     * @see #formatar(long)
+     */
+    @Override
+    public String toString() {
+        return formatar(valor);
+    }
+}
@@ -0,0 +1,322 @@
+package model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Armazenamento colunar de movimentos de estoque, para consultas que
+ * percorrem muitos movimentos.
+ * <p>
+ * Em vez de um objeto por movimento, cada atributo fica em sua própria
+ * coluna de tipo primitivo: instante (segundos desde 1970-01-01T00:00, sem
+ * fuso, e nanossegundos do segundo), quantidade, valor unitário em centavos,
+ * posição do produto e tipo do movimento. As colunas crescem em blocos de
+ * {@value #TAMANHO_BLOCO} linhas, sem copiar os blocos já preenchidos.
+ * As somas por período são laços sobre os vetores de cada bloco, sem
+ * desvios condicionais: o filtro de período é aplicado como máscara de bits.
+ * </p>
+ *
+ * <p>Os produtos são guardados uma única vez, em uma tabela indexada pela
+ * posição gravada na coluna de produtos. Qualquer {@link LocalDateTime} é
+ * representável.</p>
+ *
+ * <p>As colunas são um retrato dos movimentos incluídos e não acompanham o
+ * {@link ControleEstoque}; ver {@link ControleEstoque#exportarColunas()}.
+ * A classe não é segura para inclusões concorrentes com consultas.</p>
+ *
+ * @author ViniMonster
+ */
+public final class ColunasMovimento {
+
+    /** Quantidade de linhas de cada bloco (potência de 2). */
+    public static final int TAMANHO_BLOCO = 1 << 16;
+
+    private static final int DESLOCAMENTO = Integer.numberOfTrailingZeros(TAMANHO_BLOCO);
+    private static final int MASCARA = TAMANHO_BLOCO - 1;
+
+    /** Tipos de movimento, na ordem dos valores da coluna de tipos. */
+    private static final TipoMovimento[] TIPOS = TipoMovimento.values();
+
+    /** Sinal de cada tipo de movimento, pela posição na coluna de tipos. */
+    private static final long[] SINAIS = new long[TIPOS.length];
+
+    static {
+        for (TipoMovimento t : TIPOS) SINAIS[t.ordinal()] = t.getSinal();
+    }
+
+    private long[][] segundos = new long[0][];
+    private int[][] nanos = new int[0][];
+    private int[][] quantidades = new int[0][];
+    private long[][] valores = new long[0][];
+    private int[][] produtos = new int[0][];
+    private byte[][] tipos = new byte[0][];
+
+    /** Quantidade de linhas preenchidas. */
+    private int tamanho;
+
+    /** Produtos referenciados pela coluna de produtos. */
+    private final List<Produto> tabelaProdutos = new ArrayList<>();
+
+    /** Posição de cada produto na tabela. */
+    private final Map<Produto, Integer> posicaoProdutos = new IdentityHashMap<>();
+
+    /** Cria um armazenamento colunar vazio. */
+    public ColunasMovimento() {
+    }
+
+    /**
+     * Cria um armazenamento colunar com os movimentos informados.
+     *
+     * @param movimentos movimentos a serem incluídos, na ordem da coleção
+     */
+    public ColunasMovimento(Collection<? extends MovimentoEstoque> movimentos) {
+        adicionarTodos(movimentos);
+    }
+
+    /**
+     * Inclui um movimento na próxima linha das colunas.
+     *
+     * @param m movimento a ser incluído
+     */
+    public void adicionar(MovimentoEstoque m) {
+        int bloco = tamanho >>> DESLOCAMENTO;
+        if (bloco == segundos.length) novoBloco();
+        int i = tamanho & MASCARA;
+
+        segundos[bloco][i] = m.getData().toEpochSecond(ZoneOffset.UTC);
+        nanos[bloco][i] = m.getData().getNano();
+        quantidades[bloco][i] = m.getQtd();
+        valores[bloco][i] = m.getValorUnitarioCentavos();
+        produtos[bloco][i] = posicaoProduto(m.getProduto());
+        tipos[bloco][i] = (byte) m.getTipo().ordinal();
+        tamanho++;
+    }
+
+    /**
+     * Inclui os movimentos nas próximas linhas das colunas.
+     *
+     * @param movimentos movimentos a serem incluídos, na ordem da coleção
+     */
+    public void adicionarTodos(Collection<? extends MovimentoEstoque> movimentos) {
+        for (MovimentoEstoque m : movimentos) adicionar(m);
+    }
+
+    /** @return quantidade de movimentos armazenados */
+    public int tamanho() {
+        return tamanho;
+    }
+
+    /** @return quantidade de produtos distintos referenciados */
+    public int quantidadeProdutos() {
+        return tabelaProdutos.size();
+    }
+
+    /**
+     * Obtém o produto de uma posição da tabela de produtos.
+     *
+     * @param posicao posição do produto, como devolvida por {@link #getPosicaoProduto(int)}
+     * @return produto correspondente
+     */
+    public Produto produto(int posicao) {
+        return tabelaProdutos.get(posicao);
+    }
+
+    /** @return data do movimento da linha */
+    public LocalDateTime getData(int linha) {
+        int b = bloco(linha), i = linha & MASCARA;
+        return LocalDateTime.ofEpochSecond(segundos[b][i], nanos[b][i], ZoneOffset.UTC);
+    }
+
+    /** @return quantidade movimentada na linha */
+    public int getQtd(int linha) {
+        return quantidades[bloco(linha)][linha & MASCARA];
+    }
+
+    /** @return valor unitário, em centavos, do movimento da linha */
+    public long getValorUnitarioCentavos(int linha) {
+        return valores[bloco(linha)][linha & MASCARA];
+    }
+
+    /** @return posição, na tabela de produtos, do produto da linha */
+    public int getPosicaoProduto(int linha) {
+        return produtos[bloco(linha)][linha & MASCARA];
+    }
+
+    /** @return produto do movimento da linha */
+    public Produto getProduto(int linha) {
+        return tabelaProdutos.get(getPosicaoProduto(linha));
+    }
+
+    /** @return tipo do movimento da linha */
+    public TipoMovimento getTipo(int linha) {
+        return TIPOS[tipos[bloco(linha)][linha & MASCARA]];
+    }
+
+    /**
+     * Soma o impacto financeiro dos movimentos ocorridos no período:
+     * positivo para entradas e negativo para saídas.
+     *
+     * @param inicio data inicial (inclusiva)
+     * @param fim    data final (inclusiva)
+     * @return saldo do período, em centavos
+     */
+    public long somarValor(LocalDateTime inicio, LocalDateTime fim) {
+        long deS = inicio.toEpochSecond(ZoneOffset.UTC), ateS = fim.toEpochSecond(ZoneOffset.UTC);
+        int deN = inicio.getNano(), ateN = fim.getNano();
+        long soma = 0;
+
+        for (int b = 0; b < segundos.length; b++) {
+            long[] t = segundos[b];
+            int[] ns = nanos[b];
+            int[] q = quantidades[b];
+            long[] v = valores[b];
+            byte[] k = tipos[b];
+            int n = linhasDoBloco(b);
+
+            for (int i = 0; i < n; i++)
+                soma += dentro(t[i], ns[i], deS, deN, ateS, ateN) & (SINAIS[k[i]] * q[i] * v[i]);
+        }
+        return soma;
+    }
+
+    /**
+     * Soma as quantidades movimentadas no período: positivas para entradas
+     * e negativas para saídas.
+     *
+     * @param inicio data inicial (inclusiva)
+     * @param fim    data final (inclusiva)
+     * @return variação de unidades em estoque no período
+     */
+    public long somarQuantidade(LocalDateTime inicio, LocalDateTime fim) {
+        long deS = inicio.toEpochSecond(ZoneOffset.UTC), ateS = fim.toEpochSecond(ZoneOffset.UTC);
+        int deN = inicio.getNano(), ateN = fim.getNano();
+        long soma = 0;
+
+        for (int b = 0; b < segundos.length; b++) {
+            long[] t = segundos[b];
+            int[] ns = nanos[b];
+            int[] q = quantidades[b];
+            byte[] k = tipos[b];
+            int n = linhasDoBloco(b);
+
+            for (int i = 0; i < n; i++)
+                soma += dentro(t[i], ns[i], deS, deN, ateS, ateN) & (SINAIS[k[i]] * q[i]);
+        }
+        return soma;
+    }
+
+    /**
+     * Soma o valor total (sem sinal) dos movimentos do período, separado
+     * por tipo de movimento.
+     *
+     * @param inicio data inicial (inclusiva)
+     * @param fim    data final (inclusiva)
+     * @return valor total de cada tipo, em centavos
+     */
+    public Map<TipoMovimento, Long> somarValorPorTipo(LocalDateTime inicio, LocalDateTime fim) {
+        long deS = inicio.toEpochSecond(ZoneOffset.UTC), ateS = fim.toEpochSecond(ZoneOffset.UTC);
+        int deN = inicio.getNano(), ateN = fim.getNano();
+        long[] somas = new long[TIPOS.length];
+
+        for (int b = 0; b < segundos.length; b++) {
+            long[] t = segundos[b];
+            int[] ns = nanos[b];
+            int[] q = quantidades[b];
+            long[] v = valores[b];
+            byte[] k = tipos[b];
+            int n = linhasDoBloco(b);
+
+            for (int i = 0; i < n; i++)
+                somas[k[i]] += dentro(t[i], ns[i], deS, deN, ateS, ateN) & (q[i] * v[i]);
+        }
+
+        Map<TipoMovimento, Long> resultado = new EnumMap<>(TipoMovimento.class);
+        for (TipoMovimento tipo : TIPOS) resultado.put(tipo, somas[tipo.ordinal()]);
+        return resultado;
+    }
+
+    /**
+     * Soma a variação de unidades em estoque de cada produto no período.
+     *
+     * @param inicio data inicial (inclusiva)
+     * @param fim    data final (inclusiva)
+     * @return variação de cada produto, indexada pela posição na tabela de produtos
+     * @see #produto(int)
+     */
+    public long[] somarQuantidadePorProduto(LocalDateTime inicio, LocalDateTime fim) {
+        long deS = inicio.toEpochSecond(ZoneOffset.UTC), ateS = fim.toEpochSecond(ZoneOffset.UTC);
+        int deN = inicio.getNano(), ateN = fim.getNano();
+        long[] somas = new long[tabelaProdutos.size()];
+
+        for (int b = 0; b < segundos.length; b++) {
+            long[] t = segundos[b];
+            int[] ns = nanos[b];
+            int[] q = quantidades[b];
+            int[] p = produtos[b];
+            byte[] k = tipos[b];
+            int n = linhasDoBloco(b);
+
+            for (int i = 0; i < n; i++)
+                somas[p[i]] += dentro(t[i], ns[i], deS, deN, ateS, ateN) & (SINAIS[k[i]] * q[i]);
+        }
+        return somas;
+    }
+
+    /**
+     * Máscara de bits para o filtro de período: todos os bits ligados se o
+     * instante ({@code s} segundos e {@code n} nanossegundos) estiver entre
+     * os limites, inclusive, e zero caso contrário.
+     * <p>
+     * Cada comparação combina o sinal da diferença dos segundos, que não
+     * transborda no intervalo de {@link LocalDateTime}, com a diferença dos
+     * nanossegundos, menor que 2<sup>32</sup> em módulo.
+     * </p>
+     */
+    private static long dentro(long s, int n, long deS, int deN, long ateS, int ateN) {
+        long aposInicio = (sinal(s - deS) << 32) + (n - deN);
+        long antesDoFim = (sinal(ateS - s) << 32) + (ateN - n);
+        return ~((aposInicio | antesDoFim) >> 63);
+    }
+
+    /** @return -1, 0 ou 1, conforme o sinal do valor, sem desvios condicionais */
+    private static long sinal(long v) {
+        return (v >> 63) | (-v >>> 63);
+    }
+
+    private int linhasDoBloco(int bloco) {
+        return Math.min(TAMANHO_BLOCO, tamanho - (bloco << DESLOCAMENTO));
+    }
+
+    private int bloco(int linha) {
+        Objects.checkIndex(linha, tamanho);
+        return linha >>> DESLOCAMENTO;
+    }
+
+    private int posicaoProduto(Produto p) {
+        Integer pos = posicaoProdutos.get(p);
+        if (pos == null) {
+            pos = tabelaProdutos.size();
+            tabelaProdutos.add(p);
+            posicaoProdutos.put(p, pos);
+        }
+        return pos;
+    }
+
+    private void novoBloco() {
+        int n = segundos.length + 1;
+        segundos = Arrays.copyOf(segundos, n);
+        nanos = Arrays.copyOf(nanos, n);
+        quantidades = Arrays.copyOf(quantidades, n);
+        valores = Arrays.copyOf(valores, n);
+        produtos = Arrays.copyOf(produtos, n);
+        tipos = Arrays.copyOf(tipos, n);
+
+        segundos[n - 1] = new long[TAMANHO_BLOCO];
+        nanos[n - 1] = new int[TAMANHO_BLOCO];
+        quantidades[n - 1] = new int[TAMANHO_BLOCO];
+        valores[n - 1] = new long[TAMANHO_BLOCO];
+        produtos[n - 1] = new int[TAMANHO_BLOCO];
+        tipos[n - 1] = new byte[TAMANHO_BLOCO];
+    }
+}
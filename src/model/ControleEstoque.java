@@ -1,185 +1,1236 @@
 package model;
 
+import persistence.Armazenamento;
+import persistence.Checkpoint;
 import persistence.DataStore;
+import persistence.GravadorAssincrono;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 
 /**
  * Classe responsável por controlar o estoque da aplicação.
  * Gerencia produtos cadastrados, movimentos de entrada e saída,
  * bem como operações de cálculo de saldo e listagens.
  *
- * <p>Ao ser instanciada, a classe carrega automaticamente os
- * produtos e movimentos salvos no {@link DataStore}, aplicando
- * todos os movimentos no estoque atual.</p>
+ * <p>Ao ser instanciada, a classe carrega automaticamente o último
+ * checkpoint de produtos e os movimentos salvos no {@link Armazenamento}
+ * informado (por padrão, o do {@link DataStore}), aplicando no estoque
+ * apenas os movimentos gravados após o checkpoint.</p>
+ *
+ * <p>As operações podem ser chamadas por várias threads. O estoque de cada
+ * produto é alterado sob uma trava da faixa correspondente ao seu código
+ * ({@value #FAIXAS} faixas), de modo que movimentos de produtos diferentes
+ * prosseguem em paralelo e a verificação de estoque suficiente de uma saída
+ * não pode ser intercalada com outro movimento do mesmo produto; os
+ * movimentos de um produto também são enviados ao diário sob essa trava,
+ * na mesma ordem em que foram aplicados, o que garante que a reaplicação
+ * do diário reproduza o estoque. No modo
+ * concorrente (ver {@link #ControleEstoque(Armazenamento, boolean)}), as
+ * listagens devolvem cópias, que podem ser percorridas enquanto novos
+ * movimentos são registrados; fora dele, devolvem visões sem cópia.</p>
  *
  * @author ViniMonster
  */
 public class ControleEstoque {
 
+    /** Meio de armazenamento dos produtos e movimentos. */
+    private final Armazenamento armazenamento;
+
     /** Lista de produtos cadastrados no estoque. */
     private final List<Produto> produtos;
 
+    /** Quantidade de travas de faixa usadas para os produtos (potência de 2). */
+    private static final int FAIXAS = 64;
+
+    /** Indica se as listagens devem devolver cópias em vez de visões. */
+    private final boolean concorrente;
+
+    /** Travas das faixas de produtos, escolhidas pelo código do produto. */
+    private final ReentrantLock[] travasFaixa = new ReentrantLock[FAIXAS];
+
+    /**
+     * Trava compartilhada pelos registros de movimentos e exclusiva para as
+     * alterações do catálogo e os checkpoints, que precisam de um estado sem
+     * movimentos aplicados e ainda não gravados.
+     */
+    private final ReentrantReadWriteLock travaCheckpoint = new ReentrantReadWriteLock();
+
+    /** Trava das listas e índices de movimentos e dos totais em estoque. */
+    private final ReentrantReadWriteLock travaMovimentos = new ReentrantReadWriteLock();
+
+    /** Produtos indexados pelo código, mantido junto com {@link #produtos}. */
+    private final Map<String, Produto> indiceProdutos;
+
+    /** Total de unidades em estoque, somado sobre os produtos cadastrados. */
+    private long totalUnidades;
+
+    /** Valor total em estoque (quantidade × valor unitário) dos produtos cadastrados, em centavos. */
+    private long totalCentavos;
+
+    /** Totais de estoque e de movimentos de cada categoria de produtos. */
+    private final Map<Categoria, TotaisCategoria> totaisPorCategoria = new EnumMap<>(Categoria.class);
+
     /** Lista completa de movimentos de entrada e saída registrados. */
     private final List<MovimentoEstoque> movimentos;
 
+    /** Movimentos de cada tipo, na ordem de registro. */
+    private final Map<TipoMovimento, List<MovimentoEstoque>> movimentosPorTipo = new EnumMap<>(TipoMovimento.class);
+
+    /** Movimentos de saída de todos os tipos, na ordem de registro. */
+    private final List<SaidaProduto> saidas = new ArrayList<>();
+
+    /** Movimentos ordenados por data, com o saldo financeiro acumulado. */
+    private final IndiceTemporal indiceTemporal = new IndiceTemporal(ControleEstoque::valorAssinado);
+
+    /** Histórico de movimentos de cada produto, pelo código, ordenado por data. */
+    private final Map<String, IndiceTemporal> historicos = new HashMap<>();
+
+    /** Totais dos movimentos por hora, dia e mês, por tipo e categoria. */
+    private final CuboMovimentos cubo;
+
+    /** Quantidade de movimentos registrados entre checkpoints automáticos. */
+    private static final int INTERVALO_CHECKPOINT = 1000;
+
+    /** Posição do diário coberta pelo checkpoint carregado na abertura. */
+    private final long offsetAbertura;
+
+    /**
+     * Produtos do checkpoint de abertura, pelo código, usados para carregar
+     * sob demanda os movimentos anteriores a esse checkpoint; {@code null}
+     * depois que eles forem carregados.
+     */
+    private volatile Map<String, Produto> indiceAbertura;
+
+    /** Movimentos registrados desde o último checkpoint gravado. */
+    private final AtomicInteger movimentosDesdeCheckpoint = new AtomicInteger();
+
+    /** Gravador em lote usado no modo de gravação assíncrona, ou {@code null}. */
+    private volatile GravadorAssincrono gravador;
+
+    /** Observadores notificados a cada movimento registrado. */
+    private final List<ObservadorMovimento> observadores = new CopyOnWriteArrayList<>();
+
     /**
      * Construtor que inicializa o controle de estoque carregando
      * produtos e movimentos previamente armazenados.
      *
-     * <p>Os movimentos são aplicados automaticamente nos produtos
-     * correspondentes para reconstruir o estado atual do estoque.</p>
+     * <p>A quantidade em estoque gravada no checkpoint já considera os
+     * movimentos anteriores a ele; apenas os movimentos gravados depois
+     * do checkpoint são lidos e reaplicados nos produtos correspondentes, e
+     * os que não puderem ser aplicados são descartados. Assim, o tempo de
+     * abertura depende apenas da atividade recente. Os movimentos anteriores
+     * ao checkpoint são lidos do diário uma única vez, na primeira consulta
+     * que precise do histórico (listagens, saldos por período e totais de
+     * movimentos); o saldo atual e a busca de produtos não os leem. Se o
+     * armazenamento mantiver um índice por período, o saldo e os totais de
+     * um período leem apenas os movimentos anteriores desse período, sem
+     * carregar o histórico.</p>
+     *
+     * @see DataStore#defaultStorage()
      */
     public ControleEstoque() {
-        produtos = DataStore.loadProducts();
-        movimentos = DataStore.loadMovements(produtos);
+        this(DataStore.defaultStorage());
+    }
 
-        for (MovimentoEstoque m : movimentos) {
+    /**
+     * Construtor que inicializa o controle de estoque a partir do
+     * armazenamento informado, que passa a receber todas as gravações.
+     *
+     * @param armazenamento meio de armazenamento dos produtos e movimentos
+     */
+    public ControleEstoque(Armazenamento armazenamento) {
+        this(armazenamento, false);
+    }
+
+    /**
+     * Construtor que inicializa o controle de estoque a partir do
+     * armazenamento informado, definindo se as listagens serão usadas
+     * enquanto outras threads registram movimentos.
+     *
+     * @param armazenamento meio de armazenamento dos produtos e movimentos
+     * @param concorrente   {@code true} para que as listagens devolvam cópias
+     *                      seguras para percorrer durante novos registros
+     */
+    public ControleEstoque(Armazenamento armazenamento, boolean concorrente) {
+        this.armazenamento = Objects.requireNonNull(armazenamento);
+        this.concorrente = concorrente;
+        for (int i = 0; i < FAIXAS; i++) travasFaixa[i] = new ReentrantLock();
+
+        Checkpoint checkpoint = armazenamento.carregarCheckpoint();
+        produtos = checkpoint.getProdutos();
+
+        long offset = checkpoint.possuiOffset()
+                ? checkpoint.getOffset()
+                : armazenamento.tamanhoDiario();
+
+        indiceProdutos = new ConcurrentHashMap<>(DataStore.indexProducts(produtos));
+        offsetAbertura = offset;
+        indiceAbertura = offset > 0 ? new HashMap<>(indiceProdutos) : null;
+
+        movimentos = new ArrayList<>();
+        List<MovimentoEstoque> cauda = armazenamento.carregarMovimentos(indiceProdutos, offset, Long.MAX_VALUE);
+
+        // movimentos da cauda que não podem ser aplicados não entram no histórico
+        int aplicados = 0;
+        for (MovimentoEstoque m : cauda) {
             try {
                 m.aplicarMovimento();
-            } catch (Exception ignored) {}
+                movimentos.add(m);
+                aplicados++;
+            } catch (RuntimeException ignored) {}
+        }
+        movimentosDesdeCheckpoint.set(aplicados);
+        indexarPorData(movimentos);
+
+        for (TipoMovimento t : TipoMovimento.values()) movimentosPorTipo.put(t, new ArrayList<>());
+        for (Categoria c : Categoria.values()) totaisPorCategoria.put(c, new TotaisCategoria());
+        for (MovimentoEstoque m : movimentos) {
+            indexarPorTipo(m);
+            somarPorCategoria(m);
         }
+        cubo = CuboMovimentos.construir(movimentos);
+
+        for (Produto p : indiceProdutos.values()) somarAoTotal(p, p.getQtdEstoque());
     }
 
     /**
      * Obtém a lista de produtos cadastrados.
+     * <p>
+     * A lista não pode ser alterada diretamente; use
+     * {@link #adicionarProduto(Produto)} e {@link #removerProduto(String)},
+     * que mantêm o índice por código e o checkpoint atualizados.
+     * </p>
      *
-     * @return lista de produtos
+     * @return lista de produtos, somente leitura
      */
     public List<Produto> getProdutos() {
-        return produtos;
+        if (!concorrente) return Collections.unmodifiableList(produtos);
+
+        travaCheckpoint.readLock().lock();
+        try {
+            return Collections.unmodifiableList(new ArrayList<>(produtos));
+        } finally {
+            travaCheckpoint.readLock().unlock();
+        }
+    }
+
+    /** @return {@code true} se as listagens devolvem cópias (modo concorrente) */
+    public boolean isConcorrente() {
+        return concorrente;
     }
 
     /**
      * Obtém a lista completa de movimentos registrados.
      *
-     * @return lista de movimentos de estoque
+     * @return lista de movimentos de estoque, somente leitura, na ordem de registro
      */
     public List<MovimentoEstoque> getMovimentos() {
-        return movimentos;
+        return listar(movimentos);
     }
 
     /**
-     * Adiciona um novo produto ao estoque e salva a alteração no {@link DataStore}.
+     * Adiciona um novo produto ao estoque e salva a alteração no armazenamento.
+     * <p>
+     * Com a gravação assíncrona ativa, os movimentos pendentes são gravados
+     * antes de qualquer alteração do catálogo.
+     * </p>
      *
      * @param p produto a ser adicionado
+     * @throws IllegalArgumentException se já houver produto com o mesmo código
+     * @throws UncheckedIOException     se a gravação dos movimentos pendentes falhar
      */
     public void adicionarProduto(Produto p) {
-        produtos.add(p);
-        DataStore.saveProducts(produtos);
+        travaCheckpoint.writeLock().lock();
+        try {
+            descarregarGravador();
+            if (indiceProdutos.putIfAbsent(p.getCodigo(), p) != null)
+                throw new IllegalArgumentException("Código já cadastrado.");
+
+            produtos.add(p);
+            travaMovimentos.writeLock().lock();
+            try {
+                somarAoTotal(p, p.getQtdEstoque());
+            } finally {
+                travaMovimentos.writeLock().unlock();
+            }
+            salvarCheckpoint();
+        } finally {
+            travaCheckpoint.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove um produto do estoque e salva a alteração no armazenamento.
+     * <p>
+     * Os movimentos já registrados do produto permanecem no histórico em
+     * memória; ao reabrir o estoque, movimentos de produtos removidos são
+     * ignorados. Com a gravação assíncrona ativa, os movimentos pendentes
+     * são gravados antes de qualquer alteração do catálogo.
+     * </p>
+     *
+     * @param codigo código do produto a ser removido
+     * @return produto removido, ou {@code null} se não encontrado
+     * @throws UncheckedIOException se a gravação dos movimentos pendentes falhar
+     */
+    public Produto removerProduto(String codigo) {
+        travaCheckpoint.writeLock().lock();
+        try {
+            descarregarGravador();
+            Produto p = indiceProdutos.remove(codigo);
+            if (p == null) return null;
+
+            produtos.remove(p);
+            travaMovimentos.writeLock().lock();
+            try {
+                somarAoTotal(p, -p.getQtdEstoque());
+            } finally {
+                travaMovimentos.writeLock().unlock();
+            }
+            salvarCheckpoint();
+            return p;
+        } finally {
+            travaCheckpoint.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Grava um checkpoint com o estado atual dos produtos, cobrindo
+     * todos os movimentos registrados até o momento.
+     * <p>
+     * Registros de movimentos em andamento são concluídos antes, e novos
+     * registros aguardam o fim da gravação.
+     * </p>
+     *
+     * @throws UncheckedIOException se a gravação assíncrona dos movimentos
+     *                              pendentes estiver falhando
+     */
+    public void salvarCheckpoint() {
+        travaCheckpoint.writeLock().lock();
+        try {
+            descarregarGravador();
+            armazenamento.salvarCheckpoint(produtos);
+            movimentosDesdeCheckpoint.set(0);
+        } finally {
+            travaCheckpoint.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ativa a gravação assíncrona (write-behind) dos movimentos.
+     * <p>
+     * Nesse modo, {@link #registrarMovimento(Movimentavel)} atualiza o estoque
+     * em memória e apenas enfileira o movimento; uma thread dedicada grava os
+     * movimentos no diário em lotes de até {@code tamanhoLote} movimentos,
+     * aguardando no máximo {@code janelaMillis} para formar cada lote.
+     * </p>
+     *
+     * @param janelaMillis tempo máximo de formação de um lote, em milissegundos
+     * @param tamanhoLote  quantidade máxima de movimentos por lote
+     */
+    public void ativarGravacaoAssincrona(long janelaMillis, int tamanhoLote) {
+        travaCheckpoint.writeLock().lock();
+        try {
+            desativarGravacaoAssincrona();
+            gravador = new GravadorAssincrono(armazenamento, janelaMillis, tamanhoLote);
+        } finally {
+            travaCheckpoint.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Desativa a gravação assíncrona, aguardando a gravação de todos os
+     * movimentos pendentes. Não tem efeito se o modo não estiver ativo.
+     */
+    public void desativarGravacaoAssincrona() {
+        travaCheckpoint.writeLock().lock();
+        try {
+            if (gravador != null) {
+                gravador.encerrar();
+                gravador = null;
+            }
+        } finally {
+            travaCheckpoint.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adiciona um observador, notificado a cada movimento registrado depois
+     * da chamada, inclusive os de lotes.
+     * <p>
+     * A notificação acontece na thread que registrou o movimento, após a
+     * liberação de todas as travas do controle; uma exceção lançada pelo
+     * observador é propagada a quem registrou o movimento, que já estará
+     * aplicado e gravado.
+     * </p>
+     *
+     * @param observador observador a ser notificado
+     */
+    public void adicionarObservador(ObservadorMovimento observador) {
+        observadores.add(Objects.requireNonNull(observador));
+    }
+
+    /**
+     * Remove um observador adicionado anteriormente.
+     *
+     * @param observador observador a ser removido
+     * @return {@code true} se o observador estava registrado
+     */
+    public boolean removerObservador(ObservadorMovimento observador) {
+        return observadores.remove(observador);
     }
 
     /**
      * Busca um produto cadastrado usando seu código identificador.
+     * <p>
+     * A busca usa o índice por código, com custo constante independentemente
+     * da quantidade de produtos cadastrados.
+     * </p>
      *
      * @param codigo código do produto
      * @return produto correspondente, ou {@code null} se não encontrado
      */
     public Produto buscarProdutoPorCodigo(String codigo) {
-        return produtos.stream()
-                .filter(p -> p.getCodigo().equals(codigo))
-                .findFirst()
-                .orElse(null);
+        return indiceProdutos.get(codigo);
     }
 
     /**
      * Registra um movimento de estoque (entrada ou saída) e persiste
-     * automaticamente os dados atualizados.
+     * automaticamente o novo movimento.
+     * <p>
+     * Apenas o movimento registrado é acrescentado ao diário de
+     * movimentações do armazenamento; o histórico anterior não é
+     * reescrito. O arquivo de produtos é regravado apenas a cada
+     * {@value #INTERVALO_CHECKPOINT} movimentos, como checkpoint.
+     * </p>
+     *
+     * <p>O movimento é gravado no diário antes de ser aplicado; se a
+     * gravação falhar, o estoque não é alterado e o erro é lançado.</p>
      *
      * @param mov movimento a ser registrado
      * @throws IllegalArgumentException caso o movimento não seja do tipo permitido
+     * @throws UncheckedIOException     se a gravação no diário falhar
      */
     public void registrarMovimento(Movimentavel mov) {
-        mov.aplicarMovimento();
+        registrarMovimentoAsync(mov);
+    }
 
-        if (mov instanceof MovimentoEstoque) {
-            movimentos.add((MovimentoEstoque) mov);
-            DataStore.saveMovements(movimentos);
-            DataStore.saveProducts(produtos);
-        } else {
+    /**
+     * Registra um movimento de estoque e devolve um futuro que indica
+     * quando o movimento foi gravado no diário.
+     * <p>
+     * Com a gravação assíncrona ativa, o movimento é aplicado e enfileirado,
+     * e o futuro é concluído quando o lote que o contém for gravado; um lote
+     * que falha é retido e gravado novamente, e novos movimentos são
+     * recusados enquanto a falha persistir. Caso contrário, o movimento é
+     * gravado antes de ser aplicado, durante a chamada, e o futuro já é
+     * devolvido concluído.
+     * </p>
+     *
+     * @param mov movimento a ser registrado
+     * @return futuro concluído quando o movimento estiver gravado
+     * @throws IllegalArgumentException caso o movimento não seja do tipo permitido
+     * @throws UncheckedIOException     se a gravação no diário falhar, ou se a
+     *                                  gravação assíncrona estiver falhando
+     * @see #ativarGravacaoAssincrona(long, int)
+     */
+    public CompletableFuture<Void> registrarMovimentoAsync(Movimentavel mov) {
+        if (!(mov instanceof MovimentoEstoque)) {
+            mov.aplicarMovimento();
             throw new IllegalArgumentException("Movimento inválido.");
         }
+
+        MovimentoEstoque m = (MovimentoEstoque) mov;
+        Produto p = m.getProduto();
+        CompletableFuture<Void> gravado = null;
+
+        travaCheckpoint.readLock().lock();
+        try {
+            int variacao;
+            ReentrantLock faixa = travaFaixa(p.getCodigo());
+            faixa.lock();
+            try {
+                // gravado ainda sob a trava, para que o diário siga a ordem
+                // em que os movimentos do produto foram aplicados
+                GravadorAssincrono g = gravador;
+                if (g == null) {
+                    validar(m);
+                    gravar(m);
+                    gravado = CompletableFuture.completedFuture(null);
+                } else {
+                    Exception falha = g.getFalha();
+                    if (falha != null)
+                        throw new UncheckedIOException("Falha na gravação do diário.", comoIOException(falha));
+                }
+
+                int antes = p.getQtdEstoque();
+                m.aplicarMovimento();
+                variacao = p.getQtdEstoque() - antes;
+
+                if (g != null) gravado = g.enviar(m);
+            } finally {
+                faixa.unlock();
+            }
+
+            travaMovimentos.writeLock().lock();
+            try {
+                if (indiceProdutos.get(p.getCodigo()) == p) somarAoTotal(p, variacao);
+                movimentos.add(m);
+                indexarPorData(List.of(m));
+                indexarPorTipo(m);
+                somarPorCategoria(m);
+                cubo.adicionar(m);
+            } finally {
+                travaMovimentos.writeLock().unlock();
+            }
+        } finally {
+            travaCheckpoint.readLock().unlock();
+        }
+
+        notificar(m);
+        if (movimentosDesdeCheckpoint.incrementAndGet() >= INTERVALO_CHECKPOINT)
+            salvarCheckpointSeNecessario();
+        return gravado;
+    }
+
+    /**
+     * Registra um lote de movimentos de estoque como uma única operação.
+     * <p>
+     * O lote inteiro é validado antes de qualquer alteração: todos os itens
+     * devem ser movimentos de estoque com quantidade positiva, e nenhum
+     * produto pode ficar com estoque negativo em nenhum ponto do lote,
+     * considerando os movimentos na ordem informada. Se a validação falhar,
+     * nenhum movimento é aplicado nem gravado.
+     * </p>
+     *
+     * <p>As travas das faixas de todos os produtos do lote são obtidas em
+     * ordem crescente e mantidas até o fim, e os movimentos são acrescentados
+     * ao diário em uma única chamada ao {@link Armazenamento} antes de serem
+     * aplicados; assim, uma falha de gravação também não altera o estoque.
+     * Com a gravação assíncrona ativa, os movimentos pendentes são gravados
+     * antes do lote para preservar a ordem do diário.</p>
+     *
+     * @param lote movimentos a serem registrados, na ordem de aplicação
+     * @throws IllegalArgumentException se algum movimento for inválido ou
+     *                                  deixar o estoque negativo
+     * @throws UncheckedIOException     se a gravação do lote falhar, ou se a
+     *                                  gravação assíncrona estiver falhando
+     */
+    public void registrarMovimentos(Collection<? extends Movimentavel> lote) {
+        List<MovimentoEstoque> novos = new ArrayList<>(lote.size());
+        for (Movimentavel mov : lote) {
+            if (!(mov instanceof MovimentoEstoque))
+                throw new IllegalArgumentException("Movimento inválido.");
+            MovimentoEstoque m = (MovimentoEstoque) mov;
+            if (m.getQtd() <= 0)
+                throw new IllegalArgumentException("Quantidade deve ser positiva.");
+            novos.add(m);
+        }
+        if (novos.isEmpty()) return;
+
+        boolean[] faixas = new boolean[FAIXAS];
+        for (MovimentoEstoque m : novos) faixas[faixa(m.getProduto().getCodigo())] = true;
+
+        travaCheckpoint.readLock().lock();
+        try {
+            int travadas = 0;
+            try {
+                for (; travadas < FAIXAS; travadas++)
+                    if (faixas[travadas]) travasFaixa[travadas].lock();
+
+                Map<Produto, Long> estoques = projetarEstoques(novos);
+
+                descarregarGravador();
+                try {
+                    armazenamento.anexarMovimentos(novos);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                for (MovimentoEstoque m : novos) m.aplicarMovimento();
+
+                travaMovimentos.writeLock().lock();
+                try {
+                    for (Map.Entry<Produto, Long> e : estoques.entrySet()) {
+                        Produto p = e.getKey();
+                        if (indiceProdutos.get(p.getCodigo()) == p)
+                            somarAoTotal(p, (int) (p.getQtdEstoque() - e.getValue()));
+                    }
+                    movimentos.addAll(novos);
+                    indexarPorData(novos);
+                    for (MovimentoEstoque m : novos) {
+                        indexarPorTipo(m);
+                        somarPorCategoria(m);
+                        cubo.adicionar(m);
+                    }
+                } finally {
+                    travaMovimentos.writeLock().unlock();
+                }
+            } finally {
+                for (int i = 0; i < travadas; i++)
+                    if (faixas[i]) travasFaixa[i].unlock();
+            }
+        } finally {
+            travaCheckpoint.readLock().unlock();
+        }
+
+        for (MovimentoEstoque m : novos) notificar(m);
+        if (movimentosDesdeCheckpoint.addAndGet(novos.size()) >= INTERVALO_CHECKPOINT)
+            salvarCheckpointSeNecessario();
     }
 
     /**
      * Retorna uma lista contendo todos os movimentos de entrada registrados.
+     * <p>
+     * A lista é uma visão somente leitura do índice por tipo, obtida
+     * sem percorrer os demais movimentos.
+     * </p>
      *
      * @return lista de entradas de produto
      */
+    @SuppressWarnings("unchecked")
     public List<EntradaProduto> listarEntradas() {
-        List<EntradaProduto> lista = new ArrayList<>();
-        for (MovimentoEstoque m : movimentos)
-            if (m instanceof EntradaProduto) lista.add((EntradaProduto) m);
-        return lista;
+        // o índice de ENTRADA contém apenas instâncias de EntradaProduto
+        List<?> entradas = movimentosPorTipo.get(TipoMovimento.ENTRADA);
+        return listar((List<EntradaProduto>) entradas);
     }
 
     /**
      * Retorna uma lista contendo todos os movimentos de saída registrados.
+     * <p>
+     * A lista é uma visão somente leitura, na ordem de registro.
+     * </p>
      *
      * @return lista de saídas de produto
      */
     public List<SaidaProduto> listarSaidas() {
-        List<SaidaProduto> lista = new ArrayList<>();
-        for (MovimentoEstoque m : movimentos)
-            if (m instanceof SaidaProduto) lista.add((SaidaProduto) m);
-        return lista;
+        return listar(saidas);
+    }
+
+    /**
+     * Retorna os movimentos de um tipo, na ordem de registro.
+     *
+     * @param tipo tipo dos movimentos
+     * @return visão somente leitura dos movimentos do tipo
+     */
+    public List<MovimentoEstoque> listarPorTipo(TipoMovimento tipo) {
+        return listar(movimentosPorTipo.get(tipo));
     }
 
     /**
      * Retorna a lista completa de movimentos ordenada por data.
+     * <p>
+     * A lista é uma visão somente leitura do índice temporal, sem cópia
+     * nem reordenação; movimentos de mesma data aparecem na ordem de registro.
+     * </p>
      *
      * @return lista ordenada de movimentos
      */
     public List<MovimentoEstoque> listarMovimentosOrdenados() {
-        List<MovimentoEstoque> lista = new ArrayList<>(movimentos);
-        lista.sort(Comparator.comparing(MovimentoEstoque::getData));
-        return lista;
+        return listar(indiceTemporal.visao());
+    }
+
+    /**
+     * Retorna o histórico de movimentos de um produto, ordenado por data.
+     * <p>
+     * O histórico é mantido por produto a cada movimento registrado ou
+     * carregado, de modo que a consulta não percorre os movimentos dos
+     * demais produtos. Movimentos de mesma data aparecem na ordem de registro.
+     * </p>
+     *
+     * @param codigo código do produto
+     * @return movimentos do produto, somente leitura; vazio se não houver
+     */
+    public List<MovimentoEstoque> listarHistorico(String codigo) {
+        return listarHistorico(codigo, IndiceTemporal::visao);
+    }
+
+    /**
+     * Retorna os movimentos de um produto ocorridos em um período,
+     * ordenados por data, localizados por busca binária no histórico do produto.
+     *
+     * @param codigo código do produto
+     * @param inicio data inicial do período (inclusiva)
+     * @param fim    data final do período (inclusiva)
+     * @return movimentos do produto no período, somente leitura, copiados no
+     *         momento da chamada
+     */
+    public List<MovimentoEstoque> listarHistorico(String codigo, LocalDateTime inicio, LocalDateTime fim) {
+        return listarHistorico(codigo, h -> h.periodo(inicio, fim));
+    }
+
+    /**
+     * Retorna uma página do histórico de movimentos de um produto,
+     * ordenado por data.
+     *
+     * @param codigo        código do produto
+     * @param pagina        número da página, a partir de 0
+     * @param tamanhoPagina quantidade máxima de movimentos por página
+     * @return movimentos da página, somente leitura, copiados no momento da
+     *         chamada; vazio após a última página
+     * @throws IllegalArgumentException se a página for negativa ou o tamanho não for positivo
+     */
+    public List<MovimentoEstoque> listarHistorico(String codigo, int pagina, int tamanhoPagina) {
+        if (pagina < 0 || tamanhoPagina <= 0)
+            throw new IllegalArgumentException("Página inválida.");
+
+        long de = (long) pagina * tamanhoPagina;
+        int inicio = (int) Math.min(de, Integer.MAX_VALUE);
+        int fim = (int) Math.min(de + tamanhoPagina, Integer.MAX_VALUE);
+        return listarHistorico(codigo, h -> h.trecho(inicio, fim));
     }
 
     /**
-     * Calcula a quantidade total de itens no estoque somando a quantidade de cada produto.
+     * Obtém a quantidade total de itens no estoque.
+     * <p>
+     * O total é mantido a cada produto adicionado ou removido e a cada
+     * movimento registrado, sem percorrer o catálogo.
+     * </p>
      *
      * @return saldo total de unidades em estoque
      */
-    public int getSaldoAtualQuantidade() {
-        int saldo = 0;
-        for (Produto p : produtos) saldo += p.getQtdEstoque();
-        return saldo;
+    public long getSaldoAtualQuantidade() {
+        travaMovimentos.readLock().lock();
+        try {
+            return totalUnidades;
+        } finally {
+            travaMovimentos.readLock().unlock();
+        }
+    }
+
+    /**
+     * Obtém o valor total em estoque (quantidade multiplicada pelo valor
+     * unitário de cada produto).
+     * <p>
+     * Assim como a quantidade, o valor é mantido incrementalmente, somado
+     * em centavos, sem perda de precisão.
+     * </p>
+     *
+     * @return valor total do estoque, em reais
+     * @see #getSaldoAtualValorCentavos()
+     */
+    public double getSaldoAtualValor() {
+        return Centavos.emReais(getSaldoAtualValorCentavos());
     }
 
     /**
-     * Calcula o valor total em estoque multiplicando a quantidade
-     * pela o valor unitário de cada produto.
+     * Obtém o valor total em estoque, em centavos.
      *
-     * @return valor total do estoque
+     * @return valor total exato do estoque, em centavos
      */
-    public float getSaldoAtualValor() {
-        float total = 0f;
-        for (Produto p : produtos)
-            total += p.getQtdEstoque() * p.getValorUnitario();
-        return total;
+    public long getSaldoAtualValorCentavos() {
+        travaMovimentos.readLock().lock();
+        try {
+            return totalCentavos;
+        } finally {
+            travaMovimentos.readLock().unlock();
+        }
     }
 
     /**
      * Calcula o saldo (positivo ou negativo) de movimentos ocorridos
      * em um intervalo de tempo específico.
+     * <p>
+     * O saldo é obtido das somas acumuladas do índice temporal, com duas
+     * buscas binárias, sem percorrer os movimentos do período.
+     * </p>
      *
      * @param inicio data inicial do período
      * @param fim    data final do período
-     * @return saldo financeiro das movimentações no período
+     * @return saldo financeiro das movimentações no período, em reais
+     * @see #getSaldoPorPeriodoCentavos(LocalDateTime, LocalDateTime)
      */
-    public float getSaldoPorPeriodo(LocalDateTime inicio, LocalDateTime fim) {
-        float total = 0f;
+    public double getSaldoPorPeriodo(LocalDateTime inicio, LocalDateTime fim) {
+        return Centavos.emReais(getSaldoPorPeriodoCentavos(inicio, fim));
+    }
 
-        for (MovimentoEstoque m : movimentos) {
-            if (!m.getData().isBefore(inicio) && !m.getData().isAfter(fim)) {
-                float valor = m.getValorUnitario();
-                if (m instanceof EntradaProduto)
-                    total += valor * m.getQtd();
-                else
-                    total -= valor * m.getQtd();
+    /**
+     * Calcula o saldo de movimentos ocorridos em um intervalo de tempo, em centavos.
+     *
+     * @param inicio data inicial do período
+     * @param fim    data final do período
+     * @return saldo financeiro exato das movimentações no período, em centavos
+     */
+    public long getSaldoPorPeriodoCentavos(LocalDateTime inicio, LocalDateTime fim) {
+        if (!armazenamento.possuiIndicePorPeriodo()) garantirHistorico();
+        travaMovimentos.readLock().lock();
+        try {
+            long saldo = indiceTemporal.somar(inicio, fim);
+            for (MovimentoEstoque m : anterioresNoPeriodo(inicio, fim)) saldo += valorAssinado(m);
+            return saldo;
+        } finally {
+            travaMovimentos.readLock().unlock();
+        }
+    }
+
+    /**
+     * Obtém os totais dos movimentos ocorridos em um período, por tipo de
+     * movimento e categoria do produto.
+     * <p>
+     * As horas inteiras do período são lidas dos totais pré-agregados por
+     * hora, dia e mês; apenas os movimentos das frações de hora no início
+     * e no fim do período são percorridos, localizados no índice temporal.
+     * Relatórios de vários anos não dependem da quantidade de movimentos.
+     * </p>
+     *
+     * @param inicio data inicial do período (inclusiva)
+     * @param fim    data final do período (inclusiva)
+     * @return totais do período
+     */
+    public TotaisPeriodo getTotaisPorPeriodo(LocalDateTime inicio, LocalDateTime fim) {
+        long[] celulas = new long[TotaisPeriodo.CELULAS];
+
+        if (!armazenamento.possuiIndicePorPeriodo()) garantirHistorico();
+        travaMovimentos.readLock().lock();
+        try {
+            for (MovimentoEstoque m : anterioresNoPeriodo(inicio, fim)) TotaisPeriodo.somar(m, celulas);
+
+            long segInicio = inicio.toEpochSecond(ZoneOffset.UTC);
+            long segFim = fim.toEpochSecond(ZoneOffset.UTC);
+
+            // primeira hora inteira do período e hora seguinte à última
+            long de = Math.floorDiv(segInicio, 3600);
+            if (Math.floorMod(segInicio, 3600) != 0 || inicio.getNano() != 0) de++;
+            long ate = Math.floorDiv(segFim, 3600);
+            boolean fimDaHora = Math.floorMod(segFim, 3600) == 3599 && fim.getNano() == 999_999_999;
+            if (fimDaHora) ate++;
+
+            if (de >= ate) {
+                somarMovimentos(inicio, fim, celulas);
+            } else {
+                cubo.somarHoras(de, ate, celulas);
+                LocalDateTime primeiraHora = LocalDateTime.ofEpochSecond(de * 3600, 0, ZoneOffset.UTC);
+                if (primeiraHora.isAfter(inicio))
+                    somarMovimentos(inicio, primeiraHora.minusNanos(1), celulas);
+                if (!fimDaHora)
+                    somarMovimentos(LocalDateTime.ofEpochSecond(ate * 3600, 0, ZoneOffset.UTC), fim, celulas);
+            }
+        } finally {
+            travaMovimentos.readLock().unlock();
+        }
+        return new TotaisPeriodo(inicio, fim, celulas);
+    }
+
+    /**
+     * Obtém os totais de movimentos de cada dia de um intervalo, lidos dos
+     * totais pré-agregados por dia.
+     *
+     * @param inicio primeiro dia (inclusivo)
+     * @param fim    último dia (inclusivo)
+     * @return totais de cada dia, em ordem cronológica; vazio se {@code fim} for anterior a {@code inicio}
+     */
+    public SortedMap<LocalDate, TotaisPeriodo> getTotaisDiarios(LocalDate inicio, LocalDate fim) {
+        SortedMap<LocalDate, TotaisPeriodo> totais = new TreeMap<>();
+
+        garantirHistorico();
+        travaMovimentos.readLock().lock();
+        try {
+            for (LocalDate d = inicio; !d.isAfter(fim); d = d.plusDays(1)) {
+                long[] celulas = new long[TotaisPeriodo.CELULAS];
+                cubo.somarDia(d.toEpochDay(), celulas);
+                totais.put(d, new TotaisPeriodo(d.atStartOfDay(), d.atTime(LocalTime.MAX), celulas));
+            }
+        } finally {
+            travaMovimentos.readLock().unlock();
+        }
+        return Collections.unmodifiableSortedMap(totais);
+    }
+
+    /**
+     * Obtém os totais de movimentos de cada mês de um intervalo, lidos dos
+     * totais pré-agregados por mês.
+     *
+     * @param inicio primeiro mês (inclusivo)
+     * @param fim    último mês (inclusivo)
+     * @return totais de cada mês, em ordem cronológica; vazio se {@code fim} for anterior a {@code inicio}
+     */
+    public SortedMap<YearMonth, TotaisPeriodo> getTotaisMensais(YearMonth inicio, YearMonth fim) {
+        SortedMap<YearMonth, TotaisPeriodo> totais = new TreeMap<>();
+
+        garantirHistorico();
+        travaMovimentos.readLock().lock();
+        try {
+            for (YearMonth m = inicio; !m.isAfter(fim); m = m.plusMonths(1)) {
+                long[] celulas = new long[TotaisPeriodo.CELULAS];
+                cubo.somarMes(CuboMovimentos.mes(m.atDay(1)), celulas);
+                totais.put(m, new TotaisPeriodo(m.atDay(1).atStartOfDay(), m.atEndOfMonth().atTime(LocalTime.MAX), celulas));
+            }
+        } finally {
+            travaMovimentos.readLock().unlock();
+        }
+        return Collections.unmodifiableSortedMap(totais);
+    }
+
+    /**
+     * Obtém os totais de estoque e de movimentos de uma categoria.
+     * <p>
+     * Os totais são mantidos por categoria a cada alteração do catálogo e a
+     * cada movimento registrado; a consulta tem custo constante.
+     * </p>
+     *
+     * @param categoria categoria dos produtos
+     * @return retrato dos totais da categoria
+     */
+    public ResumoCategoria getResumoCategoria(Categoria categoria) {
+        garantirHistorico();
+        travaMovimentos.readLock().lock();
+        try {
+            return totaisPorCategoria.get(categoria).resumo(categoria);
+        } finally {
+            travaMovimentos.readLock().unlock();
+        }
+    }
+
+    /**
+     * Obtém os totais de todas as categorias, lidos de uma só vez.
+     *
+     * @return retrato dos totais de cada categoria, na ordem de {@link Categoria}
+     * @see #getResumoCategoria(Categoria)
+     */
+    public Map<Categoria, ResumoCategoria> getResumoPorCategoria() {
+        Map<Categoria, ResumoCategoria> resumo = new EnumMap<>(Categoria.class);
+        garantirHistorico();
+        travaMovimentos.readLock().lock();
+        try {
+            for (Map.Entry<Categoria, TotaisCategoria> e : totaisPorCategoria.entrySet())
+                resumo.put(e.getKey(), e.getValue().resumo(e.getKey()));
+        } finally {
+            travaMovimentos.readLock().unlock();
+        }
+        return Collections.unmodifiableMap(resumo);
+    }
+
+    /**
+     * Copia os movimentos registrados, ordenados por data, para um
+     * armazenamento colunar.
+     * <p>
+     * As colunas são um retrato do momento da chamada, para análises que
+     * percorrem muitos movimentos; movimentos registrados depois não são
+     * incluídos.
+     * </p>
+     *
+     * @return movimentos em colunas de tipos primitivos
+     */
+    public ColunasMovimento exportarColunas() {
+        garantirHistorico();
+        travaMovimentos.readLock().lock();
+        try {
+            return new ColunasMovimento(indiceTemporal.visao());
+        } finally {
+            travaMovimentos.readLock().unlock();
+        }
+    }
+
+    /**
+     * Obtém o impacto financeiro de um movimento no saldo: positivo para
+     * entradas e negativo para saídas.
+     */
+    private static long valorAssinado(MovimentoEstoque m) {
+        return m.getTipo().getSinal() * m.getValorTotalCentavos();
+    }
+
+    /**
+     * Devolve a lista para consulta: no modo concorrente, uma cópia feita
+     * sob a trava de leitura; caso contrário, uma visão somente leitura.
+     */
+    private <T> List<T> listar(List<T> lista) {
+        garantirHistorico();
+        if (!concorrente) return Collections.unmodifiableList(lista);
+
+        travaMovimentos.readLock().lock();
+        try {
+            return Collections.unmodifiableList(new ArrayList<>(lista));
+        } finally {
+            travaMovimentos.readLock().unlock();
+        }
+    }
+
+    /**
+     * Obtém um trecho do histórico de um produto sob a trava de leitura,
+     * copiado no modo concorrente.
+     */
+    private List<MovimentoEstoque> listarHistorico(String codigo,
+                                                   Function<IndiceTemporal, List<MovimentoEstoque>> trecho) {
+        garantirHistorico();
+        travaMovimentos.readLock().lock();
+        try {
+            IndiceTemporal h = historicos.get(codigo);
+            if (h == null) return Collections.emptyList();
+
+            List<MovimentoEstoque> lista = trecho.apply(h);
+            return Collections.unmodifiableList(concorrente ? new ArrayList<>(lista) : lista);
+        } finally {
+            travaMovimentos.readLock().unlock();
+        }
+    }
+
+    /**
+     * Carrega, na primeira chamada, os movimentos gravados antes do
+     * checkpoint de abertura e os inclui à frente dos movimentos já
+     * registrados em todos os índices e totais. Deve ser chamado antes de
+     * obter a trava de leitura de movimentos.
+     */
+    private void garantirHistorico() {
+        if (indiceAbertura == null) return;
+
+        travaMovimentos.writeLock().lock();
+        try {
+            Map<String, Produto> indice = indiceAbertura;
+            if (indice == null) return;
+
+            List<MovimentoEstoque> anteriores = armazenamento.carregarMovimentos(indice, 0, offsetAbertura);
+            movimentos.addAll(0, anteriores);
+
+            Map<TipoMovimento, List<MovimentoEstoque>> porTipo = new EnumMap<>(TipoMovimento.class);
+            List<SaidaProduto> saidasAnteriores = new ArrayList<>();
+            Map<String, List<MovimentoEstoque>> porProduto = new HashMap<>();
+            for (MovimentoEstoque m : anteriores) {
+                porTipo.computeIfAbsent(m.getTipo(), k -> new ArrayList<>()).add(m);
+                if (m.getTipo().isSaida()) saidasAnteriores.add((SaidaProduto) m);
+                porProduto.computeIfAbsent(m.getProduto().getCodigo(), k -> new ArrayList<>()).add(m);
+                somarPorCategoria(m);
             }
+            for (Map.Entry<TipoMovimento, List<MovimentoEstoque>> e : porTipo.entrySet())
+                movimentosPorTipo.get(e.getKey()).addAll(0, e.getValue());
+            saidas.addAll(0, saidasAnteriores);
+
+            indiceTemporal.inserirAnteriores(anteriores);
+            for (Map.Entry<String, List<MovimentoEstoque>> e : porProduto.entrySet())
+                historicoDe(e.getKey()).inserirAnteriores(e.getValue());
+            cubo.adicionarTodos(anteriores);
+
+            indiceAbertura = null;
+        } finally {
+            travaMovimentos.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Lê do armazenamento, pelo índice por período, os movimentos do
+     * período gravados antes do checkpoint de abertura, enquanto eles ainda
+     * não foram carregados. Deve ser chamado sob a trava de movimentos.
+     *
+     * @return movimentos anteriores do período, ou lista vazia se o histórico já foi carregado
+     */
+    private List<MovimentoEstoque> anterioresNoPeriodo(LocalDateTime inicio, LocalDateTime fim) {
+        Map<String, Produto> indice = indiceAbertura;
+        if (indice == null) return List.of();
+        return armazenamento.carregarMovimentos(indice, 0, offsetAbertura, inicio, fim);
+    }
+
+    /**
+     * Inclui os movimentos no índice temporal e no histórico de cada produto.
+     * Lotes grandes em relação ao índice são ordenados de uma só vez.
+     */
+    private void indexarPorData(List<MovimentoEstoque> novos) {
+        inserirPorData(indiceTemporal, novos);
+
+        if (novos.size() == 1) {
+            MovimentoEstoque m = novos.get(0);
+            historicoDe(m.getProduto().getCodigo()).inserir(m);
+            return;
+        }
+
+        Map<String, List<MovimentoEstoque>> porProduto = new HashMap<>();
+        for (MovimentoEstoque m : novos)
+            porProduto.computeIfAbsent(m.getProduto().getCodigo(), k -> new ArrayList<>()).add(m);
+        for (Map.Entry<String, List<MovimentoEstoque>> e : porProduto.entrySet())
+            inserirPorData(historicoDe(e.getKey()), e.getValue());
+    }
+
+    private IndiceTemporal historicoDe(String codigo) {
+        return historicos.computeIfAbsent(codigo, k -> new IndiceTemporal(ControleEstoque::valorAssinado));
+    }
+
+    private static void inserirPorData(IndiceTemporal indice, List<MovimentoEstoque> novos) {
+        if (novos.size() > indice.tamanho() / 4) {
+            indice.inserirTodos(novos);
+        } else {
+            for (MovimentoEstoque m : novos) indice.inserir(m);
+        }
+    }
+
+    /**
+     * Obtém a trava da faixa à qual pertence o código do produto.
+     */
+    private ReentrantLock travaFaixa(String codigo) {
+        return travasFaixa[faixa(codigo)];
+    }
+
+    /**
+     * Obtém o índice da faixa à qual pertence o código do produto.
+     */
+    private static int faixa(String codigo) {
+        int h = codigo.hashCode();
+        h ^= (h >>> 16);
+        return h & (FAIXAS - 1);
+    }
+
+    /**
+     * Simula os movimentos do lote, na ordem, sobre o estoque atual dos
+     * produtos, sem alterá-los.
+     *
+     * @return estoque inicial de cada produto do lote
+     * @throws IllegalArgumentException se algum produto ficar com estoque
+     *                                  negativo ou acima de {@link Integer#MAX_VALUE}
+     */
+    private static Map<Produto, Long> projetarEstoques(List<MovimentoEstoque> lote) {
+        Map<Produto, Long> iniciais = new IdentityHashMap<>();
+        Map<Produto, Long> projetados = new IdentityHashMap<>();
+
+        for (MovimentoEstoque m : lote) {
+            Produto p = m.getProduto();
+            long atual = projetados.computeIfAbsent(p, k -> {
+                long q = k.getQtdEstoque();
+                iniciais.put(k, q);
+                return q;
+            });
+
+            long novo = atual + (long) m.getTipo().getSinal() * m.getQtd();
+            if (novo < 0)
+                throw new IllegalArgumentException("Estoque insuficiente para o produto " + p.getCodigo() + ".");
+            if (novo > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Estoque excede o limite para o produto " + p.getCodigo() + ".");
+            projetados.put(p, novo);
+        }
+        return iniciais;
+    }
+
+    /**
+     * Grava o checkpoint automático, a menos que outra thread já o tenha
+     * gravado depois que o limite de movimentos foi atingido.
+     */
+    private void salvarCheckpointSeNecessario() {
+        travaCheckpoint.writeLock().lock();
+        try {
+            if (movimentosDesdeCheckpoint.get() >= INTERVALO_CHECKPOINT) salvarCheckpoint();
+        } finally {
+            travaCheckpoint.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Inclui o movimento nos índices por tipo.
+     */
+    private void indexarPorTipo(MovimentoEstoque m) {
+        movimentosPorTipo.get(m.getTipo()).add(m);
+        if (m.getTipo().isSaida()) saidas.add((SaidaProduto) m);
+    }
+
+    /**
+     * Acrescenta aos totais em estoque a variação de quantidade de um produto.
+     * Fora do construtor, deve ser chamado sob a trava exclusiva de
+     * {@link #travaMovimentos}, que também protege as leituras dos totais.
+     */
+    private void somarAoTotal(Produto p, int variacao) {
+        long valor = variacao * p.getValorUnitarioCentavos();
+        totalUnidades += variacao;
+        totalCentavos += valor;
+
+        TotaisCategoria t = totaisPorCategoria.get(p.getCategoria());
+        t.unidades += variacao;
+        t.valorCentavos += valor;
+    }
+
+    /**
+     * Notifica os observadores de um movimento registrado. Deve ser chamado
+     * sem nenhuma trava do controle.
+     */
+    private void notificar(MovimentoEstoque m) {
+        for (ObservadorMovimento o : observadores) o.movimentoRegistrado(m);
+    }
+
+    /**
+     * Soma os movimentos de um período, localizados no índice temporal;
+     * usado nas frações de hora que não estão no cubo.
+     */
+    private void somarMovimentos(LocalDateTime inicio, LocalDateTime fim, long[] celulas) {
+        for (MovimentoEstoque m : indiceTemporal.periodo(inicio, fim)) TotaisPeriodo.somar(m, celulas);
+    }
+
+    /**
+     * Acrescenta o movimento às entradas ou saídas da categoria do produto.
+     */
+    private void somarPorCategoria(MovimentoEstoque m) {
+        TotaisCategoria t = totaisPorCategoria.get(m.getProduto().getCategoria());
+        if (m.getTipo().isSaida()) {
+            t.unidadesSaida += m.getQtd();
+            t.valorSaidaCentavos += m.getValorTotalCentavos();
+        } else {
+            t.unidadesEntrada += m.getQtd();
+            t.valorEntradaCentavos += m.getValorTotalCentavos();
+        }
+    }
+
+    /** Totais de uma categoria, alterados sob a trava de movimentos. */
+    private static final class TotaisCategoria {
+        long unidades;
+        long valorCentavos;
+        long unidadesEntrada;
+        long valorEntradaCentavos;
+        long unidadesSaida;
+        long valorSaidaCentavos;
+
+        ResumoCategoria resumo(Categoria c) {
+            return new ResumoCategoria(c, unidades, valorCentavos, unidadesEntrada,
+                    valorEntradaCentavos, unidadesSaida, valorSaidaCentavos);
+        }
+    }
+
+    /**
+     * Verifica, sem aplicar, se o movimento pode ser aplicado ao estoque
+     * atual do produto. Deve ser chamado sob a trava da faixa do produto.
+     */
+    private static void validar(MovimentoEstoque m) {
+        if (m.getQtd() <= 0)
+            throw new IllegalArgumentException("Quantidade deve ser positiva.");
+        projetarEstoques(List.of(m));
+    }
+
+    /**
+     * Grava o movimento no diário durante a chamada.
+     *
+     * @throws UncheckedIOException se a gravação falhar
+     */
+    private void gravar(MovimentoEstoque m) {
+        try {
+            armazenamento.anexarMovimentos(List.of(m));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Aguarda a gravação dos movimentos enfileirados no gravador assíncrono,
+     * se ativo.
+     *
+     * @throws UncheckedIOException se a gravação do diário estiver falhando
+     */
+    private void descarregarGravador() {
+        GravadorAssincrono g = gravador;
+        if (g == null) return;
+        try {
+            g.descarregar().join();
+        } catch (CompletionException e) {
+            throw new UncheckedIOException("Falha na gravação do diário.", comoIOException(e.getCause()));
         }
-        return total;
+    }
+
+    /** Obtém o erro de gravação como {@link IOException}. */
+    private static IOException comoIOException(Throwable e) {
+        return e instanceof IOException ? (IOException) e : new IOException(e);
     }
 }
@@ -0,0 +1,179 @@
+package model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Totais de movimentos pré-agregados por hora, por dia e por mês, separados
+ * por tipo de movimento e categoria do produto.
+ * <p>
+ * Cada intervalo com movimentos guarda um vetor de totais no formato de
+ * {@link TotaisPeriodo}. Um período de horas inteiras é somado com as
+ * horas das bordas até o primeiro e o último dia completos, os dias das
+ * bordas até o primeiro e o último mês completos e os meses entre eles; o
+ * custo não depende da quantidade de movimentos, apenas da extensão do
+ * período em meses.
+ * </p>
+ *
+ * <p>Os intervalos são contados a partir de 1970-01-01T00:00, sem fuso. A
+ * classe não é sincronizada; o {@link ControleEstoque} a altera sob a trava
+ * de movimentos.</p>
+ *
+ * @author ViniMonster
+ */
+final class CuboMovimentos {
+
+    /** Quantidade mínima de movimentos para construir o cubo em paralelo. */
+    private static final int MINIMO_PARALELO = 10_000;
+
+    private final Map<Long, long[]> horas = new HashMap<>();
+    private final Map<Long, long[]> dias = new HashMap<>();
+    private final Map<Long, long[]> meses = new HashMap<>();
+
+    /** Primeira e última hora com movimentos; limitam os períodos percorridos. */
+    private long primeiraHora = Long.MAX_VALUE;
+    private long ultimaHora = Long.MIN_VALUE;
+
+    /**
+     * Constrói o cubo com os movimentos informados. Listas grandes são
+     * divididas entre as threads do {@link java.util.concurrent.ForkJoinPool}
+     * comum, e os cubos parciais são combinados ao final.
+     *
+     * @param movimentos movimentos a serem agregados
+     * @return cubo com os totais dos movimentos
+     */
+    static CuboMovimentos construir(List<MovimentoEstoque> movimentos) {
+        Stream<MovimentoEstoque> s = movimentos.size() >= MINIMO_PARALELO
+                ? movimentos.parallelStream()
+                : movimentos.stream();
+        return s.collect(CuboMovimentos::new, CuboMovimentos::adicionar, CuboMovimentos::combinar);
+    }
+
+    /**
+     * Acrescenta os movimentos aos intervalos de suas datas, agregando-os
+     * como em {@link #construir(List)}.
+     *
+     * @param movimentos movimentos a serem agregados
+     */
+    void adicionarTodos(List<MovimentoEstoque> movimentos) {
+        combinar(construir(movimentos));
+    }
+
+    /**
+     * Acrescenta um movimento aos intervalos de hora, dia e mês de sua data.
+     *
+     * @param m movimento a ser agregado
+     */
+    void adicionar(MovimentoEstoque m) {
+        LocalDateTime d = m.getData();
+        long hora = hora(d);
+        long mes = mes(d.toLocalDate());
+
+        TotaisPeriodo.somar(m, celulas(horas, hora));
+        TotaisPeriodo.somar(m, celulas(dias, Math.floorDiv(hora, 24)));
+        TotaisPeriodo.somar(m, celulas(meses, mes));
+
+        primeiraHora = Math.min(primeiraHora, hora);
+        ultimaHora = Math.max(ultimaHora, hora);
+    }
+
+    /**
+     * Soma os totais das horas inteiras de um período.
+     *
+     * @param de      primeira hora (inclusiva), contada desde 1970-01-01T00:00
+     * @param ate     última hora (exclusiva)
+     * @param destino vetor que recebe os totais
+     */
+    void somarHoras(long de, long ate, long[] destino) {
+        long a = Math.max(de, primeiraHora);
+        long b = Math.min(ate, ultimaHora + 1);
+        if (a >= b) return;
+
+        while (a < b && Math.floorMod(a, 24) != 0) somar(horas, a++, destino);
+        while (b > a && Math.floorMod(b, 24) != 0) somar(horas, --b, destino);
+        if (a < b) somarDias(a / 24, b / 24, destino);
+    }
+
+    /**
+     * Soma os totais de um dia.
+     *
+     * @param dia     dia, contado desde 1970-01-01 ({@link LocalDate#toEpochDay()})
+     * @param destino vetor que recebe os totais
+     */
+    void somarDia(long dia, long[] destino) {
+        somar(dias, dia, destino);
+    }
+
+    /**
+     * Soma os totais de um mês.
+     *
+     * @param mes     mês, como devolvido por {@link #mes(LocalDate)}
+     * @param destino vetor que recebe os totais
+     */
+    void somarMes(long mes, long[] destino) {
+        somar(meses, mes, destino);
+    }
+
+    /**
+     * Obtém a hora de uma data, contada desde 1970-01-01T00:00.
+     */
+    static long hora(LocalDateTime data) {
+        return Math.floorDiv(data.toEpochSecond(ZoneOffset.UTC), 3600);
+    }
+
+    /**
+     * Obtém o mês de uma data, contado desde o ano zero.
+     */
+    static long mes(LocalDate data) {
+        return data.getYear() * 12L + data.getMonthValue() - 1;
+    }
+
+    /**
+     * Soma os dias inteiros de um período, usando os meses completos.
+     */
+    private void somarDias(long de, long ate, long[] destino) {
+        long a = de, b = ate;
+        while (a < b && LocalDate.ofEpochDay(a).getDayOfMonth() != 1) somar(dias, a++, destino);
+        while (b > a && LocalDate.ofEpochDay(b).getDayOfMonth() != 1) somar(dias, --b, destino);
+        if (a >= b) return;
+
+        long ultimo = mes(LocalDate.ofEpochDay(b));
+        for (long m = mes(LocalDate.ofEpochDay(a)); m < ultimo; m++) somar(meses, m, destino);
+    }
+
+    /**
+     * Combina os totais de outro cubo neste, usado na construção paralela.
+     */
+    private void combinar(CuboMovimentos outro) {
+        combinar(horas, outro.horas);
+        combinar(dias, outro.dias);
+        combinar(meses, outro.meses);
+        primeiraHora = Math.min(primeiraHora, outro.primeiraHora);
+        ultimaHora = Math.max(ultimaHora, outro.ultimaHora);
+    }
+
+    private static void combinar(Map<Long, long[]> destino, Map<Long, long[]> origem) {
+        for (Map.Entry<Long, long[]> e : origem.entrySet()) {
+            long[] atual = destino.putIfAbsent(e.getKey(), e.getValue());
+            if (atual != null) somar(e.getValue(), atual);
+        }
+    }
+
+    private static long[] celulas(Map<Long, long[]> nivel, long intervalo) {
+        return nivel.computeIfAbsent(intervalo, k -> new long[TotaisPeriodo.CELULAS]);
+    }
+
+    private static void somar(Map<Long, long[]> nivel, long intervalo, long[] destino) {
+        long[] celulas = nivel.get(intervalo);
+        if (celulas != null) somar(celulas, destino);
+    }
+
+    private static void somar(long[] origem, long[] destino) {
+        for (int i = 0; i < origem.length; i++) destino[i] += origem[i];
+    }
+}
@@ -33,6 +33,32 @@ public class DevolucaoFornecedores extends SaidaProduto {
         this.fornecedor = fornecedor;
     }
 
+    /**
+     * Cria uma devolução para fornecedores, registrando os dados necessários
+     * para a operação de saída no estoque.
+     *
+     * @param valorUnitario valor unitário do produto devolvido, em centavos
+     * @param data          data da devolução
+     * @param qtd           quantidade devolvida
+     * @param produto       produto envolvido na devolução
+     * @param fornecedor    fornecedor responsável pela operação
+     */
+    public DevolucaoFornecedores(Centavos valorUnitario, LocalDateTime data, int qtd,
+                                 Produto produto, Fornecedor fornecedor) {
+        super(valorUnitario, data, qtd, produto);
+        this.fornecedor = fornecedor;
+    }
+
+    /**
+     * Obtém o tipo do movimento.
+     *
+     * @return {@link TipoMovimento#DEVOLUCAO}
+     */
+    @Override
+    public TipoMovimento getTipo() {
+        return TipoMovimento.DEVOLUCAO;
+    }
+
     /**
      * Retorna o tipo textual da saída.
      *
@@ -34,6 +34,21 @@ public class EntradaProduto extends MovimentoEstoque {
         this.fornecedor = fornecedor;
     }
 
+    /**
+     * Constrói um movimento de entrada de produto no estoque.
+     *
+     * @param valorUnitario valor unitário do produto no momento da entrada, em centavos
+     * @param data          data da entrada no estoque
+     * @param qtd           quantidade adicionada
+     * @param produto       produto que está sendo estocado
+     * @param fornecedor    fornecedor responsável pelo envio
+     */
+    public EntradaProduto(Centavos valorUnitario, LocalDateTime data, int qtd,
+                          Produto produto, Fornecedor fornecedor) {
+        super(valorUnitario, data, qtd, produto);
+        this.fornecedor = fornecedor;
+    }
+
     /**
      * Aplica o movimento de entrada ao estoque,
      * aumentando a quantidade do produto envolvido.
@@ -43,6 +58,16 @@ public class EntradaProduto extends MovimentoEstoque {
         getProduto().aumentarEstoque(getQtd());
     }
 
+    /**
+     * Obtém o tipo do movimento.
+     *
+     * @return {@link TipoMovimento#ENTRADA}
+     */
+    @Override
+    public TipoMovimento getTipo() {
+        return TipoMovimento.ENTRADA;
+    }
+
     /**
      * Obtém o fornecedor relacionado à entrada do produto.
      *
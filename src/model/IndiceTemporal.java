@@ -0,0 +1,395 @@
+package model;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.ToLongFunction;
+
+/**
+ * Índice de movimentos ordenado por data, com somas acumuladas de um
+ * valor inteiro (como um valor em centavos) associado a cada movimento.
+ * <p>
+ * Os movimentos ficam em blocos consecutivos, cada um com no máximo
+ * {@value #TAMANHO_BLOCO} movimentos ordenados pela data (movimentos de
+ * mesma data mantêm a ordem de inserção). Cada bloco guarda as somas de
+ * prefixo de seus próprios valores, e o índice guarda, para cada bloco, a
+ * posição de seu primeiro movimento e a soma dos valores dos blocos
+ * anteriores. Assim, a soma dos valores de um período é obtida com duas
+ * buscas binárias e uma subtração, exata por ser inteira, e a listagem
+ * ordenada é lida diretamente dos blocos.
+ * </p>
+ *
+ * <p>Movimentos com data igual ou posterior ao último são acrescentados ao
+ * final em tempo constante amortizado. Movimentos retroativos são inseridos
+ * no bloco correspondente à sua data, deslocando apenas o trecho posterior
+ * desse bloco e atualizando as posições e somas dos blocos seguintes; um
+ * bloco cheio é dividido em dois. O custo de uma inserção retroativa é
+ * proporcional ao tamanho do bloco mais a quantidade de blocos, em vez da
+ * quantidade de movimentos mais recentes que o inserido.</p>
+ *
+ * @author ViniMonster
+ */
+final class IndiceTemporal {
+
+    /** Quantidade máxima de movimentos em cada bloco. */
+    private static final int TAMANHO_BLOCO = 1024;
+
+    /** Capacidade inicial dos vetores de um bloco e dos vetores por bloco. */
+    private static final int CAPACIDADE_INICIAL = 16;
+
+    /** Trecho ordenado do índice, com as somas de prefixo de seus valores. */
+    private static final class Bloco {
+        MovimentoEstoque[] movimentos;
+
+        /** Somas de prefixo dos valores do bloco; {@code acumulado[0]} é sempre zero. */
+        long[] acumulado;
+
+        int tamanho;
+
+        Bloco(int capacidade) {
+            movimentos = new MovimentoEstoque[capacidade];
+            acumulado = new long[capacidade + 1];
+        }
+
+        LocalDateTime ultimaData() {
+            return movimentos[tamanho - 1].getData();
+        }
+
+        void garantirCapacidade(int necessario) {
+            if (necessario <= movimentos.length) return;
+
+            int capacidade = Math.min(TAMANHO_BLOCO,
+                    Math.max(necessario, movimentos.length + (movimentos.length >> 1)));
+            movimentos = Arrays.copyOf(movimentos, capacidade);
+            acumulado = Arrays.copyOf(acumulado, capacidade + 1);
+        }
+    }
+
+    /** Função que obtém o valor somado de cada movimento. */
+    private final ToLongFunction<MovimentoEstoque> valor;
+
+    /** Blocos em ordem de data; nenhum bloco fica vazio. */
+    private final List<Bloco> blocos = new ArrayList<>();
+
+    /**
+     * Posição do primeiro movimento de cada bloco; a posição seguinte ao
+     * último bloco guarda a quantidade total de movimentos.
+     */
+    private int[] inicio = new int[CAPACIDADE_INICIAL];
+
+    /**
+     * Soma dos valores dos blocos anteriores a cada bloco; a posição seguinte
+     * ao último bloco guarda a soma de todos os valores.
+     */
+    private long[] anteriores = new long[CAPACIDADE_INICIAL];
+
+    /** Quantidade de movimentos no índice. */
+    private int tamanho;
+
+    /**
+     * Cria um índice vazio.
+     *
+     * @param valor função que obtém o valor somado de cada movimento
+     */
+    IndiceTemporal(ToLongFunction<MovimentoEstoque> valor) {
+        this.valor = valor;
+    }
+
+    /**
+     * Insere os movimentos no índice, ordenando-os de uma só vez.
+     *
+     * @param novos movimentos a serem inseridos
+     */
+    void inserirTodos(Collection<? extends MovimentoEstoque> novos) {
+        reconstruir(novos, false);
+    }
+
+    /**
+     * Insere movimentos registrados antes de todos os que já estão no
+     * índice, ordenando-os de uma só vez; entre movimentos de mesma data,
+     * os inseridos ficam antes dos existentes.
+     *
+     * @param anteriores movimentos a serem inseridos, na ordem de registro
+     */
+    void inserirAnteriores(Collection<? extends MovimentoEstoque> anteriores) {
+        reconstruir(anteriores, true);
+    }
+
+    /**
+     * Recria os blocos com os movimentos existentes e os novos, antes ou
+     * depois dos existentes, em ordem estável de data.
+     */
+    private void reconstruir(Collection<? extends MovimentoEstoque> novos, boolean antes) {
+        if (novos.isEmpty()) return;
+
+        List<MovimentoEstoque> todos = new ArrayList<>(tamanho + novos.size());
+        if (antes) todos.addAll(novos);
+        for (Bloco b : blocos) todos.addAll(Arrays.asList(b.movimentos).subList(0, b.tamanho));
+        if (!antes) todos.addAll(novos);
+        todos.sort(Comparator.comparing(MovimentoEstoque::getData));
+
+        blocos.clear();
+        tamanho = 0;
+        inicio[0] = 0;
+        anteriores[0] = 0;
+        for (MovimentoEstoque m : todos) acrescentar(m, valor.applyAsLong(m));
+    }
+
+    /**
+     * Insere um movimento na posição correspondente à sua data.
+     *
+     * @param m movimento a ser inserido
+     */
+    void inserir(MovimentoEstoque m) {
+        long v = valor.applyAsLong(m);
+        if (tamanho == 0 || !m.getData().isBefore(blocos.get(blocos.size() - 1).ultimaData())) {
+            acrescentar(m, v);
+            return;
+        }
+
+        // o primeiro bloco com data posterior existe, pois a data é anterior à última
+        int b = primeiroBlocoApos(m.getData());
+        Bloco bloco = blocos.get(b);
+        int pos = posicaoApos(bloco, m.getData());
+
+        if (bloco.tamanho == TAMANHO_BLOCO) {
+            dividir(b);
+            int metade = bloco.tamanho;
+            if (pos > metade) {
+                b++;
+                pos -= metade;
+                bloco = blocos.get(b);
+            }
+        }
+
+        bloco.garantirCapacidade(bloco.tamanho + 1);
+        int posteriores = bloco.tamanho - pos;
+        System.arraycopy(bloco.movimentos, pos, bloco.movimentos, pos + 1, posteriores);
+        System.arraycopy(bloco.acumulado, pos + 1, bloco.acumulado, pos + 2, posteriores);
+        for (int i = pos + 2; i <= bloco.tamanho + 1; i++) bloco.acumulado[i] += v;
+        bloco.movimentos[pos] = m;
+        bloco.acumulado[pos + 1] = bloco.acumulado[pos] + v;
+        bloco.tamanho++;
+
+        for (int c = b + 1; c <= blocos.size(); c++) {
+            inicio[c]++;
+            anteriores[c] += v;
+        }
+        tamanho++;
+    }
+
+    /** @return quantidade de movimentos no índice */
+    int tamanho() {
+        return tamanho;
+    }
+
+    /**
+     * Soma os valores dos movimentos ocorridos no período.
+     *
+     * @param inicio data inicial (inclusiva)
+     * @param fim    data final (inclusiva)
+     * @return soma dos valores no período, ou zero se o período for vazio
+     */
+    long somar(LocalDateTime inicio, LocalDateTime fim) {
+        int de = posicaoAntes(inicio);
+        int ate = posicaoApos(fim);
+        return ate > de ? acumulado(ate) - acumulado(de) : 0;
+    }
+
+    /**
+     * Obtém uma visão somente leitura dos movimentos, em ordem de data.
+     * A visão acompanha as inserções feitas depois de obtida.
+     *
+     * @return movimentos ordenados por data
+     */
+    List<MovimentoEstoque> visao() {
+        return new Visao();
+    }
+
+    /**
+     * Obtém uma cópia somente leitura dos movimentos ocorridos no período,
+     * em ordem de data. Como inserções retroativas deslocam as posições dos
+     * movimentos, o trecho é copiado em vez de exposto como visão.
+     *
+     * @param inicio data inicial (inclusiva)
+     * @param fim    data final (inclusiva)
+     * @return movimentos do período ordenados por data
+     */
+    List<MovimentoEstoque> periodo(LocalDateTime inicio, LocalDateTime fim) {
+        int de = posicaoAntes(inicio);
+        return copiar(de, Math.max(de, posicaoApos(fim)));
+    }
+
+    /**
+     * Obtém uma cópia somente leitura de um trecho do índice, por posição,
+     * em ordem de data. Posições além do final são ignoradas.
+     *
+     * @param de  posição inicial (inclusiva)
+     * @param ate posição final (exclusiva)
+     * @return movimentos do trecho ordenados por data
+     */
+    List<MovimentoEstoque> trecho(int de, int ate) {
+        int inicio = Math.min(de, tamanho);
+        return copiar(inicio, Math.max(inicio, Math.min(ate, tamanho)));
+    }
+
+    /**
+     * @return primeira posição cuja data não é anterior à data informada
+     */
+    int posicaoAntes(LocalDateTime data) {
+        int lo = 0, hi = blocos.size();
+        while (lo < hi) {
+            int meio = (lo + hi) >>> 1;
+            if (blocos.get(meio).ultimaData().isBefore(data)) lo = meio + 1;
+            else hi = meio;
+        }
+        if (lo == blocos.size()) return tamanho;
+
+        Bloco bloco = blocos.get(lo);
+        int l = 0, h = bloco.tamanho;
+        while (l < h) {
+            int meio = (l + h) >>> 1;
+            if (bloco.movimentos[meio].getData().isBefore(data)) l = meio + 1;
+            else h = meio;
+        }
+        return inicio[lo] + l;
+    }
+
+    /**
+     * @return primeira posição cuja data é posterior à data informada
+     */
+    int posicaoApos(LocalDateTime data) {
+        int b = primeiroBlocoApos(data);
+        return b == blocos.size() ? tamanho : inicio[b] + posicaoApos(blocos.get(b), data);
+    }
+
+    /** @return primeiro bloco cuja última data é posterior à data informada */
+    private int primeiroBlocoApos(LocalDateTime data) {
+        int lo = 0, hi = blocos.size();
+        while (lo < hi) {
+            int meio = (lo + hi) >>> 1;
+            if (blocos.get(meio).ultimaData().isAfter(data)) hi = meio;
+            else lo = meio + 1;
+        }
+        return lo;
+    }
+
+    /** @return primeira posição do bloco cuja data é posterior à data informada */
+    private static int posicaoApos(Bloco bloco, LocalDateTime data) {
+        int lo = 0, hi = bloco.tamanho;
+        while (lo < hi) {
+            int meio = (lo + hi) >>> 1;
+            if (bloco.movimentos[meio].getData().isAfter(data)) hi = meio;
+            else lo = meio + 1;
+        }
+        return lo;
+    }
+
+    /** @return bloco que contém a posição informada, menor que o tamanho */
+    private int blocoDa(int posicao) {
+        int lo = 0, hi = blocos.size() - 1;
+        while (lo < hi) {
+            int meio = (lo + hi + 1) >>> 1;
+            if (inicio[meio] <= posicao) lo = meio;
+            else hi = meio - 1;
+        }
+        return lo;
+    }
+
+    /** @return soma dos valores dos movimentos anteriores à posição informada */
+    private long acumulado(int posicao) {
+        if (posicao == tamanho) return anteriores[blocos.size()];
+
+        int b = blocoDa(posicao);
+        return anteriores[b] + blocos.get(b).acumulado[posicao - inicio[b]];
+    }
+
+    /**
+     * Acrescenta um movimento ao final do índice; a data não pode ser
+     * anterior à do último movimento.
+     */
+    private void acrescentar(MovimentoEstoque m, long v) {
+        int n = blocos.size();
+        Bloco bloco = n == 0 ? null : blocos.get(n - 1);
+        if (bloco == null || bloco.tamanho == TAMANHO_BLOCO) {
+            garantirBlocos(n + 1);
+            bloco = new Bloco(CAPACIDADE_INICIAL);
+            blocos.add(bloco);
+            inicio[n + 1] = inicio[n];
+            anteriores[n + 1] = anteriores[n];
+            n++;
+        }
+
+        bloco.garantirCapacidade(bloco.tamanho + 1);
+        bloco.movimentos[bloco.tamanho] = m;
+        bloco.acumulado[bloco.tamanho + 1] = bloco.acumulado[bloco.tamanho] + v;
+        bloco.tamanho++;
+
+        inicio[n]++;
+        anteriores[n] += v;
+        tamanho++;
+    }
+
+    /**
+     * Divide um bloco cheio em dois, movendo a segunda metade para um novo
+     * bloco logo após ele.
+     */
+    private void dividir(int b) {
+        Bloco bloco = blocos.get(b);
+        int metade = bloco.tamanho / 2;
+        int resto = bloco.tamanho - metade;
+
+        Bloco novo = new Bloco(TAMANHO_BLOCO);
+        System.arraycopy(bloco.movimentos, metade, novo.movimentos, 0, resto);
+        long base = bloco.acumulado[metade];
+        for (int i = 1; i <= resto; i++) novo.acumulado[i] = bloco.acumulado[metade + i] - base;
+        novo.tamanho = resto;
+
+        Arrays.fill(bloco.movimentos, metade, bloco.tamanho, null);
+        bloco.tamanho = metade;
+
+        int n = blocos.size();
+        garantirBlocos(n + 1);
+        System.arraycopy(inicio, b + 1, inicio, b + 2, n - b);
+        System.arraycopy(anteriores, b + 1, anteriores, b + 2, n - b);
+        inicio[b + 1] = inicio[b] + metade;
+        anteriores[b + 1] = anteriores[b] + base;
+        blocos.add(b + 1, novo);
+    }
+
+    private void garantirBlocos(int necessario) {
+        if (necessario < inicio.length) return;
+
+        int capacidade = Math.max(necessario + 1, inicio.length + (inicio.length >> 1));
+        inicio = Arrays.copyOf(inicio, capacidade);
+        anteriores = Arrays.copyOf(anteriores, capacidade);
+    }
+
+    private List<MovimentoEstoque> copiar(int de, int ate) {
+        MovimentoEstoque[] copia = new MovimentoEstoque[ate - de];
+        for (int i = 0; i < copia.length; ) {
+            int b = blocoDa(de + i);
+            Bloco bloco = blocos.get(b);
+            int local = de + i - inicio[b];
+            int n = Math.min(bloco.tamanho - local, copia.length - i);
+            System.arraycopy(bloco.movimentos, local, copia, i, n);
+            i += n;
+        }
+        return Collections.unmodifiableList(Arrays.asList(copia));
+    }
+
+    /** Visão somente leitura dos blocos, até o final atual do índice. */
+    private final class Visao extends AbstractList<MovimentoEstoque> implements RandomAccess {
+
+        @Override
+        public MovimentoEstoque get(int i) {
+            Objects.checkIndex(i, tamanho);
+            int b = blocoDa(i);
+            return blocos.get(b).movimentos[i - inicio[b]];
+        }
+
+        @Override
+        public int size() {
+            return tamanho;
+        }
+    }
+}
@@ -17,8 +17,8 @@ import java.time.LocalDateTime;
  */
 public abstract class MovimentoEstoque implements Movimentavel {
 
-    /** Valor unitário do produto no momento do movimento. */
-    protected float valorUnitario;
+    /** Valor unitário do produto no momento do movimento, em centavos. */
+    protected long valorCentavos;
 
     /** Data em que o movimento ocorreu. */
     protected LocalDateTime data;
@@ -32,13 +32,25 @@ public abstract class MovimentoEstoque implements Movimentavel {
     /**
      * Constrói um movimento de estoque com os dados fornecidos.
      *
-     * @param valorUnitario valor unitário do produto
+     * @param valorUnitario valor unitário do produto, arredondado para o centavo mais próximo
      * @param data          data do movimento
      * @param qtd           quantidade movimentada
      * @param produto       produto afetado pela operação
      */
     public MovimentoEstoque(float valorUnitario, LocalDateTime data, int qtd, Produto produto) {
-        this.valorUnitario = valorUnitario;
+        this(Centavos.de(Centavos.arredondar(valorUnitario)), data, qtd, produto);
+    }
+
+    /**
+     * Constrói um movimento de estoque com os dados fornecidos.
+     *
+     * @param valorUnitario valor unitário do produto, em centavos
+     * @param data          data do movimento
+     * @param qtd           quantidade movimentada
+     * @param produto       produto afetado pela operação
+     */
+    public MovimentoEstoque(Centavos valorUnitario, LocalDateTime data, int qtd, Produto produto) {
+        this.valorCentavos = valorUnitario.getValor();
         this.data = data;
         this.qtd = qtd;
         this.produto = produto;
@@ -77,9 +89,36 @@ public abstract class MovimentoEstoque implements Movimentavel {
      * @return valor unitário
      */
     public float getValorUnitario() {
-        return valorUnitario;
+        return (float) Centavos.emReais(valorCentavos);
     }
 
+    /**
+     * Obtém o valor unitário do produto no momento do movimento, em centavos.
+     *
+     * @return valor unitário em centavos
+     */
+    public long getValorUnitarioCentavos() {
+        return valorCentavos;
+    }
+
+    /**
+     * Obtém o valor total do movimento (valor unitário multiplicado pela
+     * quantidade), em centavos, sem arredondamento.
+     *
+     * @return valor total em centavos
+     */
+    public long getValorTotalCentavos() {
+        return valorCentavos * qtd;
+    }
+
+    /**
+     * Obtém o tipo do movimento, usado para classificá-lo sem verificações
+     * de {@code instanceof}.
+     *
+     * @return tipo do movimento
+     */
+    public abstract TipoMovimento getTipo();
+
     /**
      * Retorna uma representação textual do movimento,
      * contendo data, produto, quantidade e valor unitário.
@@ -89,6 +128,6 @@ public abstract class MovimentoEstoque implements Movimentavel {
     @Override
     public String toString() {
         return String.format("%s | Produto: %s | Qtd: %d | ValorUnit: %.2f",
-                data, produto.getNome(), qtd, valorUnitario);
+                data, produto.getNome(), qtd, Centavos.emReais(valorCentavos));
     }
 }
@@ -0,0 +1,26 @@
+package model;
+
+/**
+ * Interface que representa um interessado nos movimentos registrados em
+ * um {@link ControleEstoque}, como um painel atualizado em tempo real.
+ * <p>
+ * O controle notifica os observadores depois que o movimento foi aplicado,
+ * indexado e enviado ao diário, já sem nenhuma trava do controle; assim,
+ * o observador pode consultar o próprio controle. As notificações são
+ * feitas na thread que registrou o movimento, de modo que observadores
+ * chamados por várias threads devem ser seguros para uso concorrente.
+ * </p>
+ *
+ * @author ViniMonster
+ * @see ControleEstoque#adicionarObservador(ObservadorMovimento)
+ */
+@FunctionalInterface
+public interface ObservadorMovimento {
+
+    /**
+     * Recebe um movimento registrado no controle.
+     *
+     * @param m movimento registrado
+     */
+    void movimentoRegistrado(MovimentoEstoque m);
+}
@@ -35,6 +35,31 @@ public class OutrasSaidas extends SaidaProduto {
         this.outraSaida = outraSaida;
     }
 
+    /**
+     * Constrói uma saída de estoque de tipo genérico.
+     *
+     * @param valorUnitario valor unitário do produto no momento da saída, em centavos
+     * @param data          data da operação
+     * @param qtd           quantidade retirada
+     * @param produto       produto envolvido no movimento
+     * @param outraSaida    motivo/descritivo da saída
+     */
+    public OutrasSaidas(Centavos valorUnitario, LocalDateTime data, int qtd,
+                        Produto produto, String outraSaida) {
+        super(valorUnitario, data, qtd, produto);
+        this.outraSaida = outraSaida;
+    }
+
+    /**
+     * Obtém o tipo do movimento.
+     *
+     * @return {@link TipoMovimento#OUTRA}
+     */
+    @Override
+    public TipoMovimento getTipo() {
+        return TipoMovimento.OUTRA;
+    }
+
     /**
      * Retorna o tipo textual da saída.
      *
@@ -45,6 +70,15 @@ public class OutrasSaidas extends SaidaProduto {
         return "Outra Saída";
     }
 
+    /**
+     * Obtém o motivo informado para a saída.
+     *
+     * @return motivo da saída
+     */
+    public String getMotivo() {
+        return outraSaida;
+    }
+
     /**
      * Retorna uma representação textual da saída,
      * incluindo o motivo informado.
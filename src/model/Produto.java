@@ -1,16 +1,24 @@
 package model;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 /**
  * Representa um produto cadastrado no estoque da loja.
  * <p>
- * Cada produto possui código único, nome, valor unitário, quantidade em estoque
- * e uma categoria associada. Também possui um identificador interno gerado
- * automaticamente.
+ * Cada produto possui código único, nome, valor unitário (em {@link Centavos}),
+ * quantidade em estoque e uma categoria associada. Também possui um
+ * identificador interno gerado automaticamente.
  * </p>
  *
  * <p>Esta classe fornece operações para aumentar ou diminuir o estoque,
  * garantindo validação básica para evitar valores inválidos.</p>
  *
+ * <p>A quantidade em estoque é atualizada por compare-and-set, sem bloqueio:
+ * a verificação de saldo suficiente e o desconto acontecem em uma única
+ * operação atômica, de modo que vendas simultâneas do mesmo produto nunca
+ * deixam o estoque negativo.</p>
+ *
  * @author ViniMonster
  */
 public class Produto {
@@ -27,17 +35,31 @@ public class Produto {
     /** Nome descritivo do produto. */
     private final String nome;
 
-    /** Valor unitário no momento do cadastro. */
-    private final float valorUnitario;
+    /** Valor unitário no momento do cadastro, em centavos. */
+    private final long valorCentavos;
+
+    /** Acesso atômico ao campo {@link #qtdEstoque}. */
+    private static final VarHandle QTD_ESTOQUE;
+
+    static {
+        try {
+            QTD_ESTOQUE = MethodHandles.lookup().findVarHandle(Produto.class, "qtdEstoque", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 
     /** Quantidade atual disponível em estoque. */
-    private int qtdEstoque;
+    private volatile int qtdEstoque;
 
     /** Categoria à qual o produto pertence. */
     private final Categoria categoria;
 
     /**
      * Constrói um novo produto com os dados fornecidos.
+     * <p>
+     * O valor unitário é arredondado para o centavo mais próximo.
+     * </p>
      *
      * @param codigo        código identificador do produto
      * @param nome          nome do produto
@@ -48,7 +70,22 @@ public class Produto {
      * @throws IllegalArgumentException se valorUnitario &lt; 0 ou qtdEstoque &lt; 0
      */
     public Produto(String codigo, String nome, float valorUnitario, int qtdEstoque, Categoria categoria) {
-        if (valorUnitario < 0)
+        this(codigo, nome, emCentavos(valorUnitario), qtdEstoque, categoria);
+    }
+
+    /**
+     * Constrói um novo produto com o valor unitário em centavos.
+     *
+     * @param codigo        código identificador do produto
+     * @param nome          nome do produto
+     * @param valorUnitario valor unitário (deve ser ≥ 0)
+     * @param qtdEstoque    quantidade inicial em estoque (deve ser ≥ 0)
+     * @param categoria     categoria do produto
+     *
+     * @throws IllegalArgumentException se valorUnitario &lt; 0 ou qtdEstoque &lt; 0
+     */
+    public Produto(String codigo, String nome, Centavos valorUnitario, int qtdEstoque, Categoria categoria) {
+        if (valorUnitario.getValor() < 0)
             throw new IllegalArgumentException("Valor não pode ser negativo");
         if (qtdEstoque < 0)
             throw new IllegalArgumentException("Estoque não pode ser negativo");
@@ -56,7 +93,7 @@ public class Produto {
         this.id = ++contador;
         this.codigo = codigo;
         this.nome = nome;
-        this.valorUnitario = valorUnitario;
+        this.valorCentavos = valorUnitario.getValor();
         this.qtdEstoque = qtdEstoque;
         this.categoria = categoria;
     }
@@ -65,25 +102,51 @@ public class Produto {
      * Aumenta a quantidade de estoque do produto.
      *
      * @param qtd quantidade a ser adicionada (deve ser positiva)
+     *
+     * @throws IllegalArgumentException se a quantidade não for positiva
+     * @throws ArithmeticException      se o estoque resultante exceder
+     *                                  {@link Integer#MAX_VALUE}
      */
     public void aumentarEstoque(int qtd) {
-        if (qtd > 0)
-            this.qtdEstoque += qtd;
+        if (qtd <= 0)
+            throw new IllegalArgumentException("Quantidade deve ser positiva.");
+
+        int atual;
+        do {
+            atual = qtdEstoque;
+        } while (!QTD_ESTOQUE.weakCompareAndSet(this, atual, Math.addExact(atual, qtd)));
     }
 
     /**
      * Diminui o estoque do produto, garantindo que
      * a operação não gere estoque negativo.
+     * <p>
+     * A verificação do saldo e o desconto são feitos atomicamente; se outra
+     * thread alterar o estoque entre a leitura e a gravação, a operação é
+     * repetida com o novo valor.
+     * </p>
      *
-     * @param qtd quantidade a ser removida
+     * @param qtd quantidade a ser removida (deve ser positiva)
      *
-     * @throws IllegalArgumentException se a quantidade removida
+     * @throws IllegalArgumentException se a quantidade não for positiva ou
      *                                  exceder o estoque disponível
      */
     public void diminuirEstoque(int qtd) {
-        if (qtd > qtdEstoque)
-            throw new IllegalArgumentException("Estoque insuficiente.");
-        this.qtdEstoque -= qtd;
+        if (qtd <= 0)
+            throw new IllegalArgumentException("Quantidade deve ser positiva.");
+
+        int atual;
+        do {
+            atual = qtdEstoque;
+            if (qtd > atual)
+                throw new IllegalArgumentException("Estoque insuficiente.");
+        } while (!QTD_ESTOQUE.weakCompareAndSet(this, atual, atual - qtd));
+    }
+
+    private static Centavos emCentavos(float valorUnitario) {
+        if (valorUnitario < 0)
+            throw new IllegalArgumentException("Valor não pode ser negativo");
+        return Centavos.de(Centavos.arredondar(valorUnitario));
     }
 
     /** @return quantidade atual em estoque */
@@ -92,8 +155,11 @@ public class Produto {
     /** @return nome do produto */
     public String getNome() { return nome; }
 
-    /** @return valor unitário do produto */
-    public float getValorUnitario() { return valorUnitario; }
+    /** @return valor unitário do produto, em reais */
+    public float getValorUnitario() { return (float) Centavos.emReais(valorCentavos); }
+
+    /** @return valor unitário do produto, em centavos */
+    public long getValorUnitarioCentavos() { return valorCentavos; }
 
     /** @return categoria do produto */
     public Categoria getCategoria() { return categoria; }
@@ -114,6 +180,6 @@ public class Produto {
     public String toString() {
         return codigo + " - " + nome +
                 " | Qtd: " + qtdEstoque +
-                " | R$ " + String.format("%.2f", valorUnitario);
+                " | R$ " + String.format("%.2f", Centavos.emReais(valorCentavos));
     }
 }
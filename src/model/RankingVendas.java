@@ -0,0 +1,331 @@
+package model;
+
+import java.util.*;
+import java.util.function.LongSupplier;
+
+/**
+ * Ranking dos produtos mais vendidos, atualizado a cada venda registrada.
+ * <p>
+ * O ranking observa um {@link ControleEstoque} (ver
+ * {@link ControleEstoque#adicionarObservador(ObservadorMovimento)}) e soma,
+ * por produto, as unidades ou a receita das {@link VendasClientes}. Os
+ * totais ficam em contadores ordenados pelo total, de modo que a consulta
+ * das primeiras posições percorre apenas essas posições, sem ordenar os
+ * produtos nem consultar o histórico de movimentos.
+ * </p>
+ *
+ * <p>No modo exato, há um contador para cada produto vendido. No modo
+ * aproximado, a quantidade de contadores é limitada pela capacidade
+ * informada, com o algoritmo Space-Saving: quando todos os contadores estão
+ * ocupados, a venda de um produto sem contador substitui o produto de menor
+ * total, que é herdado pelo novo produto como erro máximo. Os totais
+ * aproximados nunca são menores que os reais e excedem os reais em no máximo
+ * o erro informado em cada {@link Posicao}; produtos cujo total real supera
+ * o total de vendas dividido pela capacidade nunca ficam fora dos contadores.</p>
+ *
+ * <p>Com uma janela, apenas as vendas recebidas no intervalo mais recente
+ * (como a última hora) são consideradas. A janela é dividida em fatias; as
+ * vendas de cada fatia são guardadas por produto e descontadas dos
+ * contadores quando a fatia sai da janela, de modo que a janela avança em
+ * saltos de uma fatia. No modo aproximado, o erro herdado por um contador
+ * é guardado na fatia em que ele foi criado e descontado junto com ela;
+ * cada fatia guarda no máximo tantos produtos quanto a capacidade, e as
+ * vendas excedentes de uma fatia não são descontadas, o que mantém os
+ * totais como limites superiores. Contadores sem nenhuma venda nas fatias
+ * da janela são descartados.</p>
+ *
+ * <p>Os métodos são sincronizados: a atualização de cada venda custa
+ * O(log c), com c contadores, e a consulta das N primeiras posições, O(N).</p>
+ *
+ * @author ViniMonster
+ */
+public class RankingVendas implements ObservadorMovimento {
+
+    /** Critério de classificação dos produtos. */
+    public enum Criterio {
+
+        /** Unidades vendidas. */
+        UNIDADES,
+
+        /** Receita das vendas, em centavos. */
+        RECEITA
+    }
+
+    /** Posição de um produto no ranking. */
+    public static final class Posicao {
+        private final String codigo;
+        private final long total;
+        private final long erro;
+
+        Posicao(String codigo, long total, long erro) {
+            this.codigo = codigo;
+            this.total = total;
+            this.erro = erro;
+        }
+
+        /** @return código do produto */
+        public String getCodigo() { return codigo; }
+
+        /** @return unidades ou receita (em centavos) do produto, conforme o critério */
+        public long getTotal() { return total; }
+
+        /** @return quanto o total pode exceder o real; sempre zero no modo exato */
+        public long getErro() { return erro; }
+
+        @Override
+        public String toString() {
+            return codigo + ": " + total + (erro > 0 ? " (±" + erro + ")" : "");
+        }
+    }
+
+    /** Contador de um produto, ordenado no ranking pelo total. */
+    private static final class Contador {
+        final String codigo;
+        long total;
+        long erro;
+
+        /** Fatia em que o contador foi criado; fatias anteriores não são descontadas dele. */
+        final long desde;
+
+        /** Fatia da última venda somada ao contador. */
+        long ultimaVenda;
+
+        Contador(String codigo, long erro, long desde) {
+            this.codigo = codigo;
+            this.total = erro;
+            this.erro = erro;
+            this.desde = desde;
+        }
+    }
+
+    /** Contadores em ordem decrescente de total; empates pelo código. */
+    private static final Comparator<Contador> ORDEM = Comparator
+            .comparingLong((Contador c) -> c.total).reversed()
+            .thenComparing(c -> c.codigo);
+
+    private final int tamanho;
+    private final Criterio criterio;
+
+    /** Quantidade máxima de contadores, ou 0 no modo exato. */
+    private final int capacidade;
+
+    private final Map<String, Contador> contadores = new HashMap<>();
+    private final TreeSet<Contador> ordem = new TreeSet<>(ORDEM);
+
+    /** Duração de cada fatia da janela, em milissegundos, ou 0 sem janela. */
+    private final long fatiaMillis;
+
+    /**
+     * Vendas e erro herdado de cada fatia da janela, por código, indexadas
+     * pela fatia módulo a quantidade.
+     */
+    private final Map<String, long[]>[] fatias;
+
+    /** Fatia guardada em cada posição de {@link #fatias}. */
+    private final long[] fatiaDaPosicao;
+
+    private final LongSupplier relogio;
+
+    /** Última fatia alcançada pelo relógio. */
+    private long fatiaAtual;
+
+    /**
+     * Cria um ranking exato, acumulado desde a criação.
+     *
+     * @param tamanho  quantidade de posições devolvidas por {@link #getRanking()}
+     * @param criterio critério de classificação
+     */
+    public RankingVendas(int tamanho, Criterio criterio) {
+        this(tamanho, criterio, 0);
+    }
+
+    /**
+     * Cria um ranking acumulado desde a criação, exato ou aproximado.
+     *
+     * @param tamanho    quantidade de posições devolvidas por {@link #getRanking()}
+     * @param criterio   critério de classificação
+     * @param capacidade quantidade máxima de contadores (pelo menos {@code tamanho}),
+     *                   ou 0 para o modo exato
+     */
+    public RankingVendas(int tamanho, Criterio criterio, int capacidade) {
+        this(tamanho, criterio, capacidade, 0, 1, System::currentTimeMillis);
+    }
+
+    /**
+     * Cria um ranking das vendas recebidas em uma janela de tempo.
+     *
+     * @param tamanho     quantidade de posições devolvidas por {@link #getRanking()}
+     * @param criterio    critério de classificação
+     * @param capacidade  quantidade máxima de contadores (pelo menos {@code tamanho}),
+     *                    ou 0 para o modo exato
+     * @param janelaMillis duração da janela, em milissegundos, ou 0 para acumular
+     *                    desde a criação
+     * @param fatias      quantidade de fatias da janela; define a precisão com
+     *                    que a janela avança
+     * @param relogio     relógio que define o momento de recebimento de cada
+     *                    venda, em milissegundos
+     *
+     * @throws IllegalArgumentException se o tamanho, a capacidade, a janela
+     *                                  ou as fatias forem inválidos
+     */
+    public RankingVendas(int tamanho, Criterio criterio, int capacidade,
+                         long janelaMillis, int fatias, LongSupplier relogio) {
+        if (tamanho <= 0)
+            throw new IllegalArgumentException("Tamanho deve ser positivo.");
+        if (capacidade != 0 && capacidade < tamanho)
+            throw new IllegalArgumentException("Capacidade deve ser pelo menos o tamanho do ranking.");
+        if (janelaMillis < 0 || fatias <= 0 || (janelaMillis > 0 && janelaMillis < fatias))
+            throw new IllegalArgumentException("Janela inválida.");
+
+        this.tamanho = tamanho;
+        this.criterio = Objects.requireNonNull(criterio);
+        this.capacidade = capacidade;
+        this.relogio = Objects.requireNonNull(relogio);
+
+        if (janelaMillis > 0) {
+            this.fatiaMillis = janelaMillis / fatias;
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Map<String, long[]>[] vendas = new Map[fatias];
+            for (int i = 0; i < fatias; i++) vendas[i] = new HashMap<>();
+            this.fatias = vendas;
+            this.fatiaDaPosicao = new long[fatias];
+            this.fatiaAtual = relogio.getAsLong() / fatiaMillis;
+            Arrays.fill(fatiaDaPosicao, fatiaAtual);
+        } else {
+            this.fatiaMillis = 0;
+            this.fatias = null;
+            this.fatiaDaPosicao = null;
+        }
+    }
+
+    /**
+     * Soma uma venda ao ranking; os demais movimentos são ignorados.
+     *
+     * @param m movimento registrado
+     */
+    @Override
+    public synchronized void movimentoRegistrado(MovimentoEstoque m) {
+        if (!(m instanceof VendasClientes)) return;
+
+        long peso = criterio == Criterio.UNIDADES ? m.getQtd() : m.getValorTotalCentavos();
+        String codigo = m.getProduto().getCodigo();
+        avancar();
+
+        Map<String, long[]> fatia = fatias == null ? null : fatias[posicao(fatiaAtual)];
+
+        Contador c = contadores.get(codigo);
+        boolean novo = c == null;
+        if (novo) {
+            long erro = 0;
+            if (capacidade > 0 && contadores.size() >= capacidade) {
+                Contador menor = ordem.pollLast();
+                contadores.remove(menor.codigo);
+                erro = menor.total;
+                // as vendas do produto substituído nesta fatia não pertencem a um novo contador dele
+                if (fatia != null) fatia.remove(menor.codigo);
+            }
+            c = new Contador(codigo, erro, fatiaAtual);
+            contadores.put(codigo, c);
+        } else {
+            ordem.remove(c);
+        }
+        c.total += peso;
+        c.ultimaVenda = fatiaAtual;
+        ordem.add(c);
+
+        if (fatia != null) {
+            long[] soma = fatia.get(codigo);
+            if (soma == null && (capacidade == 0 || fatia.size() < capacidade))
+                fatia.put(codigo, soma = new long[2]);
+            if (soma != null) {
+                if (novo) soma[1] = c.erro;
+                soma[0] += peso;
+            }
+        }
+    }
+
+    /**
+     * Obtém as primeiras posições do ranking, em ordem decrescente de total.
+     *
+     * @return até {@code tamanho} posições; produtos sem vendas na janela não aparecem
+     */
+    public synchronized List<Posicao> getRanking() {
+        avancar();
+
+        List<Posicao> ranking = new ArrayList<>(Math.min(tamanho, ordem.size()));
+        for (Contador c : ordem) {
+            if (ranking.size() == tamanho) break;
+            ranking.add(new Posicao(c.codigo, c.total, c.erro));
+        }
+        return ranking;
+    }
+
+    /** @return quantidade de contadores mantidos; no modo aproximado, no máximo a capacidade */
+    public synchronized int getContadores() {
+        return contadores.size();
+    }
+
+    /** @return critério de classificação */
+    public Criterio getCriterio() {
+        return criterio;
+    }
+
+    /**
+     * Avança a janela até a fatia atual do relógio, descontando as vendas
+     * das fatias que saíram da janela.
+     */
+    private void avancar() {
+        if (fatias == null) return;
+
+        long agora = relogio.getAsLong() / fatiaMillis;
+        if (agora <= fatiaAtual) return;
+
+        // mais que uma volta visitaria as mesmas posições novamente
+        for (long f = Math.max(fatiaAtual + 1, agora - fatias.length + 1); f <= agora; f++) {
+            int pos = posicao(f);
+            descontar(fatias[pos], fatiaDaPosicao[pos]);
+            fatias[pos].clear();
+            fatiaDaPosicao[pos] = f;
+        }
+        fatiaAtual = agora;
+
+        // no modo aproximado, vendas excedentes das fatias não são descontadas
+        if (capacidade > 0) {
+            long primeira = agora - fatias.length + 1;
+            Iterator<Contador> it = contadores.values().iterator();
+            while (it.hasNext()) {
+                Contador c = it.next();
+                if (c.ultimaVenda < primeira) {
+                    ordem.remove(c);
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Desconta dos contadores as vendas e o erro herdado de uma fatia que
+     * saiu da janela. Contadores criados depois da fatia não receberam
+     * essas vendas.
+     */
+    private void descontar(Map<String, long[]> fatia, long numero) {
+        for (Map.Entry<String, long[]> e : fatia.entrySet()) {
+            Contador c = contadores.get(e.getKey());
+            if (c == null || c.desde > numero) continue;
+
+            long[] soma = e.getValue();
+            ordem.remove(c);
+            c.total -= soma[0] + soma[1];
+            c.erro -= soma[1];
+            if (c.total <= 0) {
+                contadores.remove(c.codigo);
+            } else {
+                ordem.add(c);
+            }
+        }
+    }
+
+    private int posicao(long fatia) {
+        return (int) Math.floorMod(fatia, (long) fatias.length);
+    }
+}
@@ -0,0 +1,291 @@
+package model;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Reservas temporárias de estoque para vendas em andamento.
+ * <p>
+ * Uma reserva separa unidades de um produto durante o fechamento de uma
+ * venda, sem alterar o estoque: o saldo disponível para promessa (ATP) de
+ * cada produto é a quantidade em estoque menos as unidades reservadas.
+ * A reserva é então confirmada, registrando a venda no
+ * {@link ControleEstoque}, ou liberada. Reservas não resolvidas dentro da
+ * validade expiram e devolvem as unidades ao saldo disponível.
+ * </p>
+ *
+ * <p>As expirações são controladas por uma única {@link RodaTemporizacao},
+ * avançada por {@link #expirarVencidas()} ou, após {@link #iniciar()}, por
+ * uma thread dedicada a cada intervalo da roda; nenhuma thread é criada por
+ * reserva. As unidades reservadas de cada produto são um contador atômico,
+ * e a verificação do saldo disponível e a reserva acontecem em uma única
+ * operação de compare-and-set.</p>
+ *
+ * <p>As reservas não bloqueiam vendas registradas diretamente no controle;
+ * nesse caso, o saldo disponível pode ficar menor que as unidades reservadas
+ * e a confirmação de uma reserva falha por estoque insuficiente.</p>
+ *
+ * @author ViniMonster
+ */
+public class ReservasEstoque {
+
+    /** Reserva ativa de unidades de um produto. */
+    private static final class Reserva {
+        final long id;
+        final Produto produto;
+        final int qtd;
+
+        Reserva(long id, Produto produto, int qtd) {
+            this.id = id;
+            this.produto = produto;
+            this.qtd = qtd;
+        }
+    }
+
+    /** Duração padrão de cada intervalo da roda de temporização. */
+    private static final long INTERVALO_PADRAO_MILLIS = 100;
+
+    /** Quantidade padrão de fatias da roda de temporização. */
+    private static final int FATIAS_PADRAO = 512;
+
+    /** Controle de estoque em que as vendas confirmadas são registradas. */
+    private final ControleEstoque controle;
+
+    /** Validade de cada reserva, em milissegundos. */
+    private final long validadeMillis;
+
+    /** Relógio usado para os prazos, em milissegundos. */
+    private final LongSupplier relogio;
+
+    /** Roda com as reservas ativas, pelo prazo de expiração. */
+    private final RodaTemporizacao<Reserva> roda;
+
+    /** Reservas ativas, pelo identificador. */
+    private final Map<Long, Reserva> ativas = new ConcurrentHashMap<>();
+
+    /** Unidades reservadas de cada produto. */
+    private final Map<Produto, AtomicInteger> reservados = new ConcurrentHashMap<>();
+
+    /** Gerador dos identificadores de reserva. */
+    private final AtomicLong proximoId = new AtomicLong();
+
+    /** Quantidade de reservas expiradas desde a criação. */
+    private final AtomicLong expiradas = new AtomicLong();
+
+    /** Executor que avança a roda periodicamente, ou {@code null}. */
+    private ScheduledExecutorService temporizador;
+
+    /**
+     * Cria o controle de reservas com a roda de temporização padrão
+     * ({@value #FATIAS_PADRAO} fatias de {@value #INTERVALO_PADRAO_MILLIS} ms)
+     * e o relógio do sistema.
+     *
+     * @param controle       controle de estoque dos produtos reservados
+     * @param validadeMillis validade de cada reserva, em milissegundos
+     */
+    public ReservasEstoque(ControleEstoque controle, long validadeMillis) {
+        this(controle, validadeMillis, INTERVALO_PADRAO_MILLIS, FATIAS_PADRAO, System::currentTimeMillis);
+    }
+
+    /**
+     * Cria o controle de reservas com uma roda de temporização e um relógio
+     * específicos.
+     *
+     * @param controle        controle de estoque dos produtos reservados
+     * @param validadeMillis  validade de cada reserva, em milissegundos (deve ser &gt; 0)
+     * @param intervaloMillis duração de cada intervalo da roda; define a
+     *                        precisão das expirações
+     * @param fatias          quantidade de fatias da roda
+     * @param relogio         relógio usado para os prazos, em milissegundos
+     *
+     * @throws IllegalArgumentException se a validade, o intervalo ou as fatias não forem positivos
+     */
+    public ReservasEstoque(ControleEstoque controle, long validadeMillis,
+                           long intervaloMillis, int fatias, LongSupplier relogio) {
+        if (validadeMillis <= 0)
+            throw new IllegalArgumentException("Validade deve ser positiva.");
+
+        this.controle = Objects.requireNonNull(controle);
+        this.validadeMillis = validadeMillis;
+        this.relogio = Objects.requireNonNull(relogio);
+        this.roda = new RodaTemporizacao<>(intervaloMillis, fatias, relogio.getAsLong());
+    }
+
+    /**
+     * Reserva unidades de um produto, se houver saldo disponível.
+     *
+     * @param codigo código do produto
+     * @param qtd    quantidade a ser reservada (deve ser positiva)
+     * @return identificador da reserva
+     *
+     * @throws IllegalArgumentException se o produto não existir, a quantidade
+     *                                  não for positiva ou o saldo disponível
+     *                                  for insuficiente
+     */
+    public long reservar(String codigo, int qtd) {
+        if (qtd <= 0)
+            throw new IllegalArgumentException("Quantidade deve ser positiva.");
+
+        Produto p = controle.buscarProdutoPorCodigo(codigo);
+        if (p == null)
+            throw new IllegalArgumentException("Produto não encontrado.");
+
+        AtomicInteger reservado = reservados.computeIfAbsent(p, k -> new AtomicInteger());
+        int atual;
+        do {
+            atual = reservado.get();
+            if ((long) p.getQtdEstoque() - atual < qtd)
+                throw new IllegalArgumentException("Estoque insuficiente.");
+        } while (!reservado.compareAndSet(atual, atual + qtd));
+
+        Reserva r = new Reserva(proximoId.incrementAndGet(), p, qtd);
+        ativas.put(r.id, r);
+        roda.agendar(r, relogio.getAsLong() + validadeMillis);
+        return r.id;
+    }
+
+    /**
+     * Confirma uma reserva, registrando a venda das unidades reservadas ao
+     * cliente, com o valor unitário atual do produto.
+     *
+     * @param id      identificador da reserva
+     * @param cliente cliente da venda
+     * @param data    data da venda
+     * @return {@code true} se a venda foi registrada; {@code false} se a
+     *         reserva não existe, já foi resolvida ou expirou
+     *
+     * @throws IllegalArgumentException se o estoque tiver sido consumido
+     *                                  por vendas feitas fora das reservas;
+     *                                  nesse caso a reserva é liberada
+     */
+    public boolean confirmar(long id, Cliente cliente, LocalDateTime data) {
+        Reserva r = ativas.remove(id);
+        if (r == null) return false;
+
+        try {
+            controle.registrarMovimento(new VendasClientes(Centavos.de(r.produto.getValorUnitarioCentavos()),
+                    data, r.qtd, r.produto, cliente));
+        } finally {
+            devolver(r);
+        }
+        return true;
+    }
+
+    /**
+     * Libera uma reserva, devolvendo as unidades ao saldo disponível.
+     *
+     * @param id identificador da reserva
+     * @return {@code true} se a reserva estava ativa
+     */
+    public boolean liberar(long id) {
+        Reserva r = ativas.remove(id);
+        if (r == null) return false;
+        devolver(r);
+        return true;
+    }
+
+    /**
+     * Obtém o saldo disponível para promessa (ATP) de um produto: a
+     * quantidade em estoque menos as unidades reservadas.
+     *
+     * @param codigo código do produto
+     * @return unidades disponíveis, ou 0 se o produto não existir
+     */
+    public int getDisponivel(String codigo) {
+        Produto p = controle.buscarProdutoPorCodigo(codigo);
+        if (p == null) return 0;
+        return Math.max(0, p.getQtdEstoque() - getReservado(p));
+    }
+
+    /**
+     * Obtém as unidades reservadas de um produto.
+     *
+     * @param codigo código do produto
+     * @return unidades em reservas ativas
+     */
+    public int getReservado(String codigo) {
+        Produto p = controle.buscarProdutoPorCodigo(codigo);
+        return p == null ? 0 : getReservado(p);
+    }
+
+    /** @return quantidade de reservas ativas */
+    public int getReservasAtivas() {
+        return ativas.size();
+    }
+
+    /** @return quantidade de reservas expiradas desde a criação */
+    public long getExpiradas() {
+        return expiradas.get();
+    }
+
+    /**
+     * Expira as reservas vencidas até o instante atual do relógio.
+     *
+     * @return quantidade de reservas expiradas nesta chamada
+     */
+    public int expirarVencidas() {
+        int[] n = {0};
+        roda.avancar(relogio.getAsLong(), r -> {
+            if (ativas.remove(r.id, r)) {
+                devolver(r);
+                n[0]++;
+            }
+        });
+        expiradas.addAndGet(n[0]);
+        return n[0];
+    }
+
+    /**
+     * Inicia uma thread que expira as reservas vencidas a cada intervalo.
+     * Não tem efeito se a thread já estiver ativa.
+     *
+     * @param intervaloMillis intervalo entre as verificações, em milissegundos
+     */
+    public synchronized void iniciar(long intervaloMillis) {
+        if (temporizador != null) return;
+
+        temporizador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "reservas-estoque");
+            t.setDaemon(true);
+            return t;
+        });
+        temporizador.scheduleAtFixedRate(this::expirarVencidas, intervaloMillis, intervaloMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Inicia a thread de expiração com o intervalo padrão da roda.
+     *
+     * @see #iniciar(long)
+     */
+    public void iniciar() {
+        iniciar(INTERVALO_PADRAO_MILLIS);
+    }
+
+    /**
+     * Encerra a thread de expiração. As reservas ativas são mantidas e
+     * continuam podendo ser expiradas por {@link #expirarVencidas()}.
+     */
+    public synchronized void encerrar() {
+        if (temporizador == null) return;
+        temporizador.shutdownNow();
+        temporizador = null;
+    }
+
+    private int getReservado(Produto p) {
+        AtomicInteger reservado = reservados.get(p);
+        return reservado == null ? 0 : reservado.get();
+    }
+
+    /**
+     * Devolve ao saldo disponível as unidades de uma reserva já removida
+     * das reservas ativas.
+     */
+    private void devolver(Reserva r) {
+        reservados.get(r.produto).addAndGet(-r.qtd);
+    }
+}
@@ -0,0 +1,67 @@
+package model;
+
+/**
+ * Totais de estoque e de movimentos de uma {@link Categoria} de produtos.
+ * <p>
+ * Os totais são mantidos pelo {@link ControleEstoque} a cada produto
+ * adicionado ou removido e a cada movimento registrado; cada instância é
+ * um retrato, obtido sem percorrer o catálogo nem os movimentos.
+ * </p>
+ *
+ * <p>As unidades e o valor em estoque consideram apenas os produtos
+ * cadastrados. As entradas e saídas somam todos os movimentos carregados
+ * e registrados de produtos da categoria, inclusive de produtos já
+ * removidos.</p>
+ *
+ * @author ViniMonster
+ * @see ControleEstoque#getResumoCategoria(Categoria)
+ */
+public final class ResumoCategoria {
+
+    private final Categoria categoria;
+    private final long unidades;
+    private final long valorCentavos;
+    private final long unidadesEntrada;
+    private final long valorEntradaCentavos;
+    private final long unidadesSaida;
+    private final long valorSaidaCentavos;
+
+    ResumoCategoria(Categoria categoria, long unidades, long valorCentavos,
+                    long unidadesEntrada, long valorEntradaCentavos,
+                    long unidadesSaida, long valorSaidaCentavos) {
+        this.categoria = categoria;
+        this.unidades = unidades;
+        this.valorCentavos = valorCentavos;
+        this.unidadesEntrada = unidadesEntrada;
+        this.valorEntradaCentavos = valorEntradaCentavos;
+        this.unidadesSaida = unidadesSaida;
+        this.valorSaidaCentavos = valorSaidaCentavos;
+    }
+
+    /** @return categoria dos totais */
+    public Categoria getCategoria() { return categoria; }
+
+    /** @return unidades em estoque dos produtos da categoria */
+    public long getUnidades() { return unidades; }
+
+    /** @return valor em estoque dos produtos da categoria, em centavos */
+    public long getValorCentavos() { return valorCentavos; }
+
+    /** @return unidades recebidas em movimentos de entrada */
+    public long getUnidadesEntrada() { return unidadesEntrada; }
+
+    /** @return valor dos movimentos de entrada, em centavos */
+    public long getValorEntradaCentavos() { return valorEntradaCentavos; }
+
+    /** @return unidades retiradas em movimentos de saída de todos os tipos */
+    public long getUnidadesSaida() { return unidadesSaida; }
+
+    /** @return valor dos movimentos de saída de todos os tipos, em centavos */
+    public long getValorSaidaCentavos() { return valorSaidaCentavos; }
+
+    @Override
+    public String toString() {
+        return categoria + ": " + unidades + " un. / R$ " + Centavos.formatar(valorCentavos)
+                + " (entradas " + unidadesEntrada + ", saídas " + unidadesSaida + ")";
+    }
+}
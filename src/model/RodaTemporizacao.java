@@ -0,0 +1,136 @@
+package model;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Roda de temporização (hashed timer wheel) para itens com prazo de expiração.
+ * <p>
+ * O tempo é dividido em intervalos de {@code intervaloMillis}; cada item é
+ * colocado na fatia correspondente ao intervalo em que vence, com a posição
+ * dada pelo resto da divisão pelo número de fatias. A cada avanço, apenas as
+ * fatias dos intervalos decorridos são percorridas, e os itens cujo prazo
+ * já passou são entregues ao consumidor informado; itens com prazo em uma
+ * volta posterior da roda permanecem na fatia.
+ * </p>
+ *
+ * <p>O agendamento pode ser feito por várias threads ao mesmo tempo e não
+ * bloqueia: o item é enfileirado e só é colocado em sua fatia no avanço
+ * seguinte, que é serializado. Assim, um item cujo intervalo já foi
+ * processado, como o de um prazo calculado com um relógio lido antes do
+ * último avanço, é entregue nesse avanço em vez de aguardar uma volta
+ * inteira da roda. O custo de agendar é constante e o de avançar é
+ * proporcional aos itens agendados desde o avanço anterior e aos das
+ * fatias percorridas.</p>
+ *
+ * @param <T> tipo dos itens agendados
+ * @author ViniMonster
+ */
+final class RodaTemporizacao<T> {
+
+    /** Item agendado e o intervalo em que vence. */
+    private static final class Agendado<T> {
+        final T item;
+        final long prazo;
+
+        Agendado(T item, long prazo) {
+            this.item = item;
+            this.prazo = prazo;
+        }
+    }
+
+    /** Duração de cada intervalo, em milissegundos. */
+    private final long intervaloMillis;
+
+    /** Fatias da roda; a quantidade é uma potência de 2. */
+    private final Queue<Agendado<T>>[] fatias;
+
+    /** Itens agendados ainda não colocados em suas fatias. */
+    private final Queue<Agendado<T>> novos = new ConcurrentLinkedQueue<>();
+
+    /** Último intervalo já processado. */
+    private long ultimo;
+
+    /**
+     * Cria uma roda vazia.
+     *
+     * @param intervaloMillis duração de cada intervalo (deve ser &gt; 0)
+     * @param fatias          quantidade de fatias, arredondada para potência de 2
+     * @param agoraMillis     instante atual, a partir do qual a roda avança
+     */
+    RodaTemporizacao(long intervaloMillis, int fatias, long agoraMillis) {
+        if (intervaloMillis <= 0 || fatias <= 0)
+            throw new IllegalArgumentException("Intervalo e fatias devem ser positivos.");
+
+        int n = Integer.highestOneBit(Math.max(1, fatias - 1)) << 1;
+        this.intervaloMillis = intervaloMillis;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Queue<Agendado<T>>[] filas = new Queue[n];
+        for (int i = 0; i < n; i++) filas[i] = new ConcurrentLinkedQueue<>();
+        this.fatias = filas;
+        this.ultimo = agoraMillis / intervaloMillis;
+    }
+
+    /**
+     * Agenda um item para expirar no instante informado. O item é entregue
+     * no primeiro avanço que alcance o fim do intervalo que contém o prazo,
+     * ou no avanço seguinte se esse intervalo já tiver sido processado.
+     *
+     * @param item        item a ser agendado
+     * @param prazoMillis instante de expiração
+     */
+    void agendar(T item, long prazoMillis) {
+        long prazo = Math.floorDiv(prazoMillis + intervaloMillis - 1, intervaloMillis);
+        novos.add(new Agendado<>(item, prazo));
+    }
+
+    /**
+     * Avança a roda até o instante informado, entregando os itens vencidos.
+     *
+     * @param agoraMillis instante atual
+     * @param expirar     consumidor dos itens cujo prazo já passou
+     * @return quantidade de itens entregues
+     */
+    synchronized int avancar(long agoraMillis, Consumer<? super T> expirar) {
+        long agora = agoraMillis / intervaloMillis;
+        int expirados = 0;
+
+        if (agora > ultimo) {
+            // percorrer mais que uma volta visitaria as mesmas fatias novamente
+            long de = Math.max(ultimo + 1, agora - fatias.length + 1);
+
+            for (long t = de; t <= agora; t++) {
+                Iterator<Agendado<T>> it = fatias[(int) (t & (fatias.length - 1))].iterator();
+                while (it.hasNext()) {
+                    Agendado<T> a = it.next();
+                    if (a.prazo <= agora) {
+                        it.remove();
+                        expirar.accept(a.item);
+                        expirados++;
+                    }
+                }
+            }
+            ultimo = agora;
+        }
+
+        // itens cuja fatia já foi percorrida vencem agora; os demais entram na roda
+        for (Agendado<T> a; (a = novos.poll()) != null; ) {
+            if (a.prazo <= ultimo) {
+                expirar.accept(a.item);
+                expirados++;
+            } else {
+                fatias[(int) (a.prazo & (fatias.length - 1))].add(a);
+            }
+        }
+        return expirados;
+    }
+
+    /** @return quantidade de itens agendados e ainda não entregues */
+    int tamanho() {
+        int n = novos.size();
+        for (Queue<Agendado<T>> f : fatias) n += f.size();
+        return n;
+    }
+}
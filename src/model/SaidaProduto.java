@@ -28,6 +28,18 @@ public abstract class SaidaProduto extends MovimentoEstoque {
         super(valorUnitario, data, qtd, produto);
     }
 
+    /**
+     * Constrói uma saída de produto com os dados fornecidos.
+     *
+     * @param valorUnitario valor unitário do produto no momento da saída, em centavos
+     * @param data          data da operação
+     * @param qtd           quantidade removida do estoque
+     * @param produto       produto envolvido na saída
+     */
+    public SaidaProduto(Centavos valorUnitario, LocalDateTime data, int qtd, Produto produto) {
+        super(valorUnitario, data, qtd, produto);
+    }
+
     /**
      * Aplica o movimento de saída ao estoque,
      * reduzindo a quantidade do produto correspondente.
@@ -0,0 +1,54 @@
+package model;
+
+/**
+ * Tipos de movimento de estoque.
+ * <p>
+ * Cada tipo indica o sentido do movimento sobre o estoque e o rótulo
+ * usado na exibição para o usuário.
+ * </p>
+ *
+ * @author ViniMonster
+ */
+public enum TipoMovimento {
+
+    /** Entrada de produtos no estoque. */
+    ENTRADA(1, "ENTRADA"),
+
+    /** Venda para clientes. */
+    VENDA(-1, "VENDA"),
+
+    /** Uso interno da empresa. */
+    USO(-1, "USO INTERNO"),
+
+    /** Devolução de produtos ao fornecedor. */
+    DEVOLUCAO(-1, "DEVOLUÇÃO FORNECEDOR"),
+
+    /** Demais saídas (perdas, avarias, etc.). */
+    OUTRA(-1, "OUTRA SAÍDA");
+
+    /** Sentido do movimento: 1 para entradas e -1 para saídas. */
+    private final int sinal;
+
+    /** Rótulo exibido para o usuário. */
+    private final String rotulo;
+
+    TipoMovimento(int sinal, String rotulo) {
+        this.sinal = sinal;
+        this.rotulo = rotulo;
+    }
+
+    /** @return 1 para entradas e -1 para saídas */
+    public int getSinal() {
+        return sinal;
+    }
+
+    /** @return rótulo exibido para o usuário */
+    public String getRotulo() {
+        return rotulo;
+    }
+
+    /** @return {@code true} se o tipo representa uma saída de estoque */
+    public boolean isSaida() {
+        return sinal < 0;
+    }
+}
@@ -0,0 +1,132 @@
+package model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Totais dos movimentos de um período, separados por tipo de movimento e
+ * por categoria do produto.
+ * <p>
+ * Para cada combinação de {@link TipoMovimento} e {@link Categoria}, são
+ * guardadas as unidades movimentadas e o valor total dos movimentos, em
+ * centavos e sem sinal; os saldos aplicam o sinal de cada tipo. Cada
+ * instância é um retrato imutável, obtido do {@link ControleEstoque}.
+ * </p>
+ *
+ * @author ViniMonster
+ * @see ControleEstoque#getTotaisPorPeriodo(LocalDateTime, LocalDateTime)
+ */
+public final class TotaisPeriodo {
+
+    private static final TipoMovimento[] TIPOS = TipoMovimento.values();
+    private static final Categoria[] CATEGORIAS = Categoria.values();
+
+    /** Quantidade de posições do vetor de totais: unidades e valor de cada tipo e categoria. */
+    static final int CELULAS = TIPOS.length * CATEGORIAS.length * 2;
+
+    private final LocalDateTime inicio;
+    private final LocalDateTime fim;
+
+    /** Unidades e valor de cada tipo e categoria, nas posições dadas por {@link #celula}. */
+    private final long[] celulas;
+
+    /**
+     * Cria os totais a partir de um vetor preenchido pelo controle,
+     * que passa a pertencer à instância.
+     */
+    TotaisPeriodo(LocalDateTime inicio, LocalDateTime fim, long[] celulas) {
+        this.inicio = inicio;
+        this.fim = fim;
+        this.celulas = celulas;
+    }
+
+    /**
+     * Obtém a posição das unidades de um tipo e categoria no vetor de
+     * totais; o valor fica na posição seguinte.
+     */
+    static int celula(TipoMovimento tipo, Categoria categoria) {
+        return (tipo.ordinal() * CATEGORIAS.length + categoria.ordinal()) * 2;
+    }
+
+    /**
+     * Acrescenta um movimento a um vetor de totais.
+     *
+     * @param m        movimento a ser somado
+     * @param celulas  vetor de totais com {@link #CELULAS} posições
+     */
+    static void somar(MovimentoEstoque m, long[] celulas) {
+        int i = celula(m.getTipo(), m.getProduto().getCategoria());
+        celulas[i] += m.getQtd();
+        celulas[i + 1] += m.getValorTotalCentavos();
+    }
+
+    /** @return data inicial do período (inclusiva) */
+    public LocalDateTime getInicio() { return inicio; }
+
+    /** @return data final do período (inclusiva) */
+    public LocalDateTime getFim() { return fim; }
+
+    /** @return unidades movimentadas do tipo, em produtos da categoria */
+    public long getUnidades(TipoMovimento tipo, Categoria categoria) {
+        return celulas[celula(tipo, categoria)];
+    }
+
+    /** @return valor dos movimentos do tipo, em produtos da categoria, em centavos */
+    public long getValorCentavos(TipoMovimento tipo, Categoria categoria) {
+        return celulas[celula(tipo, categoria) + 1];
+    }
+
+    /** @return unidades movimentadas do tipo, em todas as categorias */
+    public long getUnidades(TipoMovimento tipo) {
+        long soma = 0;
+        for (Categoria c : CATEGORIAS) soma += getUnidades(tipo, c);
+        return soma;
+    }
+
+    /** @return valor dos movimentos do tipo, em todas as categorias, em centavos */
+    public long getValorCentavos(TipoMovimento tipo) {
+        long soma = 0;
+        for (Categoria c : CATEGORIAS) soma += getValorCentavos(tipo, c);
+        return soma;
+    }
+
+    /**
+     * Obtém o saldo financeiro dos movimentos de uma categoria: entradas
+     * menos saídas.
+     *
+     * @param categoria categoria dos produtos
+     * @return saldo do período, em centavos
+     */
+    public long getSaldoCentavos(Categoria categoria) {
+        long soma = 0;
+        for (TipoMovimento t : TIPOS) soma += t.getSinal() * getValorCentavos(t, categoria);
+        return soma;
+    }
+
+    /**
+     * Obtém o saldo financeiro dos movimentos de todas as categorias.
+     *
+     * @return saldo do período, em centavos
+     */
+    public long getSaldoCentavos() {
+        long soma = 0;
+        for (Categoria c : CATEGORIAS) soma += getSaldoCentavos(c);
+        return soma;
+    }
+
+    /**
+     * Obtém a variação de unidades em estoque dos produtos de uma categoria.
+     *
+     * @param categoria categoria dos produtos
+     * @return unidades de entrada menos unidades de saída
+     */
+    public long getSaldoUnidades(Categoria categoria) {
+        long soma = 0;
+        for (TipoMovimento t : TIPOS) soma += t.getSinal() * getUnidades(t, categoria);
+        return soma;
+    }
+
+    @Override
+    public String toString() {
+        return inicio + " a " + fim + ": saldo R$ " + Centavos.formatar(getSaldoCentavos());
+    }
+}
@@ -35,6 +35,31 @@ public class UsoInterno extends SaidaProduto {
         this.destino = destino;
     }
 
+    /**
+     * Constrói uma saída de produto para uso interno.
+     *
+     * @param valorUnitario valor unitário do produto no momento da saída, em centavos
+     * @param data          data da operação
+     * @param qtd           quantidade removida do estoque
+     * @param produto       produto envolvido na saída
+     * @param destino       destino ou finalidade interna do uso
+     */
+    public UsoInterno(Centavos valorUnitario, LocalDateTime data, int qtd,
+                      Produto produto, String destino) {
+        super(valorUnitario, data, qtd, produto);
+        this.destino = destino;
+    }
+
+    /**
+     * Obtém o tipo do movimento.
+     *
+     * @return {@link TipoMovimento#USO}
+     */
+    @Override
+    public TipoMovimento getTipo() {
+        return TipoMovimento.USO;
+    }
+
     /**
      * Retorna o tipo textual da saída.
      *
@@ -34,6 +34,31 @@ public class VendasClientes extends SaidaProduto {
         this.cliente = cliente;
     }
 
+    /**
+     * Constrói um movimento de venda para um cliente.
+     *
+     * @param valorUnitario valor unitário do produto vendido, em centavos
+     * @param data          data da operação de venda
+     * @param qtd           quantidade vendida
+     * @param produto       produto envolvido na transação
+     * @param cliente       cliente que realizou a compra
+     */
+    public VendasClientes(Centavos valorUnitario, LocalDateTime data, int qtd,
+                          Produto produto, Cliente cliente) {
+        super(valorUnitario, data, qtd, produto);
+        this.cliente = cliente;
+    }
+
+    /**
+     * Obtém o tipo do movimento.
+     *
+     * @return {@link TipoMovimento#VENDA}
+     */
+    @Override
+    public TipoMovimento getTipo() {
+        return TipoMovimento.VENDA;
+    }
+
     /**
      * Retorna o tipo textual da saída.
      *
@@ -0,0 +1,113 @@
+package persistence;
+
+import model.MovimentoEstoque;
+import model.Produto;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Meio de armazenamento usado pelo controle de estoque para persistir
+ * produtos e movimentações.
+ * <p>
+ * O armazenamento mantém um diário (journal) de movimentações somente de
+ * acréscimo e um checkpoint dos produtos. As posições do diário são
+ * opacas para quem usa a interface: cada implementação define sua unidade
+ * (bytes do arquivo, quantidade de registros, etc.), e apenas valores
+ * obtidos de {@link #tamanhoDiario()} ou de {@link Checkpoint#getOffset()}
+ * devem ser usados como limites de leitura.
+ * </p>
+ *
+ * <p>Implementações disponíveis: {@link ArmazenamentoCsv} (formato
+ * original em <b>data/</b>), {@link ArmazenamentoBinario} (registros
+ * binários de tamanho fixo) e {@link ArmazenamentoMemoria} (sem acesso a
+ * disco, para testes e medições).</p>
+ *
+ * @author GustavoVirges
+ */
+public interface Armazenamento {
+
+    /**
+     * Carrega o último checkpoint gravado.
+     *
+     * @return checkpoint contendo os produtos e a posição do diário coberta
+     */
+    Checkpoint carregarCheckpoint();
+
+    /**
+     * Grava um checkpoint dos produtos cobrindo todo o diário existente.
+     *
+     * @param produtos produtos no estado atual
+     */
+    void salvarCheckpoint(Collection<Produto> produtos);
+
+    /**
+     * Obtém a posição atual do final do diário de movimentações.
+     *
+     * @return posição do final do diário
+     */
+    long tamanhoDiario();
+
+    /**
+     * Carrega as movimentações gravadas em um trecho do diário.
+     *
+     * @param indice produtos indexados pelo código (ver {@link DataStore#indexProducts(Collection)})
+     * @param inicio posição inicial (inclusiva) do trecho
+     * @param fim    posição final (exclusiva) do trecho
+     * @return movimentos do trecho, na ordem do diário
+     */
+    List<MovimentoEstoque> carregarMovimentos(Map<String, Produto> indice, long inicio, long fim);
+
+    /**
+     * Carrega as movimentações de um trecho do diário ocorridas em um período.
+     * <p>
+     * A implementação padrão lê o trecho inteiro e descarta os movimentos
+     * fora do período. Implementações que mantêm um índice por período
+     * (ver {@link #possuiIndicePorPeriodo()}) leem apenas as partes do
+     * armazenamento que contêm o período.
+     * </p>
+     *
+     * @param indice produtos indexados pelo código
+     * @param inicio posição inicial (inclusiva) do trecho
+     * @param fim    posição final (exclusiva) do trecho
+     * @param de     início do período (inclusivo)
+     * @param ate    fim do período (inclusivo)
+     * @return movimentos do trecho ocorridos no período
+     */
+    default List<MovimentoEstoque> carregarMovimentos(Map<String, Produto> indice, long inicio, long fim,
+                                                      LocalDateTime de, LocalDateTime ate) {
+        List<MovimentoEstoque> list = new ArrayList<>();
+        for (MovimentoEstoque m : carregarMovimentos(indice, inicio, fim))
+            if (!m.getData().isBefore(de) && !m.getData().isAfter(ate)) list.add(m);
+        return list;
+    }
+
+    /**
+     * Indica se a leitura por período evita ler o trecho inteiro do diário.
+     *
+     * @return {@code true} se houver um índice por período
+     */
+    default boolean possuiIndicePorPeriodo() {
+        return false;
+    }
+
+    /**
+     * Acrescenta os movimentos ao final do diário, na ordem informada.
+     *
+     * @param movimentos movimentos a serem acrescentados
+     * @throws IOException se os movimentos não puderem ser gravados
+     */
+    void anexarMovimentos(Collection<MovimentoEstoque> movimentos) throws IOException;
+
+    /**
+     * Substitui todo o diário pelos movimentos informados (compactação).
+     * O offset de checkpoints anteriores deixa de ser válido.
+     *
+     * @param movimentos movimentos que formarão o novo diário
+     */
+    void salvarMovimentos(Collection<MovimentoEstoque> movimentos);
+}
@@ -0,0 +1,294 @@
+package persistence;
+
+import model.Categoria;
+import model.Centavos;
+import model.Produto;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Base dos armazenamentos em arquivos de um diretório.
+ * <p>
+ * Os produtos são gravados como checkpoint no arquivo CSV
+ * <b>products.csv</b> do diretório, no formato:
+ * <br><code>#checkpoint;offset</code>
+ * <br><code>codigo;nome;valorUnitario;qtdEstoque;categoria</code>
+ * <br>com o valor unitário em reais, com duas casas decimais.
+ * </p>
+ *
+ * <p>O diretório e os arquivos são criados apenas na primeira gravação;
+ * a leitura de um diretório inexistente resulta em um armazenamento vazio.
+ * Cada armazenamento deve usar seu próprio diretório, pois o offset do
+ * checkpoint se refere ao diário do armazenamento que o gravou.</p>
+ *
+ * @author GustavoVirges
+ */
+public abstract class ArmazenamentoArquivo implements Armazenamento {
+
+    /** Marcador da linha de cabeçalho do checkpoint no arquivo de produtos. */
+    private static final String CHECKPOINT_HEADER = "#checkpoint";
+
+    /** Diretório onde os arquivos de dados são armazenados. */
+    protected final Path diretorio;
+
+    /** Arquivo CSV que armazena os produtos. */
+    private final Path arquivoProdutos;
+
+    /**
+     * Indica se os arquivos CSV são lidos pelo {@link LeitorCsvMapeado}, que
+     * mapeia os arquivos em memória e interpreta os campos diretamente sobre os bytes.
+     */
+    protected volatile boolean leituraMapeada = false;
+
+    /** Nível de durabilidade aplicado às gravações. */
+    protected volatile Durabilidade durabilidade = Durabilidade.BUFFER_SO;
+
+    /**
+     * Cria um armazenamento sobre o diretório informado.
+     *
+     * @param diretorio diretório dos arquivos de dados
+     */
+    protected ArmazenamentoArquivo(Path diretorio) {
+        this.diretorio = Objects.requireNonNull(diretorio);
+        this.arquivoProdutos = diretorio.resolve("products.csv");
+    }
+
+    /** @return diretório dos arquivos de dados */
+    public Path getDiretorio() {
+        return diretorio;
+    }
+
+    /**
+     * Ativa ou desativa a leitura mapeada em memória dos arquivos CSV.
+     *
+     * @param ativo {@code true} para ler pelo {@link LeitorCsvMapeado}
+     */
+    public void setLeituraMapeada(boolean ativo) {
+        leituraMapeada = ativo;
+    }
+
+    /** @return {@code true} se a leitura mapeada estiver ativa */
+    public boolean isLeituraMapeada() {
+        return leituraMapeada;
+    }
+
+    /**
+     * Define o nível de durabilidade das gravações.
+     *
+     * @param nivel nível de durabilidade
+     */
+    public void setDurabilidade(Durabilidade nivel) {
+        durabilidade = Objects.requireNonNull(nivel);
+    }
+
+    /** @return nível de durabilidade configurado */
+    public Durabilidade getDurabilidade() {
+        return durabilidade;
+    }
+
+    /**
+     * Carrega o checkpoint gravado no arquivo de produtos.
+     * <p>
+     * A primeira linha do arquivo pode conter o cabeçalho
+     * <code>#checkpoint;offset</code>, indicando até qual posição do diário
+     * a quantidade em estoque dos produtos já está atualizada.
+     * </p>
+     *
+     * @return checkpoint contendo os produtos e o offset do diário
+     */
+    @Override
+    public Checkpoint carregarCheckpoint() {
+        if (leituraMapeada) {
+            try {
+                return LeitorCsvMapeado.lerCheckpoint(arquivoProdutos);
+            } catch (NoSuchFileException e) {
+                return new Checkpoint(new ArrayList<>(), Checkpoint.SEM_OFFSET);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return new Checkpoint(new ArrayList<>(), Checkpoint.SEM_OFFSET);
+            }
+        }
+
+        List<Produto> list = new ArrayList<>();
+        long offset = Checkpoint.SEM_OFFSET;
+
+        try (BufferedReader r = Files.newBufferedReader(arquivoProdutos, StandardCharsets.UTF_8)) {
+
+            String line;
+            while ((line = r.readLine()) != null) {
+
+                if (line.isBlank()) continue;
+
+                String[] parts = line.split(";", -1);
+
+                if (parts[0].equals(CHECKPOINT_HEADER)) {
+                    offset = Long.parseLong(parts[1]);
+                    continue;
+                }
+
+                String codigo = parts[0];
+                String nome = parts[1];
+                long valor = Centavos.ler(parts[2]);
+                int qtd = Integer.parseInt(parts[3]);
+                Categoria cat = Categoria.valueOf(parts[4]);
+
+                Produto p = new Produto(codigo, nome, Centavos.de(valor), qtd, cat);
+                list.add(p);
+            }
+        } catch (NoSuchFileException e) {
+            return new Checkpoint(list, offset);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return new Checkpoint(list, offset);
+    }
+
+    /**
+     * Salva todos os produtos no arquivo CSV.
+     * <p>
+     * O cabeçalho registra o tamanho atual do diário, indicando que a
+     * quantidade em estoque gravada já considera todos os movimentos
+     * existentes até aqui. O arquivo é substituído de forma atômica,
+     * conforme a {@link Durabilidade} configurada.
+     * </p>
+     *
+     * @param produtos coleção de produtos a serem gravados
+     */
+    @Override
+    public void salvarCheckpoint(Collection<Produto> produtos) {
+        try {
+            substituirArquivo(arquivoProdutos, tmp -> {
+                try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+
+                    w.write(CHECKPOINT_HEADER + ";" + tamanhoDiario());
+                    w.newLine();
+
+                    for (Produto p : produtos) {
+                        String line = String.join(";",
+                                p.getCodigo(),
+                                p.getNome(),
+                                Centavos.formatar(p.getValorUnitarioCentavos()),
+                                String.valueOf(p.getQtdEstoque()),
+                                p.getCategoria().name());
+                        w.write(line);
+                        w.newLine();
+                    }
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Obtém o tamanho de um arquivo do armazenamento.
+     *
+     * @param arquivo arquivo a ser consultado
+     * @return tamanho em bytes, ou 0 se o arquivo não existir
+     */
+    protected static long tamanho(Path arquivo) {
+        try {
+            return Files.exists(arquivo) ? Files.size(arquivo) : 0;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    /**
+     * Conteúdo a ser gravado em um arquivo temporário durante a substituição
+     * de um arquivo de dados.
+     */
+    @FunctionalInterface
+    protected interface Conteudo {
+        void gravar(Path tmp) throws IOException;
+    }
+
+    /**
+     * Substitui um arquivo de forma segura contra falhas: o conteúdo é gravado
+     * em um arquivo temporário no mesmo diretório, forçado para o disco, e
+     * então renomeado atomicamente sobre o arquivo original. Uma queda durante
+     * a gravação preserva o arquivo anterior.
+     * <p>
+     * O arquivo temporário é forçado em todos os níveis de {@link Durabilidade}:
+     * sem isso, alguns sistemas de arquivos podem registrar a renomeação antes
+     * do conteúdo e deixar, após uma queda, um arquivo vazio no lugar do
+     * anterior. Apenas com durabilidade diferente de
+     * {@link Durabilidade#BUFFER_SO} a renomeação também é forçada para o
+     * disco; no nível {@code BUFFER_SO}, uma queda logo após a chamada pode
+     * manter o arquivo anterior, mas nunca um arquivo incompleto.
+     * </p>
+     *
+     * @param destino  arquivo a ser substituído
+     * @param conteudo função que grava o novo conteúdo no arquivo temporário
+     * @throws IOException se a gravação ou a renomeação falharem
+     */
+    protected void substituirArquivo(Path destino, Conteudo conteudo) throws IOException {
+        substituirArquivos(List.of(destino), List.of(conteudo));
+    }
+
+    /**
+     * Substitui vários arquivos, como em {@link #substituirArquivo(Path, Conteudo)}.
+     * Todos os conteúdos são gravados em arquivos temporários antes da
+     * primeira renomeação, e as renomeações seguem a ordem informada; uma
+     * queda durante as gravações preserva todos os arquivos anteriores.
+     *
+     * @param destinos  arquivos a serem substituídos, na ordem de renomeação
+     * @param conteudos função que grava o conteúdo de cada arquivo, na mesma ordem
+     * @throws IOException se alguma gravação ou renomeação falhar
+     */
+    protected void substituirArquivos(List<Path> destinos, List<Conteudo> conteudos) throws IOException {
+        Files.createDirectories(diretorio);
+
+        List<Path> temporarios = new ArrayList<>(destinos.size());
+        for (Path destino : destinos) temporarios.add(destino.resolveSibling(destino.getFileName() + ".tmp"));
+
+        try {
+            for (int i = 0; i < destinos.size(); i++) {
+                Path tmp = temporarios.get(i);
+                conteudos.get(i).gravar(tmp);
+
+                try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    ch.force(true);
+                }
+            }
+
+            for (int i = 0; i < destinos.size(); i++) {
+                Path tmp = temporarios.get(i), destino = destinos.get(i);
+                try {
+                    Files.move(tmp, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, destino, StandardCopyOption.REPLACE_EXISTING);
+                }
+
+                // cada renomeação chega ao disco antes da seguinte
+                if (durabilidade != Durabilidade.BUFFER_SO) forcarDiretorio(destino.toAbsolutePath().getParent());
+            }
+
+        } finally {
+            for (Path tmp : temporarios) Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Força para o disco a entrada de diretório criada pela renomeação.
+     * Nem todos os sistemas permitem abrir diretórios; nesse caso a etapa é ignorada.
+     */
+    private static void forcarDiretorio(Path dir) {
+        if (dir == null) return;
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException | UnsupportedOperationException ignored) {
+            // sistema não permite sincronizar diretórios
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package persistence;
+
+import model.MovimentoEstoque;
+import model.Produto;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Armazenamento com o diário de movimentações no formato binário
+ * compacto do {@link CodecBinario} (<b>movements.bin</b> e
+ * <b>movements.dic</b>); os produtos continuam no checkpoint CSV.
+ * <p>
+ * Cada movimento ocupa um registro de tamanho fixo e não precisa ser
+ * interpretado como texto, o que torna a carga e o acréscimo mais rápidos
+ * que no formato CSV. As posições do diário são dadas em bytes do arquivo
+ * de registros.
+ * </p>
+ *
+ * <p>Cada chamada a {@link #anexarMovimentos(Collection)} é gravada como
+ * uma unidade: com durabilidade diferente de {@link Durabilidade#BUFFER_SO},
+ * os arquivos são forçados para o disco uma vez ao final da chamada.</p>
+ *
+ * @author GustavoVirges
+ */
+public class ArmazenamentoBinario extends ArmazenamentoArquivo {
+
+    /** Arquivo binário com os registros de tamanho fixo das movimentações. */
+    private final Path arquivoRegistros;
+
+    /** Dicionário com os campos de tamanho variável do arquivo binário. */
+    private final Path arquivoDicionario;
+
+    /** Dicionário em memória usado nos acréscimos, carregado sob demanda. */
+    private Map<String, Integer> entradas;
+
+    /** Posição do fim das entradas de {@link #entradas} no arquivo de dicionário. */
+    private long fimEntradas;
+
+    /**
+     * Cria um armazenamento binário sobre o diretório informado.
+     *
+     * @param diretorio diretório dos arquivos de dados
+     */
+    public ArmazenamentoBinario(Path diretorio) {
+        super(diretorio);
+        this.arquivoRegistros = diretorio.resolve("movements.bin");
+        this.arquivoDicionario = diretorio.resolve("movements.dic");
+    }
+
+    /**
+     * @return tamanho, em bytes, do trecho do arquivo de registros formado
+     *         por registros completos
+     */
+    @Override
+    public long tamanhoDiario() {
+        try {
+            return CodecBinario.fimDosRegistros(arquivoRegistros);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return tamanho(arquivoRegistros);
+        }
+    }
+
+    @Override
+    public List<MovimentoEstoque> carregarMovimentos(Map<String, Produto> indice, long inicio, long fim) {
+        try {
+            return CodecBinario.ler(arquivoRegistros, arquivoDicionario, indice, inicio, fim);
+        } catch (NoSuchFileException e) {
+            return new ArrayList<>();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public synchronized void anexarMovimentos(Collection<MovimentoEstoque> movimentos) throws IOException {
+        if (movimentos.isEmpty()) return;
+
+        try {
+            if (entradas == null) {
+                entradas = CodecBinario.carregarEntradas(arquivoDicionario);
+                fimEntradas = CodecBinario.fimDasEntradas(entradas.keySet());
+            }
+            Files.createDirectories(diretorio);
+            fimEntradas = CodecBinario.anexar(arquivoRegistros, arquivoDicionario, entradas, fimEntradas,
+                    movimentos, durabilidade != Durabilidade.BUFFER_SO);
+        } catch (IOException | RuntimeException e) {
+            entradas = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Substitui o diário pelos movimentos informados.
+     * <p>
+     * O novo dicionário mantém as entradas do anterior nas mesmas posições e
+     * acrescenta as novas, como em {@link #anexarMovimentos(Collection)}. Os
+     * dois arquivos são gravados antes da primeira renomeação, e o dicionário
+     * é renomeado primeiro: uma queda entre as renomeações deixa os registros
+     * anteriores com um dicionário que ainda contém todas as suas entradas.
+     * </p>
+     */
+    @Override
+    public synchronized void salvarMovimentos(Collection<MovimentoEstoque> movimentos) {
+        entradas = null;
+        try {
+            Map<String, Integer> dicionario;
+            try {
+                dicionario = CodecBinario.carregarEntradas(arquivoDicionario);
+            } catch (IOException e) {
+                // dicionário ilegível: os registros anteriores já não podem ser lidos
+                dicionario = new LinkedHashMap<>();
+                dicionario.put("", 0);
+            }
+            CodecBinario.registrarEntradas(dicionario, movimentos);
+
+            Map<String, Integer> novas = dicionario;
+            substituirArquivos(List.of(arquivoDicionario, arquivoRegistros), List.of(
+                    tmp -> CodecBinario.gravarDicionario(tmp, novas.keySet()),
+                    tmp -> CodecBinario.gravarRegistros(tmp, movimentos, novas)));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
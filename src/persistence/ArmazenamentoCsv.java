@@ -0,0 +1,514 @@
+package persistence;
+
+import model.MovimentoEstoque;
+import model.Produto;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Armazenamento em arquivos CSV, no formato original da aplicação.
+ * <p>
+ * As movimentações ficam no diário <b>movements.csv</b>, uma por linha:
+ * <br><code>tipo;valorUnitario;data;qtd;produtoCodigo;extra</code>
+ * <br>com o valor unitário em reais, com duas casas decimais, interpretado
+ * diretamente em {@link model.Centavos}.
+ * </p>
+ *
+ * <p>As posições do diário são dadas em bytes do arquivo. Cada movimento
+ * só é confirmado quando a quebra de linha que o encerra é gravada: uma
+ * última linha sem quebra, deixada por uma gravação interrompida, não é
+ * lida e é removida antes do próximo acréscimo. Linhas corrompidas no
+ * meio do arquivo são ignoradas sem interromper a leitura das demais.</p>
+ *
+ * @author GustavoVirges
+ */
+public class ArmazenamentoCsv extends ArmazenamentoArquivo {
+
+    /** Arquivo CSV que armazena as movimentações de estoque. */
+    private final Path arquivoMovimentos;
+
+    /** Diretório dos segmentos de movimentações particionados por período. */
+    private final Path diretorioSegmentos;
+
+    /**
+     * Indica se o arquivo de movimentações é lido em partes paralelas,
+     * usando o {@link ForkJoinPool} comum.
+     */
+    private volatile boolean carregamentoParalelo = false;
+
+    /**
+     * Segmentos por período mantidos junto ao diário, ou {@code null} se o
+     * particionamento estiver desativado.
+     */
+    private volatile SegmentosMovimento segmentos = null;
+
+    /**
+     * Indica que a gravação de algum segmento falhou e que os segmentos
+     * devem ser recriados a partir do diário antes da próxima leitura.
+     */
+    private volatile boolean segmentosDesatualizados = false;
+
+    /**
+     * Cria um armazenamento CSV sobre o diretório informado.
+     *
+     * @param diretorio diretório dos arquivos de dados
+     */
+    public ArmazenamentoCsv(Path diretorio) {
+        super(diretorio);
+        this.arquivoMovimentos = diretorio.resolve("movements.csv");
+        this.diretorioSegmentos = diretorio.resolve("segments");
+    }
+
+    /**
+     * Ativa ou desativa a leitura paralela do arquivo de movimentações.
+     *
+     * @param ativo {@code true} para dividir a leitura em partes paralelas
+     */
+    public void setCarregamentoParalelo(boolean ativo) {
+        carregamentoParalelo = ativo;
+    }
+
+    /** @return {@code true} se a leitura paralela estiver ativa */
+    public boolean isCarregamentoParalelo() {
+        return carregamentoParalelo;
+    }
+
+    /**
+     * Ativa ou desativa o particionamento das movimentações por período
+     * em <b>segments/</b>.
+     * <p>
+     * Se o diretório de segmentos ainda não existir e o diário já tiver
+     * movimentos, os segmentos são criados a partir do diário na primeira
+     * leitura por período.
+     * </p>
+     *
+     * @param particao granularidade dos segmentos, ou {@code null} para desativar
+     * @see DataStore#setPartitioning(Particao)
+     */
+    public synchronized void setParticionamento(Particao particao) {
+        segmentos = particao == null ? null : new SegmentosMovimento(diretorioSegmentos, particao);
+        if (particao != null && !Files.exists(diretorioSegmentos) && tamanhoDiario() > 0)
+            segmentosDesatualizados = true;
+    }
+
+    /** @return granularidade configurada, ou {@code null} se desativado */
+    public Particao getParticionamento() {
+        SegmentosMovimento s = segmentos;
+        return s == null ? null : s.getParticao();
+    }
+
+    /**
+     * Recria os segmentos por período a partir do diário.
+     *
+     * @param produtos produtos usados para relacionar as movimentações
+     * @return quantidade de movimentos distribuídos nos segmentos
+     */
+    public int reconstruirSegmentos(Collection<Produto> produtos) {
+        SegmentosMovimento s = segmentos;
+        if (s == null) return 0;
+
+        return reconstruirDoDiario(s, DataStore.indexProducts(produtos));
+    }
+
+    /**
+     * Obtém a quantidade de segmentos que intersectam o período.
+     *
+     * @param inicio início do período (inclusivo)
+     * @param fim    fim do período (inclusivo)
+     * @return quantidade de segmentos, ou 0 se o particionamento estiver desativado
+     */
+    public int segmentosNoPeriodo(LocalDateTime inicio, LocalDateTime fim) {
+        SegmentosMovimento s = segmentos;
+        if (s == null) return 0;
+        try {
+            return s.selecionar(inicio, fim).size();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    /**
+     * @return tamanho, em bytes, do trecho do arquivo de movimentações
+     *         formado por linhas completas
+     */
+    @Override
+    public long tamanhoDiario() {
+        try (FileChannel ch = FileChannel.open(arquivoMovimentos, StandardOpenOption.READ)) {
+            return fimDasLinhasCompletas(ch);
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return tamanho(arquivoMovimentos);
+        }
+    }
+
+    /**
+     * Carrega as movimentações gravadas em um trecho do arquivo de movimentações.
+     * <p>
+     * As posições são dadas em bytes e devem coincidir com início de linha,
+     * como os offsets registrados em um {@link Checkpoint}. O produto de cada
+     * linha é resolvido pelo índice informado. Uma última linha sem quebra
+     * de linha não é lida.
+     * </p>
+     */
+    @Override
+    public List<MovimentoEstoque> carregarMovimentos(Map<String, Produto> indice, long inicio, long fim) {
+
+        List<MovimentoEstoque> list = new ArrayList<>();
+
+        // a última linha só é confirmada quando terminada pela quebra de linha
+        fim = Math.min(fim, tamanhoDiario());
+        if (inicio >= fim) return list;
+
+        if (carregamentoParalelo) {
+            try {
+                ForkJoinPool pool = ForkJoinPool.commonPool();
+                return LeitorCsvMapeado.lerMovimentosParalelo(
+                        arquivoMovimentos, indice, inicio, fim, pool, pool.getParallelism() * 4);
+            } catch (NoSuchFileException e) {
+                return list;
+            } catch (IOException e) {
+                e.printStackTrace();
+                return list;
+            }
+        }
+
+        if (leituraMapeada) {
+            try {
+                return LeitorCsvMapeado.lerMovimentos(arquivoMovimentos, indice, inicio, fim);
+            } catch (NoSuchFileException e) {
+                return list;
+            } catch (IOException e) {
+                e.printStackTrace();
+                return list;
+            }
+        }
+
+        try (FileChannel ch = FileChannel.open(arquivoMovimentos, StandardOpenOption.READ)) {
+
+            long limite = Math.min(fim, ch.size());
+            if (inicio >= limite) return list;
+
+            ch.position(inicio);
+            InputStream in = new TrechoInputStream(Channels.newInputStream(ch), limite - inicio);
+
+            try (BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+
+                String line;
+                while ((line = r.readLine()) != null) {
+
+                    if (line.isBlank()) continue;
+
+                    MovimentoEstoque m;
+                    try {
+                        m = DataStore.parseMovement(line, indice);
+                    } catch (RuntimeException e) {
+                        continue;
+                    }
+
+                    if (m != null) list.add(m);
+                }
+            }
+
+        } catch (NoSuchFileException e) {
+            return list;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return list;
+    }
+
+    /**
+     * Carrega as movimentações ocorridas em um período.
+     *
+     * @param indice produtos indexados pelo código
+     * @param inicio início do período (inclusivo)
+     * @param fim    fim do período (inclusivo)
+     * @return movimentos do período
+     * @see #carregarMovimentos(Map, long, long, LocalDateTime, LocalDateTime)
+     */
+    public List<MovimentoEstoque> carregarMovimentos(Map<String, Produto> indice,
+                                                     LocalDateTime inicio, LocalDateTime fim) {
+        return carregarMovimentos(indice, 0, Long.MAX_VALUE, inicio, fim);
+    }
+
+    /**
+     * Carrega as movimentações de um trecho do diário ocorridas em um período.
+     * <p>
+     * Com o particionamento ativo, apenas os segmentos cujo intervalo de
+     * datas intersecta o período são lidos, e as linhas fora do trecho são
+     * descartadas pela posição gravada no segmento; caso contrário, ou se
+     * os segmentos não puderem ser lidos, o trecho inteiro é lido e
+     * filtrado. Segmentos cuja gravação falhou são antes recriados a partir
+     * do diário.
+     * </p>
+     */
+    @Override
+    public List<MovimentoEstoque> carregarMovimentos(Map<String, Produto> indice, long inicio, long fim,
+                                                     LocalDateTime de, LocalDateTime ate) {
+        SegmentosMovimento s = segmentos;
+
+        if (s != null) {
+            if (segmentosDesatualizados) {
+                synchronized (this) {
+                    if (segmentosDesatualizados) reconstruirDoDiario(s, indice);
+                }
+            }
+            if (!segmentosDesatualizados) {
+                try {
+                    return s.ler(indice, inicio, fim, de, ate);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        List<MovimentoEstoque> list = new ArrayList<>();
+        for (MovimentoEstoque m : carregarMovimentos(indice, inicio, fim))
+            if (!m.getData().isBefore(de) && !m.getData().isAfter(ate)) list.add(m);
+        return list;
+    }
+
+    /** @return {@code true} se o particionamento por período estiver ativo */
+    @Override
+    public boolean possuiIndicePorPeriodo() {
+        return segmentos != null;
+    }
+
+    /**
+     * Acrescenta os movimentos ao final do diário, abrindo e gravando o
+     * arquivo uma única vez, conforme a {@link Durabilidade} configurada.
+     * Uma última linha incompleta é removida antes da gravação.
+     * <p>
+     * Com o particionamento ativo, os segmentos são atualizados depois da
+     * gravação do diário. Uma falha nos segmentos não desfaz nem interrompe
+     * a gravação: os segmentos são marcados para serem recriados a partir
+     * do diário na próxima leitura por período.
+     * </p>
+     */
+    @Override
+    public synchronized void anexarMovimentos(Collection<MovimentoEstoque> movimentos) throws IOException {
+
+        Durabilidade nivel = durabilidade;
+        Files.createDirectories(diretorio);
+        long completo;
+
+        try (FileChannel ch = FileChannel.open(arquivoMovimentos,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            // descarta a linha incompleta de uma gravação interrompida, que
+            // de outro modo seria emendada ao primeiro movimento do lote
+            completo = fimDasLinhasCompletas(ch);
+            if (completo < ch.size()) ch.truncate(completo);
+            ch.position(completo);
+
+            StringBuilder sb = new StringBuilder();
+            for (MovimentoEstoque m : movimentos) {
+                sb.append(DataStore.formatMovement(m)).append(System.lineSeparator());
+
+                if (nivel == Durabilidade.POR_COMMIT) {
+                    escreverTudo(ch, sb);
+                    ch.force(false);
+                    sb.setLength(0);
+                }
+            }
+
+            if (sb.length() > 0) escreverTudo(ch, sb);
+            if (nivel == Durabilidade.POR_LOTE) ch.force(false);
+        }
+
+        SegmentosMovimento s = segmentos;
+        if (s != null && !segmentosDesatualizados) {
+            try {
+                s.anexar(movimentos, posicoes(movimentos, completo), nivel != Durabilidade.BUFFER_SO);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                segmentosDesatualizados = true;
+            }
+        }
+    }
+
+    /**
+     * Substitui o arquivo de movimentações de forma atômica e, com o
+     * particionamento ativo, recria os segmentos.
+     */
+    @Override
+    public synchronized void salvarMovimentos(Collection<MovimentoEstoque> movimentos) {
+        try {
+            substituirArquivo(arquivoMovimentos, tmp -> {
+                try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                    for (MovimentoEstoque m : movimentos) {
+                        w.write(DataStore.formatMovement(m));
+                        w.newLine();
+                    }
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        SegmentosMovimento s = segmentos;
+        if (s != null) reconstruir(s, movimentos, posicoes(movimentos, 0));
+    }
+
+    /**
+     * Recria os segmentos com os movimentos informados, marcando-os como
+     * desatualizados se a gravação falhar.
+     */
+    private synchronized void reconstruir(SegmentosMovimento s, Collection<MovimentoEstoque> movimentos,
+                                          long[] posicoes) {
+        try {
+            s.reconstruir(movimentos, posicoes);
+            segmentosDesatualizados = false;
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            segmentosDesatualizados = true;
+        }
+    }
+
+    /**
+     * Recria os segmentos a partir das linhas completas do diário,
+     * registrando a posição em bytes de cada linha.
+     *
+     * @return quantidade de movimentos distribuídos nos segmentos
+     */
+    private synchronized int reconstruirDoDiario(SegmentosMovimento s, Map<String, Produto> indice) {
+        List<MovimentoEstoque> movimentos = new ArrayList<>();
+        long[] posicoes = new long[64];
+
+        try (InputStream in = new BufferedInputStream(
+                new TrechoInputStream(Files.newInputStream(arquivoMovimentos), tamanhoDiario()))) {
+
+            ByteArrayOutputStream linha = new ByteArrayOutputStream();
+            long posicao = 0;
+            long inicioLinha = 0;
+            int b;
+            while ((b = in.read()) >= 0) {
+                posicao++;
+                if (b != '\n') {
+                    linha.write(b);
+                    continue;
+                }
+
+                String texto = linha.toString(StandardCharsets.UTF_8);
+                if (texto.endsWith("\r")) texto = texto.substring(0, texto.length() - 1);
+                linha.reset();
+                if (!texto.isBlank()) {
+                    MovimentoEstoque m;
+                    try {
+                        m = DataStore.parseMovement(texto, indice);
+                    } catch (RuntimeException e) {
+                        m = null;
+                    }
+                    if (m != null) {
+                        if (movimentos.size() == posicoes.length)
+                            posicoes = Arrays.copyOf(posicoes, posicoes.length * 2);
+                        posicoes[movimentos.size()] = inicioLinha;
+                        movimentos.add(m);
+                    }
+                }
+                inicioLinha = posicao;
+            }
+        } catch (NoSuchFileException e) {
+            // diário ainda não criado: os segmentos ficam vazios
+        } catch (IOException e) {
+            e.printStackTrace();
+            segmentosDesatualizados = true;
+            return 0;
+        }
+
+        reconstruir(s, movimentos, posicoes);
+        return movimentos.size();
+    }
+
+    /**
+     * Calcula a posição em bytes que cada movimento ocupa no diário quando
+     * gravado, a partir da posição do primeiro.
+     */
+    private static long[] posicoes(Collection<MovimentoEstoque> movimentos, long inicio) {
+        long[] posicoes = new long[movimentos.size()];
+        int i = 0;
+        for (MovimentoEstoque m : movimentos) {
+            posicoes[i++] = inicio;
+            String linha = DataStore.formatMovement(m) + System.lineSeparator();
+            inicio += linha.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return posicoes;
+    }
+
+    /**
+     * Obtém a posição seguinte à última quebra de linha do arquivo, isto é,
+     * o fim do trecho formado por linhas completas.
+     *
+     * @return posição em bytes, ou 0 se o arquivo não tiver nenhuma linha completa
+     */
+    private static long fimDasLinhasCompletas(FileChannel ch) throws IOException {
+        long fim = ch.size();
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+
+        while (fim > 0) {
+            int n = (int) Math.min(buf.capacity(), fim);
+            buf.clear().limit(n);
+            long inicio = fim - n;
+            while (buf.hasRemaining())
+                if (ch.read(buf, inicio + buf.position()) < 0) throw new EOFException();
+
+            for (int i = n - 1; i >= 0; i--)
+                if (buf.get(i) == '\n') return inicio + i + 1;
+            fim = inicio;
+        }
+        return 0;
+    }
+
+    /**
+     * Grava todo o conteúdo do texto no canal, em UTF-8.
+     */
+    private static void escreverTudo(FileChannel ch, CharSequence texto) throws IOException {
+        ByteBuffer buf = StandardCharsets.UTF_8.encode(CharBuffer.wrap(texto));
+        while (buf.hasRemaining()) ch.write(buf);
+    }
+
+    /**
+     * Fluxo de entrada que limita a leitura a uma quantidade fixa de bytes,
+     * usado para ler apenas um trecho do arquivo de movimentações.
+     */
+    private static final class TrechoInputStream extends FilterInputStream {
+
+        /** Quantidade de bytes que ainda podem ser lidos. */
+        private long restante;
+
+        TrechoInputStream(InputStream in, long limite) {
+            super(in);
+            this.restante = limite;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (restante <= 0) return -1;
+            int b = super.read();
+            if (b >= 0) restante--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (restante <= 0) return -1;
+            int n = super.read(b, off, (int) Math.min(len, restante));
+            if (n > 0) restante -= n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package persistence;
+
+import model.Centavos;
+import model.MovimentoEstoque;
+import model.Produto;
+
+import java.util.*;
+
+/**
+ * Armazenamento mantido apenas em memória, sem acesso a disco.
+ * <p>
+ * Destina-se a testes e medições do controle de estoque isoladas do custo
+ * de entrada e saída. O comportamento é o mesmo dos armazenamentos em
+ * arquivo: o checkpoint guarda uma cópia dos produtos, e a carga devolve
+ * movimentos relacionados aos produtos do índice informado. As posições
+ * do diário correspondem à quantidade de movimentos registrados.
+ * </p>
+ *
+ * @author GustavoVirges
+ */
+public class ArmazenamentoMemoria implements Armazenamento {
+
+    /** Diário de movimentações, na ordem de registro. */
+    private final List<MovimentoEstoque> diario = new ArrayList<>();
+
+    /** Cópia dos produtos gravada no último checkpoint. */
+    private List<Produto> produtos = new ArrayList<>();
+
+    /** Posição do diário coberta pelo último checkpoint. */
+    private long offset = Checkpoint.SEM_OFFSET;
+
+    @Override
+    public synchronized Checkpoint carregarCheckpoint() {
+        return new Checkpoint(copiar(produtos), offset);
+    }
+
+    @Override
+    public synchronized void salvarCheckpoint(Collection<Produto> produtos) {
+        this.produtos = copiar(produtos);
+        this.offset = diario.size();
+    }
+
+    @Override
+    public synchronized long tamanhoDiario() {
+        return diario.size();
+    }
+
+    /**
+     * Carrega os movimentos de um trecho do diário.
+     * <p>
+     * Os movimentos cujo produto não é o mesmo objeto do índice são recriados
+     * com o produto do índice, como ocorreria na leitura de um arquivo.
+     * </p>
+     */
+    @Override
+    public synchronized List<MovimentoEstoque> carregarMovimentos(Map<String, Produto> indice,
+                                                                  long inicio, long fim) {
+        int de = (int) Math.max(0, Math.min(inicio, diario.size()));
+        int ate = (int) Math.max(de, Math.min(fim, diario.size()));
+
+        List<MovimentoEstoque> list = new ArrayList<>(ate - de);
+        for (MovimentoEstoque m : diario.subList(de, ate)) {
+            Produto p = indice.get(m.getProduto().getCodigo());
+            if (p == null) continue;
+
+            if (p == m.getProduto()) {
+                list.add(m);
+            } else {
+                MovimentoEstoque copia = DataStore.createMovement(DataStore.typeOf(m),
+                        m.getValorUnitarioCentavos(), m.getData(), m.getQtd(), p, DataStore.extraOf(m));
+                if (copia != null) list.add(copia);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public synchronized void anexarMovimentos(Collection<MovimentoEstoque> movimentos) {
+        diario.addAll(movimentos);
+    }
+
+    @Override
+    public synchronized void salvarMovimentos(Collection<MovimentoEstoque> movimentos) {
+        diario.clear();
+        diario.addAll(movimentos);
+    }
+
+    private static List<Produto> copiar(Collection<Produto> produtos) {
+        List<Produto> copia = new ArrayList<>(produtos.size());
+        for (Produto p : produtos)
+            copia.add(new Produto(p.getCodigo(), p.getNome(), Centavos.de(p.getValorUnitarioCentavos()),
+                    p.getQtdEstoque(), p.getCategoria()));
+        return copia;
+    }
+}
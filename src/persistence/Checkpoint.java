@@ -0,0 +1,59 @@
+package persistence;
+
+import model.Produto;
+
+import java.util.List;
+
+/**
+ * Representa um ponto de verificação (checkpoint) do estoque.
+ * <p>
+ * Um checkpoint reúne o estado dos produtos (incluindo a quantidade em
+ * estoque já com os movimentos aplicados) e a posição, em bytes, do
+ * diário de movimentações até a qual esse estado é válido.
+ * </p>
+ *
+ * <p>Na inicialização basta carregar o checkpoint e reaplicar somente os
+ * movimentos gravados depois de {@link #getOffset()}, em vez de todo o
+ * histórico.</p>
+ *
+ * @author GustavoVirges
+ */
+public class Checkpoint {
+
+    /** Valor de offset usado quando o arquivo não possui cabeçalho de checkpoint. */
+    public static final long SEM_OFFSET = -1;
+
+    /** Produtos no estado registrado pelo checkpoint. */
+    private final List<Produto> produtos;
+
+    /** Posição do diário de movimentações coberta pelo checkpoint. */
+    private final long offset;
+
+    /**
+     * Constrói um checkpoint com os produtos e o offset informados.
+     *
+     * @param produtos produtos no estado do checkpoint
+     * @param offset   posição do diário coberta, ou {@link #SEM_OFFSET}
+     */
+    public Checkpoint(List<Produto> produtos, long offset) {
+        this.produtos = produtos;
+        this.offset = offset;
+    }
+
+    /** @return produtos no estado do checkpoint */
+    public List<Produto> getProdutos() { return produtos; }
+
+    /** @return posição do diário coberta pelo checkpoint, ou {@link #SEM_OFFSET} */
+    public long getOffset() { return offset; }
+
+    /**
+     * Indica se o checkpoint registra a posição do diário que cobre.
+     * <p>
+     * Arquivos gravados por versões anteriores não possuem essa informação;
+     * neles a quantidade em estoque já reflete todo o diário existente.
+     * </p>
+     *
+     * @return {@code true} se o offset é conhecido
+     */
+    public boolean possuiOffset() { return offset != SEM_OFFSET; }
+}
@@ -0,0 +1,460 @@
+package persistence;
+
+import model.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Codificador do arquivo de movimentações em formato binário compacto.
+ * <p>
+ * Cada movimento ocupa um registro de tamanho fixo ({@value #TAMANHO_REGISTRO} bytes):
+ * </p>
+ * <pre>
+ * tipo      byte   (0=ENTRADA, 1=VENDA, 2=USO, 3=DEVOLUCAO, 4=OUTRA)
+ * segundos  long   (segundos desde 1970-01-01T00:00, sem fuso)
+ * nanos     int    (fração de segundo da data)
+ * qtd       int
+ * valor     long   (valor unitário em centavos)
+ * produto   int    (posição do código do produto no dicionário)
+ * extra     int    (posição do campo adicional no dicionário)
+ * </pre>
+ *
+ * <p>Os campos de tamanho variável (código do produto e nomes de clientes,
+ * fornecedores, destinos e motivos) ficam em um arquivo de dicionário à
+ * parte, gravado uma única vez por valor distinto. Na leitura, cada
+ * entrada do dicionário é resolvida uma só vez, e os registros são
+ * percorridos diretamente sobre o arquivo mapeado em memória.</p>
+ *
+ * <p>O cabeçalho do arquivo de registros informa o tamanho dos registros.
+ * Arquivos gravados antes da adoção dos valores em centavos, com o valor
+ * unitário em {@code float} e registros de {@value #TAMANHO_REGISTRO_FLOAT}
+ * bytes, continuam sendo lidos, e os acréscimos a eles mantêm esse formato
+ * para preservar as posições do diário; a regravação completa do arquivo
+ * usa sempre o formato atual.</p>
+ *
+ * @author GustavoVirges
+ */
+final class CodecBinario {
+
+    /** Identificador do arquivo de registros ("LMV1"). */
+    private static final int MAGICO_DADOS = 0x4C4D5631;
+
+    /** Identificador do arquivo de dicionário ("LMD1"). */
+    private static final int MAGICO_DICIONARIO = 0x4C4D4431;
+
+    /** Tamanho do cabeçalho do arquivo de registros: identificador e tamanho do registro. */
+    private static final int TAMANHO_CABECALHO = 8;
+
+    /** Tamanho, em bytes, de cada registro de movimento. */
+    static final int TAMANHO_REGISTRO = 33;
+
+    /** Tamanho dos registros do formato anterior, com o valor em {@code float}. */
+    static final int TAMANHO_REGISTRO_FLOAT = 29;
+
+    /** Quantidade de registros lidos por janela mapeada. */
+    private static final int REGISTROS_POR_JANELA = 1 << 22;
+
+    /** Nomes dos tipos de movimento, na ordem do byte de tipo. */
+    private static final String[] TIPOS = {"ENTRADA", "VENDA", "USO", "DEVOLUCAO", "OUTRA"};
+
+    private CodecBinario() {}
+
+    /**
+     * Inclui no dicionário os textos dos movimentos ainda não registrados,
+     * nas mesmas posições que {@link #gravarRegistros(Path, Collection, Map)}
+     * atribuiria, para que o dicionário possa ser gravado antes dos registros.
+     *
+     * @param entradas   dicionário, atualizado com os novos textos
+     * @param movimentos movimentos cujos textos são incluídos
+     */
+    static void registrarEntradas(Map<String, Integer> entradas, Collection<MovimentoEstoque> movimentos) {
+        for (MovimentoEstoque m : movimentos) {
+            if (codigoTipo(DataStore.typeOf(m)) < 0) continue;
+            entrada(entradas, m.getProduto().getCodigo());
+            entrada(entradas, DataStore.extraOf(m));
+        }
+    }
+
+    /**
+     * Grava os registros dos movimentos no formato binário.
+     * <p>
+     * Os campos de tamanho variável são procurados no dicionário informado,
+     * e os ausentes são incluídos nele; o dicionário deve ser gravado com
+     * {@link #gravarDicionario(Path, Collection)}.
+     * </p>
+     *
+     * @param dados      arquivo de registros
+     * @param movimentos movimentos a serem gravados
+     * @param entradas   dicionário, com o texto vazio na posição 0
+     * @throws IOException se o arquivo não puder ser gravado
+     */
+    static void gravarRegistros(Path dados, Collection<MovimentoEstoque> movimentos,
+                                Map<String, Integer> entradas) throws IOException {
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(dados), 1 << 16))) {
+
+            out.writeInt(MAGICO_DADOS);
+            out.writeInt(TAMANHO_REGISTRO);
+
+            for (MovimentoEstoque m : movimentos) {
+                int tipo = codigoTipo(DataStore.typeOf(m));
+                if (tipo < 0) continue;
+
+                LocalDateTime data = m.getData();
+
+                out.writeByte(tipo);
+                out.writeLong(data.toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(data.getNano());
+                out.writeInt(m.getQtd());
+                out.writeLong(m.getValorUnitarioCentavos());
+                out.writeInt(entrada(entradas, m.getProduto().getCodigo()));
+                out.writeInt(entrada(entradas, DataStore.extraOf(m)));
+            }
+        }
+    }
+
+    /**
+     * Grava o arquivo de dicionário.
+     *
+     * @param dicionario arquivo de dicionário
+     * @param entradas   entradas, na ordem de suas posições
+     * @throws IOException se o arquivo não puder ser gravado
+     */
+    static void gravarDicionario(Path dicionario, Collection<String> entradas) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(dicionario), 1 << 16))) {
+
+            out.writeInt(MAGICO_DICIONARIO);
+            out.writeInt(entradas.size());
+            for (String valor : entradas) out.writeUTF(valor);
+        }
+    }
+
+    /**
+     * Acrescenta registros ao final dos arquivos binários, incluindo no
+     * dicionário apenas os textos ainda não registrados.
+     * <p>
+     * As novas entradas do dicionário são gravadas antes dos registros que
+     * as referenciam, e a quantidade de entradas no cabeçalho do dicionário
+     * é atualizada no próprio arquivo. Arquivos inexistentes são criados
+     * com seus cabeçalhos.
+     * </p>
+     *
+     * <p>Restos de um acréscimo interrompido são descartados antes da
+     * gravação: as entradas do dicionário além das contadas no cabeçalho e
+     * o registro incompleto ao final do arquivo de registros.</p>
+     *
+     * @param dados      arquivo de registros
+     * @param dicionario arquivo de dicionário
+     * @param entradas   dicionário atual (ver {@link #carregarEntradas(Path)}),
+     *                   atualizado com os novos textos
+     * @param fimEntradas posição do fim das entradas contadas do dicionário
+     *                   (ver {@link #fimDasEntradas(Collection)})
+     * @param movimentos movimentos a serem acrescentados
+     * @param forcar     se os arquivos devem ser forçados para o disco
+     * @return posição do fim das entradas contadas após o acréscimo
+     * @throws IOException se os arquivos não puderem ser gravados
+     */
+    static long anexar(Path dados, Path dicionario, Map<String, Integer> entradas, long fimEntradas,
+                       Collection<MovimentoEstoque> movimentos, boolean forcar) throws IOException {
+
+        int anteriores = entradas.size();
+        int tamanho = tamanhoRegistro(dados);
+        ByteBuffer registros = ByteBuffer.allocate(movimentos.size() * tamanho);
+
+        for (MovimentoEstoque m : movimentos) {
+            int tipo = codigoTipo(DataStore.typeOf(m));
+            if (tipo < 0) continue;
+
+            LocalDateTime data = m.getData();
+
+            registros.put((byte) tipo);
+            registros.putLong(data.toEpochSecond(ZoneOffset.UTC));
+            registros.putInt(data.getNano());
+            registros.putInt(m.getQtd());
+            if (tamanho == TAMANHO_REGISTRO) registros.putLong(m.getValorUnitarioCentavos());
+            else registros.putFloat((float) Centavos.emReais(m.getValorUnitarioCentavos()));
+            registros.putInt(entrada(entradas, m.getProduto().getCodigo()));
+            registros.putInt(entrada(entradas, DataStore.extraOf(m)));
+        }
+        registros.flip();
+
+        try (FileChannel ch = FileChannel.open(dicionario, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            long pos = fimEntradas;
+            if (ch.size() < 8) {
+                escrever(ch, ByteBuffer.allocate(8).putInt(MAGICO_DICIONARIO).putInt(0).flip(), 0);
+                pos = 8;
+                anteriores = 0;
+            }
+            // entradas gravadas por um acréscimo cuja contagem não chegou ao cabeçalho
+            if (ch.size() > pos) ch.truncate(pos);
+
+            if (entradas.size() > anteriores) {
+                ByteArrayOutputStream novas = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(novas);
+                int i = 0;
+                for (String valor : entradas.keySet())
+                    if (i++ >= anteriores) out.writeUTF(valor);
+
+                escrever(ch, ByteBuffer.wrap(novas.toByteArray()), pos);
+                escrever(ch, ByteBuffer.allocate(4).putInt(entradas.size()).flip(), 4);
+                if (forcar) ch.force(false);
+                pos += novas.size();
+            }
+            fimEntradas = pos;
+        }
+
+        try (FileChannel ch = FileChannel.open(dados, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            long pos;
+            if (ch.size() < TAMANHO_CABECALHO) {
+                escrever(ch, ByteBuffer.allocate(TAMANHO_CABECALHO)
+                        .putInt(MAGICO_DADOS).putInt(TAMANHO_REGISTRO).flip(), 0);
+                pos = TAMANHO_CABECALHO;
+            } else {
+                pos = fimDosRegistros(ch.size(), tamanho);
+            }
+            // um registro incompleto desalinharia todos os registros seguintes
+            if (ch.size() > pos) ch.truncate(pos);
+
+            escrever(ch, registros, pos);
+            if (forcar) ch.force(false);
+        }
+        return fimEntradas;
+    }
+
+    /**
+     * Obtém o tamanho do trecho do arquivo de registros formado por
+     * registros completos, que é a posição em que o próximo acréscimo começa.
+     *
+     * @param dados arquivo de registros
+     * @return posição do fim do último registro completo, ou 0 se o arquivo
+     *         não existir ou não tiver cabeçalho completo
+     * @throws IOException se o arquivo for inválido
+     */
+    static long fimDosRegistros(Path dados) throws IOException {
+        if (!Files.exists(dados)) return 0;
+
+        try (FileChannel ch = FileChannel.open(dados, StandardOpenOption.READ)) {
+            if (ch.size() < TAMANHO_CABECALHO) return 0;
+
+            int tamanho = lerCabecalho(ch.map(FileChannel.MapMode.READ_ONLY, 0, TAMANHO_CABECALHO), dados);
+            return fimDosRegistros(ch.size(), tamanho);
+        }
+    }
+
+    private static long fimDosRegistros(long tamanhoArquivo, int tamanho) {
+        return TAMANHO_CABECALHO + (tamanhoArquivo - TAMANHO_CABECALHO) / tamanho * tamanho;
+    }
+
+    /**
+     * Obtém a posição, no arquivo de dicionário, do fim das entradas
+     * informadas, como gravadas por {@link #gravarDicionario(Path, Collection)}.
+     *
+     * @param entradas entradas do dicionário, na ordem de suas posições
+     * @return posição em que a próxima entrada deve ser gravada
+     */
+    static long fimDasEntradas(Collection<String> entradas) {
+        long fim = 8;
+        for (String valor : entradas) {
+            fim += 2;
+            for (int i = 0; i < valor.length(); i++) {
+                char c = valor.charAt(i);
+                // UTF-8 modificado de DataOutput.writeUTF
+                fim += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+            }
+        }
+        return fim;
+    }
+
+    /**
+     * Carrega o dicionário gravado para que novos registros possam ser
+     * acrescentados com {@link #anexar(Path, Path, Map, Collection, boolean)}.
+     *
+     * @param dicionario arquivo de dicionário
+     * @return textos mapeados para suas posições; contém apenas o texto vazio
+     *         se o arquivo não existir
+     * @throws IOException se o arquivo não puder ser lido ou for inválido
+     */
+    static Map<String, Integer> carregarEntradas(Path dicionario) throws IOException {
+        Map<String, Integer> entradas = new LinkedHashMap<>();
+        if (!Files.exists(dicionario)) {
+            entradas.put("", 0);
+            return entradas;
+        }
+
+        for (String valor : lerDicionario(dicionario)) entradas.putIfAbsent(valor, entradas.size());
+        return entradas;
+    }
+
+    /**
+     * Lê os movimentos gravados no formato binário.
+     *
+     * @param dados      arquivo de registros
+     * @param dicionario arquivo de dicionário
+     * @param indice     produtos indexados pelo código
+     * @return movimentos na ordem em que foram gravados
+     * @throws IOException se os arquivos não puderem ser lidos ou forem inválidos
+     * @see #ler(Path, Path, Map, long, long)
+     */
+    static List<MovimentoEstoque> ler(Path dados, Path dicionario, Map<String, Produto> indice)
+            throws IOException {
+        return ler(dados, dicionario, indice, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Lê os movimentos gravados em um trecho do arquivo binário.
+     * <p>
+     * As posições são dadas em bytes do arquivo de registros, como as
+     * devolvidas pelo tamanho do arquivo após cada acréscimo. Registros cujo
+     * produto não consta no índice são ignorados, como na leitura do arquivo CSV.
+     * </p>
+     *
+     * @param dados      arquivo de registros
+     * @param dicionario arquivo de dicionário
+     * @param indice     produtos indexados pelo código
+     * @param inicio     posição inicial (inclusiva) do trecho
+     * @param fim        posição final (exclusiva) do trecho
+     * @return movimentos do trecho, na ordem em que foram gravados
+     * @throws IOException se os arquivos não puderem ser lidos ou forem inválidos
+     */
+    static List<MovimentoEstoque> ler(Path dados, Path dicionario, Map<String, Produto> indice,
+                                      long inicio, long fim) throws IOException {
+
+        String[] textos = lerDicionario(dicionario);
+
+        Produto[] produtos = new Produto[textos.length];
+        for (int i = 0; i < textos.length; i++) produtos[i] = indice.get(textos[i]);
+
+        try (FileChannel ch = FileChannel.open(dados, StandardOpenOption.READ)) {
+
+            if (ch.size() < TAMANHO_CABECALHO)
+                throw new IOException("Arquivo de movimentações binário inválido: " + dados);
+
+            int tamanho = lerCabecalho(ch.map(FileChannel.MapMode.READ_ONLY, 0, TAMANHO_CABECALHO), dados);
+            boolean centavos = tamanho == TAMANHO_REGISTRO;
+
+            long primeiro = (Math.max(inicio, TAMANHO_CABECALHO) - TAMANHO_CABECALHO
+                    + tamanho - 1) / tamanho;
+            long ultimo = (Math.min(fim, ch.size()) - TAMANHO_CABECALHO) / tamanho;
+            long registros = Math.max(0, ultimo - primeiro);
+
+            List<MovimentoEstoque> list = new ArrayList<>((int) Math.min(registros, Integer.MAX_VALUE - 8));
+
+            for (long lido = 0; lido < registros; ) {
+                int qtdJanela = (int) Math.min(REGISTROS_POR_JANELA, registros - lido);
+                ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY,
+                        TAMANHO_CABECALHO + (primeiro + lido) * tamanho,
+                        (long) qtdJanela * tamanho);
+
+                for (int r = 0; r < qtdJanela; r++) {
+                    int tipo = buf.get();
+                    long segundos = buf.getLong();
+                    int nanos = buf.getInt();
+                    int qtd = buf.getInt();
+                    long valor = centavos ? buf.getLong() : Centavos.arredondar(buf.getFloat());
+                    int produto = buf.getInt();
+                    int extra = buf.getInt();
+
+                    if (tipo < 0 || tipo >= TIPOS.length) continue;
+                    if (produto < 0 || produto >= produtos.length || produtos[produto] == null) continue;
+
+                    LocalDateTime data = LocalDateTime.ofEpochSecond(segundos, nanos, ZoneOffset.UTC);
+                    String textoExtra = extra >= 0 && extra < textos.length ? textos[extra] : "";
+
+                    MovimentoEstoque m = DataStore.createMovement(
+                            TIPOS[tipo], valor, data, qtd, produtos[produto], textoExtra);
+                    if (m != null) list.add(m);
+                }
+                lido += qtdJanela;
+            }
+            return list;
+        }
+    }
+
+    /**
+     * Obtém o tamanho dos registros de um arquivo de registros existente.
+     *
+     * @return tamanho informado no cabeçalho, ou {@link #TAMANHO_REGISTRO}
+     *         se o arquivo ainda não tiver cabeçalho
+     * @throws IOException se o arquivo for inválido
+     */
+    private static int tamanhoRegistro(Path dados) throws IOException {
+        if (!Files.exists(dados)) return TAMANHO_REGISTRO;
+
+        try (FileChannel ch = FileChannel.open(dados, StandardOpenOption.READ)) {
+            if (ch.size() < TAMANHO_CABECALHO) return TAMANHO_REGISTRO;
+
+            return lerCabecalho(ch.map(FileChannel.MapMode.READ_ONLY, 0, TAMANHO_CABECALHO), dados);
+        }
+    }
+
+    /**
+     * Valida o cabeçalho do arquivo de registros.
+     *
+     * @return tamanho dos registros do arquivo
+     * @throws IOException se o identificador ou o tamanho forem inválidos
+     */
+    private static int lerCabecalho(ByteBuffer cabecalho, Path dados) throws IOException {
+        int magico = cabecalho.getInt();
+        int tamanho = cabecalho.getInt();
+        if (magico != MAGICO_DADOS || (tamanho != TAMANHO_REGISTRO && tamanho != TAMANHO_REGISTRO_FLOAT))
+            throw new IOException("Arquivo de movimentações binário inválido: " + dados);
+        return tamanho;
+    }
+
+    /**
+     * Lê as entradas do arquivo de dicionário, na ordem de suas posições.
+     */
+    private static String[] lerDicionario(Path dicionario) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(dicionario), 1 << 16))) {
+
+            if (in.readInt() != MAGICO_DICIONARIO)
+                throw new IOException("Dicionário de movimentações inválido: " + dicionario);
+
+            String[] textos = new String[in.readInt()];
+            for (int i = 0; i < textos.length; i++) textos[i] = in.readUTF();
+            return textos;
+
+        } catch (EOFException e) {
+            throw new IOException("Dicionário de movimentações incompleto: " + dicionario, e);
+        }
+    }
+
+    private static void escrever(FileChannel ch, ByteBuffer buf, long posicao) throws IOException {
+        while (buf.hasRemaining()) posicao += ch.write(buf, posicao);
+    }
+
+    /** @return valor do byte de tipo para o nome informado, ou -1 */
+    private static int codigoTipo(String tipo) {
+        for (int i = 0; i < TIPOS.length; i++)
+            if (TIPOS[i].equals(tipo)) return i;
+        return -1;
+    }
+
+    /**
+     * Obtém a posição do texto no dicionário, incluindo-o se ainda não existir.
+     */
+    private static int entrada(Map<String, Integer> entradas, String texto) {
+        String chave = texto == null ? "" : texto;
+        Integer pos = entradas.get(chave);
+        if (pos == null) {
+            pos = entradas.size();
+            entradas.put(chave, pos);
+        }
+        return pos;
+    }
+}
@@ -2,12 +2,13 @@ package persistence;
 
 import model.*;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Classe responsável por realizar toda a leitura e escrita dos arquivos
@@ -21,6 +22,10 @@ import java.util.*;
  * produtos e movimentações, garantindo que o sistema funcione mesmo após
  * ser fechado e reaberto.</p>
  *
+ * <p>Os métodos delegam ao armazenamento padrão ({@link #defaultStorage()});
+ * outros meios de armazenamento podem ser injetados no controle de estoque
+ * por meio da interface {@link Armazenamento}.</p>
+ *
  * @author GustavoVirges
  */
 public class DataStore {
@@ -28,27 +33,25 @@ public class DataStore {
     /** Diretório onde os arquivos de dados são armazenados. */
     private static final Path DATA_DIR = Paths.get("data");
 
-    /** Arquivo CSV que armazena os produtos. */
-    private static final Path PRODUCTS_FILE = DATA_DIR.resolve("products.csv");
+    /** Armazenamento padrão, em arquivos CSV na pasta de dados. */
+    private static final ArmazenamentoCsv PADRAO = new ArmazenamentoCsv(DATA_DIR);
 
-    /** Arquivo CSV que armazena as movimentações de estoque. */
-    private static final Path MOVEMENTS_FILE = DATA_DIR.resolve("movements.csv");
+    /** Arquivos binários de movimentações na pasta de dados, usados nas conversões. */
+    private static final ArmazenamentoBinario BINARIO = new ArmazenamentoBinario(DATA_DIR);
 
     /** Formato padrão utilizado para salvar e ler datas. */
     private static final DateTimeFormatter FMT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
     /**
-     * Bloco estático responsável por garantir que os arquivos e diretórios
-     * necessários existam. Caso não existam, são criados automaticamente.
+     * Obtém o armazenamento padrão da aplicação, usado pelos métodos desta
+     * classe e pelo {@link model.ControleEstoque} criado sem armazenamento
+     * explícito. O diretório <b>data/</b> e seus arquivos são criados na
+     * primeira gravação.
+     *
+     * @return armazenamento CSV na pasta <b>data/</b>
      */
-    static {
-        try {
-            if (!Files.exists(DATA_DIR)) Files.createDirectories(DATA_DIR);
-            if (!Files.exists(PRODUCTS_FILE)) Files.createFile(PRODUCTS_FILE);
-            if (!Files.exists(MOVEMENTS_FILE)) Files.createFile(MOVEMENTS_FILE);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    public static ArmazenamentoCsv defaultStorage() {
+        return PADRAO;
     }
 
     /**
@@ -61,188 +64,494 @@ public class DataStore {
      * @return lista de produtos carregados
      */
     public static List<Produto> loadProducts() {
-        List<Produto> list = new ArrayList<>();
-        try (BufferedReader r = Files.newBufferedReader(PRODUCTS_FILE, StandardCharsets.UTF_8)) {
-
-            String line;
-            while ((line = r.readLine()) != null) {
-
-                if (line.isBlank()) continue;
-
-                String[] parts = line.split(";", -1);
-
-                String codigo = parts[0];
-                String nome = parts[1];
-                float valor = Float.parseFloat(parts[2]);
-                int qtd = Integer.parseInt(parts[3]);
-                Categoria cat = Categoria.valueOf(parts[4]);
+        return loadCheckpoint().getProdutos();
+    }
 
-                Produto p = new Produto(codigo, nome, valor, qtd, cat);
-                list.add(p);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return list;
+    /**
+     * Carrega o checkpoint gravado no arquivo de produtos.
+     * <p>
+     * A primeira linha do arquivo pode conter o cabeçalho
+     * <code>#checkpoint;offset</code>, indicando até qual posição (em bytes)
+     * do arquivo de movimentações a quantidade em estoque dos produtos
+     * já está atualizada. As demais linhas seguem o formato de
+     * {@link #loadProducts()}.
+     * </p>
+     *
+     * @return checkpoint contendo os produtos e o offset do diário
+     */
+    public static Checkpoint loadCheckpoint() {
+        return PADRAO.carregarCheckpoint();
     }
 
     /**
      * Salva todos os produtos no arquivo CSV.
+     * <p>
+     * A gravação funciona como um checkpoint: o cabeçalho registra o tamanho
+     * atual do arquivo de movimentações, indicando que a quantidade em estoque
+     * gravada já considera todos os movimentos existentes até aqui.
+     * </p>
+     *
+     * <p>O arquivo é substituído de forma atômica, conforme a
+     * {@link Durabilidade} configurada.</p>
      *
      * @param produtos coleção de produtos a serem gravados
      */
     public static void saveProducts(Collection<Produto> produtos) {
-        try (BufferedWriter w = Files.newBufferedWriter(
-                PRODUCTS_FILE, StandardCharsets.UTF_8, StandardOpenOption.TRUNCATE_EXISTING)) {
-
-            for (Produto p : produtos) {
-                String line = String.join(";",
-                        p.getCodigo(),
-                        p.getNome(),
-                        String.valueOf(p.getValorUnitario()),
-                        String.valueOf(p.getQtdEstoque()),
-                        p.getCategoria().name());
-                w.write(line);
-                w.newLine();
-            }
+        PADRAO.salvarCheckpoint(produtos);
+    }
 
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    /**
+     * Define se os arquivos devem ser lidos por mapeamento em memória.
+     * <p>
+     * Nesse modo os delimitadores são localizados diretamente nos bytes do
+     * arquivo e números e datas são interpretados sem Strings intermediárias,
+     * reduzindo a criação de objetos temporários na carga de arquivos grandes.
+     * O resultado da leitura é o mesmo do modo convencional.
+     * </p>
+     *
+     * @param ativo {@code true} para usar a leitura mapeada
+     */
+    public static void setMappedReading(boolean ativo) {
+        PADRAO.setLeituraMapeada(ativo);
+        BINARIO.setLeituraMapeada(ativo);
     }
 
     /**
-     * Carrega todas as movimentações registradas no arquivo CSV.
+     * Indica se a leitura por mapeamento em memória está ativa.
+     *
+     * @return {@code true} se a leitura mapeada estiver ativa
+     */
+    public static boolean isMappedReading() {
+        return PADRAO.isLeituraMapeada();
+    }
+
+    /**
+     * Define se o arquivo de movimentações deve ser lido em paralelo.
      * <p>
-     * O formato é:
-     * <br><code>tipo;valorUnitario;data;qtd;produtoCodigo;extra</code>
+     * O arquivo é dividido em trechos alinhados ao início das linhas, que são
+     * interpretados simultaneamente pela leitura mapeada no {@link ForkJoinPool}
+     * comum. Os movimentos são devolvidos na ordem original do arquivo, de modo
+     * que a reaplicação no {@code ControleEstoque} continua determinística.
+     * Arquivos pequenos são lidos em uma única parte.
      * </p>
      *
-     * @param produtos lista de produtos usados para relacionar as movimentações
-     * @return lista de movimentos de estoque
+     * @param ativo {@code true} para ler as movimentações em paralelo
      */
-    public static List<MovimentoEstoque> loadMovements(List<Produto> produtos) {
+    public static void setParallelLoading(boolean ativo) {
+        PADRAO.setCarregamentoParalelo(ativo);
+    }
 
-        List<MovimentoEstoque> list = new ArrayList<>();
+    /**
+     * Indica se a leitura paralela das movimentações está ativa.
+     *
+     * @return {@code true} se a leitura paralela estiver ativa
+     */
+    public static boolean isParallelLoading() {
+        return PADRAO.isCarregamentoParalelo();
+    }
 
-        try (BufferedReader r = Files.newBufferedReader(MOVEMENTS_FILE, StandardCharsets.UTF_8)) {
+    /**
+     * Define o nível de durabilidade das gravações.
+     * <p>
+     * O padrão é {@link Durabilidade#BUFFER_SO}, que mantém a vazão de gravação
+     * anterior; instalações que não toleram perda de movimentos em quedas de
+     * energia devem usar {@link Durabilidade#POR_LOTE} (combinado com a gravação
+     * assíncrona em lotes) ou {@link Durabilidade#POR_COMMIT}.
+     * </p>
+     *
+     * @param nivel nível de durabilidade
+     */
+    public static void setDurability(Durabilidade nivel) {
+        PADRAO.setDurabilidade(nivel);
+        BINARIO.setDurabilidade(nivel);
+    }
 
-            String line;
-            while ((line = r.readLine()) != null) {
+    /**
+     * Obtém o nível de durabilidade das gravações.
+     *
+     * @return nível de durabilidade configurado
+     */
+    public static Durabilidade getDurability() {
+        return PADRAO.getDurabilidade();
+    }
 
-                if (line.isBlank()) continue;
+    /**
+     * Ativa ou desativa o particionamento das movimentações por período.
+     * <p>
+     * Com o particionamento ativo, cada movimento gravado no diário também é
+     * acrescentado ao segmento do seu período em <b>data/segments/</b>, e as
+     * consultas de {@link #loadMovements(Map, LocalDateTime, LocalDateTime)}
+     * leem apenas os segmentos que intersectam o período pedido. O diário
+     * continua sendo a fonte usada na inicialização e nos checkpoints.
+     * </p>
+     *
+     * <p>Se ainda não houver segmentos, eles são criados a partir do diário
+     * na primeira consulta por período. Movimentos gravados enquanto o
+     * particionamento esteve desativado, depois que os segmentos já
+     * existiam, só passam a constar deles após {@link #rebuildSegments(List)}.</p>
+     *
+     * @param particao granularidade dos segmentos, ou {@code null} para desativar
+     */
+    public static void setPartitioning(Particao particao) {
+        PADRAO.setParticionamento(particao);
+    }
 
-                String[] parts = line.split(";", -1);
+    /**
+     * Obtém a granularidade do particionamento das movimentações.
+     *
+     * @return granularidade configurada, ou {@code null} se desativado
+     */
+    public static Particao getPartitioning() {
+        return PADRAO.getParticionamento();
+    }
 
-                String tipo = parts[0];
-                float valor = Float.parseFloat(parts[1]);
-                LocalDateTime data = LocalDateTime.parse(parts[2], FMT);
-                int qtd = Integer.parseInt(parts[3]);
-                String produtoCodigo = parts[4];
-                String extra = parts.length > 5 ? parts[5] : "";
+    /**
+     * Recria os segmentos por período a partir do diário de movimentações.
+     * Não tem efeito se o particionamento estiver desativado.
+     *
+     * @param produtos produtos usados para relacionar as movimentações
+     * @return quantidade de movimentos distribuídos nos segmentos
+     */
+    public static int rebuildSegments(List<Produto> produtos) {
+        return PADRAO.reconstruirSegmentos(produtos);
+    }
 
-                Produto p = produtos.stream()
-                        .filter(pp -> pp.getCodigo().equals(produtoCodigo))
-                        .findFirst().orElse(null);
+    /**
+     * Obtém a quantidade de segmentos que seriam lidos por uma consulta do
+     * período, permitindo verificar o descarte de partições.
+     *
+     * @param inicio início do período (inclusivo)
+     * @param fim    fim do período (inclusivo)
+     * @return quantidade de segmentos que intersectam o período, ou 0 se o
+     *         particionamento estiver desativado
+     */
+    public static int segmentsInRange(LocalDateTime inicio, LocalDateTime fim) {
+        return PADRAO.segmentosNoPeriodo(inicio, fim);
+    }
 
-                if (p == null) continue;
+    /**
+     * Obtém o tamanho atual, em bytes, do arquivo de movimentações.
+     *
+     * @return tamanho do diário, ou 0 se o arquivo não existir
+     */
+    public static long journalSize() {
+        return PADRAO.tamanhoDiario();
+    }
 
-                MovimentoEstoque m = null;
+    /**
+     * Carrega todas as movimentações registradas no arquivo CSV.
+     * <p>
+     * O formato é:
+     * <br><code>tipo;valorUnitario;data;qtd;produtoCodigo;extra</code>
+     * </p>
+     *
+     * <p>O arquivo funciona como um diário (journal) somente de acréscimo:
+     * linhas incompletas ou corrompidas, como a última linha de uma gravação
+     * interrompida, são ignoradas sem interromper a leitura das demais.</p>
+     *
+     * @param produtos lista de produtos usados para relacionar as movimentações
+     * @return lista de movimentos de estoque
+     */
+    public static List<MovimentoEstoque> loadMovements(List<Produto> produtos) {
+        return loadMovements(indexProducts(produtos), 0, Long.MAX_VALUE);
+    }
 
-                switch (tipo) {
-                    case "ENTRADA":
-                        Fornecedor f = extra.isEmpty() ? null : new Fornecedor(extra, "");
-                        m = new EntradaProduto(valor, data, qtd, p, f);
-                        break;
+    /**
+     * Carrega as movimentações gravadas em um trecho do arquivo de movimentações.
+     *
+     * @param produtos lista de produtos usados para relacionar as movimentações
+     * @param inicio   posição inicial (inclusiva) do trecho
+     * @param fim      posição final (exclusiva) do trecho
+     * @return lista de movimentos de estoque do trecho, na ordem do arquivo
+     * @see #loadMovements(Map, long, long)
+     */
+    public static List<MovimentoEstoque> loadMovements(List<Produto> produtos, long inicio, long fim) {
+        return loadMovements(indexProducts(produtos), inicio, fim);
+    }
 
-                    case "VENDA":
-                        Cliente c = extra.isEmpty() ? null : new Cliente(extra, "");
-                        m = new VendasClientes(valor, data, qtd, p, c);
-                        break;
+    /**
+     * Carrega as movimentações gravadas em um trecho do arquivo de movimentações.
+     * <p>
+     * As posições são dadas em bytes e devem coincidir com início de linha,
+     * como os offsets registrados em um {@link Checkpoint}. Permite, por exemplo,
+     * ler apenas a cauda do diário gravada após o último checkpoint.
+     * </p>
+     *
+     * <p>O produto de cada linha é resolvido pelo índice informado, de modo
+     * que o custo da carga cresce linearmente com o número de movimentos,
+     * independentemente do tamanho do catálogo.</p>
+     *
+     * @param indice produtos indexados pelo código (ver {@link #indexProducts(Collection)})
+     * @param inicio posição inicial (inclusiva) do trecho
+     * @param fim    posição final (exclusiva) do trecho
+     * @return lista de movimentos de estoque do trecho, na ordem do arquivo
+     */
+    public static List<MovimentoEstoque> loadMovements(Map<String, Produto> indice, long inicio, long fim) {
+        return PADRAO.carregarMovimentos(indice, inicio, fim);
+    }
 
-                    case "USO":
-                        m = new UsoInterno(valor, data, qtd, p, extra);
-                        break;
+    /**
+     * Carrega as movimentações ocorridas em um período.
+     * <p>
+     * Com o particionamento ativo (ver {@link #setPartitioning(Particao)}),
+     * apenas os segmentos cujo intervalo de datas intersecta o período são
+     * lidos; caso contrário, o diário inteiro é lido e filtrado.
+     * </p>
+     *
+     * @param indice produtos indexados pelo código
+     * @param inicio início do período (inclusivo)
+     * @param fim    fim do período (inclusivo)
+     * @return movimentos do período
+     */
+    public static List<MovimentoEstoque> loadMovements(Map<String, Produto> indice,
+                                                       LocalDateTime inicio, LocalDateTime fim) {
+        return PADRAO.carregarMovimentos(indice, inicio, fim);
+    }
 
-                    case "DEVOLUCAO":
-                        Fornecedor f2 = extra.isEmpty() ? null : new Fornecedor(extra, "");
-                        m = new DevolucaoFornecedores(valor, data, qtd, p, f2);
-                        break;
+    /**
+     * Cria um índice dos produtos pelo código, usado para relacionar as
+     * movimentações aos produtos em tempo constante.
+     * <p>
+     * Em caso de códigos repetidos, prevalece o primeiro produto da coleção,
+     * mantendo o mesmo resultado de uma busca sequencial.
+     * </p>
+     *
+     * @param produtos produtos a serem indexados
+     * @return mapa de código para produto
+     */
+    public static Map<String, Produto> indexProducts(Collection<Produto> produtos) {
+        Map<String, Produto> indice = new HashMap<>(Math.max(16, produtos.size() * 4 / 3 + 1));
+        for (Produto p : produtos) indice.putIfAbsent(p.getCodigo(), p);
+        return indice;
+    }
 
-                    case "OUTRA":
-                        m = new OutrasSaidas(valor, data, qtd, p, extra);
-                        break;
-                }
+    /**
+     * Salva todas as movimentações no arquivo CSV, substituindo o conteúdo anterior.
+     * <p>
+     * Deve ser usado apenas para reescrever (compactar) o diário inteiro;
+     * o registro de novos movimentos utiliza {@link #appendMovement(MovimentoEstoque)}.
+     * O arquivo é substituído de forma atômica, conforme a {@link Durabilidade}
+     * configurada.
+     * </p>
+     *
+     * @param movimentos coleção contendo os movimentos a serem gravados
+     */
+    public static void saveMovements(Collection<MovimentoEstoque> movimentos) {
+        PADRAO.salvarMovimentos(movimentos);
+    }
 
-                if (m != null) list.add(m);
-            }
+    /**
+     * Acrescenta um único movimento ao final do arquivo de movimentações.
+     * <p>
+     * Apenas o novo registro é gravado, de modo que o custo de cada
+     * registro não depende do tamanho do histórico já armazenado.
+     * </p>
+     *
+     * @param m movimento a ser acrescentado ao diário
+     */
+    public static void appendMovement(MovimentoEstoque m) {
+        appendMovements(List.of(m));
+    }
 
+    /**
+     * Acrescenta um lote de movimentos ao final do arquivo de movimentações,
+     * abrindo e gravando o arquivo uma única vez.
+     *
+     * @param movimentos movimentos a serem acrescentados, na ordem de gravação
+     */
+    public static void appendMovements(Collection<MovimentoEstoque> movimentos) {
+        try {
+            PADRAO.anexarMovimentos(movimentos);
         } catch (IOException e) {
             e.printStackTrace();
         }
-
-        return list;
     }
 
     /**
-     * Salva todas as movimentações no arquivo CSV.
+     * Salva todas as movimentações no formato binário compacto
+     * (arquivos <b>movements.bin</b> e <b>movements.dic</b>).
      *
      * @param movimentos coleção contendo os movimentos a serem gravados
+     * @see CodecBinario
      */
-    public static void saveMovements(Collection<MovimentoEstoque> movimentos) {
+    public static void saveMovementsBinary(Collection<MovimentoEstoque> movimentos) {
+        BINARIO.salvarMovimentos(movimentos);
+    }
+
+    /**
+     * Carrega as movimentações gravadas no formato binário compacto.
+     *
+     * @param indice produtos indexados pelo código (ver {@link #indexProducts(Collection)})
+     * @return lista de movimentos de estoque, ou lista vazia se não houver arquivo binário
+     */
+    public static List<MovimentoEstoque> loadMovementsBinary(Map<String, Produto> indice) {
+        return BINARIO.carregarMovimentos(indice, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Converte o arquivo CSV de movimentações para o formato binário.
+     *
+     * @param produtos produtos usados para relacionar as movimentações
+     * @return quantidade de movimentos convertidos
+     */
+    public static int convertMovementsToBinary(List<Produto> produtos) {
+        List<MovimentoEstoque> movimentos = loadMovements(produtos);
+        saveMovementsBinary(movimentos);
+        return movimentos.size();
+    }
 
-        try (BufferedWriter w = Files.newBufferedWriter(
-                MOVEMENTS_FILE, StandardCharsets.UTF_8, StandardOpenOption.TRUNCATE_EXISTING)) {
+    /**
+     * Converte o arquivo binário de movimentações de volta para o formato CSV,
+     * substituindo o arquivo CSV existente.
+     * <p>
+     * Como o diário é reescrito, o offset do checkpoint deixa de ser válido;
+     * os produtos devem ser gravados novamente com {@link #saveProducts(Collection)}
+     * após a conversão.
+     * </p>
+     *
+     * @param produtos produtos usados para relacionar as movimentações
+     * @return quantidade de movimentos convertidos
+     */
+    public static int convertMovementsToCsv(List<Produto> produtos) {
+        List<MovimentoEstoque> movimentos = loadMovementsBinary(indexProducts(produtos));
+        saveMovements(movimentos);
+        return movimentos.size();
+    }
 
-            for (MovimentoEstoque m : movimentos) {
+    /**
+     * Converte uma linha do arquivo de movimentações em um movimento.
+     *
+     * @param line   linha no formato <code>tipo;valorUnitario;data;qtd;produtoCodigo;extra</code>
+     * @param indice produtos indexados pelo código, usados para relacionar a movimentação
+     * @return movimento correspondente, ou {@code null} se o produto ou o tipo forem desconhecidos
+     */
+    static MovimentoEstoque parseMovement(String line, Map<String, Produto> indice) {
 
-                String tipo;
-                String extra = "";
+        String[] parts = line.split(";", -1);
 
-                if (m instanceof EntradaProduto) {
-                    tipo = "ENTRADA";
-                    extra = ((EntradaProduto) m).getFornecedor() != null
-                            ? ((EntradaProduto) m).getFornecedor().getNome()
-                            : "";
+        String tipo = parts[0];
+        long valor = Centavos.ler(parts[1]);
+        LocalDateTime data = LocalDateTime.parse(parts[2], FMT);
+        int qtd = Integer.parseInt(parts[3]);
+        String produtoCodigo = parts[4];
+        String extra = parts.length > 5 ? parts[5] : "";
 
-                } else if (m instanceof VendasClientes) {
-                    tipo = "VENDA";
-                    extra = ((VendasClientes) m).getCliente() != null
-                            ? ((VendasClientes) m).getCliente().getNome()
-                            : "";
+        Produto p = indice.get(produtoCodigo);
 
-                } else if (m instanceof UsoInterno) {
-                    tipo = "USO";
-                    extra = ((UsoInterno) m).getDestino();
+        if (p == null) return null;
 
-                } else if (m instanceof DevolucaoFornecedores) {
-                    tipo = "DEVOLUCAO";
-                    extra = ((DevolucaoFornecedores) m).getFornecedor() != null
-                            ? ((DevolucaoFornecedores) m).getFornecedor().getNome()
-                            : "";
+        return createMovement(tipo, valor, data, qtd, p, extra);
+    }
 
-                } else if (m instanceof OutrasSaidas) {
-                    tipo = "OUTRA";
-                    extra = ((OutrasSaidas) m).toString(); // contém motivo no toString
+    /**
+     * Cria o movimento correspondente ao tipo gravado no arquivo.
+     *
+     * @param tipo  nome do tipo gravado (ENTRADA, VENDA, USO, DEVOLUCAO ou OUTRA)
+     * @param valor valor unitário do movimento, em centavos
+     * @param data  data do movimento
+     * @param qtd   quantidade movimentada
+     * @param p     produto do movimento
+     * @param extra campo adicional (fornecedor, cliente, destino ou motivo)
+     * @return movimento criado, ou {@code null} se o tipo for desconhecido
+     */
+    static MovimentoEstoque createMovement(String tipo, long valor, LocalDateTime data,
+                                           int qtd, Produto p, String extra) {
+
+        MovimentoEstoque m = null;
+        Centavos v = Centavos.de(valor);
+
+        switch (tipo) {
+            case "ENTRADA":
+                Fornecedor f = extra.isEmpty() ? null : new Fornecedor(extra, "");
+                m = new EntradaProduto(v, data, qtd, p, f);
+                break;
+
+            case "VENDA":
+                Cliente c = extra.isEmpty() ? null : new Cliente(extra, "");
+                m = new VendasClientes(v, data, qtd, p, c);
+                break;
+
+            case "USO":
+                m = new UsoInterno(v, data, qtd, p, extra);
+                break;
+
+            case "DEVOLUCAO":
+                Fornecedor f2 = extra.isEmpty() ? null : new Fornecedor(extra, "");
+                m = new DevolucaoFornecedores(v, data, qtd, p, f2);
+                break;
+
+            case "OUTRA":
+                m = new OutrasSaidas(v, data, qtd, p, extra);
+                break;
+        }
 
-                } else {
-                    tipo = "OUTRO";
-                }
+        return m;
+    }
 
-                String line = String.join(";",
-                        tipo,
-                        String.valueOf(m.getValorUnitario()),
-                        m.getData().format(FMT),
-                        String.valueOf(m.getQtd()),
-                        m.getProduto().getCodigo(),
-                        extra);
+    /**
+     * Converte um movimento na linha CSV correspondente (sem quebra de linha).
+     *
+     * @param m movimento a ser convertido
+     * @return linha no formato <code>tipo;valorUnitario;data;qtd;produtoCodigo;extra</code>
+     */
+    static String formatMovement(MovimentoEstoque m) {
+        return String.join(";",
+                typeOf(m),
+                Centavos.formatar(m.getValorUnitarioCentavos()),
+                m.getData().format(FMT),
+                String.valueOf(m.getQtd()),
+                m.getProduto().getCodigo(),
+                extraOf(m));
+    }
 
-                w.write(line);
-                w.newLine();
-            }
+    /**
+     * Obtém o nome do tipo gravado para o movimento.
+     *
+     * @param m movimento
+     * @return ENTRADA, VENDA, USO, DEVOLUCAO ou OUTRA
+     */
+    static String typeOf(MovimentoEstoque m) {
+        return m.getTipo().name();
+    }
 
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Obtém o campo adicional gravado para o movimento: nome do fornecedor,
+     * nome do cliente, destino do uso interno ou motivo da saída.
+     *
+     * @param m movimento
+     * @return campo adicional, ou texto vazio
+     */
+    static String extraOf(MovimentoEstoque m) {
+
+        String extra;
+        switch (m.getTipo()) {
+            case ENTRADA:
+                Fornecedor f = ((EntradaProduto) m).getFornecedor();
+                extra = f != null ? f.getNome() : "";
+                break;
+
+            case VENDA:
+                Cliente c = ((VendasClientes) m).getCliente();
+                extra = c != null ? c.getNome() : "";
+                break;
+
+            case USO:
+                extra = ((UsoInterno) m).getDestino();
+                break;
+
+            case DEVOLUCAO:
+                Fornecedor f2 = ((DevolucaoFornecedores) m).getFornecedor();
+                extra = f2 != null ? f2.getNome() : "";
+                break;
+
+            case OUTRA:
+                extra = ((OutrasSaidas) m).getMotivo();
+                break;
+
+            default:
+                extra = "";
         }
+
+        return extra != null ? extra : "";
     }
 }
@@ -0,0 +1,28 @@
+package persistence;
+
+/**
+ * Níveis de durabilidade das gravações realizadas pelo {@link DataStore}.
+ * <p>
+ * Definem quando os dados gravados são forçados para o disco
+ * ({@code fsync}), equilibrando segurança contra quedas do sistema
+ * e vazão de gravação.
+ * </p>
+ *
+ * <p>Em todos os níveis, a regravação completa de um arquivo é feita em um
+ * arquivo temporário, sempre forçado para o disco, seguido de renomeação
+ * atômica, de modo que uma falha durante a gravação nunca deixa o arquivo
+ * original parcialmente escrito.</p>
+ *
+ * @author GustavoVirges
+ */
+public enum Durabilidade {
+
+    /** Força cada movimento gravado para o disco antes de concluir o registro. */
+    POR_COMMIT,
+
+    /** Força o disco uma única vez por lote gravado (um movimento isolado é um lote de um). */
+    POR_LOTE,
+
+    /** Deixa a gravação em disco a cargo do sistema operacional, sem forçar. */
+    BUFFER_SO
+}
@@ -0,0 +1,244 @@
+package persistence;
+
+import model.MovimentoEstoque;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.*;
+
+/**
+ * Gravador assíncrono (write-behind) do diário de movimentações.
+ * <p>
+ * Os movimentos enviados são enfileirados e gravados por uma thread
+ * dedicada, em lotes: a thread aguarda até {@code janela} milissegundos
+ * após o primeiro movimento pendente, ou até reunir {@code tamanhoLote}
+ * movimentos, e então acrescenta o lote inteiro ao diário com uma única
+ * gravação (group commit).
+ * </p>
+ *
+ * <p>Cada envio devolve um {@link CompletableFuture} que é concluído quando
+ * o lote que contém o movimento foi gravado. A ordem de gravação é a mesma
+ * ordem de envio.</p>
+ *
+ * <p>Se a gravação de um lote falhar, os movimentos do lote não são
+ * descartados: ficam retidos e são gravados à frente dos seguintes na
+ * próxima tentativa, feita a cada {@value #ESPERA_NOVA_TENTATIVA_MILLIS}
+ * milissegundos ou com o próximo lote. Enquanto a falha persistir,
+ * {@link #getFalha()} devolve o erro e as solicitações de
+ * {@link #descarregar()} são concluídas com ele. Apenas no encerramento os
+ * movimentos que ainda não puderam ser gravados têm seus futuros
+ * concluídos com erro.</p>
+ *
+ * @author GustavoVirges
+ */
+public class GravadorAssincrono {
+
+    /** Movimento aguardando gravação e o futuro a ser concluído após gravá-lo. */
+    private static final class Pendente {
+        final MovimentoEstoque movimento;
+        final CompletableFuture<Void> concluido = new CompletableFuture<>();
+
+        Pendente(MovimentoEstoque movimento) {
+            this.movimento = movimento;
+        }
+    }
+
+    /** Marcador enfileirado no encerramento para finalizar a thread de gravação. */
+    private static final Pendente FIM = new Pendente(null);
+
+    /** Armazenamento em cujo diário os movimentos são gravados. */
+    private final Armazenamento armazenamento;
+
+    /** Fila de movimentos ainda não gravados. */
+    private final BlockingQueue<Pendente> fila = new LinkedBlockingQueue<>();
+
+    /** Tempo máximo de espera para completar um lote, em nanossegundos. */
+    private final long janelaNanos;
+
+    /** Quantidade máxima de movimentos gravados em um lote. */
+    private final int tamanhoLote;
+
+    /** Thread responsável pelas gravações. */
+    private final Thread thread;
+
+    /** Indica se novos movimentos ainda são aceitos. */
+    private boolean ativo = true;
+
+    /** Intervalo entre as tentativas de gravar um lote que falhou. */
+    static final long ESPERA_NOVA_TENTATIVA_MILLIS = 500;
+
+    /** Movimentos de lotes que falharam, gravados antes dos próximos; usado só pela thread de gravação. */
+    private final List<Pendente> retidos = new ArrayList<>();
+
+    /** Erro da última gravação, ou {@code null} se ela foi bem-sucedida. */
+    private volatile Exception falha;
+
+    /**
+     * Cria e inicia um gravador assíncrono sobre o armazenamento padrão.
+     *
+     * @param janelaMillis tempo máximo, em milissegundos, que um movimento aguarda
+     *                     pela formação do lote (0 grava o que estiver disponível)
+     * @param tamanhoLote  quantidade máxima de movimentos por lote (deve ser &gt; 0)
+     *
+     * @throws IllegalArgumentException se a janela for negativa ou o lote não for positivo
+     * @see DataStore#defaultStorage()
+     */
+    public GravadorAssincrono(long janelaMillis, int tamanhoLote) {
+        this(DataStore.defaultStorage(), janelaMillis, tamanhoLote);
+    }
+
+    /**
+     * Cria e inicia um gravador assíncrono.
+     *
+     * @param armazenamento armazenamento em cujo diário os movimentos são gravados
+     * @param janelaMillis tempo máximo, em milissegundos, que um movimento aguarda
+     *                     pela formação do lote (0 grava o que estiver disponível)
+     * @param tamanhoLote  quantidade máxima de movimentos por lote (deve ser &gt; 0)
+     *
+     * @throws IllegalArgumentException se a janela for negativa ou o lote não for positivo
+     */
+    public GravadorAssincrono(Armazenamento armazenamento, long janelaMillis, int tamanhoLote) {
+        if (janelaMillis < 0)
+            throw new IllegalArgumentException("Janela não pode ser negativa.");
+        if (tamanhoLote <= 0)
+            throw new IllegalArgumentException("Tamanho do lote deve ser positivo.");
+
+        this.armazenamento = Objects.requireNonNull(armazenamento);
+        this.janelaNanos = TimeUnit.MILLISECONDS.toNanos(janelaMillis);
+        this.tamanhoLote = tamanhoLote;
+
+        thread = new Thread(this::executar, "gravador-movimentos");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Enfileira um movimento para gravação.
+     *
+     * @param m movimento a ser gravado
+     * @return futuro concluído quando o movimento estiver gravado no diário
+     * @throws IllegalStateException se o gravador já tiver sido encerrado
+     */
+    public CompletableFuture<Void> enviar(MovimentoEstoque m) {
+        if (m == null)
+            throw new IllegalArgumentException("Movimento inválido.");
+        return enfileirar(new Pendente(m));
+    }
+
+    /**
+     * Solicita a gravação de tudo o que já foi enviado.
+     *
+     * @return futuro concluído quando todos os movimentos enviados
+     *         antes desta chamada estiverem gravados
+     */
+    public CompletableFuture<Void> descarregar() {
+        return enfileirar(new Pendente(null));
+    }
+
+    /**
+     * Encerra o gravador após gravar os movimentos pendentes.
+     * Chamadas posteriores a {@link #enviar(MovimentoEstoque)} são recusadas.
+     */
+    public void encerrar() {
+        synchronized (this) {
+            if (!ativo) return;
+            ativo = false;
+            fila.add(FIM);
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** @return quantidade de movimentos aguardando gravação, sem os retidos por falha */
+    public int getPendentes() {
+        return fila.size();
+    }
+
+    /**
+     * Obtém o erro da última tentativa de gravação.
+     *
+     * @return erro da última gravação, ou {@code null} se ela foi bem-sucedida
+     *         e não há movimentos retidos
+     */
+    public Exception getFalha() {
+        return falha;
+    }
+
+    private synchronized CompletableFuture<Void> enfileirar(Pendente p) {
+        if (!ativo)
+            throw new IllegalStateException("Gravador encerrado.");
+        fila.add(p);
+        return p.concluido;
+    }
+
+    /**
+     * Laço da thread de gravação: forma lotes a partir da fila e os grava,
+     * até encontrar o marcador de encerramento.
+     */
+    private void executar() {
+        List<Pendente> lote = new ArrayList<>(tamanhoLote);
+        boolean fim = false;
+
+        while (!fim) {
+            try {
+                if (retidos.isEmpty()) {
+                    lote.add(fila.take());
+                } else {
+                    lote.addAll(retidos);
+                    retidos.clear();
+                    Pendente p = fila.poll(ESPERA_NOVA_TENTATIVA_MILLIS, TimeUnit.MILLISECONDS);
+                    if (p != null) lote.add(p);
+                }
+
+                long prazo = System.nanoTime() + janelaNanos;
+                while (lote.size() < tamanhoLote && lote.get(lote.size() - 1) != FIM) {
+                    if (fila.drainTo(lote, tamanhoLote - lote.size()) > 0) continue;
+
+                    long restante = prazo - System.nanoTime();
+                    if (restante <= 0) break;
+
+                    Pendente p = fila.poll(restante, TimeUnit.NANOSECONDS);
+                    if (p == null) break;
+                    lote.add(p);
+                }
+            } catch (InterruptedException e) {
+                // segue gravando o que já foi retirado da fila
+            }
+
+            fim = lote.remove(FIM);
+            if (!lote.isEmpty()) gravar(lote, fim);
+            lote.clear();
+        }
+    }
+
+    /**
+     * Grava um lote no diário e conclui os futuros correspondentes. Em caso
+     * de falha, os movimentos são retidos para a próxima tentativa, exceto
+     * no encerramento.
+     */
+    private void gravar(List<Pendente> lote, boolean encerrando) {
+        List<MovimentoEstoque> movimentos = new ArrayList<>(lote.size());
+        for (Pendente p : lote)
+            if (p.movimento != null) movimentos.add(p.movimento);
+
+        Exception erro = null;
+        if (!movimentos.isEmpty()) {
+            try {
+                armazenamento.anexarMovimentos(movimentos);
+            } catch (Exception e) {
+                erro = e;
+            }
+        }
+        falha = erro;
+
+        for (Pendente p : lote) {
+            if (erro == null) p.concluido.complete(null);
+            else if (p.movimento != null && !encerrando) retidos.add(p);
+            else p.concluido.completeExceptionally(erro);
+        }
+    }
+}
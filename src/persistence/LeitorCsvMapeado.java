@@ -0,0 +1,570 @@
+package persistence;
+
+import model.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Leitor dos arquivos CSV de produtos e movimentações baseado em
+ * arquivos mapeados em memória ({@link FileChannel#map}).
+ * <p>
+ * Em vez de ler linha a linha com {@code BufferedReader} e separar os
+ * campos com {@code String.split}, os delimitadores são localizados
+ * diretamente sobre os bytes mapeados e os campos numéricos e de data
+ * são interpretados no próprio buffer, sem criar Strings intermediárias.
+ * Códigos de produto são resolvidos por uma tabela indexada pelos bytes
+ * do código, e textos repetidos (nomes de clientes e fornecedores) são
+ * reaproveitados.
+ * </p>
+ *
+ * <p>Arquivos maiores que a janela de mapeamento são percorridos em
+ * janelas sucessivas, sempre reiniciadas no começo de uma linha.</p>
+ *
+ * @author GustavoVirges
+ */
+final class LeitorCsvMapeado {
+
+    /** Tamanho máximo de cada janela mapeada do arquivo. */
+    private static final long JANELA = 1L << 28;
+
+    /** Tamanho mínimo, em bytes, de cada parte da leitura paralela. */
+    private static final long TAMANHO_MINIMO_PARTE = 1L << 20;
+
+    /** Quantidade máxima de textos distintos mantidos em cache por leitura. */
+    private static final int MAX_TEXTOS = 4096;
+
+    /** Nomes dos tipos de movimento aceitos no arquivo. */
+    private static final String[] TIPOS = {"ENTRADA", "VENDA", "USO", "DEVOLUCAO", "OUTRA"};
+
+    /** Bytes dos nomes de {@link #TIPOS}, usados na comparação direta com o buffer. */
+    private static final byte[][] TIPOS_BYTES = bytesDe(TIPOS);
+
+    /** Categorias de produto, na mesma ordem de {@link #CATEGORIAS_BYTES}. */
+    private static final Categoria[] CATEGORIAS = Categoria.values();
+
+    /** Bytes dos nomes das categorias. */
+    private static final byte[][] CATEGORIAS_BYTES =
+            bytesDe(Arrays.stream(CATEGORIAS).map(Enum::name).toArray(String[]::new));
+
+    /** Formato usado para datas que não seguem o layout fixo esperado. */
+    private static final DateTimeFormatter FMT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    /** Bytes do marcador de cabeçalho do checkpoint. */
+    private static final byte[] CHECKPOINT_BYTES = "#checkpoint".getBytes(StandardCharsets.UTF_8);
+
+    /** Maior quantidade de dígitos inteiros de um valor interpretada diretamente. */
+    private static final int MAX_DIGITOS_VALOR = 16;
+
+    private LeitorCsvMapeado() {}
+
+    /**
+     * Lê as movimentações gravadas em um trecho do arquivo.
+     * <p>
+     * Segue as mesmas regras da leitura convencional: linhas em branco,
+     * incompletas ou com produto desconhecido são ignoradas.
+     * </p>
+     *
+     * @param arquivo arquivo de movimentações
+     * @param indice  produtos indexados pelo código
+     * @param inicio  posição inicial (inclusiva), em início de linha
+     * @param fim     posição final (exclusiva)
+     * @return movimentos do trecho, na ordem do arquivo
+     * @throws IOException se o arquivo não puder ser lido
+     */
+    static List<MovimentoEstoque> lerMovimentos(Path arquivo, Map<String, Produto> indice,
+                                                long inicio, long fim) throws IOException {
+        return lerTrecho(arquivo, tabelaProdutos(indice), inicio, fim);
+    }
+
+    /**
+     * Lê as movimentações de um trecho do arquivo em paralelo.
+     * <p>
+     * O trecho é dividido em partes de tamanho semelhante, com os limites
+     * ajustados para o início da linha seguinte, e cada parte é interpretada
+     * por uma tarefa do {@link ForkJoinPool} informado. Os resultados são
+     * concatenados na ordem original do arquivo, de modo que o resultado é
+     * idêntico ao da leitura sequencial.
+     * </p>
+     *
+     * @param arquivo arquivo de movimentações
+     * @param indice  produtos indexados pelo código
+     * @param inicio  posição inicial (inclusiva), em início de linha
+     * @param fim     posição final (exclusiva)
+     * @param pool    pool usado para executar as partes
+     * @param partes  quantidade máxima de partes
+     * @return movimentos do trecho, na ordem do arquivo
+     * @throws IOException se o arquivo não puder ser lido
+     */
+    static List<MovimentoEstoque> lerMovimentosParalelo(Path arquivo, Map<String, Produto> indice,
+                                                        long inicio, long fim, ForkJoinPool pool,
+                                                        int partes) throws IOException {
+
+        TabelaBytes<Produto> produtos = tabelaProdutos(indice);
+        long[] limites = dividir(arquivo, inicio, fim, partes);
+
+        List<ForkJoinTask<List<MovimentoEstoque>>> tarefas = new ArrayList<>(limites.length - 1);
+        for (int i = 0; i + 1 < limites.length; i++) {
+            long a = limites[i];
+            long b = limites[i + 1];
+            tarefas.add(pool.submit(() -> lerTrecho(arquivo, produtos, a, b)));
+        }
+
+        List<List<MovimentoEstoque>> resultados = new ArrayList<>(tarefas.size());
+        int total = 0;
+        try {
+            for (ForkJoinTask<List<MovimentoEstoque>> t : tarefas) {
+                List<MovimentoEstoque> parte = t.get();
+                resultados.add(parte);
+                total += parte.size();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Leitura paralela interrompida.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException("Falha na leitura paralela das movimentações.", e.getCause());
+        }
+
+        List<MovimentoEstoque> list = new ArrayList<>(total);
+        for (List<MovimentoEstoque> parte : resultados) list.addAll(parte);
+        return list;
+    }
+
+    /**
+     * Divide um trecho do arquivo em partes cujos limites coincidem com
+     * inícios de linha.
+     *
+     * @return posições dos limites, incluindo o início e o fim do trecho
+     */
+    private static long[] dividir(Path arquivo, long inicio, long fim, int partes) throws IOException {
+        try (FileChannel ch = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+
+            long limite = Math.min(fim, ch.size());
+            long tamanho = Math.max(0, limite - inicio);
+            int n = (int) Math.max(1, Math.min(partes, tamanho / TAMANHO_MINIMO_PARTE));
+
+            long[] limites = new long[n + 1];
+            limites[0] = inicio;
+            limites[n] = Math.max(inicio, limite);
+
+            ByteBuffer leitura = ByteBuffer.allocate(4096);
+            for (int i = 1; i < n; i++) {
+                long pos = Math.max(limites[i - 1], inicio + tamanho * i / n);
+                limites[i] = proximaLinha(ch, pos, limite, leitura);
+            }
+            return limites;
+        }
+    }
+
+    /**
+     * Obtém a posição do início da linha seguinte à posição informada.
+     */
+    private static long proximaLinha(FileChannel ch, long pos, long limite, ByteBuffer leitura)
+            throws IOException {
+        if (pos == 0) return 0;
+
+        // a linha começa em pos se o byte anterior for uma quebra de linha
+        long p = pos - 1;
+        while (p < limite) {
+            leitura.clear();
+            int lidos = ch.read(leitura, p);
+            if (lidos <= 0) break;
+            for (int i = 0; i < lidos; i++)
+                if (leitura.get(i) == '\n') return Math.min(p + i + 1, limite);
+            p += lidos;
+        }
+        return limite;
+    }
+
+    /**
+     * Lê as movimentações de um trecho usando uma tabela de produtos já
+     * construída, que pode ser compartilhada entre tarefas paralelas.
+     */
+    private static List<MovimentoEstoque> lerTrecho(Path arquivo, TabelaBytes<Produto> produtos,
+                                                    long inicio, long fim) throws IOException {
+
+        TabelaBytes<String> textos = new TabelaBytes<>(MAX_TEXTOS);
+        int[] campos = new int[12];
+        List<MovimentoEstoque> list = new ArrayList<>();
+
+        percorrer(arquivo, inicio, fim, (buf, ini, fimLinha) -> {
+            try {
+                MovimentoEstoque m = lerMovimento(buf, ini, fimLinha, campos, produtos, textos);
+                if (m != null) list.add(m);
+            } catch (RuntimeException ignored) {
+                // linha incompleta ou corrompida
+            }
+        });
+
+        return list;
+    }
+
+    /** Constrói a tabela de produtos indexada pelos bytes do código. */
+    private static TabelaBytes<Produto> tabelaProdutos(Map<String, Produto> indice) {
+        TabelaBytes<Produto> produtos = new TabelaBytes<>(indice.size());
+        for (Map.Entry<String, Produto> e : indice.entrySet())
+            produtos.put(e.getKey().getBytes(StandardCharsets.UTF_8), e.getValue());
+        return produtos;
+    }
+
+    /**
+     * Lê o checkpoint gravado no arquivo de produtos.
+     *
+     * @param arquivo arquivo de produtos
+     * @return checkpoint contendo os produtos e o offset do diário
+     * @throws IOException se o arquivo não puder ser lido
+     */
+    static Checkpoint lerCheckpoint(Path arquivo) throws IOException {
+
+        int[] campos = new int[12];
+        List<Produto> list = new ArrayList<>();
+        long[] offset = {Checkpoint.SEM_OFFSET};
+
+        percorrer(arquivo, 0, Long.MAX_VALUE, (buf, ini, fimLinha) -> {
+            int n = separar(buf, ini, fimLinha, campos);
+
+            if (n >= 2 && igual(buf, campos[0], campos[1], CHECKPOINT_BYTES)) {
+                offset[0] = lerLong(buf, campos[2], campos[3]);
+                return;
+            }
+            if (n < 5) throw new IllegalArgumentException("Linha de produto incompleta.");
+
+            int cat = buscar(buf, campos[8], campos[9], CATEGORIAS_BYTES);
+            if (cat < 0) throw new IllegalArgumentException("Categoria desconhecida.");
+
+            list.add(new Produto(
+                    texto(buf, campos[0], campos[1]),
+                    texto(buf, campos[2], campos[3]),
+                    Centavos.de(lerCentavos(buf, campos[4], campos[5])),
+                    (int) lerLong(buf, campos[6], campos[7]),
+                    CATEGORIAS[cat]));
+        });
+
+        return new Checkpoint(list, offset[0]);
+    }
+
+    /**
+     * Função aplicada a cada linha não vazia do arquivo, recebendo o buffer
+     * mapeado e os limites da linha (sem a quebra de linha).
+     */
+    @FunctionalInterface
+    interface ProcessadorLinha {
+        void processar(ByteBuffer buf, int inicio, int fim);
+    }
+
+    /**
+     * Percorre as linhas de um trecho do arquivo mapeando-o em janelas.
+     *
+     * @param arquivo    arquivo a ser lido
+     * @param inicio     posição inicial (inclusiva), em início de linha
+     * @param fim        posição final (exclusiva)
+     * @param processador função chamada para cada linha não vazia
+     * @throws IOException se o arquivo não puder ser lido ou contiver
+     *                     uma linha maior que a janela de mapeamento
+     */
+    static void percorrer(Path arquivo, long inicio, long fim, ProcessadorLinha processador)
+            throws IOException {
+
+        try (FileChannel ch = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+
+            long limite = Math.min(fim, ch.size());
+            long pos = inicio;
+
+            while (pos < limite) {
+                int tamanho = (int) Math.min(JANELA, limite - pos);
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, tamanho);
+
+                int consumido = percorrerJanela(buf, tamanho, pos + tamanho >= limite, processador);
+                if (consumido == 0)
+                    throw new IOException("Linha maior que a janela de leitura na posição " + pos);
+                pos += consumido;
+            }
+        }
+    }
+
+    /**
+     * Percorre as linhas completas de uma janela mapeada.
+     *
+     * @return quantidade de bytes consumidos; uma linha incompleta no fim
+     *         da janela só é consumida quando esta é a última janela
+     */
+    private static int percorrerJanela(ByteBuffer buf, int tamanho, boolean ultima,
+                                       ProcessadorLinha processador) {
+        int ini = 0;
+        while (ini < tamanho) {
+            int nl = ini;
+            while (nl < tamanho && buf.get(nl) != '\n') nl++;
+
+            if (nl == tamanho && !ultima) return ini;
+
+            int fimLinha = nl;
+            if (fimLinha > ini && buf.get(fimLinha - 1) == '\r') fimLinha--;
+
+            if (!emBranco(buf, ini, fimLinha)) processador.processar(buf, ini, fimLinha);
+
+            ini = nl + 1;
+        }
+        return tamanho;
+    }
+
+    /**
+     * Interpreta uma linha no formato
+     * <code>tipo;valorUnitario;data;qtd;produtoCodigo;extra</code>.
+     */
+    private static MovimentoEstoque lerMovimento(ByteBuffer buf, int ini, int fim, int[] campos,
+                                                 TabelaBytes<Produto> produtos,
+                                                 TabelaBytes<String> textos) {
+        int n = separar(buf, ini, fim, campos);
+        if (n < 5) return null;
+
+        int tipo = buscar(buf, campos[0], campos[1], TIPOS_BYTES);
+        if (tipo < 0) return null;
+
+        Produto p = produtos.get(buf, campos[8], campos[9]);
+        if (p == null) return null;
+
+        long valor = lerCentavos(buf, campos[2], campos[3]);
+        LocalDateTime data = lerData(buf, campos[4], campos[5]);
+        int qtd = (int) lerLong(buf, campos[6], campos[7]);
+        String extra = n > 5 ? textoEmCache(buf, campos[10], campos[11], textos) : "";
+
+        return DataStore.createMovement(TIPOS[tipo], valor, data, qtd, p, extra);
+    }
+
+    /**
+     * Localiza até seis campos separados por ';' na linha, gravando em
+     * {@code campos} os pares (início, fim) de cada um.
+     *
+     * @return quantidade de campos encontrados
+     */
+    private static int separar(ByteBuffer buf, int ini, int fim, int[] campos) {
+        int n = 0;
+        int inicioCampo = ini;
+        for (int i = ini; i < fim && n < 5; i++) {
+            if (buf.get(i) == ';') {
+                campos[2 * n] = inicioCampo;
+                campos[2 * n + 1] = i;
+                n++;
+                inicioCampo = i + 1;
+            }
+        }
+        int fimCampo = inicioCampo;
+        while (fimCampo < fim && buf.get(fimCampo) != ';') fimCampo++;
+        campos[2 * n] = inicioCampo;
+        campos[2 * n + 1] = fimCampo;
+        return n + 1;
+    }
+
+    /**
+     * Interpreta um inteiro decimal diretamente do buffer.
+     */
+    static long lerLong(ByteBuffer buf, int ini, int fim) {
+        if (ini >= fim) throw new NumberFormatException("Campo numérico vazio.");
+
+        boolean negativo = buf.get(ini) == '-';
+        int i = negativo || buf.get(ini) == '+' ? ini + 1 : ini;
+        if (i >= fim) throw new NumberFormatException("Campo numérico vazio.");
+
+        long valor = 0;
+        for (; i < fim; i++) valor = valor * 10 + digito(buf, i);
+        return negativo ? -valor : valor;
+    }
+
+    /**
+     * Interpreta um valor em reais com até duas casas decimais, como o
+     * gravado por {@link Centavos#formatar(long)}, diretamente do buffer,
+     * devolvendo a quantidade de centavos.
+     * <p>
+     * Outras formas (como as geradas por {@link String#valueOf(float)} em
+     * arquivos antigos) recorrem a {@link Centavos#ler(CharSequence)}.
+     * </p>
+     */
+    static long lerCentavos(ByteBuffer buf, int ini, int fim) {
+        if (ini >= fim) throw new NumberFormatException("Campo numérico vazio.");
+
+        int i = ini;
+        boolean negativo = buf.get(i) == '-';
+        if (negativo || buf.get(i) == '+') i++;
+
+        long inteiro = 0;
+        int digitos = 0;
+        for (; i < fim; i++) {
+            int d = buf.get(i) - '0';
+            if (d < 0 || d > 9) break;
+            inteiro = inteiro * 10 + d;
+            digitos++;
+        }
+
+        int casas = 0;
+        long fracao = 0;
+        if (i < fim && buf.get(i) == '.') {
+            for (i++; i < fim && casas < 3; i++, casas++) {
+                int d = buf.get(i) - '0';
+                if (d < 0 || d > 9) break;
+                fracao = fracao * 10 + d;
+            }
+        }
+
+        if (i < fim || casas > 2 || digitos + casas == 0 || digitos > MAX_DIGITOS_VALOR)
+            return Centavos.ler(texto(buf, ini, fim));
+
+        long centavos = inteiro * 100 + (casas == 1 ? fracao * 10 : fracao);
+        return negativo ? -centavos : centavos;
+    }
+
+    /**
+     * Interpreta uma data no formato ISO <code>yyyy-MM-ddTHH:mm[:ss[.fração]]</code>
+     * diretamente do buffer.
+     */
+    static LocalDateTime lerData(ByteBuffer buf, int ini, int fim) {
+        int len = fim - ini;
+        if (len < 16 || buf.get(ini + 4) != '-' || buf.get(ini + 7) != '-'
+                || buf.get(ini + 10) != 'T' || buf.get(ini + 13) != ':')
+            return LocalDateTime.parse(texto(buf, ini, fim), FMT);
+
+        int ano = numero(buf, ini, 4);
+        int mes = numero(buf, ini + 5, 2);
+        int dia = numero(buf, ini + 8, 2);
+        int hora = numero(buf, ini + 11, 2);
+        int minuto = numero(buf, ini + 14, 2);
+        int segundo = 0;
+        int nano = 0;
+
+        if (len > 16) {
+            if (len < 19 || buf.get(ini + 16) != ':')
+                throw new NumberFormatException("Data inválida.");
+            segundo = numero(buf, ini + 17, 2);
+
+            if (len > 19) {
+                int casas = len - 20;
+                if (buf.get(ini + 19) != '.' || casas < 1 || casas > 9)
+                    throw new NumberFormatException("Data inválida.");
+                nano = numero(buf, ini + 20, casas);
+                for (int k = casas; k < 9; k++) nano *= 10;
+            }
+        }
+
+        return LocalDateTime.of(ano, mes, dia, hora, minuto, segundo, nano);
+    }
+
+    /** Lê {@code casas} dígitos decimais a partir da posição informada. */
+    private static int numero(ByteBuffer buf, int ini, int casas) {
+        int valor = 0;
+        for (int i = ini; i < ini + casas; i++) valor = valor * 10 + digito(buf, i);
+        return valor;
+    }
+
+    private static int digito(ByteBuffer buf, int i) {
+        int d = buf.get(i) - '0';
+        if (d < 0 || d > 9) throw new NumberFormatException("Dígito inválido.");
+        return d;
+    }
+
+    private static boolean emBranco(ByteBuffer buf, int ini, int fim) {
+        for (int i = ini; i < fim; i++)
+            if (buf.get(i) > ' ') return false;
+        return true;
+    }
+
+    private static boolean igual(ByteBuffer buf, int ini, int fim, byte[] esperado) {
+        if (fim - ini != esperado.length) return false;
+        for (int i = 0; i < esperado.length; i++)
+            if (buf.get(ini + i) != esperado[i]) return false;
+        return true;
+    }
+
+    /** @return posição de {@code opcoes} igual ao campo, ou -1 */
+    private static int buscar(ByteBuffer buf, int ini, int fim, byte[][] opcoes) {
+        for (int i = 0; i < opcoes.length; i++)
+            if (igual(buf, ini, fim, opcoes[i])) return i;
+        return -1;
+    }
+
+    private static String texto(ByteBuffer buf, int ini, int fim) {
+        byte[] bytes = new byte[fim - ini];
+        buf.get(ini, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Decodifica o campo reaproveitando a String de um texto igual já lido. */
+    private static String textoEmCache(ByteBuffer buf, int ini, int fim, TabelaBytes<String> textos) {
+        if (ini == fim) return "";
+        String s = textos.get(buf, ini, fim);
+        if (s == null) {
+            s = texto(buf, ini, fim);
+            if (textos.tamanho() < MAX_TEXTOS) textos.put(s.getBytes(StandardCharsets.UTF_8), s);
+        }
+        return s;
+    }
+
+    private static byte[][] bytesDe(String[] valores) {
+        byte[][] bytes = new byte[valores.length][];
+        for (int i = 0; i < valores.length; i++) bytes[i] = valores[i].getBytes(StandardCharsets.UTF_8);
+        return bytes;
+    }
+
+    /**
+     * Tabela hash de endereçamento aberto cujas chaves são sequências de
+     * bytes, permitindo consultas diretamente sobre um trecho do buffer.
+     *
+     * @param <V> tipo dos valores armazenados
+     */
+    static final class TabelaBytes<V> {
+
+        private final byte[][] chaves;
+        private final Object[] valores;
+        private final int mascara;
+        private int tamanho;
+
+        TabelaBytes(int capacidadeEsperada) {
+            int capacidade = Integer.highestOneBit(Math.max(16, capacidadeEsperada * 2 - 1)) << 1;
+            chaves = new byte[capacidade][];
+            valores = new Object[capacidade];
+            mascara = capacidade - 1;
+        }
+
+        int tamanho() { return tamanho; }
+
+        /** Insere o par, mantendo o valor existente se a chave já estiver presente. */
+        void put(byte[] chave, V valor) {
+            if (tamanho * 4 >= chaves.length * 3) return;
+            int i = hash(ByteBuffer.wrap(chave), 0, chave.length) & mascara;
+            while (chaves[i] != null) {
+                if (Arrays.equals(chaves[i], chave)) return;
+                i = (i + 1) & mascara;
+            }
+            chaves[i] = chave;
+            valores[i] = valor;
+            tamanho++;
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(ByteBuffer buf, int ini, int fim) {
+            int i = hash(buf, ini, fim) & mascara;
+            while (chaves[i] != null) {
+                if (igual(buf, ini, fim, chaves[i])) return (V) valores[i];
+                i = (i + 1) & mascara;
+            }
+            return null;
+        }
+
+        private static int hash(ByteBuffer buf, int ini, int fim) {
+            int h = 1;
+            for (int i = ini; i < fim; i++) h = 31 * h + buf.get(i);
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package persistence;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Granularidade dos segmentos em que as movimentações são particionadas
+ * por data.
+ * <p>
+ * Cada partição gera um nome de segmento a partir da data do movimento;
+ * os nomes são ordenáveis lexicograficamente na ordem cronológica.
+ * </p>
+ *
+ * @author GustavoVirges
+ */
+public enum Particao {
+
+    /** Um segmento por dia ({@code 2024-03-15}). */
+    DIARIA("yyyy-MM-dd"),
+
+    /** Um segmento por mês ({@code 2024-03}). */
+    MENSAL("yyyy-MM"),
+
+    /** Um segmento por ano ({@code 2024}). */
+    ANUAL("yyyy");
+
+    /** Formato usado para gerar o nome do segmento. */
+    private final DateTimeFormatter formato;
+
+    Particao(String padrao) {
+        this.formato = DateTimeFormatter.ofPattern(padrao);
+    }
+
+    /**
+     * Obtém o nome do segmento ao qual pertence um movimento da data informada.
+     *
+     * @param data data do movimento
+     * @return nome do segmento
+     */
+    public String segmento(LocalDateTime data) {
+        return data.format(formato);
+    }
+}
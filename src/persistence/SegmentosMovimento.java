@@ -0,0 +1,267 @@
+package persistence;
+
+import model.MovimentoEstoque;
+import model.Produto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Armazenamento das movimentações particionado por período em arquivos
+ * de segmento (por exemplo, um arquivo por mês).
+ * <p>
+ * Cada segmento é um arquivo CSV com as linhas do diário de movimentações,
+ * cada uma precedida pela sua posição em bytes no diário, após um
+ * cabeçalho de tamanho fixo com a menor e a maior data dos movimentos que
+ * contém:
+ * <br><code>#segmento;dataMinima;dataMaxima</code>
+ * <br><code>posicao;tipo;valorUnitario;data;qtd;produtoCodigo;extra</code>
+ * </p>
+ *
+ * <p>Consultas por período leem apenas os segmentos cujo intervalo do
+ * cabeçalho intersecta o período pedido. Os segmentos de partições fora
+ * do período são descartados pelo nome, sem abrir o arquivo. Como o
+ * cabeçalho tem tamanho fixo, ele é atualizado no próprio arquivo quando
+ * um movimento retroativo amplia o intervalo. A posição de cada linha
+ * permite restringir a consulta a um trecho do diário, como o coberto
+ * por um checkpoint.</p>
+ *
+ * @author GustavoVirges
+ */
+final class SegmentosMovimento {
+
+    /** Marcador do cabeçalho do segmento. */
+    private static final String MARCADOR = "#segmento";
+
+    /** Largura de cada data no cabeçalho (ISO com nanossegundos). */
+    private static final int LARGURA_DATA = 29;
+
+    /** Tamanho do cabeçalho em bytes, incluindo a quebra de linha. */
+    private static final int TAMANHO_CABECALHO = MARCADOR.length() + 2 * (LARGURA_DATA + 1) + 1;
+
+    /** Extensão dos arquivos de segmento. */
+    private static final String EXTENSAO = ".csv";
+
+    /** Formato das datas no cabeçalho. */
+    private static final DateTimeFormatter FMT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    /** Diretório dos segmentos. */
+    private final Path diretorio;
+
+    /** Granularidade dos segmentos. */
+    private final Particao particao;
+
+    /**
+     * Cria o acesso aos segmentos de um diretório.
+     *
+     * @param diretorio diretório dos arquivos de segmento
+     * @param particao  granularidade dos segmentos
+     */
+    SegmentosMovimento(Path diretorio, Particao particao) {
+        this.diretorio = diretorio;
+        this.particao = particao;
+    }
+
+    /** @return granularidade dos segmentos */
+    Particao getParticao() {
+        return particao;
+    }
+
+    /**
+     * Acrescenta os movimentos aos seus segmentos, atualizando o intervalo
+     * de datas do cabeçalho de cada segmento alterado.
+     *
+     * @param movimentos movimentos a serem acrescentados
+     * @param posicoes   posição no diário de cada movimento, na ordem da coleção
+     * @param forcar     se os segmentos alterados devem ser forçados para o disco
+     * @throws IOException se algum segmento não puder ser gravado
+     */
+    void anexar(Collection<MovimentoEstoque> movimentos, long[] posicoes, boolean forcar) throws IOException {
+        Files.createDirectories(diretorio);
+
+        Map<String, StringBuilder> linhas = new TreeMap<>();
+        Map<String, LocalDateTime[]> intervalos = new HashMap<>();
+        int i = 0;
+        for (MovimentoEstoque m : movimentos) {
+            String nome = particao.segmento(m.getData());
+            linhas.computeIfAbsent(nome, k -> new StringBuilder())
+                    .append(posicoes[i++]).append(';')
+                    .append(DataStore.formatMovement(m)).append(System.lineSeparator());
+
+            LocalDateTime[] intervalo = intervalos.computeIfAbsent(nome,
+                    k -> new LocalDateTime[]{m.getData(), m.getData()});
+            if (m.getData().isBefore(intervalo[0])) intervalo[0] = m.getData();
+            if (m.getData().isAfter(intervalo[1])) intervalo[1] = m.getData();
+        }
+
+        for (Map.Entry<String, StringBuilder> e : linhas.entrySet())
+            anexarAoSegmento(diretorio.resolve(e.getKey() + EXTENSAO),
+                    intervalos.get(e.getKey()), e.getValue(), forcar);
+    }
+
+    /**
+     * Recria todos os segmentos a partir dos movimentos informados.
+     *
+     * @param movimentos movimentos que formarão os segmentos
+     * @param posicoes   posição no diário de cada movimento, na ordem da coleção
+     * @throws IOException se os segmentos não puderem ser gravados
+     */
+    void reconstruir(Collection<MovimentoEstoque> movimentos, long[] posicoes) throws IOException {
+        if (Files.exists(diretorio)) {
+            for (Path segmento : listar()) Files.delete(segmento);
+        }
+        anexar(movimentos, posicoes, false);
+    }
+
+    /**
+     * Lê os movimentos de um trecho do diário ocorridos no período, abrindo
+     * apenas os segmentos cujo intervalo intersecta o período.
+     *
+     * @param indice produtos indexados pelo código
+     * @param de     posição inicial (inclusiva) do trecho do diário
+     * @param ate    posição final (exclusiva) do trecho do diário
+     * @param inicio início do período (inclusivo)
+     * @param fim    fim do período (inclusivo)
+     * @return movimentos do período, por segmento e na ordem de gravação
+     * @throws IOException se algum segmento não puder ser lido
+     */
+    List<MovimentoEstoque> ler(Map<String, Produto> indice, long de, long ate,
+                               LocalDateTime inicio, LocalDateTime fim) throws IOException {
+
+        List<MovimentoEstoque> list = new ArrayList<>();
+
+        for (Path segmento : selecionar(inicio, fim)) {
+            try (BufferedReader r = Files.newBufferedReader(segmento, StandardCharsets.UTF_8)) {
+                r.readLine();
+
+                String line;
+                while ((line = r.readLine()) != null) {
+                    if (line.isBlank()) continue;
+
+                    MovimentoEstoque m;
+                    try {
+                        int sep = line.indexOf(';');
+                        long posicao = Long.parseLong(line.substring(0, sep));
+                        if (posicao < de || posicao >= ate) continue;
+                        m = DataStore.parseMovement(line.substring(sep + 1), indice);
+                    } catch (RuntimeException e) {
+                        continue;
+                    }
+
+                    if (m != null && !m.getData().isBefore(inicio) && !m.getData().isAfter(fim))
+                        list.add(m);
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Seleciona os segmentos cujo intervalo do cabeçalho intersecta o período.
+     * <p>
+     * Os segmentos são primeiro filtrados pelo nome, que identifica o
+     * período da partição; apenas os cabeçalhos dos segmentos entre o do
+     * início e o do fim do período são lidos.
+     * </p>
+     *
+     * @param inicio início do período (inclusivo)
+     * @param fim    fim do período (inclusivo)
+     * @return segmentos selecionados, em ordem cronológica
+     * @throws IOException se os cabeçalhos não puderem ser lidos
+     */
+    List<Path> selecionar(LocalDateTime inicio, LocalDateTime fim) throws IOException {
+        List<Path> selecionados = new ArrayList<>();
+        if (!Files.exists(diretorio) || fim.isBefore(inicio)) return selecionados;
+
+        String primeiro = particao.segmento(inicio);
+        String ultimo = particao.segmento(fim);
+
+        for (Path segmento : listar()) {
+            String nome = segmento.getFileName().toString();
+            nome = nome.substring(0, nome.length() - EXTENSAO.length());
+            if (nome.compareTo(primeiro) < 0 || nome.compareTo(ultimo) > 0) continue;
+
+            LocalDateTime[] intervalo = lerCabecalho(segmento);
+            if (intervalo == null) continue;
+            if (intervalo[1].isBefore(inicio) || intervalo[0].isAfter(fim)) continue;
+            selecionados.add(segmento);
+        }
+        return selecionados;
+    }
+
+    /** @return arquivos de segmento existentes, em ordem cronológica */
+    private List<Path> listar() throws IOException {
+        try (Stream<Path> arquivos = Files.list(diretorio)) {
+            return arquivos
+                    .filter(p -> p.getFileName().toString().endsWith(EXTENSAO))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private void anexarAoSegmento(Path segmento, LocalDateTime[] intervalo, StringBuilder sb, boolean forcar)
+            throws IOException {
+
+        LocalDateTime min = intervalo[0];
+        LocalDateTime max = intervalo[1];
+
+        try (FileChannel ch = FileChannel.open(segmento, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            LocalDateTime[] atual = ch.size() >= TAMANHO_CABECALHO ? lerCabecalho(ch) : null;
+            if (atual != null) {
+                if (atual[0].isBefore(min)) min = atual[0];
+                if (atual[1].isAfter(max)) max = atual[1];
+            }
+
+            if (atual == null || !atual[0].equals(min) || !atual[1].equals(max))
+                escreverTudo(ch, ByteBuffer.wrap(cabecalho(min, max)), 0);
+
+            escreverTudo(ch, StandardCharsets.UTF_8.encode(sb.toString()), Math.max(ch.size(), TAMANHO_CABECALHO));
+            if (forcar) ch.force(false);
+        }
+    }
+
+    private static LocalDateTime[] lerCabecalho(Path segmento) throws IOException {
+        try (FileChannel ch = FileChannel.open(segmento, StandardOpenOption.READ)) {
+            return ch.size() >= TAMANHO_CABECALHO ? lerCabecalho(ch) : null;
+        }
+    }
+
+    /** @return datas mínima e máxima do cabeçalho, ou {@code null} se inválido */
+    private static LocalDateTime[] lerCabecalho(FileChannel ch) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(TAMANHO_CABECALHO);
+        while (buf.hasRemaining() && ch.read(buf, buf.position()) > 0) { }
+
+        String[] partes = new String(buf.array(), StandardCharsets.UTF_8).trim().split(";");
+        if (partes.length != 3 || !partes[0].equals(MARCADOR)) return null;
+        try {
+            return new LocalDateTime[]{
+                    LocalDateTime.parse(partes[1].trim(), FMT),
+                    LocalDateTime.parse(partes[2].trim(), FMT)};
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static byte[] cabecalho(LocalDateTime min, LocalDateTime max) {
+        String linha = MARCADOR + ";" + preencher(min.format(FMT)) + ";" + preencher(max.format(FMT)) + "\n";
+        return linha.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static String preencher(String data) {
+        return String.format("%-" + LARGURA_DATA + "s", data);
+    }
+
+    private static void escreverTudo(FileChannel ch, ByteBuffer buf, long posicao) throws IOException {
+        while (buf.hasRemaining()) posicao += ch.write(buf, posicao);
+    }
+}
@@ -1,6 +1,10 @@
 package view;
 
+import model.Categoria;
+import model.Centavos;
 import model.ControleEstoque;
+import model.TipoMovimento;
+import model.TotaisPeriodo;
 import javax.swing.*;
 import java.awt.*;
 import java.time.LocalDateTime;
@@ -18,7 +22,8 @@ import java.time.format.DateTimeFormatter;
  * <ul>
  *     <li>Saldo total em quantidade;</li>
  *     <li>Saldo total em valor;</li>
- *     <li>Consultar o valor movimentado em um período desejado.</li>
+ *     <li>Consultar o valor movimentado em um período desejado, com as
+ *     entradas, saídas e saldo de cada categoria de produto.</li>
  * </ul>
  *
  * @author GustavoVirges
@@ -41,7 +46,7 @@ public class TelaConsultarSaldo extends JDialog {
         super(parent, "Consultar Saldo", true);
         this.controle = controle;
 
-        setSize(520, 300);
+        setSize(520, 440);
         setLayout(null);
         setLocationRelativeTo(parent);
 
@@ -59,6 +64,10 @@ public class TelaConsultarSaldo extends JDialog {
 
         JButton btnConsultarPeriodo = new JButton("Consultar período");
         JLabel lblPeriodoResultado = new JLabel("Valor no período: R$ 0.00");
+        JTextArea txtCategorias = new JTextArea();
+        txtCategorias.setEditable(false);
+        txtCategorias.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        JScrollPane spCategorias = new JScrollPane(txtCategorias);
 
         // Posicionamento dos componentes
         lblSaldoAtualQtd.setBounds(20, 20, 220, 25);
@@ -75,6 +84,7 @@ public class TelaConsultarSaldo extends JDialog {
 
         btnConsultarPeriodo.setBounds(180, 190, 160, 30);
         lblPeriodoResultado.setBounds(20, 230, 480, 25);
+        spCategorias.setBounds(20, 260, 480, 130);
 
         // Adicionando componentes à tela
         add(lblSaldoAtualQtd); add(lblQtdVal);
@@ -83,6 +93,7 @@ public class TelaConsultarSaldo extends JDialog {
         add(lblPeriodoFim); add(txtFim);
         add(btnConsultarPeriodo);
         add(lblPeriodoResultado);
+        add(spCategorias);
 
         /**
          * Ação do botão que calcula o saldo no período fornecido.
@@ -91,8 +102,19 @@ public class TelaConsultarSaldo extends JDialog {
             try {
                 LocalDateTime inicio = LocalDateTime.parse(txtInicio.getText().trim(), fmt);
                 LocalDateTime fim = LocalDateTime.parse(txtFim.getText().trim(), fmt);
-                float valor = controle.getSaldoPorPeriodo(inicio, fim);
-                lblPeriodoResultado.setText(String.format("Valor no período: R$ %.2f", valor));
+                TotaisPeriodo totais = controle.getTotaisPorPeriodo(inicio, fim);
+                lblPeriodoResultado.setText(String.format("Valor no período: R$ %.2f",
+                        Centavos.emReais(totais.getSaldoCentavos())));
+
+                StringBuilder sb = new StringBuilder(String.format("%-16s %14s %14s %14s%n",
+                        "Categoria", "Entradas", "Saídas", "Saldo"));
+                for (Categoria c : Categoria.values()) {
+                    long entradas = totais.getValorCentavos(TipoMovimento.ENTRADA, c);
+                    long saldo = totais.getSaldoCentavos(c);
+                    sb.append(String.format("%-16s %14.2f %14.2f %14.2f%n", c,
+                            Centavos.emReais(entradas), Centavos.emReais(entradas - saldo), Centavos.emReais(saldo)));
+                }
+                txtCategorias.setText(sb.toString());
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "Erro ao consultar: " + ex.getMessage());
             }
@@ -74,19 +74,13 @@ public class TelaListarMovimentos extends JDialog {
         List<MovimentoEstoque> movs = controle.listarMovimentosOrdenados();
 
         int saldoQtd = 0;
-        float saldoValor = 0f;
+        long saldoValor = 0;
 
         for (MovimentoEstoque m : movs) {
 
-            String tipo = m instanceof EntradaProduto ? "ENTRADA" : "SAÍDA";
-
-            if (m instanceof VendasClientes) tipo = "VENDA";
-            if (m instanceof UsoInterno) tipo = "USO INTERNO";
-            if (m instanceof DevolucaoFornecedores) tipo = "DEVOLUÇÃO FORNECEDOR";
-            if (m instanceof OutrasSaidas) tipo = "OUTRA SAÍDA";
-
-            int impactoQtd = m instanceof EntradaProduto ? m.getQtd() : -m.getQtd();
-            float impactoValor = impactoQtd * m.getValorUnitario();
+            String tipo = m.getTipo().getRotulo();
+            int impactoQtd = m.getTipo().getSinal() * m.getQtd();
+            long impactoValor = m.getTipo().getSinal() * m.getValorTotalCentavos();
 
             saldoQtd += impactoQtd;
             saldoValor += impactoValor;
@@ -96,15 +90,15 @@ public class TelaListarMovimentos extends JDialog {
                     tipo,
                     m.getProduto().getNome() + " (" + m.getProduto().getCodigo() + ")",
                     m.getQtd(),
-                    String.format("%.2f", m.getValorUnitario()),
+                    String.format("%.2f", Centavos.emReais(m.getValorUnitarioCentavos())),
                     impactoQtd,
-                    String.format("%.2f", impactoValor)
+                    String.format("%.2f", Centavos.emReais(impactoValor))
             });
         }
 
         // Linha final exibindo o saldo total acumulado
         modelo.addRow(new Object[]{
-                "", "", "SALDO ATUAL", saldoQtd, "", "", String.format("%.2f", saldoValor)
+                "", "", "SALDO ATUAL", saldoQtd, "", "", String.format("%.2f", Centavos.emReais(saldoValor))
         });
     }
 }
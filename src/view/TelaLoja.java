@@ -1,6 +1,8 @@
 package view;
 
 import model.*;
+import persistence.DataStore;
+import persistence.Particao;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
@@ -163,7 +165,7 @@ public class TelaLoja extends JFrame {
                     return;
                 }
 
-                float precoF = Float.parseFloat(preco.replace(",", "."));
+                Centavos precoC = Centavos.de(Centavos.ler(preco.replace(",", ".")));
                 int qtdI = Integer.parseInt(qtd);
                 Categoria cat = Categoria.valueOf(
                         Objects.requireNonNull(categoriaBox.getSelectedItem()).toString()
@@ -174,12 +176,12 @@ public class TelaLoja extends JFrame {
                     return;
                 }
 
-                Produto p = new Produto(codigo, nome, precoF, qtdI, cat);
+                Produto p = new Produto(codigo, nome, precoC, qtdI, cat);
                 controle.adicionarProduto(p);
 
                 modeloTabela.addRow(new Object[]{
                         codigo, nome, cat.name(),
-                        String.format("%.2f", precoF), qtdI
+                        String.format("%.2f", Centavos.emReais(precoC.getValor())), qtdI
                 });
 
                 txtCodigo.setText("");
@@ -208,12 +210,7 @@ public class TelaLoja extends JFrame {
             }
 
             String codigo = (String) modeloTabela.getValueAt(linha, 0);
-            Produto p = controle.buscarProdutoPorCodigo(codigo);
-
-            if (p != null) {
-                controle.getProdutos().remove(p);
-                persistence.DataStore.saveProducts(controle.getProdutos());
-            }
+            controle.removerProduto(codigo);
 
             modeloTabela.removeRow(linha);
         });
@@ -250,6 +247,8 @@ public class TelaLoja extends JFrame {
      * @param args argumentos da linha de comando (não utilizados)
      */
     public static void main(String[] args) {
+        // consultas de saldo por período leem apenas os segmentos do período
+        DataStore.setPartitioning(Particao.MENSAL);
         ControleEstoque controle = new ControleEstoque();
         javax.swing.SwingUtilities.invokeLater(() -> new TelaLoja(controle));
     }
@@ -84,7 +84,7 @@ public class TelaRegistrarEntrada extends JDialog {
             try {
                 String codigo = txtProduto.getText().trim();
                 int qtd = Integer.parseInt(txtQtd.getText().trim());
-                float valor = Float.parseFloat(txtValor.getText().trim().replace(",", "."));
+                Centavos valor = Centavos.de(Centavos.ler(txtValor.getText().trim().replace(",", ".")));
                 LocalDateTime data = LocalDateTime.parse(txtData.getText().trim(), fmt);
 
                 Produto p = controle.buscarProdutoPorCodigo(codigo);
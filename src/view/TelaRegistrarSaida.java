@@ -101,7 +101,7 @@ public class TelaRegistrarSaida extends JDialog {
             try {
                 String codigo = txtProduto.getText().trim();
                 int qtd = Integer.parseInt(txtQtd.getText().trim());
-                float valor = Float.parseFloat(txtValor.getText().trim().replace(",", "."));
+                Centavos valor = Centavos.de(Centavos.ler(txtValor.getText().trim().replace(",", ".")));
                 LocalDateTime data = LocalDateTime.parse(txtData.getText().trim(), fmt);
                 String tipo = tipoBox.getSelectedItem().toString();
                 String extra = txtExtra.getText().trim();
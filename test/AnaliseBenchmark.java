@@ -0,0 +1,77 @@
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import analytics.Agregacoes;
+import analytics.Analise;
+import analytics.Campos;
+import model.*;
+
+/**
+ * Benchmark das consultas analíticas do pacote {@code analytics}.
+ * <p>
+ * Não faz parte da suíte de testes: deve ser executado manualmente pelo
+ * método {@code main}. Mede a receita por cliente e as unidades vendidas
+ * por produto e semana sobre {@value #MOVIMENTOS} movimentos, com as
+ * agregações em paralelo, comparadas a um laço sequencial sobre a mesma
+ * lista. A quantidade de threads é a do {@link ForkJoinPool} comum, que
+ * pode ser alterada pela propriedade
+ * {@code java.util.concurrent.ForkJoinPool.common.parallelism}.
+ * </p>
+ *
+ * @author ViniMonster
+ */
+public class AnaliseBenchmark {
+
+    /** Quantidade de movimentos analisados. */
+    private static final int MOVIMENTOS = 3_000_000;
+
+    public static void main(String[] args) {
+        List<MovimentoEstoque> movimentos = gerar();
+        Analise vendas = Analise.de(movimentos).tipos(TipoMovimento.VENDA);
+
+        System.out.println("threads: " + ForkJoinPool.commonPool().getParallelism());
+        System.out.println("consulta;tempo(ms);grupos");
+
+        for (int rodada = 0; rodada < 5; rodada++) {
+            long t0 = System.nanoTime();
+            Map<String, Long> sequencial = new HashMap<>();
+            for (MovimentoEstoque m : movimentos)
+                if (m instanceof VendasClientes)
+                    sequencial.merge(((VendasClientes) m).getCliente().getNome(), m.getValorTotalCentavos(), Long::sum);
+            long t1 = System.nanoTime();
+            Map<String, Long> receita = vendas.agrupar(Campos.cliente(), Agregacoes.soma(Campos.valorCentavos()));
+            long t2 = System.nanoTime();
+            Map<String, Map<java.time.LocalDate, Long>> semanas = vendas.agrupar(Campos.produto(),
+                    Agregacoes.porChave(Campos.semana(), Agregacoes.soma(Campos.quantidade())));
+            long t3 = System.nanoTime();
+
+            System.out.printf("receita/cliente (laço);%.0f;%d%n", (t1 - t0) / 1e6, sequencial.size());
+            System.out.printf("receita/cliente;%.0f;%d%n", (t2 - t1) / 1e6, receita.size());
+            System.out.printf("unidades/produto/semana;%.0f;%d%n", (t3 - t2) / 1e6, semanas.size());
+        }
+    }
+
+    private static List<MovimentoEstoque> gerar() {
+        Random rnd = new Random(42);
+        List<Produto> produtos = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++)
+            produtos.add(new Produto("SKU" + i, "Produto " + i, 10f + i % 50, 0, Categoria.hardware));
+        List<Cliente> clientes = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) clientes.add(new Cliente("Cliente " + i, ""));
+        Fornecedor fornecedor = new Fornecedor("Fornecedor", "");
+
+        LocalDateTime base = LocalDateTime.of(2022, 1, 1, 0, 0);
+        List<MovimentoEstoque> lista = new ArrayList<>(MOVIMENTOS);
+        for (int i = 0; i < MOVIMENTOS; i++) {
+            Produto p = produtos.get(rnd.nextInt(produtos.size()));
+            LocalDateTime data = base.plusSeconds(rnd.nextInt(3 * 365 * 86_400));
+            Centavos valor = Centavos.de(p.getValorUnitarioCentavos());
+            int qtd = 1 + rnd.nextInt(10);
+            lista.add(rnd.nextInt(4) == 0
+                    ? new EntradaProduto(valor, data, qtd, p, fornecedor)
+                    : new VendasClientes(valor, data, qtd, p, clientes.get(rnd.nextInt(clientes.size()))));
+        }
+        return lista;
+    }
+}
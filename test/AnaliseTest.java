@@ -0,0 +1,119 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+
+import analytics.Agregacoes;
+import analytics.Analise;
+import analytics.Campos;
+import model.*;
+import persistence.ArmazenamentoMemoria;
+
+/**
+ * @author ViniMonster
+ */
+public class AnaliseTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private static List<MovimentoEstoque> gerar(int n) {
+        Random rnd = new Random(5);
+        List<Produto> produtos = new ArrayList<>();
+        Categoria[] categorias = Categoria.values();
+        for (int i = 0; i < 50; i++)
+            produtos.add(new Produto("A" + i, "Produto " + i, 10f, 0, categorias[i % categorias.length]));
+
+        List<MovimentoEstoque> lista = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Produto p = produtos.get(rnd.nextInt(produtos.size()));
+            LocalDateTime d = BASE.plusMinutes(rnd.nextInt(365 * 24 * 60));
+            Centavos v = Centavos.de(1 + rnd.nextInt(50_000));
+            int q = 1 + rnd.nextInt(9);
+            switch (rnd.nextInt(3)) {
+                case 0: lista.add(new EntradaProduto(v, d, q, p, new Fornecedor("F" + rnd.nextInt(5), ""))); break;
+                case 1: lista.add(new VendasClientes(v, d, q, p, new Cliente("C" + rnd.nextInt(300), ""))); break;
+                default: lista.add(new UsoInterno(v, d, q, p, "interno"));
+            }
+        }
+        return lista;
+    }
+
+    @Test
+    void agrupamentoParaleloDeveCoincidirComLacoSequencial() {
+        List<MovimentoEstoque> movimentos = gerar(60_000);
+        Analise analise = Analise.de(movimentos);
+
+        Map<String, Long> receita = analise.tipos(TipoMovimento.VENDA)
+                .agrupar(Campos.cliente(), Agregacoes.soma(Campos.valorCentavos()));
+        Map<String, Long> volume = analise.agrupar(Campos.fornecedor(), Agregacoes.soma(Campos.quantidade()));
+        Map<String, Map<LocalDate, Long>> porSemana = analise.tipos(TipoMovimento.VENDA)
+                .agrupar(Campos.produto(), Agregacoes.porChave(Campos.semana(), Agregacoes.soma(Campos.quantidade())));
+
+        Map<String, Long> receitaEsperada = new HashMap<>();
+        Map<String, Long> volumeEsperado = new HashMap<>();
+        Map<String, Map<LocalDate, Long>> semanaEsperada = new HashMap<>();
+        for (MovimentoEstoque m : movimentos) {
+            if (m instanceof VendasClientes) {
+                VendasClientes v = (VendasClientes) m;
+                receitaEsperada.merge(v.getCliente().getNome(), m.getValorTotalCentavos(), Long::sum);
+                LocalDate segunda = m.getData().toLocalDate();
+                while (segunda.getDayOfWeek() != java.time.DayOfWeek.MONDAY) segunda = segunda.minusDays(1);
+                semanaEsperada.computeIfAbsent(m.getProduto().getCodigo(), k -> new HashMap<>())
+                        .merge(segunda, (long) m.getQtd(), Long::sum);
+            } else if (m instanceof EntradaProduto) {
+                volumeEsperado.merge(((EntradaProduto) m).getFornecedor().getNome(), (long) m.getQtd(), Long::sum);
+            }
+        }
+
+        assertEquals(receitaEsperada, receita);
+        assertEquals(volumeEsperado, volume);
+        assertEquals(semanaEsperada, porSemana);
+    }
+
+    @Test
+    void agregacoesDevemCalcularContagemExtremosEDistintos() {
+        List<MovimentoEstoque> movimentos = gerar(30_000);
+        Analise usos = Analise.de(movimentos).tipos(TipoMovimento.USO);
+
+        LongSummaryStatistics esperado = new LongSummaryStatistics();
+        Set<String> produtos = new HashSet<>();
+        for (MovimentoEstoque m : movimentos) {
+            if (m.getTipo() != TipoMovimento.USO) continue;
+            esperado.accept(m.getValorUnitarioCentavos());
+            produtos.add(m.getProduto().getCodigo());
+        }
+
+        assertEquals(esperado.getCount(), (long) usos.agregar(Agregacoes.contagem()));
+        assertEquals(esperado.getMin(), usos.agregar(Agregacoes.minimo(Campos.valorUnitarioCentavos())).getAsLong());
+        assertEquals(esperado.getMax(), usos.agregar(Agregacoes.maximo(Campos.valorUnitarioCentavos())).getAsLong());
+        assertEquals(esperado.getSum(), usos.agregar(Agregacoes.estatisticas(Campos.valorUnitarioCentavos())).getSum());
+        assertEquals(produtos, usos.agregar(Agregacoes.distintos(Campos.produto())));
+        assertEquals(0L, (long) usos.agregar(Agregacoes.contarDistintos(Campos.cliente())));
+        assertFalse(usos.periodo(BASE.minusDays(2), BASE.minusDays(1))
+                .agregar(Agregacoes.maximo(Campos.quantidade())).isPresent());
+
+        List<Map.Entry<Categoria, Long>> maiores = Analise.de(movimentos)
+                .maiores(Campos.categoria(), Agregacoes.soma(Campos.valorCentavos()), 2);
+        assertEquals(2, maiores.size());
+        assertTrue(maiores.get(0).getValue() >= maiores.get(1).getValue());
+    }
+
+    @Test
+    void analiseDoControleDeveSerUmRetratoIndependente() {
+        ControleEstoque ce = new ControleEstoque(new ArmazenamentoMemoria(), true);
+        Produto p = new Produto("R1", "Fone", Centavos.de(5_000), 10, Categoria.acessorios);
+        ce.adicionarProduto(p);
+        ce.registrarMovimento(new VendasClientes(Centavos.de(5_000), BASE, 2, p, new Cliente("Ana", "")));
+
+        Analise analise = Analise.de(ce);
+        ce.registrarMovimento(new VendasClientes(Centavos.de(5_000), BASE.plusDays(1), 1, p, new Cliente("Bia", "")));
+
+        assertEquals(1, analise.tamanho());
+        assertEquals(Map.of("Ana", 10_000L),
+                analise.agrupar(Campos.cliente(), Agregacoes.soma(Campos.valorCentavos())));
+        assertEquals(-2L, (long) analise.agregar(Agregacoes.soma(Campos.quantidadeAssinada())));
+    }
+}
@@ -0,0 +1,55 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import model.Centavos;
+
+/**
+ * @author ViniMonster
+ */
+public class CentavosTest {
+
+    @Test
+    void formatarDeveUsarDuasCasasDecimais() {
+        assertEquals("0.00", Centavos.formatar(0));
+        assertEquals("0.05", Centavos.formatar(5));
+        assertEquals("12.30", Centavos.formatar(1230));
+        assertEquals("-0.05", Centavos.formatar(-5));
+        assertEquals("-1234567.89", Centavos.formatar(-123456789));
+        assertEquals("92233720368547758.07", Centavos.formatar(Long.MAX_VALUE));
+        assertEquals("-92233720368547758.08", Centavos.formatar(Long.MIN_VALUE));
+    }
+
+    @Test
+    void lerDeveInterpretarValoresFormatadosEAntigos() {
+        assertEquals(1230, Centavos.ler("12.30"));
+        assertEquals(1230, Centavos.ler("12.3"));
+        assertEquals(1200, Centavos.ler("12"));
+        assertEquals(-5, Centavos.ler("-0.05"));
+        assertEquals(999_999_999, Centavos.ler("9999999.99"));
+
+        // formas gravadas por String.valueOf(float)
+        assertEquals(1_250_000_000, Centavos.ler("1.25E7"));
+        assertEquals(33, Centavos.ler("0.333"));
+        assertEquals(1999, Centavos.ler("19.99"));
+
+        assertThrows(NumberFormatException.class, () -> Centavos.ler(""));
+        assertThrows(NumberFormatException.class, () -> Centavos.ler("abc"));
+        for (String texto : new String[]{"NaN", "Infinity", "-Infinity", "1e300"})
+            assertThrows(NumberFormatException.class, () -> Centavos.ler(texto));
+
+        for (long c : new long[]{0, 1, 99, 100, 101, -101, 123_456_789_012L})
+            assertEquals(c, Centavos.ler(Centavos.formatar(c)));
+    }
+
+    @Test
+    void somasEmCentavosDevemSerExatas() {
+        long total = 0;
+        for (int i = 0; i < 1_000_000; i++) total += Centavos.ler("0.10");
+        assertEquals(10_000_000, total);
+        assertEquals("100000.00", Centavos.formatar(total));
+
+        assertEquals(Centavos.de(10), Centavos.de(10));
+        assertEquals(1010, Centavos.arredondar(10.1f));
+    }
+}
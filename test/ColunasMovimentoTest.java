@@ -0,0 +1,147 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+
+import model.*;
+import persistence.ArmazenamentoMemoria;
+
+/**
+ * @author ViniMonster
+ */
+public class ColunasMovimentoTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private static List<MovimentoEstoque> gerar(List<Produto> produtos, int n, long semente) {
+        Random rnd = new Random(semente);
+        Fornecedor f = new Fornecedor("F", "");
+        Cliente c = new Cliente("C", "");
+        List<MovimentoEstoque> lista = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Produto p = produtos.get(rnd.nextInt(produtos.size()));
+            Centavos v = Centavos.de(1 + rnd.nextInt(100_000));
+            LocalDateTime d = BASE.plusSeconds(rnd.nextInt(10_000_000)).plusNanos(rnd.nextInt(1000));
+            int q = 1 + rnd.nextInt(20);
+            switch (rnd.nextInt(5)) {
+                case 0: lista.add(new EntradaProduto(v, d, q, p, f)); break;
+                case 1: lista.add(new VendasClientes(v, d, q, p, c)); break;
+                case 2: lista.add(new UsoInterno(v, d, q, p, "escritório")); break;
+                case 3: lista.add(new DevolucaoFornecedores(v, d, q, p, f)); break;
+                default: lista.add(new OutrasSaidas(v, d, q, p, "avaria"));
+            }
+        }
+        return lista;
+    }
+
+    private static List<Produto> catalogo(int n) {
+        List<Produto> produtos = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+            produtos.add(new Produto("C" + i, "Produto " + i, 10f, 0, Categoria.hardware));
+        return produtos;
+    }
+
+    @Test
+    void somasDevemCoincidirComOsMovimentosEmVariosBlocos() {
+        List<Produto> produtos = catalogo(7);
+        List<MovimentoEstoque> movimentos = gerar(produtos, ColunasMovimento.TAMANHO_BLOCO * 2 + 123, 7);
+        ColunasMovimento colunas = new ColunasMovimento(movimentos);
+
+        assertEquals(movimentos.size(), colunas.tamanho());
+        assertEquals(produtos.size(), colunas.quantidadeProdutos());
+
+        LocalDateTime inicio = BASE.plusSeconds(2_000_000), fim = BASE.plusSeconds(6_000_000);
+        long valor = 0, qtd = 0;
+        long[] porTipo = new long[TipoMovimento.values().length];
+        Map<Produto, Long> porProduto = new HashMap<>();
+        for (MovimentoEstoque m : movimentos) {
+            if (m.getData().isBefore(inicio) || m.getData().isAfter(fim)) continue;
+            int sinal = m.getTipo().getSinal();
+            valor += sinal * m.getValorTotalCentavos();
+            qtd += sinal * m.getQtd();
+            porTipo[m.getTipo().ordinal()] += m.getValorTotalCentavos();
+            porProduto.merge(m.getProduto(), (long) sinal * m.getQtd(), Long::sum);
+        }
+
+        assertEquals(valor, colunas.somarValor(inicio, fim));
+        assertEquals(qtd, colunas.somarQuantidade(inicio, fim));
+
+        Map<TipoMovimento, Long> somas = colunas.somarValorPorTipo(inicio, fim);
+        for (TipoMovimento t : TipoMovimento.values())
+            assertEquals(porTipo[t.ordinal()], (long) somas.get(t));
+
+        long[] variacao = colunas.somarQuantidadePorProduto(inicio, fim);
+        for (int i = 0; i < variacao.length; i++)
+            assertEquals((long) porProduto.getOrDefault(colunas.produto(i), 0L), variacao[i]);
+    }
+
+    @Test
+    void linhasDevemPreservarOsAtributosDosMovimentos() {
+        List<MovimentoEstoque> movimentos = gerar(catalogo(3), ColunasMovimento.TAMANHO_BLOCO + 5, 11);
+        ColunasMovimento colunas = new ColunasMovimento(movimentos);
+
+        for (int i : new int[]{0, 1, ColunasMovimento.TAMANHO_BLOCO - 1, ColunasMovimento.TAMANHO_BLOCO,
+                movimentos.size() - 1}) {
+            MovimentoEstoque m = movimentos.get(i);
+            assertEquals(m.getData(), colunas.getData(i));
+            assertEquals(m.getQtd(), colunas.getQtd(i));
+            assertEquals(m.getValorUnitarioCentavos(), colunas.getValorUnitarioCentavos(i));
+            assertSame(m.getProduto(), colunas.getProduto(i));
+            assertEquals(m.getTipo(), colunas.getTipo(i));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> colunas.getQtd(movimentos.size()));
+    }
+
+    @Test
+    void limitesDoPeriodoDevemSerInclusivos() {
+        Produto p = new Produto("P", "Produto", 1f, 0, Categoria.hardware);
+        LocalDateTime d = BASE.plusNanos(500);
+        ColunasMovimento colunas = new ColunasMovimento();
+        colunas.adicionar(new EntradaProduto(Centavos.de(250), d, 4, p, new Fornecedor("F", "")));
+
+        assertEquals(1000, colunas.somarValor(d, d));
+        assertEquals(0, colunas.somarValor(d.plusNanos(1), LocalDateTime.MAX));
+        assertEquals(0, colunas.somarValor(LocalDateTime.MIN, d.minusNanos(1)));
+        assertEquals(4, colunas.somarQuantidade(LocalDateTime.MIN, LocalDateTime.MAX));
+    }
+
+    @Test
+    void datasForaDoIntervaloDeNanossegundosDevemSerAceitas() {
+        Produto p = new Produto("P", "Produto", 1f, 0, Categoria.hardware);
+        Fornecedor f = new Fornecedor("F", "");
+        LocalDateTime antiga = LocalDateTime.of(1500, 6, 1, 12, 0, 0, 7);
+        LocalDateTime futura = LocalDateTime.of(2300, 1, 1, 0, 0, 0, 999_999_999);
+        ColunasMovimento colunas = new ColunasMovimento(List.of(
+                new EntradaProduto(Centavos.de(100), antiga, 1, p, f),
+                new EntradaProduto(Centavos.de(100), BASE, 2, p, f),
+                new EntradaProduto(Centavos.de(100), futura, 4, p, f)));
+
+        assertEquals(antiga, colunas.getData(0));
+        assertEquals(futura, colunas.getData(2));
+        assertEquals(7, colunas.somarQuantidade(LocalDateTime.MIN, LocalDateTime.MAX));
+        assertEquals(4, colunas.somarQuantidade(futura, futura));
+        assertEquals(0, colunas.somarQuantidade(futura.plusNanos(1), LocalDateTime.MAX));
+        assertEquals(3, colunas.somarQuantidade(LocalDateTime.MIN, futura.minusNanos(1)));
+        assertEquals(1, colunas.somarQuantidade(antiga.minusYears(1000), antiga));
+        assertEquals(0, colunas.somarQuantidade(antiga.plusNanos(1), BASE.minusNanos(1)));
+    }
+
+    @Test
+    void exportacaoDoControleDeveSeguirAOrdemPorData() {
+        ControleEstoque ce = new ControleEstoque(new ArmazenamentoMemoria());
+        Produto p = new Produto("P", "Produto", 1f, 10, Categoria.hardware);
+        ce.adicionarProduto(p);
+        ce.registrarMovimento(new VendasClientes(Centavos.de(300), BASE.plusDays(2), 2, p, new Cliente("C", "")));
+        ce.registrarMovimento(new EntradaProduto(Centavos.de(100), BASE.plusDays(1), 5, p, new Fornecedor("F", "")));
+
+        ColunasMovimento colunas = ce.exportarColunas();
+
+        assertEquals(2, colunas.tamanho());
+        assertEquals(TipoMovimento.ENTRADA, colunas.getTipo(0));
+        assertEquals(TipoMovimento.VENDA, colunas.getTipo(1));
+        assertEquals(ce.getSaldoPorPeriodoCentavos(BASE, BASE.plusDays(3)),
+                colunas.somarValor(BASE, BASE.plusDays(3)));
+    }
+}
@@ -0,0 +1,200 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+import model.*;
+import persistence.ArmazenamentoCsv;
+import persistence.ArmazenamentoMemoria;
+
+/**
+ * Benchmark das operações do {@link ControleEstoque}.
+ * <p>
+ * Não faz parte da suíte de testes: deve ser executado manualmente pelo
+ * método {@code main}. Os dados são gravados em diretórios temporários,
+ * apagados ao final de cada medição.
+ * </p>
+ *
+ * <p>Mede a importação de um recebimento de fornecedor com
+ * {@value #RECEBIMENTO} linhas, registrando os movimentos um a um com
+ * {@link ControleEstoque#registrarMovimento(Movimentavel)} e de uma só vez
+ * com {@link ControleEstoque#registrarMovimentos(Collection)}.</p>
+ *
+ * <p>Mede também a vazão de reservas do {@link ReservasEstoque}: várias
+ * threads reservam e liberam unidades de um catálogo pequeno, sem gravação
+ * em disco, enquanto a roda de temporização expira as reservas esquecidas.</p>
+ *
+ * <p>Por fim, compara a soma do saldo de um período percorrendo a lista de
+ * movimentos e percorrendo as {@link ColunasMovimento}. A quantidade de
+ * linhas das colunas pode ser informada no primeiro argumento (padrão
+ * {@value #LINHAS_COLUNAS}); 100 milhões de linhas exigem cerca de 2,2 GB
+ * de heap.</p>
+ *
+ * @author ViniMonster
+ */
+public class ControleEstoqueBenchmark {
+
+    /** Quantidade de linhas do recebimento importado. */
+    private static final int RECEBIMENTO = 100_000;
+
+    /** Quantidade de produtos do catálogo. */
+    private static final int PRODUTOS = 5_000;
+
+    /** Reservas feitas por cada thread na medição de reservas. */
+    private static final int RESERVAS = 200_000;
+
+    /** Quantidade padrão de linhas das colunas na medição de varredura. */
+    private static final int LINHAS_COLUNAS = 10_000_000;
+
+    /** Quantidade de movimentos distintos da lista na medição de varredura. */
+    private static final int MOVIMENTOS_LISTA = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("importacao;movimentos;tempo(ms);mov/s");
+
+        for (boolean emLote : new boolean[]{false, true}) {
+            Path dir = Files.createTempDirectory("estoque");
+            try {
+                ControleEstoque ce = new ControleEstoque(new ArmazenamentoCsv(dir));
+                List<Produto> catalogo = new ArrayList<>(PRODUTOS);
+                for (int i = 0; i < PRODUTOS; i++) {
+                    Produto p = new Produto("SKU" + i, "Produto " + i, 10f + i % 50, 0, Categoria.hardware);
+                    catalogo.add(p);
+                    ce.adicionarProduto(p);
+                }
+                List<MovimentoEstoque> recebimento = gerarRecebimento(catalogo);
+
+                long inicio = System.nanoTime();
+                if (emLote) {
+                    ce.registrarMovimentos(recebimento);
+                } else {
+                    for (MovimentoEstoque m : recebimento) ce.registrarMovimento(m);
+                }
+                double ms = (System.nanoTime() - inicio) / 1e6;
+
+                System.out.printf("%s;%d;%.0f;%.0f%n", emLote ? "lote" : "individual",
+                        RECEBIMENTO, ms, RECEBIMENTO / (ms / 1e3));
+            } finally {
+                apagar(dir);
+            }
+        }
+
+        medirReservas();
+        medirVarredura(args.length > 0 ? Integer.parseInt(args[0]) : LINHAS_COLUNAS);
+    }
+
+    /**
+     * Mede a soma do saldo de um período sobre a lista de movimentos e
+     * sobre as colunas, em uma única thread. As colunas são preenchidas
+     * repetindo os movimentos da lista.
+     */
+    private static void medirVarredura(int linhas) {
+        System.out.println();
+        System.out.println("varredura;linhas;tempo(ms);ns/linha;saldo");
+
+        List<Produto> catalogo = new ArrayList<>(PRODUTOS);
+        for (int i = 0; i < PRODUTOS; i++)
+            catalogo.add(new Produto("SKU" + i, "Produto " + i, 10f + i % 50, 0, Categoria.hardware));
+
+        Random rnd = new Random(42);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        Cliente cliente = new Cliente("Cliente", "");
+        Fornecedor fornecedor = new Fornecedor("Fornecedor", "");
+        List<MovimentoEstoque> lista = new ArrayList<>(MOVIMENTOS_LISTA);
+        for (int i = 0; i < MOVIMENTOS_LISTA; i++) {
+            Produto p = catalogo.get(rnd.nextInt(PRODUTOS));
+            LocalDateTime data = base.plusSeconds(rnd.nextInt(365 * 86_400));
+            int qtd = 1 + rnd.nextInt(10);
+            lista.add(rnd.nextBoolean()
+                    ? new EntradaProduto(Centavos.de(p.getValorUnitarioCentavos()), data, qtd, p, fornecedor)
+                    : new VendasClientes(Centavos.de(p.getValorUnitarioCentavos()), data, qtd, p, cliente));
+        }
+
+        ColunasMovimento colunas = new ColunasMovimento();
+        for (int i = 0; i < linhas; i++) colunas.adicionar(lista.get(i % MOVIMENTOS_LISTA));
+
+        LocalDateTime inicio = base.plusDays(90), fim = base.plusDays(180);
+        for (int rodada = 0; rodada < 5; rodada++) {
+            long t0 = System.nanoTime();
+            long saldo = 0;
+            for (MovimentoEstoque m : lista) {
+                if (m.getData().isBefore(inicio) || m.getData().isAfter(fim)) continue;
+                saldo += m.getTipo().getSinal() * m.getValorTotalCentavos();
+            }
+            long t1 = System.nanoTime();
+            long saldoColunas = colunas.somarValor(inicio, fim);
+            long t2 = System.nanoTime();
+
+            System.out.printf("lista;%d;%.1f;%.2f;%d%n", lista.size(), (t1 - t0) / 1e6,
+                    (double) (t1 - t0) / lista.size(), saldo);
+            System.out.printf("colunas;%d;%.1f;%.2f;%d%n", linhas, (t2 - t1) / 1e6,
+                    (double) (t2 - t1) / linhas, saldoColunas);
+        }
+    }
+
+    /**
+     * Mede a vazão de reservas com quantidades crescentes de threads.
+     * Uma em cada dez reservas não é liberada e fica para a roda expirar.
+     */
+    private static void medirReservas() throws Exception {
+        System.out.println();
+        System.out.println("threads;reservas/s;expiradas");
+
+        int maxThreads = Runtime.getRuntime().availableProcessors() * 2;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ControleEstoque ce = new ControleEstoque(new ArmazenamentoMemoria(), true);
+            for (int i = 0; i < 64; i++)
+                ce.adicionarProduto(new Produto("SKU" + i, "Produto " + i, 10f, 1_000_000, Categoria.hardware));
+
+            ReservasEstoque reservas = new ReservasEstoque(ce, 50);
+            reservas.iniciar(10);
+
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            CountDownLatch inicio = new CountDownLatch(1);
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int semente = t;
+                tarefas.add(executor.submit(() -> {
+                    Random rnd = new Random(semente);
+                    inicio.await();
+                    for (int i = 0; i < RESERVAS; i++) {
+                        long id = reservas.reservar("SKU" + rnd.nextInt(64), 1);
+                        if (i % 10 != 0) reservas.liberar(id);
+                    }
+                    return null;
+                }));
+            }
+
+            long t0 = System.nanoTime();
+            inicio.countDown();
+            for (Future<?> f : tarefas) f.get();
+            double segundos = (System.nanoTime() - t0) / 1e9;
+            executor.shutdown();
+
+            Thread.sleep(200);
+            reservas.encerrar();
+            System.out.printf("%d;%.0f;%d%n", threads, threads * RESERVAS / segundos, reservas.getExpiradas());
+        }
+    }
+
+    private static List<MovimentoEstoque> gerarRecebimento(List<Produto> catalogo) {
+        Random rnd = new Random(42);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        Fornecedor fornecedor = new Fornecedor("Fornecedor", "");
+        List<MovimentoEstoque> lista = new ArrayList<>(RECEBIMENTO);
+        for (int i = 0; i < RECEBIMENTO; i++) {
+            Produto p = catalogo.get(rnd.nextInt(catalogo.size()));
+            lista.add(new EntradaProduto(p.getValorUnitario(), base.plusSeconds(i), 1 + rnd.nextInt(10), p, fornecedor));
+        }
+        return lista;
+    }
+
+    private static void apagar(Path dir) throws IOException {
+        try (Stream<Path> arquivos = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) arquivos.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(p);
+        }
+    }
+}
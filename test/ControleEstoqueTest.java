@@ -3,11 +3,24 @@ import static org.junit.jupiter.api.Assertions.*;
 import java.io.IOException;
 import java.nio.file.*;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.jupiter.api.*;
 
 import model.*;
+import persistence.Armazenamento;
+import persistence.ArmazenamentoBinario;
+import persistence.ArmazenamentoCsv;
+import persistence.ArmazenamentoMemoria;
 import persistence.DataStore;
+import persistence.Particao;
 
 /**
  * @author ViniMonster
@@ -91,4 +104,736 @@ public class ControleEstoqueTest {
         assertEquals(5, ce.getSaldoAtualQuantidade());
         assertEquals(2 * 10 + 3 * 20, ce.getSaldoAtualValor());
     }
+
+    @Test
+    void reiniciarDeveReaplicarApenasMovimentosAposCheckpoint() {
+        ControleEstoque ce = new ControleEstoque();
+
+        Produto p = new Produto("P20", "Memória", 150f, 2, Categoria.hardware);
+        ce.adicionarProduto(p);
+        ce.registrarMovimento(new EntradaProduto(150f, LocalDateTime.of(2024,1,1,10,0), 3, p, null));
+
+        ControleEstoque reaberto = new ControleEstoque();
+        assertEquals(5, reaberto.buscarProdutoPorCodigo("P20").getQtdEstoque());
+        assertEquals(1, reaberto.getMovimentos().size());
+
+        reaberto.salvarCheckpoint();
+        reaberto.registrarMovimento(new VendasClientes(200f, LocalDateTime.of(2024,1,2,10,0), 1,
+                reaberto.buscarProdutoPorCodigo("P20"), null));
+
+        ControleEstoque novamente = new ControleEstoque();
+        assertEquals(4, novamente.buscarProdutoPorCodigo("P20").getQtdEstoque());
+        assertEquals(2, novamente.getMovimentos().size());
+    }
+
+    @Test
+    void movimentosDaCaudaQueNaoPodemSerAplicadosDevemSerDescartados() throws Exception {
+        ArmazenamentoMemoria armazenamento = new ArmazenamentoMemoria();
+        Produto p = new Produto("P23", "Fonte", 100f, 1, Categoria.hardware);
+        new ControleEstoque(armazenamento).adicionarProduto(p);
+
+        LocalDateTime d = LocalDateTime.of(2024,2,2,10,0);
+        armazenamento.anexarMovimentos(List.of(
+                new VendasClientes(120f, d, 5, p, null),
+                new EntradaProduto(100f, d.plusHours(1), 2, p, null)));
+
+        ControleEstoque reaberto = new ControleEstoque(armazenamento);
+        assertEquals(3, reaberto.buscarProdutoPorCodigo("P23").getQtdEstoque());
+        assertEquals(1, reaberto.getMovimentos().size());
+        assertTrue(reaberto.listarSaidas().isEmpty());
+        assertEquals(0, reaberto.getResumoCategoria(Categoria.hardware).getUnidadesSaida());
+        assertEquals(20_000, reaberto.getSaldoPorPeriodoCentavos(d, d.plusDays(1)));
+    }
+
+    @Test
+    void gravacaoAssincronaDeveGravarEmLotes() throws Exception {
+        ControleEstoque ce = new ControleEstoque();
+
+        Produto p = new Produto("P21", "Pendrive", 40f, 0, Categoria.acessorios);
+        ce.adicionarProduto(p);
+
+        ce.ativarGravacaoAssincrona(5, 50);
+        var futuros = new java.util.ArrayList<java.util.concurrent.CompletableFuture<Void>>();
+        for (int i = 0; i < 200; i++)
+            futuros.add(ce.registrarMovimentoAsync(
+                    new EntradaProduto(40f, LocalDateTime.of(2024,2,1,10,0).plusMinutes(i), 1, p, null)));
+
+        assertEquals(200, p.getQtdEstoque());
+        for (var f : futuros) f.get(5, TimeUnit.SECONDS);
+        ce.desativarGravacaoAssincrona();
+
+        ControleEstoque reaberto = new ControleEstoque();
+        assertEquals(200, reaberto.getMovimentos().size());
+        assertEquals(200, reaberto.buscarProdutoPorCodigo("P21").getQtdEstoque());
+    }
+
+    @Test
+    void armazenamentosInjetadosDevemReconstruirOEstado() {
+        Armazenamento[] armazenamentos = {
+                new ArmazenamentoMemoria(),
+                new ArmazenamentoBinario(Paths.get("data", "binario"))
+        };
+
+        for (Armazenamento a : armazenamentos) {
+            ControleEstoque ce = new ControleEstoque(a);
+
+            Produto p = new Produto("P22", "Teclado", 90f, 1, Categoria.perifericos);
+            ce.adicionarProduto(p);
+            ce.registrarMovimento(new EntradaProduto(90f, LocalDateTime.of(2024,3,1,10,0), 4, p, null));
+            ce.registrarMovimento(new VendasClientes(120f, LocalDateTime.of(2024,3,2,10,0), 2, p,
+                    new Cliente("Ana", "")));
+
+            ControleEstoque reaberto = new ControleEstoque(a);
+            assertEquals(3, reaberto.buscarProdutoPorCodigo("P22").getQtdEstoque());
+            assertEquals(2, reaberto.getMovimentos().size());
+            assertNotSame(p, reaberto.buscarProdutoPorCodigo("P22"));
+
+            reaberto.salvarCheckpoint();
+            reaberto.registrarMovimento(new VendasClientes(120f, LocalDateTime.of(2024,3,3,10,0), 1,
+                    reaberto.buscarProdutoPorCodigo("P22"), null));
+
+            ControleEstoque novamente = new ControleEstoque(a);
+            assertEquals(2, novamente.buscarProdutoPorCodigo("P22").getQtdEstoque());
+            assertEquals(3, novamente.getMovimentos().size());
+        }
+
+        assertFalse(Files.exists(Paths.get("data", "movements.csv")));
+    }
+
+    @Test
+    void removerProdutoDeveAtualizarIndiceECheckpoint() {
+        ControleEstoque ce = new ControleEstoque(new ArmazenamentoMemoria());
+
+        Produto p = new Produto("P23", "Monitor", 800f, 2, Categoria.perifericos);
+        ce.adicionarProduto(p);
+
+        assertThrows(IllegalArgumentException.class, () ->
+                ce.adicionarProduto(new Produto("P23", "Outro", 10f, 1, Categoria.perifericos)));
+        assertThrows(UnsupportedOperationException.class, () -> ce.getProdutos().remove(p));
+
+        assertSame(p, ce.removerProduto("P23"));
+        assertNull(ce.buscarProdutoPorCodigo("P23"));
+        assertNull(ce.removerProduto("P23"));
+        assertTrue(ce.getProdutos().isEmpty());
+
+        ce.adicionarProduto(new Produto("P23", "Monitor", 850f, 1, Categoria.perifericos));
+        assertEquals(850f, ce.buscarProdutoPorCodigo("P23").getValorUnitario());
+    }
+
+    @Test
+    void totaisDevemAcompanharMovimentosERemocoes() {
+        ControleEstoque ce = new ControleEstoque(new ArmazenamentoMemoria());
+
+        Produto p1 = new Produto("P24", "SSD", 0.1f, 0, Categoria.hardware);
+        Produto p2 = new Produto("P25", "Hub", 35f, 4, Categoria.acessorios);
+        ce.adicionarProduto(p1);
+        ce.adicionarProduto(p2);
+
+        for (int i = 0; i < 100_000; i++)
+            ce.registrarMovimento(new EntradaProduto(0.1f, LocalDateTime.of(2024,4,1,0,0).plusSeconds(i), 1, p1, null));
+        ce.registrarMovimento(new VendasClientes(50f, LocalDateTime.of(2024,4,3,0,0), 3, p2, null));
+        assertThrows(IllegalArgumentException.class, () ->
+                ce.registrarMovimento(new VendasClientes(50f, LocalDateTime.of(2024,4,3,1,0), 5, p2, null)));
+
+        assertEquals(100_001L, ce.getSaldoAtualQuantidade());
+        assertEquals(1_003_500L, ce.getSaldoAtualValorCentavos());
+        assertEquals(10035.0, ce.getSaldoAtualValor(), 0.0);
+
+        ce.removerProduto("P24");
+        assertEquals(1L, ce.getSaldoAtualQuantidade());
+        assertEquals(35.0, ce.getSaldoAtualValor(), 1e-6);
+    }
+
+    @Test
+    void totaisPorCategoriaDevemAcompanharCatalogoEMovimentos() {
+        ArmazenamentoMemoria armazenamento = new ArmazenamentoMemoria();
+        ControleEstoque ce = new ControleEstoque(armazenamento);
+
+        Produto ssd = new Produto("C1", "SSD", Centavos.de(30_000), 2, Categoria.hardware);
+        Produto hub = new Produto("C2", "Hub", Centavos.de(3_500), 4, Categoria.acessorios);
+        Produto cabo = new Produto("C3", "Cabo", Centavos.de(990), 10, Categoria.acessorios);
+        ce.adicionarProduto(ssd);
+        ce.adicionarProduto(hub);
+        ce.adicionarProduto(cabo);
+
+        LocalDateTime data = LocalDateTime.of(2024, 9, 1, 10, 0);
+        ce.registrarMovimento(new EntradaProduto(Centavos.de(3_500), data, 6, hub, null));
+        ce.registrarMovimentos(List.of(
+                new VendasClientes(Centavos.de(990), data.plusHours(1), 3, cabo, null),
+                new UsoInterno(Centavos.de(30_000), data.plusHours(2), 1, ssd, "suporte")));
+
+        ResumoCategoria acessorios = ce.getResumoCategoria(Categoria.acessorios);
+        assertEquals(17, acessorios.getUnidades());
+        assertEquals(10 * 3_500 + 7 * 990, acessorios.getValorCentavos());
+        assertEquals(6, acessorios.getUnidadesEntrada());
+        assertEquals(21_000, acessorios.getValorEntradaCentavos());
+        assertEquals(3, acessorios.getUnidadesSaida());
+        assertEquals(2_970, acessorios.getValorSaidaCentavos());
+
+        ResumoCategoria hardware = ce.getResumoCategoria(Categoria.hardware);
+        assertEquals(1, hardware.getUnidades());
+        assertEquals(30_000, hardware.getValorSaidaCentavos());
+        assertEquals(0, ce.getResumoCategoria(Categoria.perifericos).getUnidades());
+
+        long unidades = 0, valor = 0;
+        for (ResumoCategoria r : ce.getResumoPorCategoria().values()) {
+            unidades += r.getUnidades();
+            valor += r.getValorCentavos();
+        }
+        assertEquals(ce.getSaldoAtualQuantidade(), unidades);
+        assertEquals(ce.getSaldoAtualValorCentavos(), valor);
+
+        ce.removerProduto("C2");
+        assertEquals(7, ce.getResumoCategoria(Categoria.acessorios).getUnidades());
+        assertEquals(6, ce.getResumoCategoria(Categoria.acessorios).getUnidadesEntrada());
+
+        ControleEstoque reaberto = new ControleEstoque(armazenamento);
+        assertEquals(7, reaberto.getResumoCategoria(Categoria.acessorios).getUnidades());
+        assertEquals(3, reaberto.getResumoCategoria(Categoria.acessorios).getUnidadesSaida());
+        assertEquals(1, reaberto.getResumoCategoria(Categoria.hardware).getUnidadesSaida());
+    }
+
+    @Test
+    void totaisPorPeriodoDevemCoincidirComOsMovimentos() {
+        ArmazenamentoMemoria armazenamento = new ArmazenamentoMemoria();
+        ControleEstoque ce = new ControleEstoque(armazenamento);
+
+        Categoria[] categorias = Categoria.values();
+        List<Produto> produtos = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Produto p = new Produto("T" + i, "Produto " + i, Centavos.de(100 + i), 1_000_000, categorias[i % categorias.length]);
+            produtos.add(p);
+            ce.adicionarProduto(p);
+        }
+
+        Random rnd = new Random(23);
+        LocalDateTime base = LocalDateTime.of(2022, 1, 1, 0, 0);
+        List<MovimentoEstoque> lote = new ArrayList<>();
+        for (int i = 0; i < 12_000; i++) {
+            Produto p = produtos.get(rnd.nextInt(produtos.size()));
+            LocalDateTime d = base.plusMinutes(rnd.nextInt(2 * 365 * 24 * 60)).plusSeconds(rnd.nextInt(60));
+            Centavos v = Centavos.de(1 + rnd.nextInt(10_000));
+            int q = 1 + rnd.nextInt(5);
+            lote.add(rnd.nextBoolean()
+                    ? new EntradaProduto(v, d, q, p, null)
+                    : new VendasClientes(v, d, q, p, null));
+        }
+        ce.registrarMovimentos(lote.subList(0, 6_000));
+        for (MovimentoEstoque m : lote.subList(6_000, lote.size())) ce.registrarMovimento(m);
+
+        ControleEstoque reaberto = new ControleEstoque(armazenamento);
+        for (ControleEstoque c : List.of(ce, reaberto)) {
+            for (int k = 0; k < 40; k++) {
+                LocalDateTime inicio = base.plusMinutes(rnd.nextInt(800 * 24 * 60)).plusSeconds(rnd.nextInt(60));
+                LocalDateTime fim = k % 10 == 0
+                        ? inicio.plusMinutes(rnd.nextInt(90))
+                        : inicio.plusHours(rnd.nextInt(24 * 400));
+                if (k % 4 == 0) inicio = inicio.withMinute(0).withSecond(0);
+                assertTotais(lote, c.getTotaisPorPeriodo(inicio, fim));
+            }
+            assertTotais(lote, c.getTotaisPorPeriodo(LocalDateTime.MIN, LocalDateTime.MAX));
+            assertEquals(c.getSaldoPorPeriodoCentavos(base, base.plusYears(1)),
+                    c.getTotaisPorPeriodo(base, base.plusYears(1)).getSaldoCentavos());
+
+            for (TotaisPeriodo t : c.getTotaisDiarios(base.toLocalDate().plusDays(40), base.toLocalDate().plusDays(50)).values())
+                assertTotais(lote, t);
+            SortedMap<java.time.YearMonth, TotaisPeriodo> meses =
+                    c.getTotaisMensais(java.time.YearMonth.of(2021, 12), java.time.YearMonth.of(2024, 1));
+            assertEquals(26, meses.size());
+            for (TotaisPeriodo t : meses.values()) assertTotais(lote, t);
+        }
+    }
+
+    private static void assertTotais(List<MovimentoEstoque> movimentos, TotaisPeriodo totais) {
+        long[][] esperado = new long[TipoMovimento.values().length][Categoria.values().length];
+        long saldo = 0;
+        for (MovimentoEstoque m : movimentos) {
+            if (m.getData().isBefore(totais.getInicio()) || m.getData().isAfter(totais.getFim())) continue;
+            esperado[m.getTipo().ordinal()][m.getProduto().getCategoria().ordinal()] += m.getValorTotalCentavos();
+            saldo += m.getTipo().getSinal() * m.getValorTotalCentavos();
+        }
+        for (TipoMovimento t : TipoMovimento.values())
+            for (Categoria c : Categoria.values())
+                assertEquals(esperado[t.ordinal()][c.ordinal()], totais.getValorCentavos(t, c), totais + " " + t + " " + c);
+        assertEquals(saldo, totais.getSaldoCentavos());
+    }
+
+    @Test
+    void saldoPorPeriodoDeveConsiderarMovimentosRetroativos() {
+        ControleEstoque ce = new ControleEstoque(new ArmazenamentoMemoria());
+
+        Produto p = new Produto("P26", "Webcam", 120f, 10_000, Categoria.perifericos);
+        ce.adicionarProduto(p);
+
+        Random r = new Random(42);
+        LocalDateTime base = LocalDateTime.of(2024,1,1,0,0);
+        for (int i = 0; i < 2000; i++) {
+            LocalDateTime data = base.plusHours(r.nextInt(24 * 60));
+            if (r.nextBoolean())
+                ce.registrarMovimento(new EntradaProduto(100f, data, 1 + r.nextInt(5), p, null));
+            else
+                ce.registrarMovimento(new VendasClientes(150f, data, 1 + r.nextInt(5), p, null));
+        }
+
+        var ordenados = ce.listarMovimentosOrdenados();
+        assertEquals(2000, ordenados.size());
+        for (int i = 1; i < ordenados.size(); i++)
+            assertFalse(ordenados.get(i).getData().isBefore(ordenados.get(i - 1).getData()));
+
+        for (int k = 0; k < 50; k++) {
+            LocalDateTime inicio = base.plusHours(r.nextInt(24 * 60));
+            LocalDateTime fim = inicio.plusHours(r.nextInt(24 * 20));
+
+            double esperado = 0;
+            for (MovimentoEstoque m : ce.getMovimentos()) {
+                if (m.getData().isBefore(inicio) || m.getData().isAfter(fim)) continue;
+                double v = (double) m.getValorUnitario() * m.getQtd();
+                esperado += m instanceof EntradaProduto ? v : -v;
+            }
+            assertEquals(esperado, ce.getSaldoPorPeriodo(inicio, fim), 1e-6);
+        }
+        assertEquals(0.0, ce.getSaldoPorPeriodo(base.plusYears(1), base), 0.0);
+    }
+
+    @Test
+    void listagensPorTipoDevemSerVisoesSomenteLeitura() {
+        ControleEstoque ce = new ControleEstoque(new ArmazenamentoMemoria());
+
+        Produto p = new Produto("P27", "Roteador", 300f, 10, Categoria.hardware);
+        ce.adicionarProduto(p);
+
+        LocalDateTime d = LocalDateTime.of(2024,5,1,9,0);
+        ce.registrarMovimento(new EntradaProduto(300f, d, 5, p, null));
+        ce.registrarMovimento(new VendasClientes(400f, d.plusHours(1), 2, p, null));
+        ce.registrarMovimento(new UsoInterno(300f, d.plusHours(2), 1, p, "Suporte"));
+        ce.registrarMovimento(new OutrasSaidas(300f, d.plusHours(3), 1, p, "Avaria"));
+
+        var entradas = ce.listarEntradas();
+        var saidas = ce.listarSaidas();
+        assertEquals(1, entradas.size());
+        assertEquals(3, saidas.size());
+        assertEquals(TipoMovimento.USO, saidas.get(1).getTipo());
+        assertEquals(1, ce.listarPorTipo(TipoMovimento.OUTRA).size());
+        assertTrue(ce.listarPorTipo(TipoMovimento.DEVOLUCAO).isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> saidas.clear());
+
+        ce.registrarMovimento(new DevolucaoFornecedores(300f, d.plusHours(4), 1, p, null));
+        assertEquals(4, saidas.size());
+        assertEquals(1, ce.listarPorTipo(TipoMovimento.DEVOLUCAO).size());
+    }
+
+    @Test
+    void registrosConcorrentesNaoDevemVenderAlemDoEstoqueNemPerderMovimentos() throws Exception {
+        ArmazenamentoMemoria armazenamento = new ArmazenamentoMemoria();
+        ControleEstoque ce = new ControleEstoque(armazenamento, true);
+
+        int qtdProdutos = 8;
+        Produto[] produtos = new Produto[qtdProdutos];
+        for (int i = 0; i < qtdProdutos; i++) {
+            produtos[i] = new Produto("C" + i, "Item " + i, 10f, 50, Categoria.acessorios);
+            ce.adicionarProduto(produtos[i]);
+        }
+
+        int threads = 8, operacoes = 3000;
+        var registrados = new AtomicInteger();
+        var entradas = new AtomicLong();
+        var vendas = new AtomicLong();
+        var erros = new ConcurrentLinkedQueue<Throwable>();
+        var inicio = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(threads + 1);
+
+        for (int t = 0; t < threads; t++) {
+            int semente = t;
+            executor.submit(() -> {
+                Random r = new Random(semente);
+                try {
+                    inicio.await();
+                    for (int i = 0; i < operacoes; i++) {
+                        Produto p = produtos[r.nextInt(qtdProdutos)];
+                        LocalDateTime data = LocalDateTime.of(2024,6,1,0,0).plusSeconds(r.nextInt(86_400));
+                        int qtd = 1 + r.nextInt(3);
+                        try {
+                            if (r.nextInt(3) == 0) {
+                                ce.registrarMovimento(new EntradaProduto(10f, data, qtd, p, null));
+                                entradas.addAndGet(qtd);
+                            } else {
+                                ce.registrarMovimento(new VendasClientes(12f, data, qtd, p, null));
+                                vendas.addAndGet(qtd);
+                            }
+                            registrados.incrementAndGet();
+                        } catch (IllegalArgumentException estoqueInsuficiente) {
+                            // venda recusada: nada foi registrado
+                        }
+                    }
+                } catch (Throwable e) {
+                    erros.add(e);
+                }
+            });
+        }
+        executor.submit(() -> {
+            try {
+                inicio.await();
+                while (registrados.get() < threads * operacoes / 2) {
+                    for (MovimentoEstoque m : ce.listarMovimentosOrdenados()) m.getQtd();
+                    ce.listarSaidas().size();
+                    ce.getSaldoPorPeriodo(LocalDateTime.of(2024,6,1,0,0), LocalDateTime.of(2024,6,2,0,0));
+                }
+            } catch (Throwable e) {
+                erros.add(e);
+            }
+        });
+
+        inicio.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+        assertTrue(erros.isEmpty(), String.valueOf(erros.peek()));
+
+        long estoque = 0;
+        for (Produto p : produtos) {
+            assertTrue(p.getQtdEstoque() >= 0);
+            estoque += p.getQtdEstoque();
+        }
+        assertEquals(qtdProdutos * 50L + entradas.get() - vendas.get(), estoque);
+        assertEquals(estoque, ce.getSaldoAtualQuantidade());
+        assertEquals(registrados.get(), ce.getMovimentos().size());
+        assertEquals(registrados.get(), ce.listarMovimentosOrdenados().size());
+
+        ControleEstoque reaberto = new ControleEstoque(armazenamento);
+        assertEquals(registrados.get(), reaberto.getMovimentos().size());
+        assertEquals(estoque, reaberto.getSaldoAtualQuantidade());
+    }
+
+    @Test
+    void loteDeMovimentosDeveSerValidadoAntesDeAplicar() {
+        ArmazenamentoMemoria armazenamento = new ArmazenamentoMemoria();
+        ControleEstoque ce = new ControleEstoque(armazenamento);
+        Produto p = new Produto("L1", "Lote", 10f, 5, Categoria.acessorios);
+        ce.adicionarProduto(p);
+        LocalDateTime d = LocalDateTime.of(2024,7,1,10,0);
+
+        // a venda só é possível depois da entrada do próprio lote
+        assertThrows(IllegalArgumentException.class, () -> ce.registrarMovimentos(List.of(
+                new VendasClientes(12f, d, 8, p, null),
+                new EntradaProduto(10f, d.plusHours(1), 5, p, null))));
+        assertThrows(IllegalArgumentException.class, () -> ce.registrarMovimentos(List.of(
+                new EntradaProduto(10f, d, 5, p, null),
+                new VendasClientes(12f, d.plusHours(1), 11, p, null))));
+
+        assertEquals(5, p.getQtdEstoque());
+        assertTrue(ce.getMovimentos().isEmpty());
+        assertEquals(0, armazenamento.tamanhoDiario());
+
+        ce.registrarMovimentos(List.of(
+                new EntradaProduto(10f, d, 5, p, null),
+                new VendasClientes(12f, d.plusHours(1), 8, p, null)));
+
+        assertEquals(2, p.getQtdEstoque());
+        assertEquals(2, ce.getSaldoAtualQuantidade());
+        assertEquals(2, ce.listarMovimentosOrdenados().size());
+        assertEquals(1, ce.listarSaidas().size());
+        assertEquals(50 - 96, ce.getSaldoPorPeriodo(d, d.plusDays(1)), 1e-9);
+        assertEquals(2, new ControleEstoque(armazenamento).buscarProdutoPorCodigo("L1").getQtdEstoque());
+    }
+
+    @Test
+    void loteDeMovimentosDeveSerGravadoDeUmaSoVez() {
+        int[] gravacoes = {0};
+        ArmazenamentoMemoria armazenamento = new ArmazenamentoMemoria() {
+            @Override
+            public synchronized void anexarMovimentos(Collection<MovimentoEstoque> movimentos) {
+                gravacoes[0]++;
+                super.anexarMovimentos(movimentos);
+            }
+        };
+        ControleEstoque ce = new ControleEstoque(armazenamento);
+        Produto a = new Produto("L2", "A", 1f, 0, Categoria.acessorios);
+        Produto b = new Produto("L3", "B", 1f, 0, Categoria.hardware);
+        ce.adicionarProduto(a);
+        ce.adicionarProduto(b);
+
+        List<MovimentoEstoque> lote = new ArrayList<>();
+        LocalDateTime d = LocalDateTime.of(2024,7,2,0,0);
+        for (int i = 0; i < 500; i++) {
+            lote.add(new EntradaProduto(1f, d.plusMinutes(i), 2, i % 2 == 0 ? a : b, null));
+            lote.add(new VendasClientes(2f, d.plusMinutes(i), 1, i % 2 == 0 ? a : b, null));
+        }
+        ce.registrarMovimentos(lote);
+
+        assertEquals(1, gravacoes[0]);
+        assertEquals(1000, armazenamento.tamanhoDiario());
+        assertEquals(250, a.getQtdEstoque());
+        assertEquals(250, b.getQtdEstoque());
+        assertEquals(500, ce.getSaldoAtualQuantidade());
+    }
+
+    @Test
+    void falhaDeGravacaoNaoDeveAlterarOEstoqueNemPerderMovimentos() throws Exception {
+        java.util.concurrent.atomic.AtomicBoolean falhar = new java.util.concurrent.atomic.AtomicBoolean(true);
+        ArmazenamentoMemoria armazenamento = new ArmazenamentoMemoria() {
+            @Override
+            public synchronized void anexarMovimentos(Collection<MovimentoEstoque> movimentos) {
+                if (falhar.get()) throw new java.io.UncheckedIOException(new IOException("disco cheio"));
+                super.anexarMovimentos(movimentos);
+            }
+        };
+        ControleEstoque ce = new ControleEstoque(armazenamento);
+        Produto p = new Produto("F1", "Falha", 10f, 5, Categoria.acessorios);
+        ce.adicionarProduto(p);
+        LocalDateTime d = LocalDateTime.of(2024,7,3,10,0);
+
+        assertThrows(java.io.UncheckedIOException.class, () ->
+                ce.registrarMovimento(new VendasClientes(12f, d, 2, p, null)));
+        assertEquals(5, p.getQtdEstoque());
+        assertEquals(5, ce.getSaldoAtualQuantidade());
+        assertTrue(ce.getMovimentos().isEmpty());
+        assertEquals(0, ce.getSaldoPorPeriodoCentavos(d, d));
+
+        // no modo assíncrono, o lote que falhou é retido e gravado depois
+        ce.ativarGravacaoAssincrona(0, 10);
+        CompletableFuture<Void> gravado = ce.registrarMovimentoAsync(new VendasClientes(12f, d, 2, p, null));
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < limite) {
+            try {
+                ce.registrarMovimento(new EntradaProduto(10f, d, 1, p, null));
+            } catch (java.io.UncheckedIOException e) {
+                break;
+            }
+            Thread.sleep(10);
+        }
+        assertThrows(java.io.UncheckedIOException.class, () ->
+                ce.registrarMovimento(new EntradaProduto(10f, d, 1, p, null)));
+        assertFalse(gravado.isDone());
+
+        // alterações do catálogo gravam os pendentes antes e não ficam pela metade
+        assertThrows(java.io.UncheckedIOException.class, ce::salvarCheckpoint);
+        assertThrows(java.io.UncheckedIOException.class, () ->
+                ce.adicionarProduto(new Produto("F2", "Outro", 10f, 3, Categoria.acessorios)));
+        assertNull(ce.buscarProdutoPorCodigo("F2"));
+        assertThrows(java.io.UncheckedIOException.class, () -> ce.removerProduto("F1"));
+        assertSame(p, ce.buscarProdutoPorCodigo("F1"));
+        assertThrows(java.io.UncheckedIOException.class, () ->
+                ce.registrarMovimentos(List.of(new EntradaProduto(10f, d, 1, p, null))));
+
+        falhar.set(false);
+        gravado.get(5, TimeUnit.SECONDS);
+        ce.desativarGravacaoAssincrona();
+
+        ControleEstoque reaberto = new ControleEstoque(armazenamento);
+        assertEquals(p.getQtdEstoque(), reaberto.buscarProdutoPorCodigo("F1").getQtdEstoque());
+        assertEquals(ce.getMovimentos().size(), reaberto.getMovimentos().size());
+    }
+
+    @Test
+    void historicoDoProdutoDeveSerOrdenadoPaginadoEFiltradoPorPeriodo() {
+        ArmazenamentoMemoria armazenamento = new ArmazenamentoMemoria();
+        ControleEstoque ce = new ControleEstoque(armazenamento);
+        Produto a = new Produto("H1", "A", 10f, 100, Categoria.acessorios);
+        Produto b = new Produto("H2", "B", 10f, 100, Categoria.acessorios);
+        ce.adicionarProduto(a);
+        ce.adicionarProduto(b);
+
+        LocalDateTime d = LocalDateTime.of(2024,9,1,0,0);
+        for (int dia = 9; dia >= 0; dia--) {
+            ce.registrarMovimento(new VendasClientes(12f, d.plusDays(dia), 1, a, null));
+            ce.registrarMovimento(new EntradaProduto(10f, d.plusDays(dia), 2, b, null));
+        }
+
+        List<MovimentoEstoque> historico = ce.listarHistorico("H1");
+        assertEquals(10, historico.size());
+        for (int i = 0; i < historico.size(); i++) {
+            assertSame(a, historico.get(i).getProduto());
+            assertEquals(d.plusDays(i), historico.get(i).getData());
+        }
+
+        assertEquals(4, ce.listarHistorico("H1", 0, 4).size());
+        assertEquals(d.plusDays(4), ce.listarHistorico("H1", 1, 4).get(0).getData());
+        assertEquals(2, ce.listarHistorico("H1", 2, 4).size());
+        assertTrue(ce.listarHistorico("H1", 3, 4).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> ce.listarHistorico("H1", -1, 4));
+
+        List<MovimentoEstoque> periodo = ce.listarHistorico("H2", d.plusDays(2), d.plusDays(4));
+        assertEquals(3, periodo.size());
+        assertSame(b, periodo.get(0).getProduto());
+        assertTrue(ce.listarHistorico("XX").isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> historico.clear());
+
+        List<MovimentoEstoque> pagina = ce.listarHistorico("H1", 0, 4);
+        List<MovimentoEstoque> trecho = ce.listarHistorico("H1", d.plusDays(2), d.plusDays(4));
+        ce.registrarMovimentos(List.of(new VendasClientes(12f, d.minusDays(1), 1, a, null)));
+        assertEquals(d.minusDays(1), ce.listarHistorico("H1").get(0).getData());
+
+        // páginas e períodos já obtidos não são deslocados pela inserção retroativa
+        assertEquals(d, pagina.get(0).getData());
+        assertEquals(d.plusDays(3), pagina.get(3).getData());
+        assertEquals(d.plusDays(2), trecho.get(0).getData());
+        assertEquals(3, trecho.size());
+
+        ControleEstoque reaberto = new ControleEstoque(armazenamento);
+        assertEquals(11, reaberto.listarHistorico("H1").size());
+        assertEquals(10, reaberto.listarHistorico("H2").size());
+    }
+
+    @Test
+    void insercoesRetroativasDevemManterOrdemESaldosDoIndiceTemporal() {
+        ControleEstoque ce = new ControleEstoque(new ArmazenamentoMemoria());
+        Produto p = new Produto("T1", "Retroativo", 10f, 0, Categoria.acessorios);
+        ce.adicionarProduto(p);
+
+        LocalDateTime base = LocalDateTime.of(2024,1,1,0,0);
+        Random rnd = new Random(5);
+        List<MovimentoEstoque> esperados = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            // um terço das entradas é retroativo, espalhado por todo o histórico
+            LocalDateTime data = i % 3 == 0 ? base.plusMinutes(rnd.nextInt(i + 1)) : base.plusMinutes(i);
+            EntradaProduto e = new EntradaProduto(Centavos.de(100 + i % 7), data, 1 + i % 5, p, null);
+            ce.registrarMovimento(e);
+            esperados.add(e);
+        }
+        esperados.sort(java.util.Comparator.comparing(MovimentoEstoque::getData));
+
+        List<MovimentoEstoque> ordenados = ce.listarMovimentosOrdenados();
+        assertEquals(esperados.size(), ordenados.size());
+        for (int i = 0; i < esperados.size(); i++) assertSame(esperados.get(i), ordenados.get(i));
+
+        for (int q = 0; q < 50; q++) {
+            LocalDateTime de = base.plusMinutes(rnd.nextInt(5_000));
+            LocalDateTime ate = de.plusMinutes(rnd.nextInt(2_000));
+            long soma = 0;
+            for (MovimentoEstoque m : esperados)
+                if (!m.getData().isBefore(de) && !m.getData().isAfter(ate)) soma += m.getValorTotalCentavos();
+            assertEquals(soma, ce.getSaldoPorPeriodoCentavos(de, ate));
+            assertEquals(soma, ce.listarHistorico("T1", de, ate).stream()
+                    .mapToLong(MovimentoEstoque::getValorTotalCentavos).sum());
+        }
+    }
+
+    @Test
+    void aberturaDeveLerSoACaudaECarregarOHistoricoNaPrimeiraConsulta() {
+        List<long[]> leituras = new ArrayList<>();
+        ArmazenamentoMemoria armazenamento = new ArmazenamentoMemoria() {
+            @Override
+            public synchronized List<MovimentoEstoque> carregarMovimentos(java.util.Map<String, Produto> indice,
+                                                                          long inicio, long fim) {
+                leituras.add(new long[] { inicio, fim });
+                return super.carregarMovimentos(indice, inicio, fim);
+            }
+        };
+        ControleEstoque ce = new ControleEstoque(armazenamento);
+        Produto p = new Produto("H1", "Histórico", 10f, 0, Categoria.acessorios);
+        Produto q = new Produto("H2", "Removido", 20f, 0, Categoria.hardware);
+        ce.adicionarProduto(p);
+        ce.adicionarProduto(q);
+
+        LocalDateTime d = LocalDateTime.of(2024,8,1,10,0);
+        ce.registrarMovimento(new EntradaProduto(10f, d, 5, p, null));
+        ce.registrarMovimento(new EntradaProduto(20f, d.plusHours(1), 2, q, null));
+        ce.registrarMovimento(new VendasClientes(15f, d.plusDays(1), 1, p, null));
+        // a remoção grava o checkpoint, e os movimentos do produto removido
+        // deixam de fazer parte do histórico
+        ce.removerProduto("H2");
+        // um movimento da cauda com a mesma data de um anterior fica depois dele
+        ce.registrarMovimento(new EntradaProduto(10f, d, 3, p, null));
+        ce.registrarMovimento(new VendasClientes(15f, d.plusDays(2), 2, p, null));
+
+        leituras.clear();
+        ControleEstoque reaberto = new ControleEstoque(armazenamento);
+        assertEquals(1, leituras.size());
+        assertEquals(3, leituras.get(0)[0]);
+        assertEquals(5, reaberto.buscarProdutoPorCodigo("H1").getQtdEstoque());
+        assertEquals(5, reaberto.getSaldoAtualQuantidade());
+        assertEquals(1, leituras.size());
+
+        List<MovimentoEstoque> todos = reaberto.getMovimentos();
+        assertEquals(2, leituras.size());
+        assertEquals(0, leituras.get(1)[0]);
+        assertEquals(3, leituras.get(1)[1]);
+        assertEquals(4, todos.size());
+        assertEquals(List.of(5, 1, 3, 2), todos.stream().map(MovimentoEstoque::getQtd).toList());
+
+        List<MovimentoEstoque> ordenados = reaberto.listarMovimentosOrdenados();
+        assertEquals(List.of(5, 3, 1, 2), ordenados.stream().map(MovimentoEstoque::getQtd).toList());
+        assertEquals(2, reaberto.listarSaidas().size());
+        assertEquals(2, reaberto.listarEntradas().size());
+        assertEquals(2, reaberto.listarPorTipo(TipoMovimento.VENDA).size());
+        assertEquals(4, reaberto.listarHistorico("H1").size());
+        assertTrue(reaberto.listarHistorico("H2").isEmpty());
+        assertEquals(5_000 + 3_000 - 1_500 - 3_000,
+                reaberto.getSaldoPorPeriodoCentavos(d, d.plusDays(2)));
+        assertEquals(8, reaberto.getTotaisPorPeriodo(d, d.plusDays(2)).getUnidades(TipoMovimento.ENTRADA));
+        assertEquals(3, reaberto.getResumoCategoria(Categoria.acessorios).getUnidadesSaida());
+        assertEquals(2, leituras.size());
+    }
+
+    @Test
+    void consultasPorPeriodoDevemUsarOsSegmentosSemCarregarOHistorico() throws Exception {
+        List<long[]> leituras = new ArrayList<>();
+        java.util.function.Supplier<ArmazenamentoCsv> abrir = () -> {
+            ArmazenamentoCsv csv = new ArmazenamentoCsv(Paths.get("data")) {
+                @Override
+                public List<MovimentoEstoque> carregarMovimentos(java.util.Map<String, Produto> indice,
+                                                                 long inicio, long fim) {
+                    leituras.add(new long[] { inicio, fim });
+                    return super.carregarMovimentos(indice, inicio, fim);
+                }
+            };
+            csv.setParticionamento(Particao.MENSAL);
+            return csv;
+        };
+
+        ControleEstoque ce = new ControleEstoque(abrir.get());
+        Produto p = new Produto("S1", "Segmento", 10f, 0, Categoria.acessorios);
+        Produto q = new Produto("S2", "Segmento", 30f, 0, Categoria.hardware);
+        ce.adicionarProduto(p);
+        ce.adicionarProduto(q);
+
+        LocalDateTime base = LocalDateTime.of(2024,1,1,9,0);
+        List<MovimentoEstoque> todos = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            Produto alvo = i % 2 == 0 ? p : q;
+            MovimentoEstoque m = i % 3 == 2
+                    ? new VendasClientes(Centavos.de(1_500), base.plusDays(i).plusMinutes(i), 1, alvo, null)
+                    : new EntradaProduto(Centavos.de(1_000 + i), base.plusDays(i), 2, alvo, null);
+            ce.registrarMovimento(m);
+            todos.add(m);
+            if (i == 80) ce.salvarCheckpoint();
+        }
+        // movimento retroativo gravado depois do checkpoint
+        EntradaProduto retroativo = new EntradaProduto(Centavos.de(999), base.plusDays(10).plusMinutes(30), 1, p, null);
+        ce.registrarMovimento(retroativo);
+        todos.add(retroativo);
+
+        LocalDateTime[][] periodos = {
+                { base.plusDays(5), base.plusDays(40) },
+                { base.plusDays(70).plusMinutes(15), base.plusDays(95).plusHours(3) },
+                { base, base.plusDays(200) },
+        };
+
+        for (int rodada = 0; rodada < 2; rodada++) {
+            leituras.clear();
+            ControleEstoque reaberto = new ControleEstoque(abrir.get());
+            assertEquals(1, leituras.size());
+            assertTrue(leituras.get(0)[0] > 0);
+
+            for (LocalDateTime[] per : periodos) {
+                long saldo = 0;
+                for (MovimentoEstoque m : todos)
+                    if (!m.getData().isBefore(per[0]) && !m.getData().isAfter(per[1]))
+                        saldo += m.getTipo().getSinal() * m.getValorTotalCentavos();
+                assertEquals(saldo, reaberto.getSaldoPorPeriodoCentavos(per[0], per[1]));
+                assertTotais(todos, reaberto.getTotaisPorPeriodo(per[0], per[1]));
+            }
+            // o histórico anterior ao checkpoint não foi lido do diário
+            if (rodada == 0) assertEquals(1, leituras.size());
+
+            assertEquals(todos.size(), reaberto.getMovimentos().size());
+            for (LocalDateTime[] per : periodos)
+                assertTotais(todos, reaberto.getTotaisPorPeriodo(per[0], per[1]));
+
+            // sem os segmentos, eles são recriados a partir do diário
+            Files.walk(Paths.get("data/segments"))
+                    .sorted((a, b) -> b.compareTo(a))
+                    .map(Path::toFile)
+                    .forEach(f -> f.delete());
+        }
+    }
 }
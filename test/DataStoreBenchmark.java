@@ -0,0 +1,166 @@
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import model.*;
+import persistence.DataStore;
+import persistence.Durabilidade;
+
+/**
+ * Benchmark simples da carga e da gravação de dados do {@link DataStore}.
+ * <p>
+ * Não faz parte da suíte de testes: deve ser executado manualmente pelo
+ * método {@code main}, em um diretório de trabalho descartável, pois
+ * grava e apaga os arquivos da pasta <b>data/</b>.
+ * </p>
+ *
+ * <p>Para cada tamanho, o catálogo e o número de movimentos são dobrados;
+ * com a resolução indexada dos produtos, o tempo de carga deve crescer
+ * aproximadamente na mesma proporção dos dados (razão próxima de 2).
+ * A carga também é medida com a leitura mapeada em memória, com a leitura
+ * paralela e a partir do formato binário, junto com o tamanho de cada arquivo.</p>
+ *
+ * <p>Por fim, mede a vazão e a latência média do registro de movimentos
+ * em cada {@link Durabilidade}, gravando um movimento por vez e em lotes.</p>
+ *
+ * @author GustavoVirges
+ */
+public class DataStoreBenchmark {
+
+    /** Quantidade de movimentos gerados para cada produto do catálogo. */
+    private static final int MOVIMENTOS_POR_PRODUTO = 20;
+
+    /** Quantidade de movimentos gravados em cada medição de durabilidade. */
+    private static final int GRAVACOES = 2_000;
+
+    /** Tamanho dos lotes na medição de durabilidade em lotes. */
+    private static final int LOTE = 100;
+
+    /** Número de repetições de cada medição (é usada a menor). */
+    private static final int REPETICOES = 5;
+
+    public static void main(String[] args) throws Exception {
+        Files.createDirectories(Paths.get("data"));
+
+        System.out.println("produtos;movimentos;carga(ms);razao;mapeada(ms);paralela(ms);binaria(ms);csv(KB);bin(KB)");
+        double anterior = 0;
+
+        for (int produtos = 2_500; produtos <= 40_000; produtos *= 2) {
+            List<Produto> catalogo = gerarCatalogo(produtos);
+            DataStore.saveProducts(catalogo);
+            DataStore.saveMovements(gerarMovimentos(catalogo));
+
+            double ms = medirCarga(catalogo);
+
+            DataStore.setMappedReading(true);
+            double mapeada = medirCarga(catalogo);
+            DataStore.setMappedReading(false);
+
+            DataStore.setParallelLoading(true);
+            double paralela = medirCarga(catalogo);
+            DataStore.setParallelLoading(false);
+
+            DataStore.convertMovementsToBinary(catalogo);
+            double binaria = medirCargaBinaria(catalogo);
+            long csv = Files.size(Paths.get("data/movements.csv"));
+            long bin = Files.size(Paths.get("data/movements.bin")) + Files.size(Paths.get("data/movements.dic"));
+
+            System.out.printf("%d;%d;%.1f;%s;%.1f;%.1f;%.1f;%d;%d%n", produtos, produtos * MOVIMENTOS_POR_PRODUTO, ms,
+                    anterior == 0 ? "-" : String.format("%.2f", ms / anterior), mapeada, paralela, binaria,
+                    csv / 1024, bin / 1024);
+            anterior = ms;
+        }
+
+        medirDurabilidade();
+    }
+
+    /**
+     * Mede a gravação de movimentos em cada nível de durabilidade.
+     */
+    private static void medirDurabilidade() {
+        List<Produto> catalogo = gerarCatalogo(100);
+        List<MovimentoEstoque> movimentos = gerarMovimentos(catalogo).subList(0, GRAVACOES);
+
+        System.out.println();
+        System.out.println("durabilidade;modo;mov/s;latencia por chamada(us)");
+
+        for (Durabilidade nivel : Durabilidade.values()) {
+            DataStore.setDurability(nivel);
+
+            DataStore.saveMovements(List.of());
+            long inicio = System.nanoTime();
+            for (MovimentoEstoque m : movimentos) DataStore.appendMovement(m);
+            imprimirDurabilidade(nivel, "individual", System.nanoTime() - inicio, GRAVACOES);
+
+            DataStore.saveMovements(List.of());
+            inicio = System.nanoTime();
+            for (int i = 0; i < GRAVACOES; i += LOTE)
+                DataStore.appendMovements(movimentos.subList(i, Math.min(i + LOTE, GRAVACOES)));
+            imprimirDurabilidade(nivel, "lote " + LOTE, System.nanoTime() - inicio, GRAVACOES / LOTE);
+        }
+        DataStore.setDurability(Durabilidade.BUFFER_SO);
+    }
+
+    private static void imprimirDurabilidade(Durabilidade nivel, String modo, long nanos, int gravacoes) {
+        System.out.printf("%s;%s;%.0f;%.1f%n", nivel, modo,
+                GRAVACOES / (nanos / 1e9), nanos / 1e3 / gravacoes);
+    }
+
+    /**
+     * Mede o menor tempo de carga das movimentações, em milissegundos.
+     */
+    private static double medirCarga(List<Produto> catalogo) {
+        long melhor = Long.MAX_VALUE;
+        for (int i = 0; i < REPETICOES; i++) {
+            long inicio = System.nanoTime();
+            List<MovimentoEstoque> lidos = DataStore.loadMovements(catalogo);
+            long duracao = System.nanoTime() - inicio;
+            if (lidos.size() != catalogo.size() * MOVIMENTOS_POR_PRODUTO)
+                throw new IllegalStateException("Carga incompleta: " + lidos.size());
+            melhor = Math.min(melhor, duracao);
+        }
+        return melhor / 1_000_000.0;
+    }
+
+    /**
+     * Mede o menor tempo de carga do formato binário, em milissegundos.
+     */
+    private static double medirCargaBinaria(List<Produto> catalogo) {
+        Map<String, Produto> indice = DataStore.indexProducts(catalogo);
+        long melhor = Long.MAX_VALUE;
+        for (int i = 0; i < REPETICOES; i++) {
+            long inicio = System.nanoTime();
+            List<MovimentoEstoque> lidos = DataStore.loadMovementsBinary(indice);
+            long duracao = System.nanoTime() - inicio;
+            if (lidos.size() != catalogo.size() * MOVIMENTOS_POR_PRODUTO)
+                throw new IllegalStateException("Carga incompleta: " + lidos.size());
+            melhor = Math.min(melhor, duracao);
+        }
+        return melhor / 1_000_000.0;
+    }
+
+    private static List<Produto> gerarCatalogo(int tamanho) {
+        List<Produto> lista = new ArrayList<>(tamanho);
+        Categoria[] categorias = Categoria.values();
+        for (int i = 0; i < tamanho; i++)
+            lista.add(new Produto("SKU" + i, "Produto " + i, 10f + i % 500,
+                    1_000, categorias[i % categorias.length]));
+        return lista;
+    }
+
+    private static List<MovimentoEstoque> gerarMovimentos(List<Produto> catalogo) {
+        Random rnd = new Random(42);
+        LocalDateTime base = LocalDateTime.of(2020, 1, 1, 0, 0);
+        int total = catalogo.size() * MOVIMENTOS_POR_PRODUTO;
+        List<MovimentoEstoque> lista = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            Produto p = catalogo.get(rnd.nextInt(catalogo.size()));
+            LocalDateTime data = base.plusMinutes(i);
+            if (i % 3 == 0)
+                lista.add(new EntradaProduto(p.getValorUnitario(), data, 5, p, new Fornecedor("Fornecedor", "")));
+            else
+                lista.add(new VendasClientes(p.getValorUnitario(), data, 1, p, new Cliente("Cliente", "")));
+        }
+        return lista;
+    }
+}
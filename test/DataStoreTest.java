@@ -7,6 +7,8 @@ import org.junit.jupiter.api.*;
 
 import model.*;
 import persistence.DataStore;
+import persistence.Durabilidade;
+import persistence.Particao;
 /**
  * @author ViniMonster
  */
@@ -69,4 +71,382 @@ public class DataStoreTest {
         assertEquals(1, lista.size());
         assertEquals(2, lista.get(0).getQtd());
     }
+
+    @Test
+    void appendMovementShouldKeepPreviousRecords() {
+        Produto p = new Produto("P05", "SSD", 300f, 4, Categoria.hardware);
+
+        DataStore.appendMovement(new EntradaProduto(300f,
+                java.time.LocalDateTime.of(2024, 1, 1, 10, 0), 2, p, null));
+        DataStore.appendMovement(new VendasClientes(350f,
+                java.time.LocalDateTime.of(2024, 1, 2, 10, 0), 1, p, new Cliente("Ana", "")));
+
+        var movimentos = DataStore.loadMovements(List.of(p));
+
+        assertEquals(2, movimentos.size());
+        assertTrue(movimentos.get(0) instanceof EntradaProduto);
+        assertTrue(movimentos.get(1) instanceof VendasClientes);
+    }
+
+    @Test
+    void appendAfterTornLastLineShouldKeepCommittedRecords() throws Exception {
+        Produto p = new Produto("P1", "Mouse", 10f, 0, Categoria.perifericos);
+        DataStore.saveProducts(List.of(p));
+        Files.writeString(Paths.get("data/movements.csv"),
+                "ENTRADA;10.00;2024-01-01T10:00:00;3;P1;\nENTRADA;10.00;2024-01-0");
+
+        assertEquals(1, DataStore.loadMovements(List.of(p)).size());
+        long confirmado = DataStore.journalSize();
+
+        DataStore.appendMovement(new EntradaProduto(Centavos.de(1000),
+                java.time.LocalDateTime.of(2024, 2, 1, 10, 0), 7, p, null));
+
+        for (boolean mapeada : new boolean[]{false, true}) {
+            DataStore.setMappedReading(mapeada);
+            try {
+                var lidos = DataStore.loadMovements(List.of(p));
+                assertEquals(2, lidos.size());
+                assertEquals(3, lidos.get(0).getQtd());
+                assertEquals(7, lidos.get(1).getQtd());
+                assertEquals(1, DataStore.loadMovements(List.of(p), confirmado, Long.MAX_VALUE).size());
+            } finally {
+                DataStore.setMappedReading(false);
+            }
+        }
+    }
+
+    @Test
+    void indexProductsShouldResolveByCodeKeepingFirstDuplicate() {
+        Produto a = new Produto("P06", "Cabo", 10f, 1, Categoria.acessorios);
+        Produto b = new Produto("P06", "Cabo duplicado", 12f, 1, Categoria.acessorios);
+        Produto c = new Produto("P07", "Hub", 80f, 1, Categoria.perifericos);
+
+        Map<String, Produto> indice = DataStore.indexProducts(List.of(a, b, c));
+
+        assertEquals(2, indice.size());
+        assertSame(a, indice.get("P06"));
+        assertSame(c, indice.get("P07"));
+    }
+
+    @Test
+    void mappedReadingShouldMatchBufferedReading() {
+        Produto p = new Produto("P08", "Placa de vídeo", 2500.5f, 10, Categoria.hardware);
+        DataStore.saveProducts(List.of(p));
+
+        DataStore.saveMovements(List.of(
+                new EntradaProduto(1.25E7f, java.time.LocalDateTime.of(2024, 3, 1, 8, 30), 5, p,
+                        new Fornecedor("Fornecedor São Paulo", "")),
+                new VendasClientes(19.99f, java.time.LocalDateTime.of(2024, 3, 2, 9, 15, 42, 123_000_000), 2, p,
+                        new Cliente("Ana", "")),
+                new UsoInterno(0.5f, java.time.LocalDateTime.of(2024, 3, 3, 0, 0, 1), 1, p, "TI")));
+
+        var esperados = DataStore.loadMovements(DataStore.loadProducts());
+        try {
+            DataStore.setMappedReading(true);
+            var produtos = DataStore.loadProducts();
+            var lidos = DataStore.loadMovements(produtos);
+
+            assertEquals(1, produtos.size());
+            assertEquals(2500.5f, produtos.get(0).getValorUnitario());
+            assertEquals(esperados.size(), lidos.size());
+            for (int i = 0; i < esperados.size(); i++) {
+                assertEquals(esperados.get(i).toString(), lidos.get(i).toString());
+                assertEquals(esperados.get(i).getData(), lidos.get(i).getData());
+                assertEquals(esperados.get(i).getValorUnitario(), lidos.get(i).getValorUnitario());
+            }
+        } finally {
+            DataStore.setMappedReading(false);
+        }
+    }
+
+    @Test
+    void binaryConversionShouldRoundTripMovements() throws Exception {
+        Produto p = new Produto("P09", "Gabinete", 350f, 10, Categoria.hardware);
+        DataStore.saveProducts(List.of(p));
+
+        DataStore.saveMovements(List.of(
+                new EntradaProduto(320f, java.time.LocalDateTime.of(2024, 5, 1, 8, 0, 0, 500), 4, p,
+                        new Fornecedor("Fornecedor A", "")),
+                new VendasClientes(350f, java.time.LocalDateTime.of(2024, 5, 2, 14, 30), 1, p,
+                        new Cliente("Bruno", "")),
+                new DevolucaoFornecedores(320f, java.time.LocalDateTime.of(2024, 5, 3, 9, 0), 1, p, null)));
+
+        var originais = DataStore.loadMovements(List.of(p));
+
+        assertEquals(3, DataStore.convertMovementsToBinary(List.of(p)));
+        assertTrue(Files.exists(Paths.get("data/movements.bin")));
+        assertTrue(Files.exists(Paths.get("data/movements.dic")));
+
+        Files.delete(Paths.get("data/movements.csv"));
+        assertEquals(3, DataStore.convertMovementsToCsv(List.of(p)));
+
+        var convertidos = DataStore.loadMovements(List.of(p));
+        assertEquals(originais.size(), convertidos.size());
+        for (int i = 0; i < originais.size(); i++) {
+            assertEquals(originais.get(i).toString(), convertidos.get(i).toString());
+            assertEquals(originais.get(i).getData(), convertidos.get(i).getData());
+        }
+    }
+
+    @Test
+    void binaryRewriteShouldKeepPreviousRecordsReadable() throws Exception {
+        Produto p = new Produto("P10", "Fonte", 300f, 10, Categoria.hardware);
+        Produto q = new Produto("P11", "Cooler", 80f, 10, Categoria.hardware);
+        Map<String, Produto> indice = DataStore.indexProducts(List.of(p, q));
+
+        DataStore.saveMovementsBinary(List.of(
+                new VendasClientes(300f, java.time.LocalDateTime.of(2024, 6, 1, 10, 0), 1, p,
+                        new Cliente("Carla", ""))));
+        byte[] anteriores = Files.readAllBytes(Paths.get("data/movements.bin"));
+
+        DataStore.saveMovementsBinary(List.of(
+                new EntradaProduto(70f, java.time.LocalDateTime.of(2024, 6, 2, 9, 0), 5, q,
+                        new Fornecedor("Fornecedor B", ""))));
+        assertEquals("P11", DataStore.loadMovementsBinary(indice).get(0).getProduto().getCodigo());
+
+        // queda depois de renomear o dicionário e antes de renomear os registros
+        Files.write(Paths.get("data/movements.bin"), anteriores);
+        var lidos = DataStore.loadMovementsBinary(indice);
+        assertEquals(1, lidos.size());
+        assertEquals("P10", lidos.get(0).getProduto().getCodigo());
+        assertEquals("Carla", ((VendasClientes) lidos.get(0)).getCliente().getNome());
+    }
+
+    @Test
+    void parallelLoadingShouldPreserveFileOrder() {
+        List<Produto> produtos = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            produtos.add(new Produto("S" + i, "Item " + i, 10f + i, 100, Categoria.outrosProdutos));
+
+        List<MovimentoEstoque> movimentos = new ArrayList<>();
+        java.time.LocalDateTime base = java.time.LocalDateTime.of(2023, 1, 1, 0, 0);
+        for (int i = 0; i < 60_000; i++)
+            movimentos.add(new VendasClientes(10f, base.plusMinutes(i), 1 + i % 7,
+                    produtos.get(i % produtos.size()), new Cliente("Cliente " + (i % 13), "")));
+        DataStore.saveMovements(movimentos);
+
+        var sequencial = DataStore.loadMovements(produtos);
+        try {
+            DataStore.setParallelLoading(true);
+            var paralelo = DataStore.loadMovements(produtos);
+
+            assertEquals(sequencial.size(), paralelo.size());
+            for (int i = 0; i < sequencial.size(); i++)
+                assertEquals(sequencial.get(i).toString(), paralelo.get(i).toString());
+        } finally {
+            DataStore.setParallelLoading(false);
+        }
+    }
+
+    @Test
+    void durableWritesShouldReplaceFilesWithoutLeftovers() throws Exception {
+        Produto p = new Produto("P10", "Fonte", 250f, 3, Categoria.hardware);
+        try {
+            DataStore.setDurability(Durabilidade.POR_COMMIT);
+
+            DataStore.saveProducts(List.of(p));
+            DataStore.saveProducts(List.of(p));
+            DataStore.appendMovements(List.of(
+                    new EntradaProduto(250f, java.time.LocalDateTime.of(2024, 6, 1, 10, 0), 1, p, null),
+                    new EntradaProduto(250f, java.time.LocalDateTime.of(2024, 6, 2, 10, 0), 2, p, null)));
+
+            assertEquals(1, DataStore.loadProducts().size());
+            assertEquals(2, DataStore.loadMovements(List.of(p)).size());
+            assertFalse(Files.exists(Paths.get("data/products.csv.tmp")));
+        } finally {
+            DataStore.setDurability(Durabilidade.BUFFER_SO);
+        }
+    }
+
+    @Test
+    void partitionedQueryShouldReadOnlyOverlappingSegments() {
+        Produto p = new Produto("P20", "Cabo", 15f, 1000, Categoria.hardware);
+        Map<String, Produto> indice = DataStore.indexProducts(List.of(p));
+        java.time.LocalDateTime base = java.time.LocalDateTime.of(2023, 1, 1, 12, 0);
+
+        List<MovimentoEstoque> movimentos = new ArrayList<>();
+        for (int i = 0; i < 365; i++)
+            movimentos.add(new VendasClientes(15f, base.plusDays(i), 1, p, null));
+
+        try {
+            DataStore.setPartitioning(Particao.MENSAL);
+            DataStore.appendMovements(movimentos.subList(0, 200));
+            DataStore.appendMovements(movimentos.subList(200, 365));
+            DataStore.appendMovement(new VendasClientes(15f, base.plusDays(45).plusHours(1), 2, p, null));
+
+            java.time.LocalDateTime inicio = java.time.LocalDateTime.of(2023, 2, 10, 0, 0);
+            java.time.LocalDateTime fim = java.time.LocalDateTime.of(2023, 3, 11, 23, 59);
+
+            assertEquals(2, DataStore.segmentsInRange(inicio, fim));
+
+            var particionado = DataStore.loadMovements(indice, inicio, fim);
+            DataStore.setPartitioning(null);
+            var completo = DataStore.loadMovements(indice, inicio, fim);
+
+            assertEquals(31, particionado.size());
+            assertEquals(completo.size(), particionado.size());
+        } finally {
+            DataStore.setPartitioning(null);
+        }
+    }
+
+    @Test
+    void segmentFailureShouldNotFailTheJournalAppend() throws Exception {
+        Produto p = new Produto("P21", "Cabo", 15f, 1000, Categoria.hardware);
+        Map<String, Produto> indice = DataStore.indexProducts(List.of(p));
+        java.time.LocalDateTime base = java.time.LocalDateTime.of(2023, 1, 1, 12, 0);
+
+        try {
+            DataStore.setPartitioning(Particao.DIARIA);
+            // um arquivo no lugar do diretório impede a gravação dos segmentos
+            Files.writeString(Paths.get("data/segments"), "");
+            for (int i = 0; i < 10; i++)
+                DataStore.appendMovement(new VendasClientes(15f, base.plusDays(i), 1, p, null));
+
+            assertEquals(10, DataStore.loadMovements(List.of(p)).size());
+
+            Files.delete(Paths.get("data/segments"));
+            var periodo = DataStore.loadMovements(indice, base.plusDays(2), base.plusDays(4));
+            assertEquals(3, periodo.size());
+            assertEquals(3, DataStore.segmentsInRange(base.plusDays(2), base.plusDays(4)));
+        } finally {
+            DataStore.setPartitioning(null);
+        }
+    }
+
+    @Test
+    void otherExitsShouldPersistOnlyTheReason() {
+        Produto p = new Produto("P30", "Gabinete", 180f, 5, Categoria.hardware);
+        DataStore.saveMovements(List.of(
+                new OutrasSaidas(180f, java.time.LocalDateTime.of(2024, 7, 1, 8, 0), 1, p, "Avaria")));
+
+        var movimentos = DataStore.loadMovements(List.of(p));
+
+        assertEquals(1, movimentos.size());
+        assertEquals(TipoMovimento.OUTRA, movimentos.get(0).getTipo());
+        assertEquals("Avaria", ((OutrasSaidas) movimentos.get(0)).getMotivo());
+    }
+
+    @Test
+    void monetaryValuesShouldRoundTripExactlyInCents() throws Exception {
+        Produto p = new Produto("P40", "Servidor", Centavos.de(1_234_567_89L), 1, Categoria.hardware);
+        DataStore.saveProducts(List.of(p));
+        DataStore.saveMovements(List.of(
+                new EntradaProduto(Centavos.de(9_876_543_21L), java.time.LocalDateTime.of(2024, 6, 1, 8, 0), 3, p, null),
+                new VendasClientes(Centavos.de(1L), java.time.LocalDateTime.of(2024, 6, 2, 8, 0), 1, p, null)));
+
+        assertTrue(Files.readString(Paths.get("data/products.csv")).contains(";1234567.89;"));
+        assertTrue(Files.readString(Paths.get("data/movements.csv")).contains(";9876543.21;"));
+
+        for (boolean mapeada : new boolean[]{false, true}) {
+            DataStore.setMappedReading(mapeada);
+            try {
+                var produtos = DataStore.loadProducts();
+                assertEquals(1_234_567_89L, produtos.get(0).getValorUnitarioCentavos());
+
+                var lidos = DataStore.loadMovements(produtos);
+                assertEquals(9_876_543_21L, lidos.get(0).getValorUnitarioCentavos());
+                assertEquals(3 * 9_876_543_21L, lidos.get(0).getValorTotalCentavos());
+                assertEquals(1L, lidos.get(1).getValorUnitarioCentavos());
+            } finally {
+                DataStore.setMappedReading(false);
+            }
+        }
+
+        DataStore.convertMovementsToBinary(List.of(p));
+        var binarios = DataStore.loadMovementsBinary(DataStore.indexProducts(List.of(p)));
+        assertEquals(9_876_543_21L, binarios.get(0).getValorUnitarioCentavos());
+        assertEquals(1L, binarios.get(1).getValorUnitarioCentavos());
+    }
+
+    @Test
+    void legacyFloatFilesShouldStillLoad() throws Exception {
+        Files.writeString(Paths.get("data/products.csv"), "P41;Mouse;19.99;5;perifericos\n");
+        Files.writeString(Paths.get("data/movements.csv"),
+                "ENTRADA;1.25E7;2024-01-01T10:00;1;P41;\nVENDA;0.1;2024-01-02T10:00;1;P41;\n");
+
+        for (boolean mapeada : new boolean[]{false, true}) {
+            DataStore.setMappedReading(mapeada);
+            try {
+                var produtos = DataStore.loadProducts();
+                assertEquals(1999L, produtos.get(0).getValorUnitarioCentavos());
+                var lidos = DataStore.loadMovements(produtos);
+                assertEquals(1_250_000_000L, lidos.get(0).getValorUnitarioCentavos());
+                assertEquals(10L, lidos.get(1).getValorUnitarioCentavos());
+            } finally {
+                DataStore.setMappedReading(false);
+            }
+        }
+    }
+
+    @Test
+    void legacyBinaryRecordsShouldBeReadAndExtendedInPlace() throws Exception {
+        Produto p = new Produto("P42", "Cabo", 5f, 10, Categoria.acessorios);
+        var data = java.time.LocalDateTime.of(2024, 2, 1, 12, 0);
+
+        try (var out = new java.io.DataOutputStream(Files.newOutputStream(Paths.get("data/movements.dic")))) {
+            out.writeInt(0x4C4D4431);
+            out.writeInt(2);
+            out.writeUTF("");
+            out.writeUTF("P42");
+        }
+        try (var out = new java.io.DataOutputStream(Files.newOutputStream(Paths.get("data/movements.bin")))) {
+            out.writeInt(0x4C4D5631);
+            out.writeInt(29);
+            out.writeByte(0);
+            out.writeLong(data.toEpochSecond(java.time.ZoneOffset.UTC));
+            out.writeInt(0);
+            out.writeInt(4);
+            out.writeFloat(12.5f);
+            out.writeInt(1);
+            out.writeInt(0);
+        }
+
+        var indice = DataStore.indexProducts(List.of(p));
+        var lidos = DataStore.loadMovementsBinary(indice);
+        assertEquals(1, lidos.size());
+        assertEquals(1250L, lidos.get(0).getValorUnitarioCentavos());
+        assertEquals(data, lidos.get(0).getData());
+
+        var binario = new persistence.ArmazenamentoBinario(Paths.get("data"));
+        binario.anexarMovimentos(List.of(new VendasClientes(Centavos.de(799), data.plusDays(1), 2, p, null)));
+        assertEquals(8 + 2 * 29, Files.size(Paths.get("data/movements.bin")));
+
+        lidos = DataStore.loadMovementsBinary(indice);
+        assertEquals(2, lidos.size());
+        assertEquals(799L, lidos.get(1).getValorUnitarioCentavos());
+        assertEquals(2, lidos.get(1).getQtd());
+    }
+
+    @Test
+    void binaryAppendShouldDropTornRecordsAndUncountedEntries() throws Exception {
+        Produto p = new Produto("P43", "Teclado", 90f, 10, Categoria.perifericos);
+        Produto q = new Produto("P44", "Mouse", 40f, 10, Categoria.perifericos);
+        var indice = DataStore.indexProducts(List.of(p, q));
+        var data = java.time.LocalDateTime.of(2024, 3, 1, 10, 0);
+
+        var binario = new persistence.ArmazenamentoBinario(Paths.get("data"));
+        binario.anexarMovimentos(List.of(new VendasClientes(Centavos.de(9000), data, 1, p, new Cliente("Davi", ""))));
+        long alinhado = binario.tamanhoDiario();
+
+        // queda no meio de um acréscimo: entradas sem contagem e registro incompleto
+        try (var out = Files.newOutputStream(Paths.get("data/movements.dic"), StandardOpenOption.APPEND)) {
+            new java.io.DataOutputStream(out).writeUTF("órfã");
+        }
+        try (var out = Files.newOutputStream(Paths.get("data/movements.bin"), StandardOpenOption.APPEND)) {
+            out.write(new byte[11]);
+        }
+        assertEquals(alinhado, new persistence.ArmazenamentoBinario(Paths.get("data")).tamanhoDiario());
+
+        var reaberto = new persistence.ArmazenamentoBinario(Paths.get("data"));
+        reaberto.anexarMovimentos(List.of(new EntradaProduto(Centavos.de(3000), data.plusDays(1), 5, q,
+                new Fornecedor("Fornecedor C", ""))));
+        assertEquals(reaberto.tamanhoDiario(), Files.size(Paths.get("data/movements.bin")));
+
+        var lidos = DataStore.loadMovementsBinary(indice);
+        assertEquals(2, lidos.size());
+        assertEquals("Davi", ((VendasClientes) lidos.get(0)).getCliente().getNome());
+        assertEquals("P44", lidos.get(1).getProduto().getCodigo());
+        assertEquals("Fornecedor C", ((EntradaProduto) lidos.get(1)).getFornecedor().getNome());
+    }
 }
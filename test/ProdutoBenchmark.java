@@ -0,0 +1,105 @@
+import java.util.concurrent.*;
+
+import model.Categoria;
+import model.Produto;
+
+/**
+ * Benchmark da atualização concorrente do estoque de um único produto.
+ * <p>
+ * Não faz parte da suíte de testes: deve ser executado manualmente pelo
+ * método {@code main}. Várias threads vendem e repõem o mesmo produto ao
+ * mesmo tempo, comparando o {@link Produto}, que atualiza o estoque por
+ * compare-and-set, com um contador protegido por {@code synchronized}.
+ * </p>
+ *
+ * <p>Para cada quantidade de threads é exibida a vazão, em milhões de
+ * operações por segundo, das duas abordagens.</p>
+ *
+ * @author ViniMonster
+ */
+public class ProdutoBenchmark {
+
+    /** Operações executadas por cada thread em uma medição. */
+    private static final int OPERACOES = 2_000_000;
+
+    /** Número de repetições de cada medição (é usada a menor). */
+    private static final int REPETICOES = 5;
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = Runtime.getRuntime().availableProcessors() * 2;
+
+        System.out.println("threads;cas(Mops/s);synchronized(Mops/s)");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            Produto produto = new Produto("HOT", "Produto disputado", 1f, 1_000, Categoria.acessorios);
+            double cas = medir(threads, () -> {
+                produto.diminuirEstoque(1);
+                produto.aumentarEstoque(1);
+            });
+
+            EstoqueSincronizado base = new EstoqueSincronizado(1_000);
+            double sincronizado = medir(threads, () -> {
+                base.diminuir(1);
+                base.aumentar(1);
+            });
+
+            System.out.printf("%d;%.1f;%.1f%n", threads, cas, sincronizado);
+        }
+    }
+
+    /**
+     * Mede a vazão de uma operação executada simultaneamente por várias threads.
+     *
+     * @return milhões de operações por segundo na melhor repetição
+     */
+    private static double medir(int threads, Runnable operacao) throws Exception {
+        double melhor = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int r = 0; r < REPETICOES; r++) {
+                CountDownLatch inicio = new CountDownLatch(1);
+                Future<?>[] tarefas = new Future<?>[threads];
+                for (int t = 0; t < threads; t++) {
+                    tarefas[t] = executor.submit(() -> {
+                        inicio.await();
+                        for (int i = 0; i < OPERACOES; i++) operacao.run();
+                        return null;
+                    });
+                }
+
+                long t0 = System.nanoTime();
+                inicio.countDown();
+                for (Future<?> f : tarefas) f.get();
+                double segundos = (System.nanoTime() - t0) / 1e9;
+
+                melhor = Math.max(melhor, (double) threads * OPERACOES * 2 / segundos / 1e6);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return melhor;
+    }
+
+    /**
+     * Contador de estoque com a verificação e o desconto protegidos por
+     * monitor, usado como referência.
+     */
+    private static final class EstoqueSincronizado {
+
+        private int qtd;
+
+        EstoqueSincronizado(int qtd) {
+            this.qtd = qtd;
+        }
+
+        synchronized void aumentar(int n) {
+            if (n <= 0) throw new IllegalArgumentException("Quantidade deve ser positiva.");
+            qtd += n;
+        }
+
+        synchronized void diminuir(int n) {
+            if (n <= 0) throw new IllegalArgumentException("Quantidade deve ser positiva.");
+            if (n > qtd) throw new IllegalArgumentException("Estoque insuficiente.");
+            qtd -= n;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.jupiter.api.Test;
 
 import model.Categoria;
@@ -43,4 +46,45 @@ public class ProdutoTest {
         assertTrue(s.contains("200"));
         assertTrue(s.contains("3"));
     }
+
+    @Test
+    void alteracoesDeEstoqueDevemRejeitarQuantidadesNaoPositivas() {
+        Produto p = new Produto("P005", "Cabo", 10f, 5, Categoria.acessorios);
+
+        assertThrows(IllegalArgumentException.class, () -> p.aumentarEstoque(0));
+        assertThrows(IllegalArgumentException.class, () -> p.aumentarEstoque(-3));
+        assertThrows(IllegalArgumentException.class, () -> p.diminuirEstoque(0));
+        assertThrows(IllegalArgumentException.class, () -> p.diminuirEstoque(-3));
+        assertThrows(IllegalArgumentException.class, () -> p.diminuirEstoque(6));
+        assertEquals(5, p.getQtdEstoque());
+    }
+
+    @Test
+    void vendasSimultaneasNaoDevemNegativarEstoque() throws Exception {
+        Produto p = new Produto("P006", "Pendrive", 30f, 1_000, Categoria.acessorios);
+        AtomicInteger vendidos = new AtomicInteger();
+        CountDownLatch inicio = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        for (int t = 0; t < 8; t++) {
+            executor.submit(() -> {
+                inicio.await();
+                for (int i = 0; i < 500; i++) {
+                    try {
+                        p.diminuirEstoque(1);
+                        vendidos.incrementAndGet();
+                    } catch (IllegalArgumentException esgotado) {
+                        // estoque insuficiente
+                    }
+                }
+                return null;
+            });
+        }
+
+        inicio.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(1_000, vendidos.get());
+        assertEquals(0, p.getQtdEstoque());
+    }
 }
@@ -0,0 +1,196 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.*;
+
+import model.*;
+import persistence.ArmazenamentoMemoria;
+
+/**
+ * @author ViniMonster
+ */
+public class RankingVendasTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 10, 1, 9, 0);
+
+    private ControleEstoque controle;
+
+    @BeforeEach
+    void preparar() {
+        controle = new ControleEstoque(new ArmazenamentoMemoria());
+        for (int i = 0; i < 200; i++)
+            controle.adicionarProduto(new Produto("V" + i, "Produto " + i, Centavos.de(100 + i), 1_000_000, Categoria.hardware));
+    }
+
+    private VendasClientes venda(int produto, int qtd) {
+        Produto p = controle.buscarProdutoPorCodigo("V" + produto);
+        return new VendasClientes(Centavos.de(p.getValorUnitarioCentavos()), BASE, qtd, p, null);
+    }
+
+    /** Sorteia produtos com frequência decrescente, concentrada nos primeiros. */
+    private static int sortear(Random rnd) {
+        return (int) Math.min(199, Math.floor(Math.pow(200, rnd.nextDouble())) - 1);
+    }
+
+    @Test
+    void rankingExatoDeveCoincidirComAsVendasRegistradas() {
+        RankingVendas unidades = new RankingVendas(20, RankingVendas.Criterio.UNIDADES);
+        RankingVendas receita = new RankingVendas(20, RankingVendas.Criterio.RECEITA);
+        controle.adicionarObservador(unidades);
+        controle.adicionarObservador(receita);
+
+        Random rnd = new Random(3);
+        Map<String, Long> esperadoUnidades = new HashMap<>();
+        Map<String, Long> esperadoReceita = new HashMap<>();
+        List<MovimentoEstoque> lote = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            VendasClientes v = venda(sortear(rnd), 1 + rnd.nextInt(5));
+            esperadoUnidades.merge(v.getProduto().getCodigo(), (long) v.getQtd(), Long::sum);
+            esperadoReceita.merge(v.getProduto().getCodigo(), v.getValorTotalCentavos(), Long::sum);
+            if (i % 2 == 0) controle.registrarMovimento(v);
+            else lote.add(v);
+        }
+        controle.registrarMovimentos(lote);
+        controle.registrarMovimento(new EntradaProduto(Centavos.de(1), BASE, 1_000, controle.buscarProdutoPorCodigo("V199"), null));
+
+        assertRanking(esperadoUnidades, unidades.getRanking(), 20);
+        assertRanking(esperadoReceita, receita.getRanking(), 20);
+        assertTrue(unidades.getRanking().stream().allMatch(p -> p.getErro() == 0));
+    }
+
+    private static void assertRanking(Map<String, Long> esperado, List<RankingVendas.Posicao> ranking, int n) {
+        List<Map.Entry<String, Long>> ordenado = new ArrayList<>(esperado.entrySet());
+        ordenado.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+
+        assertEquals(n, ranking.size());
+        for (int i = 0; i < n; i++) {
+            assertEquals(ordenado.get(i).getKey(), ranking.get(i).getCodigo());
+            assertEquals((long) ordenado.get(i).getValue(), ranking.get(i).getTotal());
+        }
+    }
+
+    @Test
+    void rankingAproximadoDeveLimitarContadoresEManterOsMaisVendidos() {
+        RankingVendas ranking = new RankingVendas(5, RankingVendas.Criterio.UNIDADES, 30);
+        controle.adicionarObservador(ranking);
+
+        Random rnd = new Random(9);
+        Map<String, Long> real = new HashMap<>();
+        long total = 0;
+        for (int i = 0; i < 20_000; i++) {
+            VendasClientes v = venda(sortear(rnd), 1 + rnd.nextInt(3));
+            real.merge(v.getProduto().getCodigo(), (long) v.getQtd(), Long::sum);
+            total += v.getQtd();
+            controle.registrarMovimento(v);
+        }
+
+        assertTrue(ranking.getContadores() <= 30);
+        List<RankingVendas.Posicao> top = ranking.getRanking();
+        assertEquals(5, top.size());
+        for (RankingVendas.Posicao p : top) {
+            long r = real.get(p.getCodigo());
+            assertTrue(p.getTotal() >= r);
+            assertTrue(p.getTotal() - p.getErro() <= r);
+        }
+
+        Set<String> reportados = new HashSet<>();
+        for (RankingVendas.Posicao p : top) reportados.add(p.getCodigo());
+        for (int i = 0; i < 3; i++) {
+            String codigo = "V" + i;
+            if (real.get(codigo) > total / 30) assertTrue(reportados.contains(codigo), codigo);
+        }
+    }
+
+    @Test
+    void janelaDeveDescartarVendasAntigasEmFatias() {
+        AtomicLong relogio = new AtomicLong(0);
+        RankingVendas exato = new RankingVendas(3, RankingVendas.Criterio.UNIDADES, 0, 1_000, 10, relogio::get);
+        RankingVendas aproximado = new RankingVendas(3, RankingVendas.Criterio.UNIDADES, 5, 1_000, 10, relogio::get);
+        controle.adicionarObservador(exato);
+        controle.adicionarObservador(aproximado);
+
+        controle.registrarMovimento(venda(1, 10));
+        relogio.set(500);
+        controle.registrarMovimento(venda(2, 4));
+        controle.registrarMovimento(venda(1, 1));
+
+        for (RankingVendas r : List.of(exato, aproximado)) {
+            List<RankingVendas.Posicao> top = r.getRanking();
+            assertEquals("V1", top.get(0).getCodigo());
+            assertEquals(11, top.get(0).getTotal());
+        }
+
+        relogio.set(1_050);
+        for (RankingVendas r : List.of(exato, aproximado)) {
+            List<RankingVendas.Posicao> top = r.getRanking();
+            assertEquals(2, top.size());
+            assertEquals("V2", top.get(0).getCodigo());
+            assertEquals(4, top.get(0).getTotal());
+            assertEquals(1, top.get(1).getTotal());
+        }
+
+        relogio.set(5_000);
+        assertTrue(exato.getRanking().isEmpty());
+        assertEquals(0, exato.getContadores());
+        controle.registrarMovimento(venda(3, 2));
+        assertEquals("V3", exato.getRanking().get(0).getCodigo());
+    }
+
+    @Test
+    void erroHerdadoNaJanelaDeveSairComAFatiaEmQueFoiCriado() {
+        AtomicLong relogio = new AtomicLong(0);
+        RankingVendas ranking = new RankingVendas(2, RankingVendas.Criterio.UNIDADES, 2, 1_000, 10, relogio::get);
+        controle.adicionarObservador(ranking);
+
+        controle.registrarMovimento(venda(1, 10));
+        controle.registrarMovimento(venda(2, 5));
+        controle.registrarMovimento(venda(3, 1));
+
+        RankingVendas.Posicao herdada = ranking.getRanking().get(1);
+        assertEquals("V3", herdada.getCodigo());
+        assertEquals(6, herdada.getTotal());
+        assertEquals(5, herdada.getErro());
+
+        relogio.set(500);
+        controle.registrarMovimento(venda(1, 1));
+
+        // a única venda de V3 e o erro herdado saem da janela juntos
+        relogio.set(1_050);
+        List<RankingVendas.Posicao> top = ranking.getRanking();
+        assertEquals(1, top.size());
+        assertEquals("V1", top.get(0).getCodigo());
+        assertEquals(1, top.get(0).getTotal());
+        assertEquals(1, ranking.getContadores());
+
+        relogio.set(1_550);
+        assertTrue(ranking.getRanking().isEmpty());
+        assertEquals(0, ranking.getContadores());
+    }
+
+    @Test
+    void observadorDeveSerNotificadoSemTravasDoControle() throws Exception {
+        List<String> notificados = new CopyOnWriteArrayList<>();
+        controle.adicionarObservador(m -> {
+            // exige a trava exclusiva: bloquearia se a notificação ocorresse sob a trava compartilhada
+            controle.salvarCheckpoint();
+            notificados.add(m.getProduto().getCodigo() + ":" + controle.getSaldoAtualQuantidade());
+        });
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> {
+                controle.registrarMovimento(venda(7, 1));
+                controle.registrarMovimentos(List.of(venda(8, 1), venda(9, 1)));
+            }).get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(3, notificados.size());
+        assertEquals("V7:" + (200L * 1_000_000 - 1), notificados.get(0));
+    }
+}
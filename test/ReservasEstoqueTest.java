@@ -0,0 +1,140 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.*;
+
+import model.*;
+import persistence.ArmazenamentoMemoria;
+
+/**
+ * @author ViniMonster
+ */
+public class ReservasEstoqueTest {
+
+    private ControleEstoque controle;
+    private AtomicLong relogio;
+    private ReservasEstoque reservas;
+
+    @BeforeEach
+    void preparar() {
+        controle = new ControleEstoque(new ArmazenamentoMemoria(), true);
+        controle.adicionarProduto(new Produto("R1", "Fone", 100f, 10, Categoria.acessorios));
+        relogio = new AtomicLong(1_000);
+        reservas = new ReservasEstoque(controle, 5_000, 100, 16, relogio::get);
+    }
+
+    @Test
+    void reservaDeveReduzirSaldoDisponivelSemAlterarEstoque() {
+        long id = reservas.reservar("R1", 4);
+
+        assertEquals(6, reservas.getDisponivel("R1"));
+        assertEquals(4, reservas.getReservado("R1"));
+        assertEquals(10, controle.buscarProdutoPorCodigo("R1").getQtdEstoque());
+        assertThrows(IllegalArgumentException.class, () -> reservas.reservar("R1", 7));
+        assertThrows(IllegalArgumentException.class, () -> reservas.reservar("R1", 0));
+        assertThrows(IllegalArgumentException.class, () -> reservas.reservar("XX", 1));
+
+        assertTrue(reservas.liberar(id));
+        assertFalse(reservas.liberar(id));
+        assertEquals(10, reservas.getDisponivel("R1"));
+    }
+
+    @Test
+    void confirmacaoDeveRegistrarVenda() {
+        long id = reservas.reservar("R1", 3);
+        LocalDateTime data = LocalDateTime.of(2024,8,1,12,0);
+
+        assertTrue(reservas.confirmar(id, new Cliente("Ana", "ana@email"), data));
+        assertFalse(reservas.confirmar(id, new Cliente("Ana", "ana@email"), data));
+
+        assertEquals(7, controle.buscarProdutoPorCodigo("R1").getQtdEstoque());
+        assertEquals(7, reservas.getDisponivel("R1"));
+        assertEquals(0, reservas.getReservado("R1"));
+        assertEquals(1, controle.listarPorTipo(TipoMovimento.VENDA).size());
+        assertEquals(-300, controle.getSaldoPorPeriodo(data, data), 1e-9);
+    }
+
+    @Test
+    void reservasVencidasDevemExpirarPelaRoda() {
+        long primeira = reservas.reservar("R1", 2);
+        relogio.addAndGet(3_000);
+        long segunda = reservas.reservar("R1", 5);
+
+        relogio.addAndGet(1_999);
+        assertEquals(0, reservas.expirarVencidas());
+
+        relogio.addAndGet(100);
+        assertEquals(1, reservas.expirarVencidas());
+        assertFalse(reservas.confirmar(primeira, null, LocalDateTime.now()));
+        assertEquals(5, reservas.getReservado("R1"));
+
+        // salto maior que uma volta da roda
+        relogio.addAndGet(60_000);
+        assertEquals(1, reservas.expirarVencidas());
+        assertFalse(reservas.liberar(segunda));
+        assertEquals(10, reservas.getDisponivel("R1"));
+        assertEquals(2, reservas.getExpiradas());
+        assertEquals(0, reservas.getReservasAtivas());
+    }
+
+    @Test
+    void reservaComPrazoJaPercorridoDeveExpirarNoAvancoSeguinte() {
+        relogio.set(20_000);
+        reservas.expirarVencidas();
+
+        // relógio lido por outra thread antes do último avanço
+        relogio.set(14_000);
+        reservas.reservar("R1", 3);
+
+        relogio.set(20_100);
+        assertEquals(1, reservas.expirarVencidas());
+        assertEquals(10, reservas.getDisponivel("R1"));
+        assertEquals(0, reservas.getReservasAtivas());
+    }
+
+    @Test
+    void reservasConcorrentesNaoDevemExcederOEstoque() throws Exception {
+        controle.adicionarProduto(new Produto("R2", "Cabo", 5f, 1_000, Categoria.acessorios));
+        AtomicInteger confirmadas = new AtomicInteger();
+        CountDownLatch inicio = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        for (int t = 0; t < 8; t++) {
+            int semente = t;
+            executor.submit(() -> {
+                inicio.await();
+                Random r = new Random(semente);
+                for (int i = 0; i < 400; i++) {
+                    long id;
+                    try {
+                        id = reservas.reservar("R2", 1 + r.nextInt(3));
+                    } catch (IllegalArgumentException esgotado) {
+                        continue;
+                    }
+                    if (r.nextBoolean()) {
+                        reservas.confirmar(id, null, LocalDateTime.of(2024,8,2,0,0));
+                        confirmadas.incrementAndGet();
+                    } else {
+                        reservas.liberar(id);
+                    }
+                }
+                return null;
+            });
+        }
+
+        inicio.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        Produto p = controle.buscarProdutoPorCodigo("R2");
+        assertTrue(p.getQtdEstoque() >= 0);
+        assertEquals(0, reservas.getReservado("R2"));
+        assertEquals(p.getQtdEstoque(), reservas.getDisponivel("R2"));
+        assertEquals(confirmadas.get(), controle.listarPorTipo(TipoMovimento.VENDA).size());
+    }
+}